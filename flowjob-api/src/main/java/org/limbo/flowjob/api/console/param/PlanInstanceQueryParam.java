@@ -0,0 +1,40 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.api.console.param;
+
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.limbo.flowjob.api.PageParam;
+
+import javax.validation.constraints.NotBlank;
+
+/**
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class PlanInstanceQueryParam extends PageParam {
+
+    @NotBlank(message = "计划ID不能为空")
+    @Parameter(description = "计划ID")
+    private String planId;
+
+}
@@ -25,6 +25,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.limbo.flowjob.api.constants.TagFilterCondition;
 
+import java.util.List;
+
 /**
  * @author Devil
  * @since 2023/2/6
@@ -52,4 +54,14 @@ public class TagFilterParam {
      */
     private Integer condition;
 
+    /**
+     * 标签值集合，条件为 {@link TagFilterCondition#MUST_MATCH_VALUE_IN}、{@link TagFilterCondition#MUST_NOT_MATCH_VALUE_IN} 时使用
+     */
+    private List<String> tagValues;
+
+    /**
+     * 子条件，条件为 {@link TagFilterCondition#ALL_OF}、{@link TagFilterCondition#ANY_OF} 时使用
+     */
+    private List<TagFilterParam> filters;
+
 }
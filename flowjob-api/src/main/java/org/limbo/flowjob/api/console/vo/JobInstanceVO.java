@@ -0,0 +1,66 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.api.console.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.limbo.flowjob.api.constants.JobStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Data
+@Schema(title = "作业实例")
+public class JobInstanceVO {
+
+    @Schema(title = "id")
+    private String jobInstanceId;
+
+    @Schema(title = "计划实例ID")
+    private String planInstanceId;
+
+    @Schema(title = "DAG中的jobId")
+    private String jobId;
+
+    /**
+     * 状态
+     * @see JobStatus
+     */
+    @Schema(title = "状态")
+    private Integer status;
+
+    @Schema(title = "第几次重试")
+    private Integer retryTimes;
+
+    @Schema(title = "错误信息")
+    private String errorMsg;
+
+    @Schema(title = "调度触发时间")
+    private LocalDateTime triggerAt;
+
+    @Schema(title = "执行开始时间")
+    private LocalDateTime startAt;
+
+    @Schema(title = "执行结束时间")
+    private LocalDateTime endAt;
+
+}
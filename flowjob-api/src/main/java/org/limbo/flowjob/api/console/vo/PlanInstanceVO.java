@@ -0,0 +1,76 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.api.console.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.limbo.flowjob.api.constants.PlanStatus;
+import org.limbo.flowjob.api.constants.ScheduleType;
+import org.limbo.flowjob.api.constants.TriggerType;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Data
+@Schema(title = "计划实例")
+public class PlanInstanceVO {
+
+    @Schema(title = "id")
+    private String planInstanceId;
+
+    @Schema(title = "计划ID")
+    private String planId;
+
+    @Schema(title = "计划版本")
+    private String planInfoId;
+
+    /**
+     * 状态
+     * @see PlanStatus
+     */
+    @Schema(title = "状态")
+    private Integer status;
+
+    /**
+     * 触发方式
+     * @see TriggerType
+     */
+    @Schema(title = "触发方式")
+    private Integer triggerType;
+
+    /**
+     * 调度方式
+     * @see ScheduleType
+     */
+    @Schema(title = "调度方式")
+    private Integer scheduleType;
+
+    @Schema(title = "期望的触发时间")
+    private LocalDateTime triggerAt;
+
+    @Schema(title = "执行开始时间")
+    private LocalDateTime startAt;
+
+    @Schema(title = "执行结束时间")
+    private LocalDateTime feedbackAt;
+
+}
@@ -31,6 +31,7 @@ import lombok.Getter;
  *     <li>{@linkplain LoadBalanceType#LEAST_FREQUENTLY_USED 最不经常使用}</li>
  *     <li>{@linkplain LoadBalanceType#LEAST_RECENTLY_USED 最近最少使用}</li>
  *     <li>{@linkplain LoadBalanceType#CONSISTENT_HASH 一致性hash}</li>
+ *     <li>{@linkplain LoadBalanceType#BIN_PACKING 装箱}</li>
  * </ul>
  *
  * @author Brozen
@@ -69,6 +70,11 @@ public enum LoadBalanceType {
      */
     CONSISTENT_HASH(6, "一致性hash"),
 
+    /**
+     * 装箱。在满足CPU、内存需求的worker中，将作业下发给下发后剩余资源最少的worker，尽量少占用worker。
+     */
+    BIN_PACKING(7, "装箱"),
+
     ;
 
     @JsonValue
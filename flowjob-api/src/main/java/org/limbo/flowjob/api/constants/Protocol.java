@@ -38,6 +38,11 @@ public enum Protocol {
      */
     HTTPS("https", 443),
 
+    /**
+     * 基于 Netty 的长连接二进制协议
+     */
+    TCP("tcp", 8099),
+
     ;
 
     /**
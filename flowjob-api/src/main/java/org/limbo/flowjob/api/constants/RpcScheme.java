@@ -24,6 +24,6 @@ package org.limbo.flowjob.api.constants;
  */
 public enum RpcScheme {
 
-    http, https
+    http, https, tcp
 
 }
@@ -50,6 +50,26 @@ public enum TagFilterCondition {
      * 存在指定名称的标签且匹配正则表达式
      */
     MUST_MATCH_VALUE_REGEX(5, "存在指定名称的标签且匹配正则表达式"),
+
+    /**
+     * 存在指定名称的标签且匹配指定值集合中的任一值
+     */
+    MUST_MATCH_VALUE_IN(6, "存在指定名称的标签且匹配指定值集合中的任一值"),
+
+    /**
+     * 存在指定名称的标签，且不匹配指定值集合中的任何值
+     */
+    MUST_NOT_MATCH_VALUE_IN(7, "存在指定名称的标签，且不匹配指定值集合中的任何值"),
+
+    /**
+     * 满足所有子条件
+     */
+    ALL_OF(8, "满足所有子条件"),
+
+    /**
+     * 满足任一子条件
+     */
+    ANY_OF(9, "满足任一子条件"),
     ;
 
     @JsonValue
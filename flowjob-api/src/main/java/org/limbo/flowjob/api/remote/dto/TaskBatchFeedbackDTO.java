@@ -0,0 +1,43 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.api.remote.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量任务执行反馈结果
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Data
+@Schema(title = "批量任务执行反馈结果")
+public class TaskBatchFeedbackDTO {
+
+    /**
+     * broker 处理失败的 taskId，worker 可重新反馈
+     */
+    @Schema(description = "处理失败的 taskId，worker 可重新反馈")
+    private List<String> failedTaskIds = new ArrayList<>();
+
+}
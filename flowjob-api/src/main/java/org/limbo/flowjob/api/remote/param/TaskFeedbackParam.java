@@ -42,6 +42,12 @@ import java.util.Map;
 @Schema(title = "作业执行反馈参数")
 public class TaskFeedbackParam {
 
+    /**
+     * 任务 ID，批量反馈时使用
+     */
+    @Schema(description = "任务 ID，批量反馈时使用")
+    private String taskId;
+
     /**
      * 执行结果
      * @see ExecuteResult
@@ -18,6 +18,7 @@
 
 package org.limbo.flowjob.broker.application.component;
 
+import lombok.extern.slf4j.Slf4j;
 import org.limbo.flowjob.broker.core.cluster.Broker;
 import org.limbo.flowjob.broker.core.cluster.NodeManger;
 import org.limbo.flowjob.broker.core.cluster.NodeRegistry;
@@ -35,6 +36,7 @@ import java.util.List;
  * @author Devil
  * @since 2022/10/27
  */
+@Slf4j
 public class BrokerStarter extends Broker implements ApplicationEventPublisherAware, ApplicationListener<ContextRefreshedEvent> {
 
     private final MetaTaskScheduler metaTaskScheduler;
@@ -43,6 +45,10 @@ public class BrokerStarter extends Broker implements ApplicationEventPublisherAw
 
     private ApplicationEventPublisher eventPublisher;
 
+    private volatile boolean running;
+
+    private volatile boolean stopped;
+
     public BrokerStarter(String name, URL baseUrl, NodeRegistry registry, NodeManger manger,
                          MetaTaskScheduler metaTaskScheduler, List<MetaTask> metaTasks) {
         super(name, baseUrl, registry, manger);
@@ -54,24 +60,38 @@ public class BrokerStarter extends Broker implements ApplicationEventPublisherAw
     protected void afterStart() {
         // 启动所有元任务调度
         metaTasks.forEach(metaTaskScheduler::schedule);
+        running = true;
 
 //        // 将自己注册为worker
 //        eventPublisher.publishEvent(new WorkerReadyEvent());
     }
 
+    /**
+     * 停止节点注册，关闭心跳、gossip 等线程。元任务调度器由 Spring 单独销毁
+     */
     @Override
-    public void stop() {
-
+    public synchronized void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        running = false;
+        try {
+            registry.stop();
+        } catch (Exception e) {
+            log.error("broker registry stop fail", e);
+        }
+        log.info("broker stop!!!~~~");
     }
 
     @Override
     public boolean isRunning() {
-        return false;
+        return running;
     }
 
     @Override
     public boolean isStopped() {
-        return false;
+        return stopped;
     }
 
     @Override
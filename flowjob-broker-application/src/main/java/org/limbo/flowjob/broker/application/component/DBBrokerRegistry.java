@@ -79,14 +79,31 @@ public class DBBrokerRegistry implements NodeRegistry {
 
     private final List<NodeListener> listeners = new ArrayList<>();
 
+    private final List<Timer> timers = new ArrayList<>();
+
     @Override
-    public void register(String name, String host, int port) {
+    public synchronized void register(String name, String host, int port) {
         // 开启定时任务 维持心跳
-        new Timer().schedule(new HeartbeatTask(name, host, port), 0, heartbeatInterval);
+        schedule(new HeartbeatTask(name, host, port), heartbeatInterval);
 
         // 开启定时任务，监听broker心跳情况
-        new Timer().schedule(new NodeOnlineCheckTask(), 0, nodeStatusCheckInterval);
-        new Timer().schedule(new NodeOfflineCheckTask(), 0, nodeStatusCheckInterval);
+        schedule(new NodeOnlineCheckTask(), nodeStatusCheckInterval);
+        schedule(new NodeOfflineCheckTask(), nodeStatusCheckInterval);
+    }
+
+    private void schedule(TimerTask task, long period) {
+        Timer timer = new Timer();
+        timer.schedule(task, 0, period);
+        timers.add(timer);
+    }
+
+    /**
+     * 停止心跳及节点检查，其它节点在心跳超时后将本节点视为下线
+     */
+    @Override
+    public synchronized void stop() {
+        timers.forEach(Timer::cancel);
+        timers.clear();
     }
 
     @Override
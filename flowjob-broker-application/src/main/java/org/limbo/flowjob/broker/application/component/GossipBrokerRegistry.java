@@ -0,0 +1,144 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.application.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.limbo.flowjob.broker.core.cluster.GossipNodeRegistry;
+import org.limbo.flowjob.broker.core.domain.IDGenerator;
+import org.limbo.flowjob.broker.core.domain.IDType;
+import org.limbo.flowjob.broker.dao.entity.BrokerEntity;
+import org.limbo.flowjob.broker.dao.repositories.BrokerEntityRepo;
+import org.limbo.flowjob.common.utils.time.TimeUtils;
+
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 基于 gossip 的 broker 注册，DB 只用于登记自己以及获取种子节点，不做心跳写入和轮询。
+ * 登记时间按种子有效期低频刷新，只有有效期内刷新过的 broker 作为种子，过期的登记会被删除，避免向已下线的地址推送
+ *
+ * @author Brozen
+ * @since 2023-06-14
+ */
+@Slf4j
+public class GossipBrokerRegistry extends GossipNodeRegistry {
+
+    private final BrokerEntityRepo brokerEntityRepo;
+
+    private final IDGenerator idGenerator;
+
+    private final Integer gossipPort;
+
+    /**
+     * DB 中登记的 broker 作为种子的有效期，毫秒
+     */
+    private final long seedExpire;
+
+    private volatile String name;
+
+    private volatile String host;
+
+    private volatile int port;
+
+    /**
+     * 上次刷新登记时间的时间戳，毫秒
+     */
+    private volatile long lastRefreshAt;
+
+    public GossipBrokerRegistry(String bindAddress, Integer gossipPort, String secret, long heartbeatInterval, long heartbeatTimeout, int fanout,
+                                List<InetSocketAddress> staticSeeds, long seedExpire, BrokerEntityRepo brokerEntityRepo, IDGenerator idGenerator) {
+        super(bindAddress, gossipPort, secret, heartbeatInterval, heartbeatTimeout, fanout, staticSeeds);
+        this.gossipPort = gossipPort;
+        this.seedExpire = seedExpire;
+        this.brokerEntityRepo = brokerEntityRepo;
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public void register(String name, String host, int port) {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+
+        // 登记自己，供其它 broker 启动时作为种子
+        refresh(System.currentTimeMillis());
+
+        super.register(name, host, port);
+    }
+
+    /**
+     * 按有效期的 1/3 刷新自己的登记时间，并删除过期的登记
+     */
+    @Override
+    protected void afterGossip(long now) {
+        if (now - lastRefreshAt < seedExpire / 3) {
+            return;
+        }
+        refresh(now);
+
+        try {
+            int deleted = brokerEntityRepo.deleteByLastHeartbeatBefore(TimeUtils.currentLocalDateTime().minus(seedExpire, ChronoUnit.MILLIS));
+            if (deleted > 0) {
+                log.info("[GossipBrokerRegistry] delete {} expired broker", deleted);
+            }
+        } catch (Exception e) {
+            log.error("[GossipBrokerRegistry] delete expired broker fail", e);
+        }
+    }
+
+    private void refresh(long now) {
+        lastRefreshAt = now;
+        try {
+            BrokerEntity broker = brokerEntityRepo.findByName(name).orElse(new BrokerEntity());
+            if (StringUtils.isBlank(broker.getBrokerId())) {
+                broker.setBrokerId(idGenerator.generateId(IDType.BROKER));
+            }
+            broker.setName(name);
+            broker.setHost(host);
+            broker.setPort(port);
+            broker.setLastHeartbeat(TimeUtils.currentLocalDateTime());
+            brokerEntityRepo.saveAndFlush(broker);
+        } catch (Exception e) {
+            log.error("[GossipBrokerRegistry] save broker fail name: {}", name, e);
+        }
+    }
+
+    /**
+     * 种子节点为配置的种子以及 DB 中有效期内登记过的 broker，未指定 gossip 端口时与 broker 端口一致
+     */
+    @Override
+    protected Collection<InetSocketAddress> seeds() {
+        List<InetSocketAddress> seeds = new ArrayList<>(super.seeds());
+        try {
+            LocalDateTime after = TimeUtils.currentLocalDateTime().minus(seedExpire, ChronoUnit.MILLIS);
+            for (BrokerEntity broker : brokerEntityRepo.findByLastHeartbeatAfter(after)) {
+                seeds.add(new InetSocketAddress(broker.getHost(), gossipPort != null ? gossipPort : broker.getPort()));
+            }
+        } catch (Exception e) {
+            log.error("[GossipBrokerRegistry] load seeds fail", e);
+        }
+        return seeds;
+    }
+
+}
@@ -18,111 +18,269 @@
 
 package org.limbo.flowjob.broker.application.component;
 
-import lombok.AllArgsConstructor;
-import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.limbo.flowjob.broker.core.domain.IDGenerator;
 import org.limbo.flowjob.broker.core.domain.IDType;
+import org.limbo.flowjob.broker.core.schedule.scheduler.NamedThreadFactory;
 import org.limbo.flowjob.broker.dao.entity.IdEntity;
 import org.limbo.flowjob.broker.dao.repositories.IdEntityRepo;
 import org.limbo.flowjob.api.constants.MsgConstants;
 import org.limbo.flowjob.broker.core.utils.Verifies;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
-import javax.transaction.Transactional;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 基于 DB 号段的 ID 生成器。
+ * <p>
+ * 每种 ID 类型使用双号段缓冲：当前号段剩余不足 {@link #PREFETCH_RATIO} 时，异步从 DB 获取下一个号段，
+ * 当前号段耗尽时直接切换，发号过程无锁，不会因访问 DB 阻塞。号段长度根据消耗速度自适应调整，
+ * 使一个号段大约使用 {@link #SEGMENT_DURATION} 毫秒。
+ *
  * @author Devil
  * @since 2022/11/26
  */
 @Slf4j
 @Component
+@ConditionalOnProperty(prefix = "flowjob.broker", name = "id-generator", havingValue = "segment", matchIfMissing = true)
 public class IDGeneratorComponent implements IDGenerator {
 
-    private static final Map<IDType, ID> ID_MAP = new ConcurrentHashMap<>();
+    /**
+     * 当前号段剩余比例低于此值时预取下一个号段
+     */
+    private static final double PREFETCH_RATIO = 0.2;
+
+    /**
+     * 期望一个号段的使用时长，毫秒
+     */
+    private static final long SEGMENT_DURATION = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * 号段最大长度
+     */
+    private static final int MAX_STEP = 1_000_000;
+
+    /**
+     * CAS 更新号段的最大重试次数
+     */
+    private static final int MAX_CAS_TIMES = 10;
+
+    private final Map<IDType, SegmentBuffer> buffers = new ConcurrentHashMap<>();
+
+    /**
+     * 获取号段的线程，号段在独立的事务中获取，不受调用方事务影响
+     */
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(NamedThreadFactory.newInstance("FlowJobIdPrefetch"));
 
     @Setter(onMethod_ = @Inject)
     private IdEntityRepo idEntityRepo;
 
     @Override
-    @Transactional
     public String generateId(IDType type) {
-        Long randomAutoId = gainRandomAutoId(type);
-//        String id = randomAutoId + String.format("%2d", planId).replace(" ", "0") + String.format("%4d", jobId % 10000).replace(" ", "0");
-        return String.valueOf(randomAutoId);
+        Verifies.notNull(type, MsgConstants.UNKNOWN + " type: " + type);
+        SegmentBuffer buffer = buffers.computeIfAbsent(type, SegmentBuffer::new);
+        return String.valueOf(buffer.nextId());
     }
 
-    private Long gainRandomAutoId(final IDType type) {
-        ID id = ID_MAP.get(type);
-        if (id == null) {
-            id = getNewId(type);
+    @PreDestroy
+    public void destroy() {
+        prefetchExecutor.shutdownNow();
+    }
+
+
+    /**
+     * 异步获取号段
+     */
+    private CompletableFuture<Segment> fetchSegmentAsync(IDType type, int step) {
+        return CompletableFuture.supplyAsync(() -> fetchSegment(type, step), prefetchExecutor);
+    }
+
+
+    /**
+     * 同步等待获取号段
+     */
+    private Segment awaitSegment(CompletableFuture<Segment> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
         }
+    }
+
 
-        int time = 0;
-        while (time < 10) {
-            long currentId = id.getCurrentId().incrementAndGet();
-            if (currentId >= id.getEndId()) {
-                id = getNewId(type);
-            } else {
-                return currentId;
+    /**
+     * 从 DB 获取号段，CAS 失败时短暂随机退避后重试
+     *
+     * @param type ID 类型
+     * @param step 期望的号段长度，小于 DB 配置的步长时使用 DB 配置
+     */
+    private Segment fetchSegment(IDType type, int step) {
+        String typeName = type.name();
+        for (int time = 0; time < MAX_CAS_TIMES; time++) {
+            IdEntity idEntity = idEntityRepo.findById(typeName).orElse(null);
+            Verifies.notNull(idEntity, MsgConstants.UNKNOWN + " ID Type of " + typeName);
+
+            int minStep = idEntity.getStep();
+            int actualStep = Math.max(step, minStep);
+            long startId = idEntity.getCurrentId();
+            long endId = startId + actualStep;
+            if (idEntityRepo.casGainId(typeName, endId, startId) > 0) {
+                return new Segment(startId, endId, minStep);
+            }
+
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(10, 50));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
-            time++;
         }
+
         throw new IllegalStateException("The system is busy, Try again later!!!");
     }
 
-    private synchronized ID getNewId(IDType type) {
-        Verifies.notNull(type, MsgConstants.UNKNOWN + " type: " + type);
 
-        // 防止并发情况下，重复执行后续代码
-        if (ID_MAP.containsKey(type)) {
-            return ID_MAP.get(type);
+    /**
+     * 单个 ID 类型的双号段缓冲
+     */
+    private class SegmentBuffer {
+
+        private final IDType type;
+
+        /**
+         * 当前使用的号段
+         */
+        private volatile Segment current;
+
+        /**
+         * 预取中或已预取的下一个号段
+         */
+        private volatile CompletableFuture<Segment> next;
+
+        SegmentBuffer(IDType type) {
+            this.type = type;
         }
 
-        String typeName = type.name();
+        long nextId() {
+            while (true) {
+                Segment segment = current;
+                if (segment == null) {
+                    segment = init();
+                }
 
-        int updateNum = 0; // 更新库存的条数
-        int time = 0; // 重试次数
+                long id = segment.cursor.incrementAndGet();
+                if (id <= segment.end) {
+                    if (segment.end - id <= segment.prefetchThreshold) {
+                        prefetch(segment);
+                    }
+                    return id;
+                }
 
-        long startId = 0;
-        long endId = 0;
+                switchSegment(segment);
+            }
+        }
 
-        while (updateNum <= 0 && time < 10) {
-            // 加锁 获取 类型
-            IdEntity idEntity = idEntityRepo.findById(typeName).orElse(null);
-            Verifies.notNull(idEntity, MsgConstants.UNKNOWN + " ID Type of " + typeName);
-            startId = idEntity.getCurrentId();
-            endId = idEntity.getCurrentId() + idEntity.getStep();
-            updateNum = idEntityRepo.casGainId(typeName, endId, startId);
-            try {
-                Thread.sleep(200);
-            } catch (InterruptedException e) {
-                log.error("thread sleep fail", e);
-                Thread.currentThread().interrupt();
+        private synchronized Segment init() {
+            if (current == null) {
+                current = awaitSegment(fetchSegmentAsync(type, 0));
             }
-            time++;
+            return current;
         }
 
-        if (updateNum < 0) {
-            throw new IllegalStateException("The system is busy, Try again later!!!");
+        /**
+         * 异步获取下一个号段，已在获取时忽略
+         */
+        private void prefetch(Segment segment) {
+            if (next != null) {
+                return;
+            }
+            synchronized (this) {
+                if (next != null || current != segment) {
+                    return;
+                }
+                next = fetchSegmentAsync(type, nextStep(segment));
+            }
+        }
+
+        /**
+         * 当前号段耗尽，切换到预取的号段，预取失败时同步获取
+         */
+        private synchronized void switchSegment(Segment exhausted) {
+            if (current != exhausted) {
+                return;
+            }
+
+            Segment segment = null;
+            CompletableFuture<Segment> future = next;
+            next = null;
+            if (future != null) {
+                try {
+                    segment = awaitSegment(future);
+                } catch (Exception e) {
+                    log.warn("prefetch id segment of {} failed, fetch synchronously", type, e);
+                }
+            }
+            if (segment == null) {
+                segment = awaitSegment(fetchSegmentAsync(type, nextStep(exhausted)));
+            }
+            current = segment;
+        }
+
+        /**
+         * 根据当前号段的消耗速度计算下一个号段的长度：消耗过快时加倍，过慢时减半，不小于 DB 配置的步长
+         */
+        private int nextStep(Segment segment) {
+            long elapsed = System.currentTimeMillis() - segment.fetchedAt;
+            int step = segment.step;
+            if (elapsed < SEGMENT_DURATION) {
+                return (int) Math.min((long) step * 2, MAX_STEP);
+            } else if (elapsed > SEGMENT_DURATION * 2) {
+                return Math.max(step / 2, segment.minStep);
+            }
+            return step;
         }
 
-        ID id = new ID(new AtomicLong(startId), endId);
-        ID_MAP.put(type, id);
-        return id;
     }
 
-    @Getter
-    @AllArgsConstructor
-    private static class ID {
-        private AtomicLong currentId;
 
-        private Long endId;
+    /**
+     * 号段，可用 ID 为 (start, end]
+     */
+    private static class Segment {
+
+        private final AtomicLong cursor;
+
+        private final long end;
+
+        private final int step;
+
+        private final int minStep;
+
+        private final long prefetchThreshold;
+
+        private final long fetchedAt = System.currentTimeMillis();
+
+        Segment(long start, long end, int minStep) {
+            this.cursor = new AtomicLong(start);
+            this.end = end;
+            this.step = (int) (end - start);
+            this.minStep = minStep;
+            this.prefetchThreshold = (long) (step * PREFETCH_RATIO);
+        }
+
     }
 
 }
@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.application.component;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
+import org.limbo.flowjob.broker.dao.repositories.PlanSlotLayoutRepo;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+/**
+ * 启动时检查 plan_slot 的槽位布局，在 broker 启动元任务调度之前执行。
+ * <p>
+ * 旧版本按 planId.hashCode() % 64 计算槽位，可能为负数，与 {@link SlotManager#slot(String)} 不一致，这些 plan 不会被任何节点加载。
+ * 第一个启动的节点在布局记录的行锁内按当前 slot-size 重算一次，之后已持久化的槽位保持不变，不会在每次启动、滚动重启时重写。
+ * 配置的 slot-size 与已记录的不一致时拒绝启动，见 {@link PlanSlotLayoutRepo#rehashIfLegacy}。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Slf4j
+@Component
+public class PlanSlotRehashInitializer {
+
+    @Setter(onMethod_ = @Inject)
+    private PlanSlotLayoutRepo planSlotLayoutRepo;
+
+    @Setter(onMethod_ = @Inject)
+    private SlotManager slotManager;
+
+    @Setter(onMethod_ = @Inject)
+    private BrokerConfig brokerConfig;
+
+    @PostConstruct
+    public void rehash() {
+        int updated = planSlotLayoutRepo.rehashIfLegacy(brokerConfig.getSlotSize(), slotManager::slot);
+        if (updated > 0) {
+            log.info("rehash legacy plan slot with slot-size:{} updated:{}", brokerConfig.getSlotSize(), updated);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.application.component;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+
+/**
+ * 槽位交接事件。broker 成员变化导致当前节点负责的槽位发生变化时发布，只包含变化的槽位。
+ *
+ * @author Brozen
+ * @since 2023-06-12
+ */
+public class SlotHandoffEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 2412407786870245562L;
+
+    /**
+     * 当前节点新获得的槽位
+     */
+    @Getter
+    private final List<Integer> acquiredSlots;
+
+    /**
+     * 当前节点失去的槽位
+     */
+    @Getter
+    private final List<Integer> releasedSlots;
+
+    /**
+     * 失去的槽位下的 planId
+     */
+    @Getter
+    private final List<String> releasedPlanIds;
+
+    public SlotHandoffEvent(Object source, List<Integer> acquiredSlots, List<Integer> releasedSlots, List<String> releasedPlanIds) {
+        super(source);
+        this.acquiredSlots = acquiredSlots;
+        this.releasedSlots = releasedSlots;
+        this.releasedPlanIds = releasedPlanIds;
+    }
+
+}
@@ -18,26 +18,38 @@
 
 package org.limbo.flowjob.broker.application.component;
 
+import com.google.common.hash.Hashing;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.limbo.flowjob.broker.core.cluster.Broker;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
 import org.limbo.flowjob.broker.core.cluster.Node;
 import org.limbo.flowjob.broker.core.cluster.NodeManger;
 import org.limbo.flowjob.broker.dao.entity.PlanSlotEntity;
 import org.limbo.flowjob.broker.dao.repositories.PlanSlotEntityRepo;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
+ * 槽位管理。当前节点负责的槽位以及槽位下的 planId 缓存在内存快照中，
+ * 只有在 broker 成员变化时全量重建，新建的 plan 按 plan_slot 自增 id 增量追加，调用方读取的都是不可变快照。
+ * <p>
+ * 槽位通过 rendezvous hashing 分配给 broker，成员变化时只有约 1/N 的槽位发生迁移，迁移的槽位通过 {@link SlotHandoffEvent} 通知。
+ *
  * @author Devil
  * @since 2022/8/22
  */
@@ -54,13 +66,23 @@ public class SlotManager {
     @Setter(onMethod_ = @Inject)
     private PlanSlotEntityRepo planSlotEntityRepo;
 
-    public static final int SLOT_SIZE = 64;
+    @Setter(onMethod_ = @Inject)
+    private BrokerConfig brokerConfig;
+
+    @Setter(onMethod_ = @Inject)
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 当前槽位快照
+     */
+    private volatile SlotSnapshot snapshot = SlotSnapshot.EMPTY;
 
     /**
      * 计算槽位
      */
     public int slot(String planId) {
-        return planId.hashCode() % SlotManager.SLOT_SIZE;
+        int hash = Hashing.murmur3_32_fixed().hashString(planId, StandardCharsets.UTF_8).asInt();
+        return Math.floorMod(hash, brokerConfig.getSlotSize());
     }
 
     /**
@@ -69,52 +91,238 @@ public class SlotManager {
      * @return 当前机器对应的所有槽位
      */
     public List<Integer> slots() {
-        List<Node> sortedNodes = nodeManger.allAlive().stream().sorted(Comparator.comparing(Node::getHost).thenComparingInt(Node::getPort)).collect(Collectors.toList());
+        return current().slots;
+    }
 
-        URL rpcBaseURL = broker.getRpcBaseURL();
-        String host = rpcBaseURL.getHost();
-        Integer port = rpcBaseURL.getPort();
-
-        // 判断自己所在的id位置
-        int mark = -1;
-        for (int i = 0; i < sortedNodes.size(); i++) {
-            Node node = sortedNodes.get(i);
-            if (Objects.equals(host, node.getHost()) && Objects.equals(port, node.getPort())) {
-                mark = i;
-                break;
+    /**
+     * 获取最新快照，存活节点变化时全量重建
+     */
+    private SlotSnapshot current() {
+        List<String> members = aliveMembers();
+        SlotSnapshot s = snapshot;
+        if (s.members.equals(members)) {
+            return s;
+        }
+
+        Rebuilt rebuilt = rebuild(members);
+        // 释放锁之后再发布交接事件，避免其他线程获取槽位时等待交接处理
+        if (rebuilt.handoff != null) {
+            publishHandoff(rebuilt.handoff);
+        }
+        return rebuilt.snapshot;
+    }
+
+    /**
+     * 根据存活节点重新计算槽位并全量加载槽位下的 plan，同时计算需要发布的槽位交接
+     */
+    private synchronized Rebuilt rebuild(List<String> members) {
+        SlotSnapshot s = snapshot;
+        if (s.members.equals(members)) {
+            return new Rebuilt(s, null);
+        }
+
+        // 先追平旧快照中的 plan，保证交接时能得到完整的失去的 plan
+        if (s != SlotSnapshot.EMPTY) {
+            s = syncCreatedPlans(s);
+        }
+
+        List<Integer> slots = computeSlots(members);
+        log.info("broker members changed members:{} slots:{}", members.size(), slots.size());
+
+        Map<String, Integer> planSlots = new HashMap<>();
+        long maxPlanSlotId = s.maxPlanSlotId;
+        if (CollectionUtils.isNotEmpty(slots)) {
+            for (PlanSlotEntity entity : planSlotEntityRepo.findBySlotIn(slots)) {
+                planSlots.put(entity.getPlanId(), entity.getSlot());
+                maxPlanSlotId = Math.max(maxPlanSlotId, entity.getId());
             }
         }
 
-        if (mark < 0) {
-            log.warn("can't find in alive nodes host:{} port:{}", host, port);
+        SlotSnapshot previous = s;
+        s = new SlotSnapshot(members, slots, Collections.unmodifiableMap(planSlots), maxPlanSlotId);
+        snapshot = s;
+
+        // 首次计算由 PlanLoadTask 全量加载，无需交接
+        return new Rebuilt(s, previous != SlotSnapshot.EMPTY ? computeHandoff(previous, s) : null);
+    }
+
+    /**
+     * 对比前后槽位，计算槽位交接事件
+     *
+     * @return 槽位无变化时返回 null
+     */
+    private SlotHandoffEvent computeHandoff(SlotSnapshot previous, SlotSnapshot current) {
+        Set<Integer> previousSlots = new HashSet<>(previous.slots);
+        Set<Integer> currentSlots = new HashSet<>(current.slots);
+
+        List<Integer> acquired = current.slots.stream().filter(slot -> !previousSlots.contains(slot)).collect(Collectors.toList());
+        List<Integer> released = previous.slots.stream().filter(slot -> !currentSlots.contains(slot)).collect(Collectors.toList());
+        if (acquired.isEmpty() && released.isEmpty()) {
+            return null;
+        }
+
+        Set<Integer> releasedSlots = new HashSet<>(released);
+        List<String> releasedPlanIds = previous.planSlots.entrySet().stream()
+                .filter(entry -> releasedSlots.contains(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        log.info("slot handoff acquired:{} released:{} releasedPlans:{}", acquired.size(), released.size(), releasedPlanIds.size());
+        return new SlotHandoffEvent(this, acquired, released, releasedPlanIds);
+    }
+
+    /**
+     * 发布槽位交接事件，监听方需异步处理，调用方可能处于事务中
+     */
+    private void publishHandoff(SlotHandoffEvent event) {
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (Exception e) {
+            log.error("publish slot handoff event fail", e);
+        }
+    }
+
+    /**
+     * 按 plan_slot 自增 id 增量同步其它节点新建的 plan
+     */
+    private synchronized SlotSnapshot syncCreatedPlans(SlotSnapshot expected) {
+        SlotSnapshot s = snapshot;
+        if (s != expected || CollectionUtils.isEmpty(s.slots)) {
+            return s;
+        }
+
+        List<PlanSlotEntity> entities = planSlotEntityRepo.findByIdGreaterThanOrderByIdAsc(s.maxPlanSlotId);
+        if (CollectionUtils.isEmpty(entities)) {
+            return s;
+        }
+
+        Map<String, Integer> planSlots = new HashMap<>();
+        for (PlanSlotEntity entity : entities) {
+            if (s.slots.contains(entity.getSlot()) && !s.planSlots.containsKey(entity.getPlanId())) {
+                planSlots.put(entity.getPlanId(), entity.getSlot());
+            }
+        }
+
+        s = s.append(planSlots, entities.get(entities.size() - 1).getId());
+        snapshot = s;
+        return s;
+    }
+
+    /**
+     * 存活节点按 host、port 排序后的标识
+     */
+    private List<String> aliveMembers() {
+        return nodeManger.allAlive().stream()
+                .sorted(Comparator.comparing(Node::getHost).thenComparingInt(Node::getPort))
+                .map(node -> node.getHost() + ":" + node.getPort())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * rendezvous hashing：每个槽位分配给 hash(节点, 槽位) 最大的节点，节点增减时只影响该节点相关的槽位
+     */
+    private List<Integer> computeSlots(List<String> members) {
+        URL rpcBaseURL = broker.getRpcBaseURL();
+        String self = rpcBaseURL.getHost() + ":" + rpcBaseURL.getPort();
+        if (!members.contains(self)) {
+            log.warn("can't find in alive nodes {}", self);
             return Collections.emptyList();
         }
 
         List<Integer> slots = new ArrayList<>();
-        while (mark < SLOT_SIZE) {
-            slots.add(mark);
-            mark += sortedNodes.size();
+        for (int slot = 0; slot < brokerConfig.getSlotSize(); slot++) {
+            String owner = null;
+            long maxWeight = Long.MIN_VALUE;
+            for (String member : members) {
+                long weight = weight(member, slot);
+                if (owner == null || weight > maxWeight) {
+                    owner = member;
+                    maxWeight = weight;
+                }
+            }
+            if (self.equals(owner)) {
+                slots.add(slot);
+            }
         }
-        log.info("find slots:{}", slots);
-        return slots;
+        return Collections.unmodifiableList(slots);
+    }
+
+    private long weight(String member, int slot) {
+        return Hashing.murmur3_128().newHasher()
+                .putString(member, StandardCharsets.UTF_8)
+                .putInt(slot)
+                .hash()
+                .asLong();
     }
 
+
     /**
-     * 获取当前节点对应的planId
+     * 重建结果，交接事件在释放锁后发布
      */
-    public List<String> planIds() {
-        List<Integer> slots = slots();
-        if (CollectionUtils.isEmpty(slots)) {
-            return Collections.emptyList();
+    private static class Rebuilt {
+
+        final SlotSnapshot snapshot;
+
+        /**
+         * 槽位交接事件，无需交接时为 null
+         */
+        final SlotHandoffEvent handoff;
+
+        Rebuilt(SlotSnapshot snapshot, SlotHandoffEvent handoff) {
+            this.snapshot = snapshot;
+            this.handoff = handoff;
         }
-        List<PlanSlotEntity> slotEntities = planSlotEntityRepo.findBySlotIn(slots);
-        if (CollectionUtils.isEmpty(slotEntities)) {
-            return Collections.emptyList();
+
+    }
+
+
+    /**
+     * 不可变的槽位快照
+     */
+    private static class SlotSnapshot {
+
+        static final SlotSnapshot EMPTY = new SlotSnapshot(Collections.emptyList(), Collections.emptyList(), Collections.emptyMap(), 0L);
+
+        /**
+         * 计算快照时的存活节点
+         */
+        final List<String> members;
+
+        /**
+         * 当前节点负责的槽位
+         */
+        final List<Integer> slots;
+
+        /**
+         * planId -> 槽位
+         */
+        final Map<String, Integer> planSlots;
+
+        /**
+         * 已同步的 plan_slot 最大 id
+         */
+        final long maxPlanSlotId;
+
+        SlotSnapshot(List<String> members, List<Integer> slots, Map<String, Integer> planSlots, long maxPlanSlotId) {
+            this.members = members;
+            this.slots = slots;
+            this.planSlots = planSlots;
+            this.maxPlanSlotId = maxPlanSlotId;
+        }
+
+        /**
+         * 追加 plan，返回新的快照
+         */
+        SlotSnapshot append(Map<String, Integer> added, long maxPlanSlotId) {
+            if (added.isEmpty() && maxPlanSlotId <= this.maxPlanSlotId) {
+                return this;
+            }
+
+            Map<String, Integer> merged = new HashMap<>(planSlots);
+            merged.putAll(added);
+            return new SlotSnapshot(members, slots, Collections.unmodifiableMap(merged), Math.max(this.maxPlanSlotId, maxPlanSlotId));
         }
 
-        return slotEntities.stream()
-                .map(PlanSlotEntity::getPlanId)
-                .collect(Collectors.toList());
     }
 
 }
@@ -0,0 +1,75 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.application.component;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.limbo.flowjob.api.remote.param.WorkerHeartbeatParam;
+import org.limbo.flowjob.broker.application.schedule.ScheduleStrategy;
+import org.limbo.flowjob.broker.application.service.WorkerService;
+import org.limbo.flowjob.broker.core.worker.rpc.WorkerRpcFactory;
+import org.limbo.flowjob.common.rpc.netty.RpcMessageType;
+import org.limbo.flowjob.common.rpc.netty.RpcPayloads;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+/**
+ * 注册处理 worker 长连接请求的处理器，与 {@link org.limbo.flowjob.broker.application.controller.WorkerRpcController} 中的接口对应
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Slf4j
+@Component
+public class WorkerRpcHandlerRegistrar {
+
+    @Setter(onMethod_ = @Inject)
+    private WorkerService workerService;
+
+    @Setter(onMethod_ = @Inject)
+    private ScheduleStrategy scheduleStrategy;
+
+    @PostConstruct
+    public void register() {
+        WorkerRpcFactory factory = WorkerRpcFactory.getInstance();
+
+        // worker 心跳
+        factory.registerHandler(RpcMessageType.HEARTBEAT, body -> {
+            Pair<String, WorkerHeartbeatParam> heartbeat = RpcPayloads.decodeHeartbeat(body);
+            return RpcPayloads.encodeJson(workerService.heartbeat(heartbeat.getLeft(), heartbeat.getRight()));
+        });
+
+        // 任务执行反馈，返回处理失败的 taskId
+        factory.registerHandler(RpcMessageType.FEEDBACK_TASKS, body ->
+                RpcPayloads.encodeStrings(scheduleStrategy.taskFeedback(RpcPayloads.decodeFeedbacks(body))));
+    }
+
+    /**
+     * 工厂通过 SPI 加载，不受 Spring 管理，随 broker 一起关闭
+     */
+    @PreDestroy
+    public void close() {
+        WorkerRpcFactory.getInstance().close();
+    }
+
+}
@@ -18,28 +18,39 @@
 
 package org.limbo.flowjob.broker.application.config;
 
+import com.fasterxml.jackson.databind.Module;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.limbo.flowjob.broker.application.component.BrokerStarter;
 import org.limbo.flowjob.broker.application.component.DBBrokerRegistry;
+import org.limbo.flowjob.broker.application.component.GossipBrokerRegistry;
 import org.limbo.flowjob.broker.application.support.NodeMangerImpl;
 import org.limbo.flowjob.broker.core.cluster.Broker;
 import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
+import org.limbo.flowjob.broker.core.cluster.BrokerRegistryType;
 import org.limbo.flowjob.broker.core.cluster.NodeManger;
 import org.limbo.flowjob.broker.core.cluster.NodeRegistry;
 import org.limbo.flowjob.broker.core.dispatch.DispatchOption;
+import org.limbo.flowjob.broker.core.dispatch.TaskBatchSender;
 import org.limbo.flowjob.broker.core.dispatch.TaskDispatcher;
 import org.limbo.flowjob.broker.core.domain.IDGenerator;
+import org.limbo.flowjob.broker.core.domain.SnowflakeIDGenerator;
 import org.limbo.flowjob.broker.core.domain.task.TaskFactory;
 import org.limbo.flowjob.broker.core.domain.task.TaskManager;
+import org.limbo.flowjob.broker.core.schedule.scheduler.HierarchicalWheelTimer;
+import org.limbo.flowjob.broker.core.schedule.scheduler.NamedThreadFactory;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTask;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
 import org.limbo.flowjob.broker.core.statistics.WorkerStatisticsRepository;
+import org.limbo.flowjob.broker.core.worker.WorkerRegistry;
 import org.limbo.flowjob.broker.core.worker.WorkerRepository;
 import org.limbo.flowjob.broker.dao.domain.SingletonWorkerStatisticsRepo;
 import org.limbo.flowjob.broker.dao.repositories.BrokerEntityRepo;
 import org.limbo.flowjob.common.utils.NetUtils;
+import org.limbo.flowjob.common.utils.json.JacksonUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -50,8 +61,10 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.util.Assert;
 
 import javax.inject.Inject;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -78,7 +91,7 @@ public class BrokerAutoConfiguration {
     /**
      * worker 管理，持久化等
      */
-    @Bean
+    @Bean(destroyMethod = "stop")
     public Broker broker(NodeManger nodeManger, MetaTaskScheduler metaTaskScheduler, List<MetaTask> metaTasks) throws MalformedURLException {
         Integer port = brokerProperties.getPort() != null ? brokerProperties.getPort() : httpServerPort;
         // 优先使用指定的 host，如未指定则自动寻找本机 IP
@@ -91,14 +104,42 @@ public class BrokerAutoConfiguration {
         return new BrokerStarter(brokerProperties.getName(), baseUrl, brokerRegistry, nodeManger, metaTaskScheduler, metaTasks);
     }
 
+    /**
+     * 注册到 Spring 的 ObjectMapper 中，支持 worker 使用 tcp 协议的 URL 注册
+     */
+    @Bean
+    public Module flowjobJacksonModule() {
+        return JacksonUtils.flowjobModule();
+    }
+
+    /**
+     * 雪花算法 ID 生成器，不访问 DB。节点 ID 必须显式配置，各 broker 不能重复
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "flowjob.broker", name = "id-generator", havingValue = "snowflake")
+    public IDGenerator snowflakeIDGenerator() {
+        Integer nodeId = brokerProperties.getIdGeneratorNodeId();
+        Assert.notNull(nodeId, "flowjob.broker.id-generator-node-id is required when id-generator is snowflake, and must be unique among brokers");
+        return new SnowflakeIDGenerator(nodeId);
+    }
+
     @Bean
     public NodeManger brokerManger() {
         return new NodeMangerImpl();
     }
 
     @Bean
-    public TaskFactory taskFactory(WorkerRepository workerRepository, TaskManager taskManager, IDGenerator idGenerator) {
-        return new TaskFactory(workerRepository, taskManager, idGenerator);
+    public TaskFactory taskFactory(WorkerRegistry workerRegistry, TaskManager taskManager, IDGenerator idGenerator) {
+        return new TaskFactory(workerRegistry, taskManager, idGenerator);
+    }
+
+    /**
+     * worker 缓存，下发任务时读取
+     */
+    @Bean
+    public WorkerRegistry workerRegistry(WorkerRepository workerRepository,
+                                         @Value("${flowjob.broker.worker.heartbeat-timeout:5000}") long heartbeatTimeout) {
+        return new WorkerRegistry(workerRepository, heartbeatTimeout);
     }
 
 
@@ -116,9 +157,10 @@ public class BrokerAutoConfiguration {
      * 用于生成 Worker 选择器，内部封装了 LB 算法的调用。
      */
     @Bean
-    public DispatchOption.WorkerSelectorFactory workerSelectorFactory(WorkerStatisticsRepository statisticsRepository) {
+    public DispatchOption.WorkerSelectorFactory workerSelectorFactory(WorkerStatisticsRepository statisticsRepository, WorkerRegistry workerRegistry) {
         DispatchOption.WorkerSelectorFactory factory = new DispatchOption.WorkerSelectorFactory();
         factory.setLbServerStatisticsProvider(statisticsRepository);
+        factory.setReservations(workerRegistry.reservations());
         return factory;
     }
 
@@ -126,21 +168,47 @@ public class BrokerAutoConfiguration {
     /**
      * 用于分发任务
      */
-    @Bean
-    public TaskDispatcher taskDispatcher(WorkerRepository workerRepository, DispatchOption.WorkerSelectorFactory factory, WorkerStatisticsRepository statisticsRepository) {
-        return new TaskDispatcher(workerRepository, factory, statisticsRepository);
+    @Bean(destroyMethod = "close")
+    public TaskDispatcher taskDispatcher(WorkerRegistry workerRegistry, DispatchOption.WorkerSelectorFactory factory, WorkerStatisticsRepository statisticsRepository) {
+        // 异步下发时合并同一 worker 的任务批量发送
+        TaskBatchSender batchSender = null;
+        if (brokerProperties.isAsyncDispatch() && brokerProperties.getDispatchBatchWindow() > 0) {
+            batchSender = new TaskBatchSender(brokerProperties.getDispatchBatchWindow(), brokerProperties.getDispatchBatchSize());
+        }
+        return new TaskDispatcher(workerRegistry, factory, statisticsRepository, batchSender);
     }
 
     /**
-     * 元任务调度器 目前支持秒级任务
+     * 元任务调度器 精度由 tick 决定，默认秒级
      */
-    @Bean
+    @Bean(destroyMethod = "stop")
     public MetaTaskScheduler metaTaskScheduler() {
-        return new MetaTaskScheduler(1000L, TimeUnit.MILLISECONDS);
+        long tickDuration = brokerProperties.getMetaTaskTickDuration();
+        NamedThreadFactory threadFactory = NamedThreadFactory.newInstance(MetaTaskScheduler.class.getSimpleName());
+        Timer timer = brokerProperties.isMetaTaskHierarchicalWheel()
+                ? new HierarchicalWheelTimer(threadFactory, tickDuration, TimeUnit.MILLISECONDS)
+                : new HashedWheelTimer(threadFactory, tickDuration, TimeUnit.MILLISECONDS);
+        return new MetaTaskScheduler(timer, brokerProperties.getMetaTaskExecutors());
     }
 
+    /**
+     * broker 节点注册，默认基于 DB，可配置为 gossip
+     */
     @Bean
-    public DBBrokerRegistry brokerRegistry(BrokerConfig config, BrokerEntityRepo brokerEntityRepo, IDGenerator idGenerator) {
+    @ConditionalOnMissingBean(NodeRegistry.class)
+    public NodeRegistry brokerRegistry(BrokerConfig config, BrokerEntityRepo brokerEntityRepo, IDGenerator idGenerator) {
+        if (config.getRegistry() == BrokerRegistryType.GOSSIP) {
+            List<InetSocketAddress> seeds = new ArrayList<>();
+            for (String seed : config.getGossipSeeds()) {
+                String[] hostAndPort = seed.trim().split(":");
+                Assert.isTrue(hostAndPort.length == 2, "gossip seed must be host:port, but got " + seed);
+                seeds.add(new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+            }
+            Assert.hasText(config.getGossipSecret(), "flowjob.broker.gossip-secret is required when registry is gossip");
+            return new GossipBrokerRegistry(config.getGossipBindAddress(), config.getGossipPort(), config.getGossipSecret(),
+                    config.getHeartbeatInterval(), config.getHeartbeatTimeout(), config.getGossipFanout(), seeds,
+                    config.getGossipSeedExpire(), brokerEntityRepo, idGenerator);
+        }
         return new DBBrokerRegistry(1000, config.getHeartbeatInterval(), config.getHeartbeatTimeout(), brokerEntityRepo, idGenerator);
     }
 
@@ -21,15 +21,22 @@ package org.limbo.flowjob.broker.application.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.Setter;
+import org.limbo.flowjob.api.PageDTO;
 import org.limbo.flowjob.api.ResponseDTO;
+import org.limbo.flowjob.api.console.param.PlanInstanceQueryParam;
+import org.limbo.flowjob.api.console.vo.JobInstanceVO;
+import org.limbo.flowjob.api.console.vo.PlanInstanceVO;
 import org.limbo.flowjob.broker.application.schedule.ScheduleStrategy;
+import org.limbo.flowjob.broker.application.service.InstanceQueryService;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
+import java.util.List;
 
 /**
  * @author Devil
@@ -42,6 +49,9 @@ public class PlanInstanceController {
     @Setter(onMethod_ = @Inject)
     private ScheduleStrategy scheduleStrategy;
 
+    @Setter(onMethod_ = @Inject)
+    private InstanceQueryService instanceQueryService;
+
     /**
      * api 触发对应planInstanceId下的job 重试
      */
@@ -53,4 +63,22 @@ public class PlanInstanceController {
         return ResponseDTO.<Void>builder().ok().build();
     }
 
+    /**
+     * 计划实例列表，包括已归档的实例
+     */
+    @Operation(summary = "计划实例列表")
+    @GetMapping("/api/v1/plan-instance")
+    public ResponseDTO<PageDTO<PlanInstanceVO>> page(@Validated PlanInstanceQueryParam param) {
+        return ResponseDTO.<PageDTO<PlanInstanceVO>>builder().ok(instanceQueryService.pagePlanInstances(param)).build();
+    }
+
+    /**
+     * 计划实例下的作业实例
+     */
+    @Operation(summary = "作业实例列表")
+    @GetMapping("/api/v1/plan-instance/{planInstanceId}/job-instance")
+    public ResponseDTO<List<JobInstanceVO>> jobInstances(@PathVariable("planInstanceId") String planInstanceId) {
+        return ResponseDTO.<List<JobInstanceVO>>builder().ok(instanceQueryService.listJobInstances(planInstanceId)).build();
+    }
+
 }
@@ -23,7 +23,9 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.Setter;
 import org.limbo.flowjob.api.ResponseDTO;
 import org.limbo.flowjob.api.constants.TriggerType;
+import org.limbo.flowjob.api.remote.dto.TaskBatchFeedbackDTO;
 import org.limbo.flowjob.api.remote.dto.WorkerRegisterDTO;
+import org.limbo.flowjob.api.remote.param.TaskBatchFeedbackParam;
 import org.limbo.flowjob.api.remote.param.TaskFeedbackParam;
 import org.limbo.flowjob.api.remote.param.WorkerHeartbeatParam;
 import org.limbo.flowjob.api.remote.param.WorkerRegisterParam;
@@ -111,4 +113,15 @@ public class WorkerRpcController {
         return ResponseDTO.<Void>builder().ok().build();
     }
 
+    /**
+     * 任务执行批量反馈接口
+     */
+    @Operation(summary = "任务执行批量反馈接口")
+    @PostMapping("/api/rpc/v1/worker/task/feedback")
+    public ResponseDTO<TaskBatchFeedbackDTO> feedback(@Valid @RequestBody TaskBatchFeedbackParam param) {
+        TaskBatchFeedbackDTO result = new TaskBatchFeedbackDTO();
+        result.setFailedTaskIds(scheduleStrategy.taskFeedback(param.getFeedbacks()));
+        return ResponseDTO.<TaskBatchFeedbackDTO>builder().ok(result).build();
+    }
+
 }
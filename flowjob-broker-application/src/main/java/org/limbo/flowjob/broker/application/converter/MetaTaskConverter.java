@@ -26,12 +26,14 @@ import org.limbo.flowjob.broker.application.task.JobInstanceScheduleTask;
 import org.limbo.flowjob.broker.application.task.PlanInstanceScheduleTask;
 import org.limbo.flowjob.broker.application.task.PlanScheduleTask;
 import org.limbo.flowjob.broker.application.task.TaskScheduleTask;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
 import org.limbo.flowjob.broker.core.domain.job.JobInstance;
 import org.limbo.flowjob.broker.core.domain.job.JobInstanceRepository;
 import org.limbo.flowjob.broker.core.domain.plan.Plan;
 import org.limbo.flowjob.broker.core.domain.plan.PlanRepository;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 import org.limbo.flowjob.broker.core.schedule.ScheduleOption;
+import org.limbo.flowjob.broker.core.schedule.calculator.ScheduleCalculatorFactory;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
 import org.limbo.flowjob.broker.dao.converter.DomainConverter;
 import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
@@ -41,6 +43,7 @@ import org.limbo.flowjob.broker.dao.repositories.PlanInstanceEntityRepo;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 
@@ -67,23 +70,32 @@ public class MetaTaskConverter {
     @Setter(onMethod_ = @Inject)
     private JobInstanceRepository jobInstanceRepository;
 
+    @Setter(onMethod_ = @Inject)
+    private BrokerConfig brokerConfig;
+
     public PlanScheduleTask toPlanScheduleTask(String planId, TriggerType triggerType) {
         Plan plan = planRepository.get(planId);
         // 获取最近一次调度的planInstance和最近一次结束的planInstance
         ScheduleOption scheduleOption = plan.getScheduleOption();
+        // 加载时预编译调度配置，后续每次触发直接使用缓存
+        ScheduleCalculatorFactory.precompile(scheduleOption);
         PlanInstanceEntity latelyTrigger = planInstanceEntityRepo.findLatelyTrigger(planId, plan.getVersion(), scheduleOption.getScheduleType().type, triggerType.type);
         PlanInstanceEntity latelyFeedback = planInstanceEntityRepo.findLatelyFeedback(planId, plan.getVersion(), scheduleOption.getScheduleType().type, triggerType.type);
 
         LocalDateTime latelyTriggerAt = latelyTrigger == null || latelyTrigger.getTriggerAt() == null ? null : latelyTrigger.getTriggerAt().truncatedTo(ChronoUnit.SECONDS);
         LocalDateTime latelyFeedbackAt = latelyFeedback == null || latelyFeedback.getFeedbackAt() == null ? null : latelyFeedback.getFeedbackAt().truncatedTo(ChronoUnit.SECONDS);
 
-        return new PlanScheduleTask(
+        PlanScheduleTask task = new PlanScheduleTask(
                 plan,
                 latelyTriggerAt,
                 latelyFeedbackAt,
                 scheduleStrategy,
                 metaTaskScheduler
         );
+        if (brokerConfig.getPlanTriggerPrecomputeWindow() > 0) {
+            task.enablePrecompute(Duration.ofMillis(brokerConfig.getPlanTriggerPrecomputeWindow()), brokerConfig.getPlanTriggerPrecomputeLimit());
+        }
+        return task;
 
     }
 
@@ -143,11 +143,22 @@ public class PlanConverter {
         if (CollectionUtils.isEmpty(params)) {
             return Collections.emptyList();
         }
-        return params.stream().map(param -> TagFilterOption.builder()
+        return params.stream().map(this::covertTagFilterOption).collect(Collectors.toList());
+    }
+
+    /**
+     * 生成标签过滤条件，并预编译以尽早校验正则表达式
+     */
+    public TagFilterOption covertTagFilterOption(TagFilterParam param) {
+        TagFilterOption option = TagFilterOption.builder()
                 .tagName(param.getTagName())
                 .tagValue(param.getTagValue())
+                .tagValues(param.getTagValues())
                 .condition(TagFilterCondition.parse(param.getCondition()))
-                .build()).collect(Collectors.toList());
+                .filters(CollectionUtils.isEmpty(param.getFilters()) ? null : covertTagFilterOption(param.getFilters()))
+                .build();
+        option.compile();
+        return option;
     }
 
 }
@@ -43,6 +43,7 @@ import org.limbo.flowjob.broker.dao.converter.DomainConverter;
 import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
 import org.limbo.flowjob.broker.dao.entity.PlanInstanceEntity;
 import org.limbo.flowjob.broker.dao.entity.TaskEntity;
+import org.limbo.flowjob.broker.dao.repositories.EntityBatchInsertRepo;
 import org.limbo.flowjob.broker.dao.repositories.JobInstanceEntityRepo;
 import org.limbo.flowjob.broker.dao.repositories.PlanEntityRepo;
 import org.limbo.flowjob.broker.dao.repositories.PlanInstanceEntityRepo;
@@ -56,6 +57,7 @@ import javax.transaction.Transactional;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -74,6 +76,9 @@ public abstract class AbstractPlanScheduler implements PlanScheduler {
     @Setter(onMethod_ = @Inject)
     protected TaskEntityRepo taskEntityRepo;
 
+    @Setter(onMethod_ = @Inject)
+    protected EntityBatchInsertRepo batchInsertRepo;
+
     @Setter(onMethod_ = @Inject)
     protected JobInstanceRepository jobInstanceRepository;
 
@@ -148,6 +153,31 @@ public abstract class AbstractPlanScheduler implements PlanScheduler {
         saveTasks(tasks);
     }
 
+    @Override
+    @Transactional
+    public boolean dispatching(Task task) {
+        if (task.getStatus() != TaskStatus.SCHEDULING) {
+            return false;
+        }
+
+        int num = taskEntityRepo.dispatching(task.getTaskId());
+        if (num < 1) {
+            return false; // 可能多个节点操作同个task
+        }
+        task.setStatus(TaskStatus.DISPATCHING);
+
+        // 下面两个可能会被其他task更新 但是这是正常的
+        jobInstanceEntityRepo.executing(task.getJobInstanceId(), TimeUtils.currentLocalDateTime());
+        planInstanceEntityRepo.executing(task.getPlanInstanceId(), TimeUtils.currentLocalDateTime());
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public void handleDispatched(Task task) {
+        taskEntityRepo.executing(task.getTaskId(), task.getWorkerId(), TimeUtils.currentLocalDateTime());
+    }
+
     @Transactional
     public void saveJobInstances(List<JobInstance> jobInstances) {
         if (CollectionUtils.isEmpty(jobInstances)) {
@@ -156,8 +186,7 @@ public abstract class AbstractPlanScheduler implements PlanScheduler {
 
         // 保存 jobInstance
         List<JobInstanceEntity> jobInstanceEntities = jobInstances.stream().map(DomainConverter::toJobInstanceEntity).collect(Collectors.toList());
-        jobInstanceEntityRepo.saveAll(jobInstanceEntities);
-        jobInstanceEntityRepo.flush();
+        batchInsertRepo.insertJobInstances(jobInstanceEntities);
     }
 
     @Transactional
@@ -170,6 +199,35 @@ public abstract class AbstractPlanScheduler implements PlanScheduler {
             return;
         }
 
+        afterTaskSuccess(task);
+    }
+
+    @Override
+    @Transactional
+    public void handleSuccess(List<Task> tasks, Map<String, Object> results) {
+        Task succeed = null;
+        LocalDateTime endAt = TimeUtils.currentLocalDateTime();
+        for (Task task : tasks) {
+            int num = taskEntityRepo.success(task.getTaskId(), endAt,
+                    task.getContext().toString(), task.getJobAttributes().toString(), JacksonUtils.toJSONString(results.get(task.getTaskId()))
+            );
+            if (num == 1) {
+                succeed = task;
+            }
+        }
+
+        if (succeed == null) { // 已经被更新 无需重复处理
+            return;
+        }
+
+        // 同一 jobInstance 下同类型的 task，任意一个都可以用于检查 job 是否完成
+        afterTaskSuccess(succeed);
+    }
+
+    /**
+     * task 更新为成功后，检查 jobInstance 下的 task 是否都已完成，并进行后续处理
+     */
+    private void afterTaskSuccess(Task task) {
         JobInstance jobInstance = jobInstanceRepository.get(task.getJobInstanceId());
         if (JobStatus.EXECUTING != jobInstance.getStatus()) {
             log.warn("task:{} update status success but jobInstance:{} is already changed", task.getTaskId(), task.getJobInstanceId());
@@ -268,8 +326,7 @@ public abstract class AbstractPlanScheduler implements PlanScheduler {
         }
 
         List<TaskEntity> taskEntities = tasks.stream().map(DomainConverter::toTaskEntity).collect(Collectors.toList());
-        taskEntityRepo.saveAll(taskEntities);
-        taskEntityRepo.flush();
+        batchInsertRepo.insertTasks(taskEntities);
 
         // task保存后才进行下发
         ScheduleContext.waitScheduleTasks(tasks);
@@ -301,7 +358,8 @@ public abstract class AbstractPlanScheduler implements PlanScheduler {
         instance.setStatus(JobStatus.SCHEDULING);
         instance.setTriggerAt(triggerAt);
         instance.setContext(context == null ? new Attributes() : context);
-        instance.setJobAttributes(jobInfo.getAttributes() == null ? new Attributes() : jobInfo.getAttributes());
+        // jobInfo 来自计划版本缓存，复制一份，避免聚合任务返回的作业参数时修改缓存
+        instance.setJobAttributes(jobInfo.getAttributes() == null ? new Attributes() : new Attributes(jobInfo.getAttributes().toMap()));
         return instance;
     }
 
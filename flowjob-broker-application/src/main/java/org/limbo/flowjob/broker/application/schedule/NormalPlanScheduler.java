@@ -22,7 +22,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.limbo.flowjob.api.constants.MsgConstants;
 import org.limbo.flowjob.api.constants.PlanType;
-import org.limbo.flowjob.api.constants.TaskStatus;
 import org.limbo.flowjob.api.constants.TriggerType;
 import org.limbo.flowjob.broker.core.domain.IDType;
 import org.limbo.flowjob.broker.core.domain.job.JobInfo;
@@ -80,23 +79,14 @@ public class NormalPlanScheduler extends AbstractPlanScheduler {
 
     @Transactional
     public void schedule(Task task) {
-        if (task.getStatus() != TaskStatus.SCHEDULING) {
+        if (!dispatching(task)) {
             return;
         }
 
-        int num = taskEntityRepo.dispatching(task.getTaskId());
-        if (num < 1) {
-            return; // 可能多个节点操作同个task
-        }
-        task.setStatus(TaskStatus.DISPATCHING);
-
-        jobInstanceEntityRepo.executing(task.getJobInstanceId(), TimeUtils.currentLocalDateTime());
-        planInstanceEntityRepo.executing(task.getPlanInstanceId(), TimeUtils.currentLocalDateTime());
-
         boolean dispatched = taskDispatcher.dispatch(task);
         if (dispatched) {
             // 下发成功
-            taskEntityRepo.executing(task.getTaskId(), task.getWorkerId(), TimeUtils.currentLocalDateTime());
+            handleDispatched(task);
         } else {
             // 下发失败
             handleFail(task, MsgConstants.DISPATCH_FAIL, null);
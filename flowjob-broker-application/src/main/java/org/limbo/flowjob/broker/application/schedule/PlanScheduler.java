@@ -24,6 +24,8 @@ import org.limbo.flowjob.broker.core.domain.plan.Plan;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Devil
@@ -46,12 +48,29 @@ public interface PlanScheduler {
      */
     void schedule(Task task);
 
+    /**
+     * 开始下发 task，更新为下发中
+     * @return 是否可以下发，已被其它节点下发时返回 false
+     */
+    boolean dispatching(Task task);
+
+    /**
+     * task 下发成功处理
+     */
+    void handleDispatched(Task task);
+
 
     /**
      * task 成功处理
      */
     void handleSuccess(Task task, Object result);
 
+    /**
+     * 同一 jobInstance 下同类型的一批 task 成功处理，只做一次 job 完成检查
+     * @param results taskId -> 执行结果
+     */
+    void handleSuccess(List<Task> tasks, Map<String, Object> results);
+
     /**
      * task失败处理
      */
@@ -22,13 +22,17 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.limbo.flowjob.api.constants.ExecuteResult;
 import org.limbo.flowjob.api.constants.MsgConstants;
 import org.limbo.flowjob.api.constants.PlanType;
 import org.limbo.flowjob.api.constants.TriggerType;
 import org.limbo.flowjob.api.remote.param.TaskFeedbackParam;
 import org.limbo.flowjob.broker.application.converter.MetaTaskConverter;
+import org.limbo.flowjob.broker.application.support.CommonThreadPool;
 import org.limbo.flowjob.broker.application.task.TaskScheduleTask;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
+import org.limbo.flowjob.broker.core.dispatch.TaskDispatcher;
 import org.limbo.flowjob.broker.core.domain.IDGenerator;
 import org.limbo.flowjob.broker.core.domain.IDType;
 import org.limbo.flowjob.broker.core.domain.job.JobInstance;
@@ -39,12 +43,11 @@ import org.limbo.flowjob.broker.core.exceptions.VerifyException;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
 import org.limbo.flowjob.broker.core.utils.Verifies;
 import org.limbo.flowjob.broker.dao.converter.DomainConverter;
-import org.limbo.flowjob.broker.dao.entity.PlanInfoEntity;
 import org.limbo.flowjob.broker.dao.entity.PlanInstanceEntity;
 import org.limbo.flowjob.broker.dao.entity.TaskEntity;
-import org.limbo.flowjob.broker.dao.repositories.PlanInfoEntityRepo;
 import org.limbo.flowjob.broker.dao.repositories.PlanInstanceEntityRepo;
 import org.limbo.flowjob.broker.dao.repositories.TaskEntityRepo;
+import org.limbo.flowjob.broker.dao.support.PlanVersionCache;
 import org.limbo.flowjob.common.utils.attribute.Attributes;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -54,7 +57,11 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
@@ -87,11 +94,17 @@ public class ScheduleStrategy implements ApplicationContextAware {
     private PlanInstanceEntityRepo planInstanceEntityRepo;
 
     @Setter(onMethod_ = @Inject)
-    private PlanInfoEntityRepo planInfoEntityRepo;
+    private PlanVersionCache planVersionCache;
 
     @Setter(onMethod_ = @Inject)
     private TaskEntityRepo taskEntityRepo;
 
+    @Setter(onMethod_ = @Inject)
+    private TaskDispatcher taskDispatcher;
+
+    @Setter(onMethod_ = @Inject)
+    private BrokerConfig brokerConfig;
+
     private final Map<PlanType, PlanScheduler> schedulers = new EnumMap<>(PlanType.class);
 
     @Override
@@ -163,8 +176,7 @@ public class ScheduleStrategy implements ApplicationContextAware {
 
             Task task = DomainConverter.toTask(taskEntity);
 
-            PlanInfoEntity planInfoEntity = planInfoEntityRepo.findById(taskEntity.getPlanInfoId()).orElse(null);
-            PlanType planType = PlanType.parse(planInfoEntity.getPlanType());
+            PlanType planType = planVersionCache.getPlan(taskEntity.getPlanInfoId()).getType();
             switch (result) {
                 case SUCCEED:
                     task.setContext(new Attributes(param.getContext()));
@@ -185,14 +197,132 @@ public class ScheduleStrategy implements ApplicationContextAware {
         });
     }
 
+    /**
+     * Worker任务执行批量反馈。一次查询所有 task，按 jobInstance 及 task 类型分组处理，
+     * 每组成功的 task 在一个事务中更新，并且只做一次 job 完成检查
+     *
+     * @param params 反馈参数，需设置 taskId
+     * @return 处理失败的 taskId，worker 可重新反馈。task 不存在的反馈无法处理，不包含在内
+     */
+    public List<String> taskFeedback(List<TaskFeedbackParam> params) {
+        List<String> failedTaskIds = new ArrayList<>();
+        executeWithAspect(unused -> {
+            Map<String, TaskFeedbackParam> feedbacks = new LinkedHashMap<>();
+            for (TaskFeedbackParam param : params) {
+                if (StringUtils.isNotBlank(param.getTaskId())) {
+                    feedbacks.put(param.getTaskId(), param);
+                }
+            }
+            if (feedbacks.isEmpty()) {
+                return;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("receive task feedbacks size:{}", feedbacks.size());
+            }
+
+            Map<String, List<Task>> groups = new LinkedHashMap<>();
+            Map<String, PlanType> groupPlanTypes = new HashMap<>();
+            Map<String, PlanType> planTypes = new HashMap<>();
+            for (TaskEntity taskEntity : taskEntityRepo.findAllById(feedbacks.keySet())) {
+                PlanType planType = planTypes.computeIfAbsent(taskEntity.getPlanInfoId(), this::planTypeOrUnknown);
+                String group = taskEntity.getJobInstanceId() + ":" + taskEntity.getType();
+                groups.computeIfAbsent(group, g -> new ArrayList<>()).add(DomainConverter.toTask(taskEntity));
+                groupPlanTypes.put(group, planType);
+            }
+
+            for (Map.Entry<String, List<Task>> entry : groups.entrySet()) {
+                PlanScheduler scheduler = schedulers.get(groupPlanTypes.get(entry.getKey()));
+                if (scheduler == null) {
+                    log.warn("can't find scheduler for tasks in group {}", entry.getKey());
+                    continue;
+                }
+
+                try {
+                    handleFeedbacks(scheduler, entry.getValue(), feedbacks);
+                } catch (Exception e) {
+                    // 返回给 worker 重新反馈，重试仍失败时由task的状态检查任务去修复task的执行情况
+                    log.error("handle task feedbacks fail group:{}", entry.getKey(), e);
+                    entry.getValue().forEach(task -> failedTaskIds.add(task.getTaskId()));
+                }
+            }
+        });
+        return failedTaskIds;
+    }
+
+    /**
+     * 获取计划版本的类型，计划版本不存在时返回 {@link PlanType#UNKNOWN}
+     */
+    private PlanType planTypeOrUnknown(String version) {
+        try {
+            return planVersionCache.getPlan(version).getType();
+        } catch (VerifyException e) {
+            return PlanType.UNKNOWN;
+        }
+    }
+
+    /**
+     * 处理同一 jobInstance 下同类型 task 的反馈
+     */
+    private void handleFeedbacks(PlanScheduler scheduler, List<Task> tasks, Map<String, TaskFeedbackParam> feedbacks) {
+        List<Task> succeedTasks = new ArrayList<>();
+        Map<String, Object> results = new HashMap<>();
+        for (Task task : tasks) {
+            TaskFeedbackParam param = feedbacks.get(task.getTaskId());
+            ExecuteResult result = ExecuteResult.parse(param.getResult());
+            switch (result) {
+                case SUCCEED:
+                    task.setContext(new Attributes(param.getContext()));
+                    task.setJobAttributes(new Attributes(param.getJobAttributes()));
+                    succeedTasks.add(task);
+                    results.put(task.getTaskId(), param.getResultData());
+                    break;
+
+                case FAILED:
+                    scheduler.handleFail(task, param.getErrorMsg(), param.getErrorStackTrace());
+                    break;
+
+                default:
+                    log.warn("Unexpect execute result: {} task:{}", param.getResult(), task.getTaskId());
+                    break;
+            }
+        }
+
+        if (!succeedTasks.isEmpty()) {
+            scheduler.handleSuccess(succeedTasks, results);
+        }
+    }
+
     public void schedule(Task task) {
         executeWithAspect(unused -> {
-            PlanInfoEntity planInfoEntity = planInfoEntityRepo.findById(task.getPlanVersion()).orElse(null);
-            PlanType planType = PlanType.parse(planInfoEntity.getPlanType());
-            schedulers.get(planType).schedule(task);
+            PlanType planType = planVersionCache.getPlan(task.getPlanVersion()).getType();
+            PlanScheduler scheduler = schedulers.get(planType);
+            if (brokerConfig.isAsyncDispatch()) {
+                scheduleAsync(scheduler, task);
+            } else {
+                scheduler.schedule(task);
+            }
         });
     }
 
+    /**
+     * 异步下发 task，下发请求在事务外执行，下发结果通过短事务更新
+     */
+    private void scheduleAsync(PlanScheduler scheduler, Task task) {
+        if (!scheduler.dispatching(task)) {
+            return;
+        }
+
+        taskDispatcher.dispatchAsync(task).whenCompleteAsync((dispatched, e) -> executeWithAspect(unused -> {
+            if (e == null && Boolean.TRUE.equals(dispatched)) {
+                // 下发成功
+                scheduler.handleDispatched(task);
+            } else {
+                // 下发失败
+                scheduler.handleFail(task, MsgConstants.DISPATCH_FAIL, null);
+            }
+        }), CommonThreadPool.IO);
+    }
+
     public void executeWithAspect(Consumer<Void> consumer) {
         try {
             // new context
@@ -35,10 +35,10 @@ import org.limbo.flowjob.broker.core.domain.plan.Plan;
 import org.limbo.flowjob.broker.core.domain.plan.WorkflowPlan;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 import org.limbo.flowjob.broker.core.utils.Verifies;
-import org.limbo.flowjob.broker.dao.converter.DomainConverter;
 import org.limbo.flowjob.broker.dao.domain.JobInstanceRepo;
 import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
 import org.limbo.flowjob.broker.dao.repositories.JobInstanceEntityRepo;
+import org.limbo.flowjob.broker.dao.support.PlanVersionCache;
 import org.limbo.flowjob.common.utils.attribute.Attributes;
 import org.limbo.flowjob.common.utils.dag.DAG;
 import org.limbo.flowjob.common.utils.dag.DAGNode;
@@ -66,6 +66,9 @@ public class WorkflowPlanScheduler extends AbstractPlanScheduler {
     @Setter(onMethod_ = @Inject)
     private JobInstanceEntityRepo jobInstanceEntityRepo;
 
+    @Setter(onMethod_ = @Inject)
+    private PlanVersionCache planVersionCache;
+
     @Override
     public PlanType getPlanType() {
         return PlanType.WORKFLOW;
@@ -120,7 +123,7 @@ public class WorkflowPlanScheduler extends AbstractPlanScheduler {
         WorkflowJobInfo jobInfo = (WorkflowJobInfo) jobInstance.getJobInfo();
         String jobId = jobInfo.getId();
 
-        DAG<WorkflowJobInfo> dag = DomainConverter.toJobDag(jobId);
+        DAG<WorkflowJobInfo> dag = planVersionCache.getDag(version);
 
         // 当前节点的子节点
         List<WorkflowJobInfo> subJobInfos = dag.subNodes(jobId);
@@ -207,20 +210,14 @@ public class WorkflowPlanScheduler extends AbstractPlanScheduler {
 //            }
 //        }
 
-        int num = taskEntityRepo.dispatching(task.getTaskId());
-        if (num < 1) {
-            return; // 可能多个节点操作同个task
+        if (!dispatching(task)) {
+            return;
         }
-        task.setStatus(TaskStatus.DISPATCHING);
-
-        // 下面两个可能会被其他task更新 但是这是正常的
-        jobInstanceEntityRepo.executing(task.getJobInstanceId(), TimeUtils.currentLocalDateTime());
-        planInstanceEntityRepo.executing(task.getPlanInstanceId(), TimeUtils.currentLocalDateTime());
 
         boolean dispatched = taskDispatcher.dispatch(task);
         if (dispatched) {
             // 下发成功
-            taskEntityRepo.executing(task.getTaskId(), task.getWorkerId(), TimeUtils.currentLocalDateTime());
+            handleDispatched(task);
         } else {
             // 下发失败
             handleFail(task, MsgConstants.DISPATCH_FAIL, null);
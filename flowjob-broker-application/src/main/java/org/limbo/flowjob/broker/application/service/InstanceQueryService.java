@@ -0,0 +1,97 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.application.service;
+
+import lombok.Setter;
+import org.limbo.flowjob.api.PageDTO;
+import org.limbo.flowjob.api.console.param.PlanInstanceQueryParam;
+import org.limbo.flowjob.api.console.vo.JobInstanceVO;
+import org.limbo.flowjob.api.console.vo.PlanInstanceVO;
+import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
+import org.limbo.flowjob.broker.dao.entity.PlanInstanceEntity;
+import org.limbo.flowjob.broker.dao.repositories.InstanceArchiveRepo;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 控制台查询计划实例、作业实例，已归档到历史表的数据也能查到
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Service
+public class InstanceQueryService {
+
+    @Setter(onMethod_ = @Inject)
+    private InstanceArchiveRepo instanceArchiveRepo;
+
+    /**
+     * 分页查询计划的实例，按触发时间倒序
+     */
+    public PageDTO<PlanInstanceVO> pagePlanInstances(PlanInstanceQueryParam param) {
+        PageDTO<PlanInstanceVO> page = PageDTO.convertByPage(param);
+        long total = instanceArchiveRepo.countPlanInstances(param.getPlanId());
+        page.setTotal(total);
+        if (total <= param.getOffset()) {
+            page.setData(Collections.emptyList());
+            return page;
+        }
+
+        List<PlanInstanceEntity> entities = instanceArchiveRepo.findPlanInstances(param.getPlanId(), param.getOffset(), param.getSize());
+        page.setData(entities.stream().map(entity -> {
+            PlanInstanceVO vo = new PlanInstanceVO();
+            vo.setPlanInstanceId(entity.getPlanInstanceId());
+            vo.setPlanId(entity.getPlanId());
+            vo.setPlanInfoId(entity.getPlanInfoId());
+            vo.setStatus(entity.getStatus());
+            vo.setTriggerType(entity.getTriggerType());
+            vo.setScheduleType(entity.getScheduleType());
+            vo.setTriggerAt(entity.getTriggerAt());
+            vo.setStartAt(entity.getStartAt());
+            vo.setFeedbackAt(entity.getFeedbackAt());
+            return vo;
+        }).collect(Collectors.toList()));
+        return page;
+    }
+
+    /**
+     * 查询计划实例下的作业实例
+     */
+    public List<JobInstanceVO> listJobInstances(String planInstanceId) {
+        List<JobInstanceEntity> entities = instanceArchiveRepo.findJobInstances(planInstanceId);
+        return entities.stream().map(entity -> {
+            JobInstanceVO vo = new JobInstanceVO();
+            vo.setJobInstanceId(entity.getJobInstanceId());
+            vo.setPlanInstanceId(entity.getPlanInstanceId());
+            vo.setJobId(entity.getJobId());
+            vo.setStatus(entity.getStatus());
+            vo.setRetryTimes(entity.getRetryTimes());
+            vo.setErrorMsg(entity.getErrorMsg());
+            vo.setTriggerAt(entity.getTriggerAt());
+            vo.setStartAt(entity.getStartAt());
+            vo.setEndAt(entity.getEndAt());
+            return vo;
+        }).collect(Collectors.toList());
+    }
+
+}
@@ -35,6 +35,7 @@ import org.limbo.flowjob.broker.core.cluster.NodeManger;
 import org.limbo.flowjob.broker.core.domain.IDGenerator;
 import org.limbo.flowjob.broker.core.domain.IDType;
 import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.broker.core.worker.WorkerRegistry;
 import org.limbo.flowjob.broker.core.worker.WorkerRepository;
 import org.limbo.flowjob.broker.dao.entity.WorkerEntity;
 import org.limbo.flowjob.broker.dao.repositories.WorkerEntityRepo;
@@ -68,6 +69,9 @@ public class WorkerService {
     @Setter(onMethod_ = @Inject)
     private WorkerRepository workerRepository;
 
+    @Setter(onMethod_ = @Inject)
+    private WorkerRegistry workerRegistry;
+
     @Setter(onMethod_ = @Inject)
     private WorkerEntityRepo workerEntityRepo;
 
@@ -109,6 +113,7 @@ public class WorkerService {
 
         // 保存 worker
         workerRepository.save(worker);
+        workerRegistry.register(worker);
         log.info("worker registered " + worker);
 
         return WorkerConverter.toRegisterDTO(worker, nodeManger.allAlive());
@@ -120,13 +125,16 @@ public class WorkerService {
      */
     @Transactional(rollbackOn = Throwable.class)
     public WorkerRegisterDTO heartbeat(String workerId, WorkerHeartbeatParam option) {
-        // 查询worker并校验
-        Worker worker = workerRepository.get(workerId);
+        // 查询worker并校验，优先使用缓存
+        Worker worker = Optional
+                .ofNullable(workerRegistry.get(workerId))
+                .orElseGet(() -> workerRepository.get(workerId));
         Verifies.requireNotNull(worker, "worker不存在！");
 
         // 更新metric
         worker.heartbeat(WorkerConverter.toWorkerMetric(option));
         workerRepository.saveMetric(worker);
+        workerRegistry.heartbeat(worker);
 
         if (log.isDebugEnabled()) {
             log.debug("receive heartbeat from " + workerId);
@@ -0,0 +1,127 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.application.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.limbo.flowjob.broker.application.component.SlotManager;
+import org.limbo.flowjob.broker.core.cluster.Broker;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
+import org.limbo.flowjob.broker.core.cluster.NodeManger;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixDelayMetaTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskType;
+import org.limbo.flowjob.broker.dao.repositories.InstanceArchiveRepo;
+import org.limbo.flowjob.common.utils.time.TimeUtils;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 将当前节点槽位下，已完成且超过保留期的计划实例连同作业实例、任务移入历史表。
+ * 按批次归档，每个批次一个事务，批次之间休眠一段时间，单次执行的批次数有上限。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Slf4j
+@Component
+public class InstanceArchiveTask extends FixDelayMetaTask {
+
+    private final Broker broker;
+
+    private final NodeManger nodeManger;
+
+    private final SlotManager slotManager;
+
+    private final InstanceArchiveRepo instanceArchiveRepo;
+
+    private final BrokerConfig brokerConfig;
+
+    public InstanceArchiveTask(MetaTaskScheduler scheduler,
+                               @Lazy Broker broker,
+                               NodeManger nodeManger,
+                               SlotManager slotManager,
+                               InstanceArchiveRepo instanceArchiveRepo,
+                               BrokerConfig brokerConfig) {
+        super(Duration.ofMinutes(1), Duration.ofMinutes(5), scheduler);
+        this.broker = broker;
+        this.nodeManger = nodeManger;
+        this.slotManager = slotManager;
+        this.instanceArchiveRepo = instanceArchiveRepo;
+        this.brokerConfig = brokerConfig;
+    }
+
+    @Override
+    protected void executeTask() {
+        if (brokerConfig.getArchiveRetentionDays() <= 0) {
+            return;
+        }
+
+        // 判断自己是否存在 --- 可能由于心跳异常导致不存活
+        if (!nodeManger.alive(broker.getName())) {
+            return;
+        }
+
+        List<Integer> slots = slotManager.slots();
+        if (CollectionUtils.isEmpty(slots)) {
+            return;
+        }
+
+        LocalDateTime before = TimeUtils.currentLocalDateTime().minusDays(brokerConfig.getArchiveRetentionDays());
+        int batchSize = brokerConfig.getArchiveBatchSize();
+        int rows = 0;
+        try {
+            for (int batch = 0; batch < brokerConfig.getArchiveMaxBatches(); batch++) {
+                if (batch > 0 && brokerConfig.getArchiveBatchInterval() > 0) {
+                    TimeUnit.MILLISECONDS.sleep(brokerConfig.getArchiveBatchInterval());
+                }
+
+                List<String> planInstanceIds = instanceArchiveRepo.findArchivablePlanInstanceIds(slots, before, batchSize);
+                rows += instanceArchiveRepo.archive(planInstanceIds);
+                if (planInstanceIds.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("{} archive instances fail", scheduleId(), e);
+        }
+
+        if (rows > 0) {
+            log.info("{} archived {} rows finished before {}", scheduleId(), rows, before);
+        }
+    }
+
+    @Override
+    public MetaTaskType getType() {
+        return MetaTaskType.INSTANCE_ARCHIVE;
+    }
+
+    @Override
+    public String getMetaId() {
+        return this.getClass().getSimpleName();
+    }
+
+}
@@ -25,6 +25,7 @@ import org.limbo.flowjob.broker.application.component.SlotManager;
 import org.limbo.flowjob.broker.application.converter.MetaTaskConverter;
 import org.limbo.flowjob.broker.application.schedule.ScheduleStrategy;
 import org.limbo.flowjob.broker.core.cluster.Broker;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
 import org.limbo.flowjob.broker.core.cluster.NodeManger;
 import org.limbo.flowjob.broker.core.domain.job.JobInstanceRepository;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixDelayMetaTask;
@@ -60,6 +61,10 @@ public class JobInstanceScheduleCheckTask extends FixDelayMetaTask {
 
     private final MetaTaskConverter metaTaskConverter;
 
+    private final BrokerConfig brokerConfig;
+
+    private final ScanCursor cursor = new ScanCursor();
+
     private static final long INTERVAL = 30;
 
     public JobInstanceScheduleCheckTask(MetaTaskScheduler scheduler,
@@ -69,7 +74,8 @@ public class JobInstanceScheduleCheckTask extends FixDelayMetaTask {
                                         JobInstanceRepository jobInstanceRepo,
                                         ScheduleStrategy scheduleStrategy,
                                         SlotManager slotManager,
-                                        MetaTaskConverter metaTaskConverter) {
+                                        MetaTaskConverter metaTaskConverter,
+                                        BrokerConfig brokerConfig) {
         super(Duration.ofSeconds(INTERVAL), scheduler);
         this.broker = broker;
         this.nodeManger = nodeManger;
@@ -78,6 +84,7 @@ public class JobInstanceScheduleCheckTask extends FixDelayMetaTask {
         this.slotManager = slotManager;
         this.jobInstanceRepo = jobInstanceRepo;
         this.metaTaskConverter = metaTaskConverter;
+        this.brokerConfig = brokerConfig;
     }
 
     @Override
@@ -87,13 +94,17 @@ public class JobInstanceScheduleCheckTask extends FixDelayMetaTask {
             return;
         }
 
-        List<String> planIds = slotManager.planIds();
-        if (CollectionUtils.isEmpty(planIds)) {
+        List<Integer> slots = slotManager.slots();
+        if (CollectionUtils.isEmpty(slots)) {
             return;
         }
 
         // 一段时候后还是 还是 SCHEDULING 状态的，需要重新调度
-        List<JobInstanceEntity> list = jobInstanceEntityRepo.findByPlanIdInAndTriggerAtLessThanEqualAndStatus(planIds, TimeUtils.currentLocalDateTime().plusSeconds(-INTERVAL), PlanStatus.SCHEDULING.status);
+        int limit = brokerConfig.getScanPageSize();
+        List<JobInstanceEntity> list = jobInstanceEntityRepo.findBySlotsAndTriggerAtLessThanEqualAndStatus(
+                slots, TimeUtils.currentLocalDateTime().plusSeconds(-INTERVAL), PlanStatus.SCHEDULING.status, cursor.afterId(), limit
+        );
+        cursor.advance(list, limit, JobInstanceEntity::getId);
         if (CollectionUtils.isEmpty(list)) {
             return;
         }
@@ -26,6 +26,7 @@ import org.limbo.flowjob.broker.application.schedule.ScheduleStrategy;
 import org.limbo.flowjob.broker.application.support.CommonThreadPool;
 import org.limbo.flowjob.broker.core.domain.job.JobInstance;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskKey;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskType;
 
 import java.time.LocalDateTime;
@@ -52,10 +53,14 @@ public class JobInstanceScheduleTask implements MetaTask {
     @ToString.Exclude
     private final ScheduleStrategy scheduleStrategy;
 
+    @Getter(AccessLevel.NONE)
+    private final MetaTaskKey scheduleId;
+
     public JobInstanceScheduleTask(JobInstance jobInstance, ScheduleStrategy scheduleStrategy) {
         this.jobInstance = jobInstance;
         this.triggerAt = jobInstance.getTriggerAt();
         this.scheduleStrategy = scheduleStrategy;
+        this.scheduleId = MetaTaskKey.of(getType(), getMetaId());
     }
 
     @Override
@@ -71,7 +76,7 @@ public class JobInstanceScheduleTask implements MetaTask {
 
     @Override
     public MetaTaskType getType() {
-        return MetaTaskType.TASK;
+        return MetaTaskType.JOB_INSTANCE;
     }
 
     @Override
@@ -79,6 +84,11 @@ public class JobInstanceScheduleTask implements MetaTask {
         return jobInstance.getJobInstanceId();
     }
 
+    @Override
+    public MetaTaskKey scheduleId() {
+        return scheduleId;
+    }
+
     @Override
     public LocalDateTime scheduleAt() {
         return triggerAt;
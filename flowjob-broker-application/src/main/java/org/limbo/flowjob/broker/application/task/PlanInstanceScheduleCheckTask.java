@@ -24,6 +24,7 @@ import org.limbo.flowjob.api.constants.PlanStatus;
 import org.limbo.flowjob.broker.application.component.SlotManager;
 import org.limbo.flowjob.broker.application.converter.MetaTaskConverter;
 import org.limbo.flowjob.broker.core.cluster.Broker;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
 import org.limbo.flowjob.broker.core.cluster.NodeManger;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixDelayMetaTask;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
@@ -54,6 +55,10 @@ public class PlanInstanceScheduleCheckTask extends FixDelayMetaTask {
 
     private final MetaTaskConverter metaTaskConverter;
 
+    private final BrokerConfig brokerConfig;
+
+    private final ScanCursor cursor = new ScanCursor();
+
     private static final long INTERVAL = 30;
 
     public PlanInstanceScheduleCheckTask(MetaTaskScheduler scheduler,
@@ -61,13 +66,15 @@ public class PlanInstanceScheduleCheckTask extends FixDelayMetaTask {
                                          NodeManger nodeManger,
                                          PlanInstanceEntityRepo planInstanceEntityRepo,
                                          SlotManager slotManager,
-                                         MetaTaskConverter metaTaskConverter) {
+                                         MetaTaskConverter metaTaskConverter,
+                                         BrokerConfig brokerConfig) {
         super(Duration.ofSeconds(INTERVAL), scheduler);
         this.broker = broker;
         this.nodeManger = nodeManger;
         this.planInstanceEntityRepo = planInstanceEntityRepo;
         this.slotManager = slotManager;
         this.metaTaskConverter = metaTaskConverter;
+        this.brokerConfig = brokerConfig;
     }
 
     @Override
@@ -77,13 +84,17 @@ public class PlanInstanceScheduleCheckTask extends FixDelayMetaTask {
             return;
         }
 
-        List<String> planIds = slotManager.planIds();
-        if (CollectionUtils.isEmpty(planIds)) {
+        List<Integer> slots = slotManager.slots();
+        if (CollectionUtils.isEmpty(slots)) {
             return;
         }
 
         // 一段时候后还是 还是 SCHEDULING 状态的，需要重新调度
-        List<PlanInstanceEntity> list = planInstanceEntityRepo.findByPlanIdInAndTriggerAtLessThanEqualAndStatus(planIds, TimeUtils.currentLocalDateTime().plusSeconds(-INTERVAL), PlanStatus.SCHEDULING.status);
+        int limit = brokerConfig.getScanPageSize();
+        List<PlanInstanceEntity> list = planInstanceEntityRepo.findBySlotsAndTriggerAtLessThanEqualAndStatus(
+                slots, TimeUtils.currentLocalDateTime().plusSeconds(-INTERVAL), PlanStatus.SCHEDULING.status, cursor.afterId(), limit
+        );
+        cursor.advance(list, limit, PlanInstanceEntity::getId);
         if (CollectionUtils.isEmpty(list)) {
             return;
         }
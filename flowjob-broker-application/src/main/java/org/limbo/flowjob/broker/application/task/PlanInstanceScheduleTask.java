@@ -26,6 +26,7 @@ import org.limbo.flowjob.broker.application.schedule.ScheduleStrategy;
 import org.limbo.flowjob.broker.application.support.CommonThreadPool;
 import org.limbo.flowjob.broker.core.domain.plan.Plan;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskKey;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskType;
 
 import java.time.LocalDateTime;
@@ -55,11 +56,15 @@ public class PlanInstanceScheduleTask implements MetaTask {
     @ToString.Exclude
     private final ScheduleStrategy scheduleStrategy;
 
+    @Getter(AccessLevel.NONE)
+    private final MetaTaskKey scheduleId;
+
     public PlanInstanceScheduleTask(String planInstanceId, Plan plan, LocalDateTime triggerAt, ScheduleStrategy scheduleStrategy) {
         this.planInstanceId = planInstanceId;
         this.triggerAt = triggerAt;
         this.scheduleStrategy = scheduleStrategy;
         this.plan = plan;
+        this.scheduleId = MetaTaskKey.of(getType(), getMetaId());
     }
 
     @Override
@@ -75,7 +80,7 @@ public class PlanInstanceScheduleTask implements MetaTask {
 
     @Override
     public MetaTaskType getType() {
-        return MetaTaskType.TASK;
+        return MetaTaskType.PLAN_INSTANCE;
     }
 
     @Override
@@ -83,6 +88,11 @@ public class PlanInstanceScheduleTask implements MetaTask {
         return planInstanceId;
     }
 
+    @Override
+    public MetaTaskKey scheduleId() {
+        return scheduleId;
+    }
+
     @Override
     public LocalDateTime scheduleAt() {
         return triggerAt;
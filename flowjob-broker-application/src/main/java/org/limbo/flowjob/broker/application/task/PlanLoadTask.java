@@ -20,32 +20,45 @@ package org.limbo.flowjob.broker.application.task;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
+import org.limbo.flowjob.broker.application.component.SlotHandoffEvent;
 import org.limbo.flowjob.broker.application.component.SlotManager;
 import org.limbo.flowjob.broker.application.converter.MetaTaskConverter;
 import org.limbo.flowjob.broker.core.cluster.Broker;
 import org.limbo.flowjob.broker.core.cluster.NodeManger;
+import org.limbo.flowjob.broker.core.schedule.scheduler.NamedThreadFactory;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixDelayMetaTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTask;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskType;
 import org.limbo.flowjob.broker.dao.entity.PlanEntity;
 import org.limbo.flowjob.broker.dao.repositories.PlanEntityRepo;
 import org.limbo.flowjob.api.constants.TriggerType;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 /**
  * 获取plan下发
  * 相比update的任务比较久
  * 此任务主要为防止 plan 调度中异常导致 在时间轮中丢失
+ * 槽位交接时只加载新获得槽位下的 plan，并移除失去槽位下的 plan
  */
 @Slf4j
 @Component
-public class PlanLoadTask extends FixDelayMetaTask {
+public class PlanLoadTask extends FixDelayMetaTask implements ApplicationListener<SlotHandoffEvent> {
 
     private final PlanEntityRepo planEntityRepo;
 
@@ -57,6 +70,36 @@ public class PlanLoadTask extends FixDelayMetaTask {
 
     private final NodeManger nodeManger;
 
+    /**
+     * 槽位交接次数
+     */
+    private final LongAdder handoffTimes = new LongAdder();
+
+    /**
+     * 槽位交接线程，单线程按事件发布顺序处理
+     */
+    private final ExecutorService handoffExecutor = Executors.newSingleThreadExecutor(NamedThreadFactory.newInstance("FlowJobSlotHandoff"));
+
+    /**
+     * 槽位交接累计加载的 plan 数量
+     */
+    private final LongAdder handoffLoaded = new LongAdder();
+
+    /**
+     * 槽位交接累计移除的 plan 数量
+     */
+    private final LongAdder handoffEvicted = new LongAdder();
+
+    /**
+     * 最近一次槽位交接加载的 plan 数量
+     */
+    private volatile int lastHandoffLoaded;
+
+    /**
+     * 最近一次槽位交接移除的 plan 数量
+     */
+    private volatile int lastHandoffEvicted;
+
     public PlanLoadTask(MetaTaskScheduler scheduler,
                         PlanEntityRepo planEntityRepo,
                         MetaTaskConverter metaTaskConverter,
@@ -83,13 +126,7 @@ public class PlanLoadTask extends FixDelayMetaTask {
             }
 
             // 调度当前时间以及未来的任务
-            List<PlanScheduleTask> plans = loadTasks();
-            if (CollectionUtils.isEmpty(plans)) {
-                return;
-            }
-            for (PlanScheduleTask plan : plans) {
-                metaTaskScheduler.schedule(plan);
-            }
+            schedule(loadTasks(slotManager.slots()));
         } catch (Exception e) {
             log.error("{} load and schedule plan task fail", scheduleId(), e);
         }
@@ -97,14 +134,92 @@ public class PlanLoadTask extends FixDelayMetaTask {
 
 
     /**
-     * 加载触发时间在指定时间之前的 Plan。
+     * 槽位交接事件在获取槽位的线程中同步发布，可能处于事务中，交给交接线程处理，不阻塞发布方
      */
-    private List<PlanScheduleTask> loadTasks() {
-        List<String> planIds = slotManager.planIds();
+    @Override
+    public void onApplicationEvent(SlotHandoffEvent event) {
+        try {
+            handoffExecutor.execute(() -> handoff(event));
+        } catch (RejectedExecutionException e) {
+            log.warn("{} slot handoff rejected, plans will be reloaded by next load", scheduleId());
+        }
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        handoffExecutor.shutdownNow();
+    }
+
+
+    /**
+     * 槽位交接，移除失去槽位下的 plan，加载新获得槽位下的 plan。
+     * 多次交接的事件可能乱序到达，按处理时的槽位归属过滤，只处理仍然有效的部分
+     */
+    private void handoff(SlotHandoffEvent event) {
+        Set<Integer> owned = new HashSet<>(slotManager.slots());
+        List<String> releasedPlanIds = event.getReleasedPlanIds().stream()
+                .filter(planId -> !owned.contains(slotManager.slot(planId)))
+                .collect(Collectors.toList());
+        List<Integer> acquiredSlots = event.getAcquiredSlots().stream()
+                .filter(owned::contains)
+                .collect(Collectors.toList());
+
+        int evicted = evict(releasedPlanIds);
+
+        int loaded = 0;
+        try {
+            List<PlanScheduleTask> plans = loadTasks(acquiredSlots);
+            schedule(plans);
+            loaded = plans.size();
+        } catch (Exception e) {
+            log.error("{} load acquired slots plan task fail", scheduleId(), e);
+        }
+
+        handoffTimes.increment();
+        handoffEvicted.add(evicted);
+        handoffLoaded.add(loaded);
+        lastHandoffEvicted = evicted;
+        lastHandoffLoaded = loaded;
+        log.info("{} slot handoff evicted:{} loaded:{}", scheduleId(), evicted, loaded);
+    }
+
+
+    /**
+     * 取消调度失去槽位的 plan，避免时间轮中保留不属于当前节点的 plan
+     */
+    private int evict(List<String> planIds) {
         if (CollectionUtils.isEmpty(planIds)) {
+            return 0;
+        }
+
+        Set<String> released = new HashSet<>(planIds);
+        int evicted = 0;
+        for (MetaTask task : metaTaskScheduler.getSchedulingByType(MetaTaskType.PLAN)) {
+            if (released.contains(task.getMetaId())) {
+                metaTaskScheduler.unschedule(task.scheduleId());
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+
+    private void schedule(List<PlanScheduleTask> plans) {
+        for (PlanScheduleTask plan : plans) {
+            metaTaskScheduler.schedule(plan);
+        }
+    }
+
+
+    /**
+     * 加载槽位下的 Plan。
+     */
+    private List<PlanScheduleTask> loadTasks(List<Integer> slots) {
+        if (CollectionUtils.isEmpty(slots)) {
             return Collections.emptyList();
         }
-        List<PlanEntity> planEntities = planEntityRepo.loadPlans(planIds);
+        List<PlanEntity> planEntities = planEntityRepo.loadPlans(slots);
         if (CollectionUtils.isEmpty(planEntities)) {
             return Collections.emptyList();
         }
@@ -116,6 +231,42 @@ public class PlanLoadTask extends FixDelayMetaTask {
     }
 
 
+    /**
+     * 槽位交接次数
+     */
+    public long getHandoffTimes() {
+        return handoffTimes.sum();
+    }
+
+    /**
+     * 槽位交接累计加载的 plan 数量
+     */
+    public long getHandoffLoaded() {
+        return handoffLoaded.sum();
+    }
+
+    /**
+     * 槽位交接累计移除的 plan 数量
+     */
+    public long getHandoffEvicted() {
+        return handoffEvicted.sum();
+    }
+
+    /**
+     * 最近一次槽位交接加载的 plan 数量
+     */
+    public int getLastHandoffLoaded() {
+        return lastHandoffLoaded;
+    }
+
+    /**
+     * 最近一次槽位交接移除的 plan 数量
+     */
+    public int getLastHandoffEvicted() {
+        return lastHandoffEvicted;
+    }
+
+
     @Override
     public MetaTaskType getType() {
         return MetaTaskType.PLAN_LOAD;
@@ -30,6 +30,7 @@ import org.limbo.flowjob.broker.application.schedule.ScheduleStrategy;
 import org.limbo.flowjob.broker.application.support.CommonThreadPool;
 import org.limbo.flowjob.broker.core.domain.plan.Plan;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.LoopMetaTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskKey;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskType;
 
@@ -54,11 +55,17 @@ public class PlanScheduleTask extends LoopMetaTask {
     @ToString.Exclude
     private final ScheduleStrategy scheduleStrategy;
 
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final MetaTaskKey scheduleId;
+
     public PlanScheduleTask(Plan plan, LocalDateTime lastTriggerAt, LocalDateTime lastFeedbackAt,
                             ScheduleStrategy scheduleStrategy, MetaTaskScheduler metaTaskScheduler) {
         super(lastTriggerAt, lastFeedbackAt, plan.getScheduleOption(), metaTaskScheduler);
         this.plan = plan;
         this.scheduleStrategy = scheduleStrategy;
+        this.scheduleId = MetaTaskKey.of(MetaTaskType.PLAN, plan.getPlanId(), plan.getVersion());
     }
 
     @Override
@@ -103,6 +110,14 @@ public class PlanScheduleTask extends LoopMetaTask {
 
     @Override
     public String getMetaId() {
-        return plan.getPlanId() + "-" + plan.getVersion();
+        return plan.getPlanId();
+    }
+
+    /**
+     * 同一计划的不同版本作为不同的元任务调度
+     */
+    @Override
+    public MetaTaskKey scheduleId() {
+        return scheduleId;
     }
 }
@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.limbo.flowjob.broker.application.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixDelayMetaTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskType;
+import org.limbo.flowjob.broker.dao.support.PlanVersionCache;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 定时输出 {@link PlanVersionCache} 的容量及命中统计，用于评估 plan-cache-size 配置
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Slf4j
+@Component
+public class PlanVersionCacheStatsTask extends FixDelayMetaTask {
+
+    private final PlanVersionCache planVersionCache;
+
+    public PlanVersionCacheStatsTask(MetaTaskScheduler scheduler, PlanVersionCache planVersionCache) {
+        super(Duration.ofMinutes(1), scheduler);
+        this.planVersionCache = planVersionCache;
+    }
+
+    @Override
+    protected void executeTask() {
+        log.info("plan version cache size {} stats {}", planVersionCache.size(), planVersionCache.stats());
+    }
+
+    @Override
+    public MetaTaskType getType() {
+        return MetaTaskType.PLAN_CACHE_STATS;
+    }
+
+    @Override
+    public String getMetaId() {
+        return this.getClass().getSimpleName();
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.application.task;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 检查任务 keyset 分页扫描的游标，每次执行只读取一页，下次执行从上一页最后一条的自增 id 继续。
+ * 读到的数据不足一页说明已经扫描到末尾，游标回到起点。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+class ScanCursor {
+
+    private volatile long afterId = 0;
+
+    /**
+     * 本次扫描从大于此 id 的数据开始
+     */
+    long afterId() {
+        return afterId;
+    }
+
+    /**
+     * 根据本次读到的数据移动游标
+     *
+     * @param page 本次读到的数据，按 id 升序
+     * @param limit 一页的大小
+     * @param idGetter 获取数据的自增 id
+     */
+    <T> void advance(List<T> page, int limit, Function<T, Long> idGetter) {
+        if (page == null || page.size() < limit) {
+            afterId = 0;
+        } else {
+            afterId = idGetter.apply(page.get(page.size() - 1));
+        }
+    }
+
+}
@@ -26,6 +26,7 @@ import org.limbo.flowjob.broker.application.converter.MetaTaskConverter;
 import org.limbo.flowjob.broker.application.schedule.ScheduleStrategy;
 import org.limbo.flowjob.broker.application.support.CommonThreadPool;
 import org.limbo.flowjob.broker.core.cluster.Broker;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
 import org.limbo.flowjob.broker.core.cluster.NodeManger;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixDelayMetaTask;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
@@ -63,13 +64,18 @@ public class TaskExecuteCheckTask extends FixDelayMetaTask {
 
     private final ScheduleStrategy scheduleStrategy;
 
+    private final BrokerConfig brokerConfig;
+
+    private final ScanCursor cursor = new ScanCursor();
+
     public TaskExecuteCheckTask(MetaTaskScheduler metaTaskScheduler,
                                 TaskEntityRepo taskEntityRepo,
                                 SlotManager slotManager,
                                 @Lazy Broker broker,
                                 NodeManger nodeManger,
                                 WorkerRepository workerRepository,
-                                ScheduleStrategy scheduleStrategy) {
+                                ScheduleStrategy scheduleStrategy,
+                                BrokerConfig brokerConfig) {
         super(Duration.ofSeconds(5), metaTaskScheduler);
         this.taskEntityRepo = taskEntityRepo;
         this.slotManager = slotManager;
@@ -77,6 +83,7 @@ public class TaskExecuteCheckTask extends FixDelayMetaTask {
         this.nodeManger = nodeManger;
         this.workerRepository = workerRepository;
         this.scheduleStrategy = scheduleStrategy;
+        this.brokerConfig = brokerConfig;
     }
 
     @Override
@@ -108,11 +115,13 @@ public class TaskExecuteCheckTask extends FixDelayMetaTask {
      * 加载执行中的 task。
      */
     private List<TaskEntity> loadExecutingTasks() {
-        List<String> planIds = slotManager.planIds();
-        if (CollectionUtils.isEmpty(planIds)) {
+        List<Integer> slots = slotManager.slots();
+        if (CollectionUtils.isEmpty(slots)) {
             return Collections.emptyList();
         }
-        List<TaskEntity> taskEntities = taskEntityRepo.findByPlanIdInAndStatus(planIds, TaskStatus.EXECUTING.status);
+        int limit = brokerConfig.getScanPageSize();
+        List<TaskEntity> taskEntities = taskEntityRepo.findBySlotsAndStatus(slots, TaskStatus.EXECUTING.status, cursor.afterId(), limit);
+        cursor.advance(taskEntities, limit, TaskEntity::getId);
         if (CollectionUtils.isEmpty(taskEntities)) {
             return Collections.emptyList();
         }
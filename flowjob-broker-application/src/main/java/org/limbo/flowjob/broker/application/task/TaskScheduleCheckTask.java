@@ -23,6 +23,7 @@ import org.limbo.flowjob.broker.application.component.SlotManager;
 import org.limbo.flowjob.broker.application.schedule.ScheduleStrategy;
 import org.limbo.flowjob.broker.dao.converter.DomainConverter;
 import org.limbo.flowjob.broker.core.cluster.Broker;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
 import org.limbo.flowjob.broker.core.cluster.NodeManger;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixDelayMetaTask;
@@ -55,18 +56,24 @@ public class TaskScheduleCheckTask extends FixDelayMetaTask {
 
     private final ScheduleStrategy scheduleStrategy;
 
+    private final BrokerConfig brokerConfig;
+
+    private final ScanCursor cursor = new ScanCursor();
+
     public TaskScheduleCheckTask(MetaTaskScheduler metaTaskScheduler,
                                  TaskEntityRepo taskEntityRepo,
                                  SlotManager slotManager,
                                  @Lazy Broker broker,
                                  NodeManger nodeManger,
-                                 ScheduleStrategy scheduleStrategy) {
+                                 ScheduleStrategy scheduleStrategy,
+                                 BrokerConfig brokerConfig) {
         super(Duration.ofSeconds(1), metaTaskScheduler);
         this.taskEntityRepo = taskEntityRepo;
         this.slotManager = slotManager;
         this.broker = broker;
         this.nodeManger = nodeManger;
         this.scheduleStrategy = scheduleStrategy;
+        this.brokerConfig = brokerConfig;
     }
 
     @Override
@@ -89,11 +96,13 @@ public class TaskScheduleCheckTask extends FixDelayMetaTask {
      * 加载下发中的 task。
      */
     private List<Task> loadDispatchingTasks() {
-        List<String> planIds = slotManager.planIds();
-        if (CollectionUtils.isEmpty(planIds)) {
+        List<Integer> slots = slotManager.slots();
+        if (CollectionUtils.isEmpty(slots)) {
             return Collections.emptyList();
         }
-        List<TaskEntity> taskEntities = taskEntityRepo.findByPlanIdInAndStatus(planIds, TaskStatus.SCHEDULING.status);
+        int limit = brokerConfig.getScanPageSize();
+        List<TaskEntity> taskEntities = taskEntityRepo.findBySlotsAndStatus(slots, TaskStatus.SCHEDULING.status, cursor.afterId(), limit);
+        cursor.advance(taskEntities, limit, TaskEntity::getId);
         if (CollectionUtils.isEmpty(taskEntities)) {
             return Collections.emptyList();
         }
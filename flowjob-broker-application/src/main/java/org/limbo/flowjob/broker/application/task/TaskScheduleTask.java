@@ -26,6 +26,7 @@ import org.limbo.flowjob.broker.application.schedule.ScheduleStrategy;
 import org.limbo.flowjob.broker.application.support.CommonThreadPool;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskKey;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskType;
 
 import java.time.LocalDateTime;
@@ -52,10 +53,14 @@ public class TaskScheduleTask implements MetaTask {
     @ToString.Exclude
     private final ScheduleStrategy scheduleStrategy;
 
+    @Getter(AccessLevel.NONE)
+    private final MetaTaskKey scheduleId;
+
     public TaskScheduleTask(Task task, ScheduleStrategy scheduleStrategy) {
         this.task = task;
         this.triggerAt = task.getTriggerAt();
         this.scheduleStrategy = scheduleStrategy;
+        this.scheduleId = MetaTaskKey.of(getType(), getMetaId());
     }
 
     @Override
@@ -79,6 +84,11 @@ public class TaskScheduleTask implements MetaTask {
         return task.getTaskId();
     }
 
+    @Override
+    public MetaTaskKey scheduleId() {
+        return scheduleId;
+    }
+
     @Override
     public LocalDateTime scheduleAt() {
         return triggerAt;
@@ -106,11 +106,11 @@ public class UpdatedPlanLoadTask extends FixDelayMetaTask {
      * 加载触发时间在指定时间之前的 Plan。
      */
     private List<PlanScheduleTask> loadTasks() {
-        List<String> planIds = slotManager.planIds();
-        if (CollectionUtils.isEmpty(planIds)) {
+        List<Integer> slots = slotManager.slots();
+        if (CollectionUtils.isEmpty(slots)) {
             return Collections.emptyList();
         }
-        List<PlanEntity> planEntities = planEntityRepo.loadUpdatedPlans(planIds, loadTimePoint);
+        List<PlanEntity> planEntities = planEntityRepo.loadUpdatedPlans(slots, loadTimePoint);
         loadTimePoint = TimeUtils.currentLocalDateTime();
         if (CollectionUtils.isEmpty(planEntities)) {
             return Collections.emptyList();
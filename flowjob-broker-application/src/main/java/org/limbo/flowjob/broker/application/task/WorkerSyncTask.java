@@ -0,0 +1,84 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.application.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixDelayMetaTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskType;
+import org.limbo.flowjob.broker.core.worker.WorkerRegistry;
+import org.limbo.flowjob.broker.core.worker.rpc.WorkerRpcFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 定时同步 DB 中的 worker 到 {@link WorkerRegistry}
+ * 一般为增量同步，每隔一定轮次做一次全量同步，移除已删除的 worker
+ *
+ * @author Brozen
+ * @since 2023-06-15
+ */
+@Slf4j
+@Component
+public class WorkerSyncTask extends FixDelayMetaTask {
+
+    /**
+     * 每隔多少轮做一次全量同步
+     */
+    private static final int FULL_SYNC_ROUNDS = 30;
+
+    private final WorkerRegistry workerRegistry;
+
+    private int rounds = 0;
+
+    public WorkerSyncTask(MetaTaskScheduler scheduler, WorkerRegistry workerRegistry) {
+        super(Duration.ofSeconds(2), scheduler);
+        this.workerRegistry = workerRegistry;
+    }
+
+    /**
+     * 执行元任务，同步 worker 缓存
+     */
+    @Override
+    protected void executeTask() {
+        try {
+            boolean full = rounds++ % FULL_SYNC_ROUNDS == 0;
+            workerRegistry.sync(full);
+
+            if (full) {
+                log.info("worker rpc stats {}", WorkerRpcFactory.getInstance().stats());
+            }
+        } catch (Exception e) {
+            log.error("{} sync workers fail", scheduleId(), e);
+        }
+    }
+
+
+    @Override
+    public MetaTaskType getType() {
+        return MetaTaskType.WORKER_SYNC;
+    }
+
+    @Override
+    public String getMetaId() {
+        return this.getClass().getSimpleName();
+    }
+
+}
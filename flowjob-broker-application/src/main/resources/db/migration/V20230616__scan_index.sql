@@ -0,0 +1,11 @@
+-- 调度检查任务按 槽位 + 状态 周期扫描 task、job_instance、plan_instance，
+-- 非终态的数据只占很小一部分，status 放在索引最左侧，扫描只会命中这部分数据。
+-- 扫描 SQL 为 status = ? and id > ? order by id limit ?，id 紧跟 status，按 id 范围顺序读取，无需 filesort，凑够 limit 条即停止；
+-- plan_id、trigger_at 放在索引中，关联槽位与过滤触发时间时不需要回表。
+
+DROP INDEX `idx_plan_status` ON `flowjob_task`;
+CREATE INDEX `idx_status_id` ON `flowjob_task` (`status`, `id`, `plan_id`);
+
+CREATE INDEX `idx_status_id` ON `flowjob_job_instance` (`status`, `id`, `plan_id`, `trigger_at`);
+
+CREATE INDEX `idx_status_id` ON `flowjob_plan_instance` (`status`, `id`, `plan_id`, `trigger_at`);
@@ -0,0 +1,11 @@
+-- 已完成的计划实例、作业实例、任务超过保留期后移入历史表，热表只保留近期数据。
+-- 历史表结构、索引与热表一致，控制台按 plan_id、plan_instance_id 查询时同时读两张表。
+
+CREATE TABLE IF NOT EXISTS `flowjob_plan_instance_history` LIKE `flowjob_plan_instance`;
+
+CREATE TABLE IF NOT EXISTS `flowjob_job_instance_history` LIKE `flowjob_job_instance`;
+
+CREATE TABLE IF NOT EXISTS `flowjob_task_history` LIKE `flowjob_task`;
+
+-- 归档扫描：已完成且 feedback_at 早于保留期的计划实例
+CREATE INDEX `idx_status_feedback` ON `flowjob_plan_instance` (`status`, `feedback_at`);
@@ -0,0 +1,14 @@
+-- 记录 flowjob_plan_slot 中槽位按多大的 slot-size 计算。
+-- slot_size 为 0 表示旧版本按 planId.hashCode() % 64 写入的槽位，第一个启动的 broker 在行锁内按当前 slot-size 重算一次并记录，
+-- 之后的 broker 启动不再重写 plan_slot；配置的 slot-size 与记录不一致时 broker 拒绝启动。
+
+CREATE TABLE IF NOT EXISTS `flowjob_plan_slot_layout`
+(
+    `id`         bigint unsigned NOT NULL,
+    `slot_size`  int      NOT NULL DEFAULT 0,
+    `created_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `updated_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
+
+INSERT INTO `flowjob_plan_slot_layout` (`id`, `slot_size`) VALUES (1, 0);
@@ -20,6 +20,14 @@ package org.limbo.flowjob.broker.core.cluster;
 
 import lombok.Data;
 import org.limbo.flowjob.api.constants.RpcScheme;
+import org.limbo.flowjob.broker.core.domain.IDGeneratorType;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskExecutorConfig;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskExecutorGroup;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Devil
@@ -65,4 +73,130 @@ public class BrokerConfig {
      */
     protected long heartbeatTimeout = 5000;
 
+    /**
+     * 节点注册方式，默认基于 DB
+     */
+    protected BrokerRegistryType registry = BrokerRegistryType.DB;
+
+    /**
+     * gossip 注册时的 UDP 监听地址，未配置时监听所有地址
+     */
+    protected String gossipBindAddress;
+
+    /**
+     * gossip 注册时的 UDP 端口，未配置时与 broker 端口一致
+     */
+    protected Integer gossipPort;
+
+    /**
+     * gossip 报文签名密钥，集群内所有 broker 必须一致。使用 gossip 注册时必须配置
+     */
+    protected String gossipSecret;
+
+    /**
+     * gossip 注册时的种子节点，格式为 host:port。DB 中近期登记过的 broker 也会作为种子
+     */
+    protected List<String> gossipSeeds = new ArrayList<>();
+
+    /**
+     * gossip 注册时 DB 中登记的 broker 作为种子的有效期，毫秒。broker 每隔有效期的 1/3 刷新自己的登记时间，
+     * 超过有效期未刷新的登记会被删除
+     */
+    protected long gossipSeedExpire = 600000;
+
+    /**
+     * gossip 注册时每轮推送的节点数量
+     */
+    protected int gossipFanout = 3;
+
+    /**
+     * 槽位数量，plan 按槽位分配到 broker。已分配的 plan 槽位会持久化且不再重算，所有 broker 必须一致，与已记录的不一致时 broker 拒绝启动
+     */
+    protected int slotSize = 4096;
+
+    /**
+     * 元任务调度时间轮 tick，毫秒
+     */
+    protected long metaTaskTickDuration = 1000;
+
+    /**
+     * 元任务调度是否使用分层时间轮。分层时间轮适合较小的 tick（如 10ms）以及较长的延迟
+     */
+    protected boolean metaTaskHierarchicalWheel = false;
+
+    /**
+     * 元任务执行线程池配置，按执行分组配置，未配置的分组使用默认值
+     */
+    protected Map<MetaTaskExecutorGroup, MetaTaskExecutorConfig> metaTaskExecutors = new EnumMap<>(MetaTaskExecutorGroup.class);
+
+    /**
+     * 是否异步下发任务。开启后下发请求不占用线程及 DB 事务，任务状态在下发完成后通过短事务更新
+     */
+    protected boolean asyncDispatch = false;
+
+    /**
+     * 异步下发时合并同一 worker 任务的时间窗口，毫秒。小于等于0时不合并
+     */
+    protected long dispatchBatchWindow = 5;
+
+    /**
+     * 异步下发时单次批量请求的最大任务数
+     */
+    protected int dispatchBatchSize = 64;
+
+    /**
+     * 计划触发时间预计算窗口，毫秒。大于0时，固定速度、CRON计划一次计算窗口内的多个触发时间
+     */
+    protected long planTriggerPrecomputeWindow = 0;
+
+    /**
+     * 计划一次最多预计算的触发次数
+     */
+    protected int planTriggerPrecomputeLimit = 64;
+
+    /**
+     * 批量保存任务、作业实例时，单条 INSERT 语句的最大行数
+     */
+    protected int persistBatchSize = 500;
+
+    /**
+     * 检查任务单次执行扫描 task、作业实例、计划实例的最大行数，超出的部分在后续执行中按 id 分页继续扫描
+     */
+    protected int scanPageSize = 1000;
+
+    /**
+     * 已完成的计划实例在热表中保留的天数，超过后连同作业实例、任务一起移入历史表。小于等于0时不归档
+     */
+    protected int archiveRetentionDays = 30;
+
+    /**
+     * 归档时一个批次（一个事务）移动的计划实例数
+     */
+    protected int archiveBatchSize = 100;
+
+    /**
+     * 归档批次之间的间隔，毫秒，避免持续占用 DB
+     */
+    protected long archiveBatchInterval = 500;
+
+    /**
+     * 归档任务单次执行最多处理的批次数，剩余的数据在下次执行时继续归档
+     */
+    protected int archiveMaxBatches = 20;
+
+    /**
+     * 解析后的计划版本缓存的最大数量。计划版本不可变，只按容量淘汰
+     */
+    protected long planCacheSize = 1024;
+
+    /**
+     * ID 生成方式，默认从 DB 获取号段
+     */
+    protected IDGeneratorType idGenerator = IDGeneratorType.SEGMENT;
+
+    /**
+     * 雪花算法 ID 生成器的节点 ID，范围 0 ~ 1023，各 broker 必须不同。使用雪花算法时必须配置，未配置时启动失败
+     */
+    protected Integer idGeneratorNodeId;
+
 }
@@ -0,0 +1,39 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.cluster;
+
+/**
+ * broker 节点注册方式
+ *
+ * @author Brozen
+ * @since 2023-06-14
+ */
+public enum BrokerRegistryType {
+
+    /**
+     * 通过 DB 心跳写入与轮询感知节点
+     */
+    DB,
+
+    /**
+     * 节点之间通过 gossip 交换心跳，DB 只用于获取种子节点
+     */
+    GOSSIP,
+
+}
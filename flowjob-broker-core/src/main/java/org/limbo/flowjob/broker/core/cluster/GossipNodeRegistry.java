@@ -0,0 +1,548 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.cluster;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.limbo.flowjob.broker.core.schedule.scheduler.NamedThreadFactory;
+import org.limbo.flowjob.common.utils.json.JacksonUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 gossip 心跳的节点注册，节点之间通过 UDP 直接交换成员表，不依赖 DB 轮询。
+ * <p>
+ * 每个节点周期性递增自己的心跳计数，并把存活成员表推送给随机的 fanout 个节点，
+ * 收到的成员表按 (generation, heartbeat) 合并，心跳计数在超时时间内没有增长的节点视为下线。
+ * generation 为节点启动时间，节点重启后旧的心跳不会覆盖新的。
+ * <p>
+ * 种子节点只用于加入集群，当本节点没有存活的其它节点时会重新获取种子。
+ * <p>
+ * 报文格式为 HMAC-SHA256(secret, 成员表) + 成员表 JSON，校验失败的报文直接丢弃，避免伪造的成员表让节点上下线。
+ *
+ * @author Brozen
+ * @since 2023-06-14
+ */
+@Slf4j
+public class GossipNodeRegistry implements NodeRegistry {
+
+    /**
+     * UDP 报文最大长度
+     */
+    private static final int MAX_PACKET_SIZE = 65507;
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * HMAC-SHA256 签名长度
+     */
+    private static final int SIGNATURE_LENGTH = 32;
+
+    /**
+     * gossip 监听地址，为空时监听所有地址
+     */
+    private final String bindAddress;
+
+    /**
+     * gossip 监听端口，为空时使用节点端口
+     */
+    private final Integer gossipPort;
+
+    /**
+     * 报文签名密钥，集群内所有节点一致
+     */
+    private final SecretKeySpec secretKey;
+
+    /**
+     * 心跳时间间隔，毫秒
+     */
+    private final long heartbeatInterval;
+
+    /**
+     * 心跳超时时间，毫秒
+     */
+    private final long heartbeatTimeout;
+
+    /**
+     * 每轮推送的节点数量
+     */
+    private final int fanout;
+
+    /**
+     * 配置的种子节点 gossip 地址
+     */
+    private final List<InetSocketAddress> staticSeeds;
+
+    /**
+     * 成员表，包括本节点以及已下线但尚未清理的节点
+     */
+    private final Map<String, Member> members = new ConcurrentHashMap<>();
+
+    private final List<NodeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Member self;
+
+    private volatile List<InetSocketAddress> seeds = Collections.emptyList();
+
+    private volatile long lastSeedRefreshAt;
+
+    private DatagramSocket socket;
+
+    private Thread receiver;
+
+    private ScheduledExecutorService gossipExecutor;
+
+    private volatile boolean running;
+
+    /**
+     * @param bindAddress gossip 监听地址，为空时监听所有地址
+     * @param gossipPort gossip 监听端口，为空时使用节点注册的端口（UDP 与 HTTP 端口互不冲突）
+     * @param secret 报文签名密钥，集群内所有节点一致
+     * @param heartbeatInterval 心跳时间间隔，毫秒
+     * @param heartbeatTimeout 心跳超时时间，毫秒
+     * @param fanout 每轮推送的节点数量
+     * @param staticSeeds 种子节点 gossip 地址
+     */
+    public GossipNodeRegistry(String bindAddress, Integer gossipPort, String secret, long heartbeatInterval, long heartbeatTimeout,
+                              int fanout, List<InetSocketAddress> staticSeeds) {
+        if (StringUtils.isBlank(secret)) {
+            throw new IllegalArgumentException("gossip secret can't be blank");
+        }
+        this.bindAddress = bindAddress;
+        this.gossipPort = gossipPort;
+        this.secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.heartbeatInterval = heartbeatInterval;
+        this.heartbeatTimeout = heartbeatTimeout;
+        this.fanout = Math.max(1, fanout);
+        this.staticSeeds = staticSeeds == null ? Collections.emptyList() : new ArrayList<>(staticSeeds);
+    }
+
+    @Override
+    public synchronized void register(String name, String host, int port) {
+        if (running) {
+            return;
+        }
+
+        int bindPort = gossipPort != null ? gossipPort : port;
+        InetSocketAddress bind = StringUtils.isBlank(bindAddress)
+                ? new InetSocketAddress(bindPort)
+                : new InetSocketAddress(bindAddress, bindPort);
+        try {
+            socket = new DatagramSocket(bind);
+        } catch (SocketException e) {
+            throw new IllegalStateException("gossip registry bind " + bind + " fail", e);
+        }
+
+        self = new Member(name, host, port, bindPort, System.currentTimeMillis());
+        members.put(name, self);
+        running = true;
+
+        receiver = NamedThreadFactory.newInstance("GossipNodeRegistry-receiver").newThread(this::receive);
+        receiver.setDaemon(true);
+        receiver.start();
+
+        NamedThreadFactory gossipThreadFactory = NamedThreadFactory.newInstance("GossipNodeRegistry-gossip");
+        gossipExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = gossipThreadFactory.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        });
+        gossipExecutor.scheduleWithFixedDelay(this::gossip, 0, heartbeatInterval, TimeUnit.MILLISECONDS);
+        log.info("[GossipNodeRegistry] start name:{} host:{} port:{} gossip:{}", name, host, port, bind);
+    }
+
+    /**
+     * 订阅时补发当前存活节点的上线事件，避免错过注册与订阅之间的事件
+     */
+    @Override
+    public void subscribe(NodeListener listener) {
+        if (listener == null) {
+            return;
+        }
+        listeners.add(listener);
+        for (Member member : members.values()) {
+            if (member.alive) {
+                listener.event(member.event(NodeEvent.Type.ONLINE));
+            }
+        }
+    }
+
+    /**
+     * 停止 gossip，关闭 socket 及 gossip、接收线程，其它节点在心跳超时后将本节点视为下线
+     */
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        gossipExecutor.shutdownNow();
+        // 关闭 socket 使接收线程从 receive 中退出
+        socket.close();
+        try {
+            gossipExecutor.awaitTermination(heartbeatInterval, TimeUnit.MILLISECONDS);
+            receiver.join(heartbeatInterval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("[GossipNodeRegistry] stop name:{}", self.name);
+    }
+
+    /**
+     * 获取种子节点 gossip 地址，子类可以扩展种子来源
+     */
+    protected Collection<InetSocketAddress> seeds() {
+        return staticSeeds;
+    }
+
+    /**
+     * 每轮 gossip 推送后调用，在 gossip 线程中执行，子类可以扩展，如刷新种子来源中自己的登记信息
+     *
+     * @param now 本轮 gossip 的时间戳，毫秒
+     */
+    protected void afterGossip(long now) {
+    }
+
+    /**
+     * 一轮 gossip：递增心跳，检查超时，推送成员表
+     */
+    private void gossip() {
+        try {
+            long now = System.currentTimeMillis();
+            self.heartbeat++;
+            self.updatedAt = now;
+
+            List<Member> peers = new ArrayList<>();
+            synchronized (members) {
+                Iterator<Member> iterator = members.values().iterator();
+                while (iterator.hasNext()) {
+                    Member member = iterator.next();
+                    if (member == self) {
+                        continue;
+                    }
+
+                    long elapsed = now - member.updatedAt;
+                    if (member.alive && elapsed > heartbeatTimeout) {
+                        member.alive = false;
+                        notifyListeners(member.event(NodeEvent.Type.OFFLINE));
+                    }
+                    // 下线节点保留一段时间，防止其它节点传来的旧心跳让它重新上线
+                    if (!member.alive && elapsed > 3 * heartbeatTimeout) {
+                        iterator.remove();
+                    }
+                    if (member.alive) {
+                        peers.add(member);
+                    }
+                }
+            }
+
+            byte[] payload = sign(JacksonUtils.mapper.writeValueAsBytes(digest()));
+
+            // 随机选择 fanout 个存活节点推送
+            Collections.shuffle(peers, ThreadLocalRandom.current());
+            for (int i = 0; i < peers.size() && i < fanout; i++) {
+                Member peer = peers.get(i);
+                send(payload, new InetSocketAddress(peer.host, peer.gossipPort));
+            }
+
+            // 没有存活节点时推送所有种子节点加入集群，否则每轮额外推送一个种子节点，用于网络分区后恢复
+            List<InetSocketAddress> seedAddresses = seeds(peers.isEmpty(), now);
+            if (peers.isEmpty()) {
+                for (InetSocketAddress seed : seedAddresses) {
+                    send(payload, seed);
+                }
+            } else if (!seedAddresses.isEmpty()) {
+                send(payload, seedAddresses.get(ThreadLocalRandom.current().nextInt(seedAddresses.size())));
+            }
+
+            afterGossip(now);
+        } catch (Exception e) {
+            log.error("[GossipNodeRegistry] gossip fail", e);
+        }
+    }
+
+    /**
+     * 没有存活的其它节点时重新获取种子，按心跳超时时间限流
+     */
+    private List<InetSocketAddress> seeds(boolean isolated, long now) {
+        if (lastSeedRefreshAt == 0 || (isolated && now - lastSeedRefreshAt > heartbeatTimeout)) {
+            lastSeedRefreshAt = now;
+            List<InetSocketAddress> refreshed = new ArrayList<>();
+            for (InetSocketAddress seed : seeds()) {
+                if (!(seed.getPort() == self.gossipPort && seed.getHostString().equals(self.host))) {
+                    refreshed.add(seed);
+                }
+            }
+            seeds = refreshed;
+        }
+        return seeds;
+    }
+
+    private GossipMessage digest() {
+        List<MemberDigest> digests = new ArrayList<>();
+        for (Member member : members.values()) {
+            if (member.alive) {
+                digests.add(member.digest());
+            }
+        }
+        GossipMessage message = new GossipMessage();
+        message.setMembers(digests);
+        return message;
+    }
+
+    private void send(byte[] payload, InetSocketAddress address) {
+        try {
+            socket.send(new DatagramPacket(payload, payload.length, address));
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("[GossipNodeRegistry] send to {} fail", address, e);
+            }
+        }
+    }
+
+    /**
+     * 接收其它节点推送的成员表
+     */
+    private void receive() {
+        byte[] buffer = new byte[MAX_PACKET_SIZE];
+        while (running) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                socket.receive(packet);
+                if (!verify(packet.getData(), packet.getOffset(), packet.getLength())) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("[GossipNodeRegistry] drop packet from {} with invalid signature", packet.getSocketAddress());
+                    }
+                    continue;
+                }
+                GossipMessage message = JacksonUtils.mapper.readValue(packet.getData(), packet.getOffset() + SIGNATURE_LENGTH,
+                        packet.getLength() - SIGNATURE_LENGTH, GossipMessage.class);
+                merge(message);
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("[GossipNodeRegistry] receive fail", e);
+                }
+            } catch (Exception e) {
+                log.error("[GossipNodeRegistry] merge fail", e);
+            }
+        }
+    }
+
+    /**
+     * 在成员表前加上签名
+     */
+    private byte[] sign(byte[] body) {
+        byte[] signature = newMac().doFinal(body);
+        byte[] payload = new byte[SIGNATURE_LENGTH + body.length];
+        System.arraycopy(signature, 0, payload, 0, SIGNATURE_LENGTH);
+        System.arraycopy(body, 0, payload, SIGNATURE_LENGTH, body.length);
+        return payload;
+    }
+
+    /**
+     * 校验报文签名，使用常量时间比较
+     */
+    private boolean verify(byte[] data, int offset, int length) {
+        if (length <= SIGNATURE_LENGTH) {
+            return false;
+        }
+        Mac mac = newMac();
+        mac.update(data, offset + SIGNATURE_LENGTH, length - SIGNATURE_LENGTH);
+        byte[] expected = mac.doFinal();
+        byte[] actual = Arrays.copyOfRange(data, offset, offset + SIGNATURE_LENGTH);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * Mac 非线程安全，发送、接收线程各自创建
+     */
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("init gossip " + HMAC_ALGORITHM + " fail", e);
+        }
+    }
+
+    /**
+     * 合并成员表，版本更新的节点刷新心跳时间
+     */
+    private void merge(GossipMessage message) {
+        if (message.getMembers() == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (members) {
+            for (MemberDigest digest : message.getMembers()) {
+                if (digest.getName() == null || digest.getName().equals(self.name)) {
+                    continue;
+                }
+
+                Member member = members.get(digest.getName());
+                if (member == null) {
+                    member = new Member(digest.getName(), digest.getHost(), digest.getPort(), digest.getGossipPort(), digest.getGeneration());
+                    member.heartbeat = digest.getHeartbeat();
+                    member.updatedAt = now;
+                    member.alive = true;
+                    members.put(member.name, member);
+                    notifyListeners(member.event(NodeEvent.Type.ONLINE));
+                    continue;
+                }
+
+                if (!member.isOlderThan(digest)) {
+                    continue;
+                }
+
+                member.host = digest.getHost();
+                member.port = digest.getPort();
+                member.gossipPort = digest.getGossipPort();
+                member.generation = digest.getGeneration();
+                member.heartbeat = digest.getHeartbeat();
+                member.updatedAt = now;
+                if (!member.alive) {
+                    member.alive = true;
+                    notifyListeners(member.event(NodeEvent.Type.ONLINE));
+                }
+            }
+        }
+    }
+
+    private void notifyListeners(NodeEvent event) {
+        for (NodeListener listener : listeners) {
+            try {
+                listener.event(event);
+            } catch (Exception e) {
+                log.error("[GossipNodeRegistry] listener handle event fail", e);
+            }
+        }
+    }
+
+
+    /**
+     * 本地维护的成员状态
+     */
+    private static class Member {
+
+        final String name;
+
+        volatile String host;
+
+        volatile int port;
+
+        volatile int gossipPort;
+
+        volatile long generation;
+
+        volatile long heartbeat;
+
+        /**
+         * 最近一次心跳增长的本地时间
+         */
+        volatile long updatedAt;
+
+        volatile boolean alive;
+
+        Member(String name, String host, int port, int gossipPort, long generation) {
+            this.name = name;
+            this.host = host;
+            this.port = port;
+            this.gossipPort = gossipPort;
+            this.generation = generation;
+            this.updatedAt = System.currentTimeMillis();
+            this.alive = true;
+        }
+
+        boolean isOlderThan(MemberDigest digest) {
+            return generation < digest.getGeneration()
+                    || (generation == digest.getGeneration() && heartbeat < digest.getHeartbeat());
+        }
+
+        NodeEvent event(NodeEvent.Type type) {
+            return new NodeEvent(type, name, host, port);
+        }
+
+        MemberDigest digest() {
+            MemberDigest digest = new MemberDigest();
+            digest.setName(name);
+            digest.setHost(host);
+            digest.setPort(port);
+            digest.setGossipPort(gossipPort);
+            digest.setGeneration(generation);
+            digest.setHeartbeat(heartbeat);
+            return digest;
+        }
+
+    }
+
+
+    /**
+     * 节点间传输的成员表
+     */
+    @Data
+    public static class GossipMessage {
+
+        private List<MemberDigest> members;
+
+    }
+
+
+    @Data
+    public static class MemberDigest {
+
+        private String name;
+
+        private String host;
+
+        private int port;
+
+        private int gossipPort;
+
+        private long generation;
+
+        private long heartbeat;
+
+    }
+
+}
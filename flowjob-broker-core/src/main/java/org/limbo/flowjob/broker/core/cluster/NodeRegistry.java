@@ -34,4 +34,10 @@ public interface NodeRegistry {
      */
     void subscribe(NodeListener listener);
 
+    /**
+     * 停止注册，释放心跳等线程资源
+     */
+    default void stop() {
+    }
+
 }
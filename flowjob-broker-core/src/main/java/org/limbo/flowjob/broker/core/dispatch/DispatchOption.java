@@ -27,8 +27,10 @@ import lombok.Setter;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.broker.core.worker.WorkerIndex;
 import org.limbo.flowjob.broker.core.worker.executor.WorkerExecutor;
 import org.limbo.flowjob.broker.core.worker.metric.WorkerAvailableResource;
+import org.limbo.flowjob.broker.core.worker.metric.WorkerResourceReservations;
 import org.limbo.flowjob.api.constants.LoadBalanceType;
 import org.limbo.flowjob.api.constants.MsgConstants;
 import org.limbo.flowjob.common.lb.LBServerStatisticsProvider;
@@ -44,11 +46,13 @@ import org.limbo.flowjob.common.lb.strategies.RoundRobinLBStrategy;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -95,8 +99,18 @@ public class DispatchOption implements Serializable {
 
         private final LBStrategy<Worker> strategy;
 
+        /**
+         * worker 资源预占，判断资源时扣除已预占的部分
+         */
+        protected final WorkerResourceReservations reservations;
+
         public FilteringWorkerSelector(LBStrategy<Worker> strategy) {
+            this(strategy, new WorkerResourceReservations(0));
+        }
+
+        public FilteringWorkerSelector(LBStrategy<Worker> strategy, WorkerResourceReservations reservations) {
             this.strategy = strategy;
+            this.reservations = reservations;
         }
 
         /**
@@ -118,7 +132,7 @@ public class DispatchOption implements Serializable {
             DispatchOption dispatchOption = args.getDispatchOption();
             List<TagFilterOption> tagFilters = dispatchOption.getTagFilters();
             availableWorkers = filterTags(tagFilters, availableWorkers);
-            availableWorkers = filterResources(availableWorkers);
+            availableWorkers = filterResources(dispatchOption, availableWorkers);
             if (CollectionUtils.isEmpty(availableWorkers)) {
                 return null;
             }
@@ -158,33 +172,79 @@ public class DispatchOption implements Serializable {
             if (CollectionUtils.isEmpty(tagFilters)) {
                 return workers;
             }
-            List<Worker> availableWorkers = new ArrayList<>(workers);
-            for (TagFilterOption tagFilter : tagFilters) {
-                availableWorkers = availableWorkers.stream().filter(tagFilter.asPredicate()).collect(Collectors.toList());
-            }
-            return availableWorkers;
+            List<Predicate<Worker>> predicates = tagFilters.stream()
+                    .map(TagFilterOption::asPredicate)
+                    .collect(Collectors.toList());
+            return workers.stream()
+                    .filter(worker -> predicates.stream().allMatch(predicate -> predicate.test(worker)))
+                    .collect(Collectors.toList());
         }
 
         /**
          * filter by worker queue/CPU/memory
          */
-        protected List<Worker> filterResources(List<Worker> workers) {
+        protected List<Worker> filterResources(DispatchOption dispatchOption, List<Worker> workers) {
             if (CollectionUtils.isEmpty(workers)) {
                 return Collections.emptyList();
             }
-            return workers.stream().filter(worker -> {
-                WorkerAvailableResource availableResource = worker.getMetric().getAvailableResource();
-                if (availableResource.getAvailableQueueLimit() <= 0) {
-                    return false;
-                }
-                if (availableResource.getAvailableCpu() <= 0) {
-                    return false;
+            return workers.stream()
+                    .filter(worker -> hasAvailableResource(dispatchOption, worker))
+                    .collect(Collectors.toList());
+        }
+
+
+        /**
+         * {@inheritDoc}
+         * 通过索引的位运算过滤执行器、标签，仅对过滤后的 worker 判断资源
+         *
+         * @param args  worker 选择参数
+         * @param index 可用 worker 的索引
+         * @return
+         */
+        @Override
+        public Worker select(WorkerSelectArgument args, WorkerIndex index) {
+            String executorName = args.getExecutorName();
+            if (StringUtils.isBlank(executorName) || index.isEmpty()) {
+                return null;
+            }
+
+            BitSet candidates = index.candidates(executorName);
+            List<TagFilterOption> tagFilters = args.getDispatchOption().getTagFilters();
+            if (CollectionUtils.isNotEmpty(tagFilters)) {
+                for (TagFilterOption tagFilter : tagFilters) {
+                    if (candidates.isEmpty()) {
+                        break;
+                    }
+                    tagFilter.filter(index, candidates);
                 }
-                if (availableResource.getAvailableRam() <= 0) {
-                    return false;
+            }
+            if (candidates.isEmpty()) {
+                return null;
+            }
+
+            DispatchOption dispatchOption = args.getDispatchOption();
+            List<Worker> availableWorkers = new ArrayList<>(candidates.cardinality());
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                Worker worker = index.get(i);
+                if (hasAvailableResource(dispatchOption, worker)) {
+                    availableWorkers.add(worker);
                 }
-                return true;
-            }).collect(Collectors.toList());
+            }
+            if (availableWorkers.isEmpty()) {
+                return null;
+            }
+
+            return doSelect(args, availableWorkers);
+        }
+
+
+        /**
+         * worker 扣除预占后是否有空闲的队列，以及满足作业需求的 CPU、内存。作业未定义需求时只要求 CPU、内存有空闲
+         */
+        protected boolean hasAvailableResource(DispatchOption dispatchOption, Worker worker) {
+            return reservations.fits(worker,
+                    WorkerResourceReservations.requirement(dispatchOption.getCpuRequirement()),
+                    WorkerResourceReservations.requirement(dispatchOption.getRamRequirement()));
         }
 
 
@@ -205,6 +265,60 @@ public class DispatchOption implements Serializable {
 
     }
 
+    /**
+     * 装箱选择，在满足资源需求的 worker 中，选择下发后剩余资源最少的，尽量将任务集中到少数 worker 上，
+     * 为大资源需求的作业保留完整的空闲 worker。剩余资源相同的 worker 之间轮询。
+     *
+     * @author Brozen
+     * @since 2023-06-16
+     */
+    public static class BinPackingWorkerSelector extends FilteringWorkerSelector {
+
+        public BinPackingWorkerSelector(WorkerResourceReservations reservations) {
+            super(new RoundRobinLBStrategy<>(), reservations);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 按下发后剩余的 CPU、内存、队列依次比较，选择剩余最少的 worker
+         */
+        @Override
+        protected Worker doSelect(WorkerSelectArgument args, List<Worker> workers) {
+            DispatchOption dispatchOption = args.getDispatchOption();
+            float cpu = WorkerResourceReservations.requirement(dispatchOption.getCpuRequirement());
+            float ram = WorkerResourceReservations.requirement(dispatchOption.getRamRequirement());
+
+            List<Worker> bestFits = new ArrayList<>();
+            WorkerAvailableResource best = null;
+            for (Worker worker : workers) {
+                WorkerAvailableResource available = reservations.available(worker);
+                int compared = best == null ? -1 : compareSlack(available, best, cpu, ram);
+                if (compared < 0) {
+                    best = available;
+                    bestFits.clear();
+                    bestFits.add(worker);
+                } else if (compared == 0) {
+                    bestFits.add(worker);
+                }
+            }
+
+            return bestFits.size() == 1 ? bestFits.get(0) : super.doSelect(args, bestFits);
+        }
+
+        private int compareSlack(WorkerAvailableResource r1, WorkerAvailableResource r2, float cpu, float ram) {
+            int compared = Float.compare(r1.getAvailableCpu() - cpu, r2.getAvailableCpu() - cpu);
+            if (compared != 0) {
+                return compared;
+            }
+            compared = Float.compare(r1.getAvailableRam() - ram, r2.getAvailableRam() - ram);
+            if (compared != 0) {
+                return compared;
+            }
+            return Integer.compare(r1.getAvailableQueueLimit(), r2.getAvailableQueueLimit());
+        }
+
+    }
+
     /**
      * @author Brozen
      * @since 2023-02-01
@@ -237,6 +351,7 @@ public class DispatchOption implements Serializable {
      *     <li>{@link LoadBalanceType#LEAST_FREQUENTLY_USED}</li>
      *     <li>{@link LoadBalanceType#LEAST_RECENTLY_USED}</li>
      *     <li>{@link LoadBalanceType#CONSISTENT_HASH}</li>
+     *     <li>{@link LoadBalanceType#BIN_PACKING}</li>
      * </ul>
      *
      * @author Brozen
@@ -252,6 +367,16 @@ public class DispatchOption implements Serializable {
          */
         Worker select(WorkerSelectArgument args, List<Worker> workers);
 
+        /**
+         * 基于可用 worker 索引选择作业上下文应当下发给的worker。默认实现使用索引中未被排除的 worker 调用 {@link #select(WorkerSelectArgument, List)}
+         *
+         * @param args  worker 选择参数
+         * @param index 可用 worker 的索引
+         */
+        default Worker select(WorkerSelectArgument args, WorkerIndex index) {
+            return select(args, index.workers());
+        }
+
     }
 
     /**
@@ -269,15 +394,23 @@ public class DispatchOption implements Serializable {
         @Setter
         private LBServerStatisticsProvider lbServerStatisticsProvider = LBServerStatisticsProvider.EMPTY_PROVIDER;
 
+        /**
+         * worker 资源预占，与 {@link org.limbo.flowjob.broker.core.worker.WorkerRegistry#reservations()} 一致。
+         * 未设置时只根据 worker 上报的资源判断
+         */
+        @Setter
+        private WorkerResourceReservations reservations = new WorkerResourceReservations(0);
+
         private final Map<LoadBalanceType, Supplier<WorkerSelector>> selectors = new EnumMap<>(LoadBalanceType.class);
 
         public WorkerSelectorFactory() {
-            selectors.put(LoadBalanceType.ROUND_ROBIN, () -> new FilteringWorkerSelector(new RoundRobinLBStrategy<>()));
-            selectors.put(LoadBalanceType.RANDOM, () -> new FilteringWorkerSelector(new RandomLBStrategy<>()));
-            selectors.put(LoadBalanceType.LEAST_FREQUENTLY_USED, () -> new FilteringWorkerSelector(new LFULBStrategy<>(this.lbServerStatisticsProvider)));
-            selectors.put(LoadBalanceType.LEAST_RECENTLY_USED, () -> new FilteringWorkerSelector(new LRULBStrategy<>(this.lbServerStatisticsProvider)));
-            selectors.put(LoadBalanceType.APPOINT, () -> new FilteringWorkerSelector(new AppointLBStrategy<>()));
-            selectors.put(LoadBalanceType.CONSISTENT_HASH, () -> new FilteringWorkerSelector(new ConsistentHashLBStrategy<>()));
+            selectors.put(LoadBalanceType.ROUND_ROBIN, () -> new FilteringWorkerSelector(new RoundRobinLBStrategy<>(), this.reservations));
+            selectors.put(LoadBalanceType.RANDOM, () -> new FilteringWorkerSelector(new RandomLBStrategy<>(), this.reservations));
+            selectors.put(LoadBalanceType.LEAST_FREQUENTLY_USED, () -> new FilteringWorkerSelector(new LFULBStrategy<>(this.lbServerStatisticsProvider), this.reservations));
+            selectors.put(LoadBalanceType.LEAST_RECENTLY_USED, () -> new FilteringWorkerSelector(new LRULBStrategy<>(this.lbServerStatisticsProvider), this.reservations));
+            selectors.put(LoadBalanceType.APPOINT, () -> new FilteringWorkerSelector(new AppointLBStrategy<>(), this.reservations));
+            selectors.put(LoadBalanceType.CONSISTENT_HASH, () -> new FilteringWorkerSelector(new ConsistentHashLBStrategy<>(), this.reservations));
+            selectors.put(LoadBalanceType.BIN_PACKING, () -> new BinPackingWorkerSelector(this.reservations));
         }
 
         /**
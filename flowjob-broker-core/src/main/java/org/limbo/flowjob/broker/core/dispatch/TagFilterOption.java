@@ -15,28 +15,51 @@
  */
 package org.limbo.flowjob.broker.core.dispatch;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import lombok.AccessLevel;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Setter;
 import org.apache.commons.collections4.CollectionUtils;
 import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.broker.core.worker.WorkerIndex;
 import org.limbo.flowjob.api.constants.TagFilterCondition;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 /**
  * 根据标签过滤
+ * <p>
+ * 过滤条件在首次使用时编译（正则预编译、值集合转为 {@link Set}），编译结果缓存在实例中，
+ * 并按过滤条件全局缓存，同一作业的多个任务各自反序列化出的过滤条件也共享同一份编译结果。
  *
  * @author Brozen
  * @since 2022-12-14
  */
-@Builder
 @Setter(AccessLevel.NONE)
+@EqualsAndHashCode
 public class TagFilterOption {
 
+    /**
+     * 编译结果的全局缓存
+     */
+    private static final Cache<TagFilterOption, CompiledTagFilter> COMPILED_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(4096)
+            .build();
+
     /**
      * 标签名
      */
@@ -47,41 +70,298 @@ public class TagFilterOption {
      */
     public final String tagValue;
 
+    /**
+     * 标签值集合，用于 {@link TagFilterCondition#MUST_MATCH_VALUE_IN}、{@link TagFilterCondition#MUST_NOT_MATCH_VALUE_IN}
+     */
+    public final List<String> tagValues;
+
     /**
      * 匹配条件
      */
     public final TagFilterCondition condition;
 
+    /**
+     * 子条件，用于 {@link TagFilterCondition#ALL_OF}、{@link TagFilterCondition#ANY_OF}
+     */
+    public final List<TagFilterOption> filters;
+
+    /**
+     * 编译后的过滤条件
+     */
+    @EqualsAndHashCode.Exclude
+    private transient volatile CompiledTagFilter compiled;
+
+    @Builder
+    @JsonCreator
+    public TagFilterOption(@JsonProperty("tagName") String tagName,
+                           @JsonProperty("tagValue") String tagValue,
+                           @JsonProperty("tagValues") List<String> tagValues,
+                           @JsonProperty("condition") TagFilterCondition condition,
+                           @JsonProperty("filters") List<TagFilterOption> filters) {
+        this.tagName = tagName;
+        this.tagValue = tagValue;
+        this.tagValues = tagValues;
+        this.condition = condition;
+        this.filters = filters;
+    }
+
 
     /**
      * 过滤 Worker，判断是否符合条件。
      */
     public Predicate<Worker> asPredicate() {
-        return worker -> {
-            Map<String, List<String>> tags = worker.getTags();
+        return compile();
+    }
+
+
+    /**
+     * 基于 worker 索引过滤，直接修改候选 worker 位图，移除不符合条件的 worker。与 {@link #asPredicate()} 的判断逻辑一致。
+     *
+     * @param index worker 索引
+     * @param candidates 候选 worker 位图
+     */
+    public void filter(WorkerIndex index, BitSet candidates) {
+        compile().filter(index, candidates);
+    }
+
+
+    /**
+     * 获取编译后的过滤条件，优先使用实例、全局缓存
+     */
+    public CompiledTagFilter compile() {
+        CompiledTagFilter filter = this.compiled;
+        if (filter == null) {
+            try {
+                filter = COMPILED_CACHE.get(this, this::doCompile);
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                throw new IllegalArgumentException("Invalid tag filter " + this, e.getCause());
+            }
+            this.compiled = filter;
+        }
+        return filter;
+    }
+
+
+    private CompiledTagFilter doCompile() {
+        TagFilterCondition condition = this.condition == null ? TagFilterCondition.UNKNOWN : this.condition;
+        switch (condition) {
+            case EXISTS:
+                return new CompiledTagFilter() {
+                    @Override
+                    public boolean test(Worker worker) {
+                        return CollectionUtils.isNotEmpty(values(worker));
+                    }
+
+                    @Override
+                    public void filter(WorkerIndex index, BitSet candidates) {
+                        candidates.and(index.withTag(tagName));
+                    }
+                };
+
+            case NOT_EXISTS:
+                return new CompiledTagFilter() {
+                    @Override
+                    public boolean test(Worker worker) {
+                        return CollectionUtils.isEmpty(values(worker));
+                    }
+
+                    @Override
+                    public void filter(WorkerIndex index, BitSet candidates) {
+                        candidates.andNot(index.withTag(tagName));
+                    }
+                };
 
-            List<String> values = tags.get(this.tagName);
-            switch (this.condition) {
-                case EXISTS:
-                    return CollectionUtils.isNotEmpty(values);
+            case MUST_MATCH_VALUE:
+                return new CompiledTagFilter() {
+                    @Override
+                    public boolean test(Worker worker) {
+                        List<String> values = values(worker);
+                        return CollectionUtils.isNotEmpty(values) && values.contains(tagValue);
+                    }
 
-                case NOT_EXISTS:
-                    return CollectionUtils.isEmpty(values);
+                    @Override
+                    public void filter(WorkerIndex index, BitSet candidates) {
+                        candidates.and(index.withTagValue(tagName, tagValue));
+                    }
+                };
 
-                case MUST_MATCH_VALUE:
-                    return CollectionUtils.isNotEmpty(values) && values.contains(this.tagValue);
+            case MUST_NOT_MATCH_VALUE:
+                return new CompiledTagFilter() {
+                    @Override
+                    public boolean test(Worker worker) {
+                        List<String> values = values(worker);
+                        return CollectionUtils.isNotEmpty(values) && !values.contains(tagValue);
+                    }
 
-                case MUST_NOT_MATCH_VALUE:
-                    return CollectionUtils.isNotEmpty(values) && !values.contains(this.tagValue);
+                    @Override
+                    public void filter(WorkerIndex index, BitSet candidates) {
+                        candidates.and(index.withTag(tagName));
+                        candidates.andNot(index.withTagValue(tagName, tagValue));
+                    }
+                };
 
-                case MUST_MATCH_VALUE_REGEX:
-                    Pattern pattern = Pattern.compile(this.tagValue);
-                    return CollectionUtils.isNotEmpty(values) && values.stream().anyMatch(s -> pattern.matcher(s).find());
+            case MUST_MATCH_VALUE_REGEX:
+                Pattern pattern = Pattern.compile(tagValue);
+                return new CompiledTagFilter() {
+                    @Override
+                    public boolean test(Worker worker) {
+                        List<String> values = values(worker);
+                        if (CollectionUtils.isEmpty(values)) {
+                            return false;
+                        }
+                        for (String value : values) {
+                            if (pattern.matcher(value).find()) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
 
-                default:
-                    return false;
+                    @Override
+                    public void filter(WorkerIndex index, BitSet candidates) {
+                        BitSet matched = new BitSet();
+                        for (Map.Entry<String, BitSet> value : index.tagValues(tagName).entrySet()) {
+                            if (pattern.matcher(value.getKey()).find()) {
+                                matched.or(value.getValue());
+                            }
+                        }
+                        candidates.and(matched);
+                    }
+                };
+
+            case MUST_MATCH_VALUE_IN:
+            case MUST_NOT_MATCH_VALUE_IN:
+                Set<String> valueSet = tagValues == null ? Collections.emptySet() : new HashSet<>(tagValues);
+                boolean match = condition == TagFilterCondition.MUST_MATCH_VALUE_IN;
+                return new CompiledTagFilter() {
+                    @Override
+                    public boolean test(Worker worker) {
+                        List<String> values = values(worker);
+                        if (CollectionUtils.isEmpty(values)) {
+                            return false;
+                        }
+                        for (String value : values) {
+                            if (valueSet.contains(value)) {
+                                return match;
+                            }
+                        }
+                        return !match;
+                    }
+
+                    @Override
+                    public void filter(WorkerIndex index, BitSet candidates) {
+                        BitSet matched = new BitSet();
+                        for (String value : valueSet) {
+                            matched.or(index.withTagValue(tagName, value));
+                        }
+                        if (match) {
+                            candidates.and(matched);
+                        } else {
+                            candidates.and(index.withTag(tagName));
+                            candidates.andNot(matched);
+                        }
+                    }
+                };
+
+            case ALL_OF:
+            case ANY_OF:
+                List<CompiledTagFilter> children = new ArrayList<>();
+                if (filters != null) {
+                    for (TagFilterOption filter : filters) {
+                        children.add(filter.compile());
+                    }
+                }
+                return condition == TagFilterCondition.ALL_OF ? allOf(children) : anyOf(children);
+
+            default:
+                return new CompiledTagFilter() {
+                    @Override
+                    public boolean test(Worker worker) {
+                        return false;
+                    }
+
+                    @Override
+                    public void filter(WorkerIndex index, BitSet candidates) {
+                        candidates.clear();
+                    }
+                };
+        }
+    }
+
+
+    private List<String> values(Worker worker) {
+        Map<String, List<String>> tags = worker.getTags();
+        return tags == null ? null : tags.get(tagName);
+    }
+
+
+    /**
+     * 所有子条件都满足
+     */
+    private static CompiledTagFilter allOf(List<CompiledTagFilter> children) {
+        return new CompiledTagFilter() {
+            @Override
+            public boolean test(Worker worker) {
+                for (CompiledTagFilter child : children) {
+                    if (!child.test(worker)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void filter(WorkerIndex index, BitSet candidates) {
+                for (CompiledTagFilter child : children) {
+                    if (candidates.isEmpty()) {
+                        return;
+                    }
+                    child.filter(index, candidates);
+                }
             }
         };
     }
 
+
+    /**
+     * 任一子条件满足，没有子条件时不满足
+     */
+    private static CompiledTagFilter anyOf(List<CompiledTagFilter> children) {
+        return new CompiledTagFilter() {
+            @Override
+            public boolean test(Worker worker) {
+                for (CompiledTagFilter child : children) {
+                    if (child.test(worker)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public void filter(WorkerIndex index, BitSet candidates) {
+                BitSet matched = new BitSet();
+                for (CompiledTagFilter child : children) {
+                    BitSet copy = (BitSet) candidates.clone();
+                    child.filter(index, copy);
+                    matched.or(copy);
+                }
+                candidates.and(matched);
+            }
+        };
+    }
+
+
+    /**
+     * 编译后的标签过滤条件，可以逐个判断 worker，也可以基于索引批量过滤
+     */
+    public interface CompiledTagFilter extends Predicate<Worker> {
+
+        /**
+         * 基于 worker 索引过滤，直接修改候选 worker 位图
+         */
+        void filter(WorkerIndex index, BitSet candidates);
+
+    }
+
 }
@@ -0,0 +1,195 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.dispatch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.limbo.flowjob.broker.core.domain.task.Task;
+import org.limbo.flowjob.broker.core.worker.Worker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 合并下发到同一个 worker 的任务。在时间窗口内下发到同一 worker 的任务会合并为一次批量请求，
+ * 达到批量大小时立即发送，worker 返回每个任务的接收结果。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Slf4j
+public class TaskBatchSender {
+
+    /**
+     * 合并时间窗口，毫秒
+     */
+    private final long window;
+
+    /**
+     * 单次批量请求的最大任务数
+     */
+    private final int batchSize;
+
+    /**
+     * 未发送的批次，workerId -> 批次
+     */
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService timer;
+
+    private volatile boolean closed;
+
+    public TaskBatchSender(long window, int batchSize) {
+        this.window = window;
+        this.batchSize = batchSize;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "flowjob-task-batch-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * 将任务加入 worker 的批次中，批次发送后返回 worker 是否接受了任务
+     */
+    public CompletableFuture<Boolean> send(Worker worker, Task task) {
+        // 已关闭时不再合并，直接发送
+        if (closed) {
+            return sendAsync(() -> worker.sendTaskAsync(task)).thenApply(Boolean.TRUE::equals);
+        }
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        Batch[] fullBatch = new Batch[1];
+        batches.compute(worker.getId(), (workerId, batch) -> {
+            if (batch == null) {
+                Batch newBatch = new Batch(worker);
+                timer.schedule(() -> flush(workerId, newBatch), window, TimeUnit.MILLISECONDS);
+                batch = newBatch;
+            }
+
+            batch.tasks.add(task);
+            batch.futures.add(future);
+            if (batch.tasks.size() >= batchSize) {
+                fullBatch[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+
+        if (fullBatch[0] != null) {
+            doSend(fullBatch[0]);
+        }
+        return future;
+    }
+
+
+    /**
+     * 时间窗口到期，发送批次。批次已因达到批量大小发送过则忽略
+     */
+    private void flush(String workerId, Batch batch) {
+        if (batches.remove(workerId, batch)) {
+            doSend(batch);
+        }
+    }
+
+
+    /**
+     * 发送批次，只有一个任务时使用单任务接口
+     */
+    private void doSend(Batch batch) {
+        if (batch.tasks.size() == 1) {
+            Task task = batch.tasks.get(0);
+            CompletableFuture<Boolean> future = batch.futures.get(0);
+            sendAsync(() -> batch.worker.sendTaskAsync(task)).whenComplete((accepted, e) -> {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(Boolean.TRUE.equals(accepted));
+                }
+            });
+            return;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("send {} tasks to worker {}", batch.tasks.size(), batch.worker.getId());
+        }
+        sendAsync(() -> batch.worker.sendTasksAsync(batch.tasks)).whenComplete((results, e) -> {
+            for (int i = 0; i < batch.tasks.size(); i++) {
+                CompletableFuture<Boolean> future = batch.futures.get(i);
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(Boolean.TRUE.equals(results.get(batch.tasks.get(i).getTaskId())));
+                }
+            }
+        });
+    }
+
+
+    /**
+     * 发起请求，请求发起时的异常转为异常完成
+     */
+    private <T> CompletableFuture<T> sendAsync(Supplier<CompletableFuture<T>> sender) {
+        try {
+            return sender.get();
+        } catch (Exception e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+
+    /**
+     * 停止合并，立即发送尚未到期的批次并关闭定时线程，broker 停止时调用
+     */
+    public void close() {
+        closed = true;
+        timer.shutdownNow();
+        for (Map.Entry<String, Batch> entry : batches.entrySet()) {
+            flush(entry.getKey(), entry.getValue());
+        }
+    }
+
+
+    /**
+     * 发送到同一 worker 的一批任务
+     */
+    private static class Batch {
+
+        private final Worker worker;
+
+        private final List<Task> tasks = new ArrayList<>();
+
+        private final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        Batch(Worker worker) {
+            this.worker = worker;
+        }
+
+    }
+
+}
@@ -19,18 +19,17 @@
 package org.limbo.flowjob.broker.core.dispatch;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 import org.limbo.flowjob.broker.core.exceptions.JobDispatchException;
 import org.limbo.flowjob.broker.core.statistics.WorkerStatisticsRepository;
 import org.limbo.flowjob.broker.core.worker.Worker;
-import org.limbo.flowjob.broker.core.worker.WorkerRepository;
+import org.limbo.flowjob.broker.core.worker.WorkerIndex;
+import org.limbo.flowjob.broker.core.worker.WorkerRegistry;
+import org.limbo.flowjob.broker.core.worker.metric.WorkerResourceReservations;
 import org.limbo.flowjob.api.constants.TaskStatus;
 
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Devil
@@ -39,16 +38,41 @@ import java.util.stream.Collectors;
 @Slf4j
 public class TaskDispatcher {
 
-    private final WorkerRepository workerRepository;
+    /**
+     * 选择 worker 下发时的最大尝试次数
+     */
+    private static final int MAX_SELECT_TIMES = 3;
+
+    private final WorkerRegistry workerRegistry;
 
     private final DispatchOption.WorkerSelectorFactory workerSelectorFactory;
 
     private final WorkerStatisticsRepository statisticsRepository;
 
-    public TaskDispatcher(WorkerRepository workerRepository, DispatchOption.WorkerSelectorFactory workerSelectorFactory, WorkerStatisticsRepository statisticsRepository) {
-        this.workerRepository = workerRepository;
+    /**
+     * 异步下发时合并同一 worker 的任务，为空时不合并
+     */
+    private final TaskBatchSender batchSender;
+
+    public TaskDispatcher(WorkerRegistry workerRegistry, DispatchOption.WorkerSelectorFactory workerSelectorFactory, WorkerStatisticsRepository statisticsRepository) {
+        this(workerRegistry, workerSelectorFactory, statisticsRepository, null);
+    }
+
+    public TaskDispatcher(WorkerRegistry workerRegistry, DispatchOption.WorkerSelectorFactory workerSelectorFactory,
+                          WorkerStatisticsRepository statisticsRepository, TaskBatchSender batchSender) {
+        this.workerRegistry = workerRegistry;
         this.workerSelectorFactory = workerSelectorFactory;
         this.statisticsRepository = statisticsRepository;
+        this.batchSender = batchSender;
+    }
+
+    /**
+     * 关闭任务合并发送，broker 停止时调用
+     */
+    public void close() {
+        if (batchSender != null) {
+            batchSender.close();
+        }
     }
 
     /**
@@ -75,11 +99,17 @@ public class TaskDispatcher {
      *  指定 worker 的任务
      */
     private boolean dispatchWithWorkerId(Task task) {
-        Worker worker = workerRepository.get(task.getWorkerId());
+        Worker worker = workerRegistry.get(task.getWorkerId());
         if (worker == null || !worker.isAlive() || !worker.isEnabled()) {
             return false;
         }
 
+        // 与选择 worker 下发一样预占资源，指定的 worker 资源已被占满时本次不下发
+        WorkerResourceReservations.Reservation reservation = reserve(task, worker);
+        if (reservation == null) {
+            return false;
+        }
+
         try {
             // 发送任务到worker，根据worker返回结果，更新状态
             boolean dispatched = worker.sendTask(task);
@@ -87,9 +117,10 @@ public class TaskDispatcher {
                 onDispatchSucceed(task, worker);
                 return true;
             } else {
-                onDispatchToWorkerFailed(task, worker);
+                onDispatchToWorkerFailed(task, worker, reservation);
             }
         } catch (Exception e) {
+            workerRegistry.reservations().release(reservation);
             log.error("Task dispatch with error task={}", task, e);
         }
 
@@ -102,12 +133,13 @@ public class TaskDispatcher {
      * 需要worker选择的任务
      */
     private boolean dispatchWithWorkerSelect(Task task) {
-        List<Worker> availableWorkers = workerRepository.listAvailableWorkers();
-        if (CollectionUtils.isEmpty(availableWorkers)) {
+        WorkerIndex availableWorkers = workerRegistry.index();
+        if (availableWorkers.isEmpty()) {
             return false;
         }
         DispatchOption.WorkerSelector workerSelector = workerSelectorFactory.newSelector(task.getDispatchOption().getLoadBalanceType());
-        for (int i = 0; i < 3; i++) {
+        for (int i = 0; i < MAX_SELECT_TIMES; i++) {
+            WorkerResourceReservations.Reservation reservation = null;
             try {
                 SimpleWorkerSelectArguments args = new SimpleWorkerSelectArguments(task);
                 Worker worker = workerSelector.select(args, availableWorkers);
@@ -115,17 +147,22 @@ public class TaskDispatcher {
                     return false;
                 }
 
-                // 发送任务到worker，根据worker返回结果，更新状态
-                boolean dispatched = worker.sendTask(task);
-                if (dispatched) {
-                    onDispatchSucceed(task, worker);
-                    return true;
-                } else {
-                    onDispatchToWorkerFailed(task, worker);
+                // 预占资源，并发下发导致资源已被占满时重新选择
+                reservation = reserve(task, worker);
+                if (reservation != null) {
+                    // 发送任务到worker，根据worker返回结果，更新状态
+                    boolean dispatched = worker.sendTask(task);
+                    if (dispatched) {
+                        onDispatchSucceed(task, worker);
+                        return true;
+                    } else {
+                        onDispatchToWorkerFailed(task, worker, reservation);
+                    }
                 }
 
-                availableWorkers = availableWorkers.stream().filter(w -> !Objects.equals(w.getId(), worker.getId())).collect(Collectors.toList());
+                availableWorkers = availableWorkers.without(worker.getId());
             } catch (Exception e) {
+                workerRegistry.reservations().release(reservation);
                 log.error("Task dispatch with error task={}", task, e);
             }
         }
@@ -136,6 +173,122 @@ public class TaskDispatcher {
     }
 
 
+    /**
+     * 异步将任务下发给worker，下发请求不占用调用线程。
+     * task status -> EXECUTING or FAILED
+     *
+     * @return 下发完成后返回是否下发成功，不会异常完成
+     */
+    public CompletableFuture<Boolean> dispatchAsync(Task task) {
+        if (log.isDebugEnabled()) {
+            log.debug("start async dispatch task={}", task);
+        }
+
+        if (task.getStatus() != TaskStatus.DISPATCHING) {
+            throw new JobDispatchException(task.getJobId(), task.getTaskId(), "Cannot startup context due to current status: " + task.getStatus());
+        }
+
+        if (StringUtils.isBlank(task.getWorkerId())) {
+            WorkerIndex availableWorkers = workerRegistry.index();
+            if (availableWorkers.isEmpty()) {
+                return CompletableFuture.completedFuture(false);
+            }
+            DispatchOption.WorkerSelector workerSelector = workerSelectorFactory.newSelector(task.getDispatchOption().getLoadBalanceType());
+            return dispatchWithWorkerSelectAsync(task, workerSelector, availableWorkers, 0);
+        } else {
+            return dispatchWithWorkerIdAsync(task);
+        }
+    }
+
+    /**
+     * 异步下发指定 worker 的任务
+     */
+    private CompletableFuture<Boolean> dispatchWithWorkerIdAsync(Task task) {
+        Worker worker = workerRegistry.get(task.getWorkerId());
+        if (worker == null || !worker.isAlive() || !worker.isEnabled()) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        // 与选择 worker 下发一样预占资源，指定的 worker 资源已被占满时本次不下发
+        WorkerResourceReservations.Reservation reservation = reserve(task, worker);
+        if (reservation == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return sendTaskAsync(task, worker, reservation).thenApply(dispatched -> {
+            if (!dispatched) {
+                onDispatchFailed(task);
+            }
+            return dispatched;
+        });
+    }
+
+    /**
+     * 异步下发需要worker选择的任务，下发失败时排除失败的 worker 重新选择
+     */
+    private CompletableFuture<Boolean> dispatchWithWorkerSelectAsync(Task task, DispatchOption.WorkerSelector workerSelector,
+                                                                     WorkerIndex availableWorkers, int times) {
+        if (times >= MAX_SELECT_TIMES) {
+            onDispatchFailed(task);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        Worker worker;
+        try {
+            worker = workerSelector.select(new SimpleWorkerSelectArguments(task), availableWorkers);
+        } catch (Exception e) {
+            log.error("Task dispatch with error task={}", task, e);
+            return dispatchWithWorkerSelectAsync(task, workerSelector, availableWorkers, times + 1);
+        }
+        if (worker == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        // 预占资源，并发下发导致资源已被占满时重新选择
+        WorkerResourceReservations.Reservation reservation = reserve(task, worker);
+        if (reservation == null) {
+            return dispatchWithWorkerSelectAsync(task, workerSelector, availableWorkers.without(worker.getId()), times + 1);
+        }
+
+        return sendTaskAsync(task, worker, reservation).thenCompose(dispatched -> {
+            if (dispatched) {
+                return CompletableFuture.completedFuture(true);
+            }
+
+            return dispatchWithWorkerSelectAsync(task, workerSelector, availableWorkers.without(worker.getId()), times + 1);
+        });
+    }
+
+    /**
+     * 异步发送任务到worker，根据worker返回结果，更新状态。发送异常视为下发失败，释放资源预占
+     */
+    private CompletableFuture<Boolean> sendTaskAsync(Task task, Worker worker, WorkerResourceReservations.Reservation reservation) {
+        CompletableFuture<Boolean> future;
+        try {
+            future = batchSender != null ? batchSender.send(worker, task) : worker.sendTaskAsync(task);
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        return future.handle((dispatched, e) -> {
+            if (e != null) {
+                workerRegistry.reservations().release(reservation);
+                log.error("Task dispatch with error task={}", task, e);
+                return false;
+            }
+
+            if (Boolean.TRUE.equals(dispatched)) {
+                onDispatchSucceed(task, worker);
+                return true;
+            } else {
+                onDispatchToWorkerFailed(task, worker, reservation);
+                return false;
+            }
+        });
+    }
+
+
     /**
      * 下发任务到 worker 成功时的流程
      */
@@ -154,9 +307,22 @@ public class TaskDispatcher {
 
 
     /**
-     * 下发任务到 worker 失败时的流程
+     * 按作业的资源需求在 worker 上预占资源，资源不足时返回 null
+     */
+    private WorkerResourceReservations.Reservation reserve(Task task, Worker worker) {
+        DispatchOption dispatchOption = task.getDispatchOption();
+        return workerRegistry.reservations().reserve(worker,
+                WorkerResourceReservations.requirement(dispatchOption.getCpuRequirement()),
+                WorkerResourceReservations.requirement(dispatchOption.getRamRequirement()));
+    }
+
+
+    /**
+     * 下发任务到 worker 失败时的流程，释放资源预占
      */
-    private void onDispatchToWorkerFailed(Task task, Worker worker) {
+    private void onDispatchToWorkerFailed(Task task, Worker worker, WorkerResourceReservations.Reservation reservation) {
+        workerRegistry.reservations().release(reservation);
+
         if (log.isDebugEnabled()) {
             log.debug("Task dispatch failed: task={} worker={}", task.getTaskId(), worker.getId());
         }
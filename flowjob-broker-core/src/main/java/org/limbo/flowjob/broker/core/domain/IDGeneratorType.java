@@ -0,0 +1,39 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.domain;
+
+/**
+ * ID 生成方式
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public enum IDGeneratorType {
+
+    /**
+     * 从 DB 获取号段，生成的 ID 按类型连续递增
+     */
+    SEGMENT,
+
+    /**
+     * 雪花算法，根据时间戳、broker 节点 ID、序列号生成，不访问 DB
+     */
+    SNOWFLAKE,
+
+}
@@ -0,0 +1,116 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.domain;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 雪花算法 ID 生成器，不访问 DB，所有 ID 类型共用一个序列。
+ * <p>
+ * ID 由 41 位毫秒时间戳（相对 {@link #EPOCH}）、10 位节点 ID、12 位序列号组成。
+ * 同一毫秒内序列号用尽时等待时钟前进到下一毫秒；时钟回拨时沿用上次的时间戳继续递增，序列号用尽时等待时钟追上，
+ * 生成的时间戳不会超前于本机时钟，保证单节点内 ID 不重复。
+ * 不同 broker 必须使用不同的节点 ID。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class SnowflakeIDGenerator implements IDGenerator {
+
+    /**
+     * 时间戳起点，2023-01-01 00:00:00 UTC
+     */
+    public static final long EPOCH = 1672531200000L;
+
+    private static final int NODE_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    /**
+     * 最大节点 ID
+     */
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+
+    /**
+     * 上次生成 ID 的时间戳与序列号，高位为时间戳，低 {@link #SEQUENCE_BITS} 位为序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIDGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("snowflake node id must be in range 0 ~ " + MAX_NODE_ID + ", but got " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String generateId(IDType type) {
+        return String.valueOf(nextId());
+    }
+
+    /**
+     * 生成 ID
+     */
+    public long nextId() {
+        long next;
+        while (true) {
+            long prev = state.get();
+            long lastTimestamp = prev >>> SEQUENCE_BITS;
+            long timestamp = System.currentTimeMillis() - EPOCH;
+            if (timestamp > lastTimestamp) {
+                // 时间前进时序列号从 0 开始
+                next = timestamp << SEQUENCE_BITS;
+            } else if ((prev & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                // 同一毫秒内或时钟回拨时，在上次基础上递增
+                next = prev + 1;
+            } else {
+                // 序列号用尽，等待时钟前进，不借用未来的时间戳
+                waitUntilAfter(lastTimestamp, timestamp);
+                continue;
+            }
+
+            if (state.compareAndSet(prev, next)) {
+                break;
+            }
+        }
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+
+    /**
+     * 等待时钟越过 lastTimestamp。相差不到 1ms 时让出 CPU 自旋，时钟回拨导致相差较多时休眠
+     */
+    private void waitUntilAfter(long lastTimestamp, long timestamp) {
+        if (timestamp < lastTimestamp) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(lastTimestamp - timestamp));
+        } else {
+            Thread.yield();
+        }
+    }
+
+}
@@ -26,7 +26,7 @@ import org.limbo.flowjob.broker.core.domain.IDType;
 import org.limbo.flowjob.broker.core.domain.job.JobInfo;
 import org.limbo.flowjob.broker.core.domain.job.JobInstance;
 import org.limbo.flowjob.broker.core.worker.Worker;
-import org.limbo.flowjob.broker.core.worker.WorkerRepository;
+import org.limbo.flowjob.broker.core.worker.WorkerRegistry;
 import org.limbo.flowjob.common.utils.attribute.Attributes;
 import org.limbo.flowjob.common.utils.time.TimeUtils;
 
@@ -48,14 +48,14 @@ public class TaskFactory {
      */
     private final Map<TaskType, TaskCreator> creators;
 
-    private final WorkerRepository workerRepository;
+    private final WorkerRegistry workerRegistry;
 
     private final TaskManager taskManager;
 
     private final IDGenerator idGenerator;
 
-    public TaskFactory(WorkerRepository workerRepository, TaskManager taskManager, IDGenerator idGenerator) {
-        this.workerRepository = workerRepository;
+    public TaskFactory(WorkerRegistry workerRegistry, TaskManager taskManager, IDGenerator idGenerator) {
+        this.workerRegistry = workerRegistry;
         this.taskManager = taskManager;
         this.idGenerator = idGenerator;
 
@@ -134,7 +134,7 @@ public class TaskFactory {
 
         @Override
         public List<Task> tasks(JobInstance instance) {
-            List<Worker> workers = workerRepository.listAvailableWorkers();
+            List<Worker> workers = workerRegistry.availableWorkers();
             if (CollectionUtils.isEmpty(workers)) {
                 return Collections.emptyList();
             }
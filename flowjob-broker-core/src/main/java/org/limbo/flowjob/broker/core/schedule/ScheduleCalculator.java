@@ -22,6 +22,8 @@ import org.limbo.flowjob.common.utils.time.TimeUtils;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 调度时间计算策略，用于计算下次触发调度时间戳
@@ -66,7 +68,7 @@ public abstract class ScheduleCalculator {
         if (calculated.lastTriggerAt() == null) {
             Instant nowInstant = TimeUtils.currentInstant();
             long startScheduleAt = calculateStartScheduleTimestamp(calculated.scheduleOption());
-            return Math.max(startScheduleAt, nowInstant.getEpochSecond());
+            return Math.max(startScheduleAt, nowInstant.toEpochMilli());
         }
 
         return doCalculate(calculated);
@@ -74,6 +76,34 @@ public abstract class ScheduleCalculator {
 
     public abstract Long doCalculate(Calculated calculated);
 
+    /**
+     * 批量计算窗口内的触发时间戳，第一个触发时间总会返回（即使已超出窗口），之后的触发时间不超过窗口结束时间后的第一个。
+     * 不支持预计算的策略（如依赖反馈时间的固定延迟）只返回下一次触发时间。
+     * @param calculated 待调度对象
+     * @param windowEndAt 窗口结束时间戳，毫秒
+     * @param limit 最多返回的触发次数
+     * @return 按时间顺序排列的触发时间戳，没有触发时间时返回空列表
+     */
+    public List<Long> calculateWithin(Calculated calculated, long windowEndAt, int limit) {
+        List<Long> triggerAts = new ArrayList<>();
+        Long triggerAt = calculate(calculated);
+        while (triggerAt != null && triggerAt > NO_TRIGGER && triggerAts.size() < limit) {
+            triggerAts.add(triggerAt);
+            if (!isPrecomputable() || triggerAt >= windowEndAt) {
+                break;
+            }
+            triggerAt = doCalculate(new PrecomputedCalculated(calculated, TimeUtils.toLocalDateTime(triggerAt)));
+        }
+        return triggerAts;
+    }
+
+    /**
+     * 下次触发时间是否只依赖上次触发时间，可以提前批量计算
+     */
+    public boolean isPrecomputable() {
+        return false;
+    }
+
     public ScheduleType getScheduleType() {
         return scheduleType;
     }
@@ -90,4 +120,36 @@ public abstract class ScheduleCalculator {
         return delay != null ? startScheduleAt + delay.toMillis() : startScheduleAt;
     }
 
+
+    /**
+     * 批量计算时，将已计算出的触发时间作为上次触发时间
+     */
+    private static class PrecomputedCalculated implements Calculated {
+
+        private final Calculated calculated;
+
+        private final LocalDateTime lastTriggerAt;
+
+        private PrecomputedCalculated(Calculated calculated, LocalDateTime lastTriggerAt) {
+            this.calculated = calculated;
+            this.lastTriggerAt = lastTriggerAt;
+        }
+
+        @Override
+        public ScheduleOption scheduleOption() {
+            return calculated.scheduleOption();
+        }
+
+        @Override
+        public LocalDateTime lastTriggerAt() {
+            return lastTriggerAt;
+        }
+
+        @Override
+        public LocalDateTime lastFeedbackAt() {
+            return calculated.lastFeedbackAt();
+        }
+
+    }
+
 }
@@ -21,15 +21,16 @@ import java.time.LocalDateTime;
 /**
  * 待调度对象接口
  *
+ * @param <K> 调度对象ID类型，需正确实现 equals、hashCode
  * @author Brozen
  * @since 2021-07-12
  */
-public interface Scheduled {
+public interface Scheduled<K> {
 
     /**
-     * 获取调度对象ID
+     * 获取调度对象ID，每次触发都会调用，实现类应缓存ID避免重复创建
      */
-    String scheduleId();
+    K scheduleId();
 
     /**
      * 任务执行
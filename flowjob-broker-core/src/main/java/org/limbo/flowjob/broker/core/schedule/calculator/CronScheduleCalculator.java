@@ -21,14 +21,22 @@ import com.cronutils.model.definition.CronDefinition;
 import com.cronutils.model.definition.CronDefinitionBuilder;
 import com.cronutils.model.time.ExecutionTime;
 import com.cronutils.parser.CronParser;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 import org.limbo.flowjob.api.constants.ScheduleType;
 import org.limbo.flowjob.broker.core.schedule.Calculated;
 import org.limbo.flowjob.broker.core.schedule.ScheduleCalculator;
 import org.limbo.flowjob.broker.core.schedule.ScheduleOption;
 
+import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 /**
  * CRON调度时间计算器
@@ -39,8 +47,32 @@ import java.util.Optional;
 @Slf4j
 public class CronScheduleCalculator extends ScheduleCalculator {
 
+    /**
+     * 编译后的CRON表达式缓存上限
+     */
+    private static final int EXECUTION_TIME_CACHE_SIZE = 10240;
+
+    /**
+     * 各类型CRON的解析器，CronDefinition、CronParser 创建后不可变，可复用
+     */
+    private final Map<CronType, CronParser> parsers;
+
+    /**
+     * 编译后的CRON表达式，相同表达式的计划共用一个 ExecutionTime
+     */
+    private final Cache<CronKey, ExecutionTime> executionTimes;
+
     protected CronScheduleCalculator() {
         super(ScheduleType.CRON);
+        this.parsers = new EnumMap<>(CronType.class);
+        for (CronType cronType : CronType.values()) {
+            CronDefinition cronDefinition = CronDefinitionBuilder.instanceDefinitionFor(cronType);
+            this.parsers.put(cronType, new CronParser(cronDefinition));
+        }
+        this.executionTimes = CacheBuilder.newBuilder()
+                .maximumSize(EXECUTION_TIME_CACHE_SIZE)
+                .recordStats()
+                .build();
     }
 
     /**
@@ -55,13 +87,17 @@ public class CronScheduleCalculator extends ScheduleCalculator {
         String cron = scheduleOption.getScheduleCron();
         String cronType = scheduleOption.getScheduleCronType();
         try {
-            // 校验CRON表达式
-            CronDefinition cronDefinition = CronDefinitionBuilder.instanceDefinitionFor(CronType.valueOf(cronType));
-            CronParser parser = new CronParser(cronDefinition);
-            ExecutionTime executionTime = ExecutionTime.forCron(parser.parse(cron));
+            ExecutionTime executionTime = executionTime(cron, cronType);
 
-            // 解析下次触发时间
-            Optional<ZonedDateTime> nextSchedule = executionTime.nextExecution(ZonedDateTime.now());
+            // 从当前时间和上次触发时间中较晚的一个开始，解析下次触发时间
+            ZonedDateTime now = ZonedDateTime.now();
+            LocalDateTime lastTriggerAt = calculated.lastTriggerAt();
+            ZonedDateTime from = now;
+            if (lastTriggerAt != null) {
+                ZonedDateTime last = lastTriggerAt.atZone(now.getZone());
+                from = last.isAfter(now) ? last : now;
+            }
+            Optional<ZonedDateTime> nextSchedule = executionTime.nextExecution(from);
             if (!nextSchedule.isPresent()) {
                 log.error("cron expression {} {} next schedule is null", cron, cronType);
                 return ScheduleCalculator.NO_TRIGGER;
@@ -74,4 +110,55 @@ public class CronScheduleCalculator extends ScheduleCalculator {
 
     }
 
+    /**
+     * {@inheritDoc}
+     * CRON的触发时间只依赖上次触发时间
+     */
+    @Override
+    public boolean isPrecomputable() {
+        return true;
+    }
+
+    /**
+     * 获取编译后的CRON表达式，未命中缓存时解析并校验表达式
+     * @param cron CRON表达式
+     * @param cronType CRON表达式类型 {@link CronType}
+     * @throws ExecutionException 表达式解析失败
+     */
+    public ExecutionTime executionTime(String cron, String cronType) throws ExecutionException {
+        return executionTimes.get(new CronKey(cron, cronType), () -> {
+            CronParser parser = parsers.get(CronType.valueOf(cronType));
+            return ExecutionTime.forCron(parser.parse(cron));
+        });
+    }
+
+    /**
+     * 编译后CRON表达式缓存的命中统计
+     */
+    public CacheStats executionTimeCacheStats() {
+        return executionTimes.stats();
+    }
+
+    /**
+     * 编译后CRON表达式缓存的数量
+     */
+    public long executionTimeCacheSize() {
+        return executionTimes.size();
+    }
+
+
+    @EqualsAndHashCode
+    private static class CronKey {
+
+        private final String cron;
+
+        private final String cronType;
+
+        private CronKey(String cron, String cronType) {
+            this.cron = cron;
+            this.cronType = cronType;
+        }
+
+    }
+
 }
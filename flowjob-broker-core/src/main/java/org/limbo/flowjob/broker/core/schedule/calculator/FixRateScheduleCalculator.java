@@ -59,5 +59,14 @@ public class FixRateScheduleCalculator extends ScheduleCalculator {
         return Math.max(scheduleAt, now);
     }
 
+    /**
+     * {@inheritDoc}
+     * 固定速度的触发时间只依赖上次触发时间
+     */
+    @Override
+    public boolean isPrecomputable() {
+        return true;
+    }
+
 
 }
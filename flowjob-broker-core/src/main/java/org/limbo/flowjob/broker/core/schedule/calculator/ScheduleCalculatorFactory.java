@@ -16,9 +16,12 @@
 
 package org.limbo.flowjob.broker.core.schedule.calculator;
 
+import com.google.common.cache.CacheStats;
+import lombok.extern.slf4j.Slf4j;
 import org.limbo.flowjob.broker.core.schedule.DelegatedScheduleCalculator;
 import org.limbo.flowjob.broker.core.schedule.ScheduleCalculator;
 import org.limbo.flowjob.api.constants.ScheduleType;
+import org.limbo.flowjob.broker.core.schedule.ScheduleOption;
 
 import java.util.EnumMap;
 import java.util.Map;
@@ -27,6 +30,7 @@ import java.util.Map;
  * @author Brozen
  * @since 2021-05-20
  */
+@Slf4j
 public class ScheduleCalculatorFactory {
 
     /**
@@ -34,9 +38,14 @@ public class ScheduleCalculatorFactory {
      */
     private static final Map<ScheduleType, ScheduleCalculator> scheduleCalculators = new EnumMap<>(ScheduleType.class);
 
+    /**
+     * CRON计算器，持有编译后的CRON表达式缓存
+     */
+    private static final CronScheduleCalculator cronScheduleCalculator = new CronScheduleCalculator();
+
     static {
         scheduleCalculators.put(ScheduleType.UNKNOWN, new NeverScheduleCalculator());
-        scheduleCalculators.put(ScheduleType.CRON, new CronScheduleCalculator());
+        scheduleCalculators.put(ScheduleType.CRON, cronScheduleCalculator);
         scheduleCalculators.put(ScheduleType.FIXED_DELAY, new FixDelayScheduleCalculator());
         scheduleCalculators.put(ScheduleType.FIXED_RATE, new FixRateScheduleCalculator());
     }
@@ -54,4 +63,31 @@ public class ScheduleCalculatorFactory {
 
         throw new IllegalStateException("cannot apply for " + scheduleType);
     }
+
+    /**
+     * 预编译调度配置，在计划加载时调用，避免首次触发时再解析CRON表达式
+     * @param scheduleOption 调度配置
+     * @return 是否编译成功，非CRON调度直接返回true
+     */
+    public static boolean precompile(ScheduleOption scheduleOption) {
+        if (scheduleOption == null || scheduleOption.getScheduleType() != ScheduleType.CRON) {
+            return true;
+        }
+
+        try {
+            cronScheduleCalculator.executionTime(scheduleOption.getScheduleCron(), scheduleOption.getScheduleCronType());
+            return true;
+        } catch (Exception e) {
+            log.error("precompile cron expression {} {} failed!", scheduleOption.getScheduleCron(), scheduleOption.getScheduleCronType(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 编译后CRON表达式缓存的命中统计
+     */
+    public static CacheStats cronCacheStats() {
+        return cronScheduleCalculator.executionTimeCacheStats();
+    }
+
 }
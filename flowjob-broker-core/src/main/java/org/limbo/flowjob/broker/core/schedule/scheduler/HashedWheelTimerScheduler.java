@@ -19,29 +19,66 @@
 package org.limbo.flowjob.broker.core.schedule.scheduler;
 
 import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.limbo.flowjob.broker.core.schedule.Scheduled;
 import org.limbo.flowjob.common.utils.time.TimeUtils;
 
 import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 基于Netty时间轮算法的作业执行器。一个作业申请执行后，会计算下次执行的间隔，并注册到时间轮上。
- * 当时间轮触发作业执行时，将进入作业下发流程，并将生成的实例分发给下游。
+ * 当时间轮触发作业执行时，将作业投递到 {@link #executor(Scheduled)} 返回的执行器中执行，时间轮线程本身只负责投递，
+ * 避免耗时作业阻塞时间轮导致其他作业触发延迟。
  *
  * @author Brozen
  * @since 2021-05-18
  */
 @Slf4j
-public abstract class HashedWheelTimerScheduler<T extends Scheduled> implements Scheduler<T> {
+public abstract class HashedWheelTimerScheduler<K, T extends Scheduled<K>> implements Scheduler<K, T> {
+
+    /**
+     * 执行器拒绝投递后，延迟多久重新投递，毫秒
+     */
+    private static final long REJECTED_RETRY_DELAY = 1000;
+
+    /**
+     * 执行器拒绝投递时，告警日志的最小间隔，毫秒
+     */
+    private static final long REJECTED_WARN_INTERVAL = 10_000;
 
     /**
      * 依赖netty的时间轮算法进行作业调度
      */
     private final Timer timer;
 
+    /**
+     * 最近一次时间轮触发延迟，毫秒
+     */
+    private final AtomicLong lastTickLag = new AtomicLong(0);
+
+    /**
+     * 最大时间轮触发延迟，毫秒
+     */
+    private final LongAccumulator maxTickLag = new LongAccumulator(Long::max, 0);
+
+    /**
+     * 执行器拒绝投递的次数
+     */
+    private final LongAdder rejectedTimes = new LongAdder();
+
+    /**
+     * 上次打印拒绝投递告警的时间
+     */
+    private final AtomicLong lastRejectedWarnAt = new AtomicLong(0);
+
     /**
      * 使用指定执行器构造一个调度器，该调度器基于哈希时间轮算法。
      */
@@ -49,31 +86,115 @@ public abstract class HashedWheelTimerScheduler<T extends Scheduled> implements
         this.timer = new HashedWheelTimer(NamedThreadFactory.newInstance(this.getClass().getSimpleName()), tickDuration, unit);
     }
 
-    protected void calAndSchedule(T scheduled) {
+    /**
+     * 使用指定时间轮构造调度器，如 {@link HierarchicalWheelTimer}
+     */
+    protected HashedWheelTimerScheduler(Timer timer) {
+        this.timer = timer;
+    }
+
+    protected Timeout calAndSchedule(T scheduled) {
         // 计算延迟时间
         long delay = Duration.between(TimeUtils.currentLocalDateTime(), scheduled.scheduleAt()).toMillis();
-        delay = delay < 0 ? 0 : delay;
+        return scheduleAfter(scheduled, delay < 0 ? 0 : delay);
+    }
+
+    /**
+     * 在时间轮上调度作业，延迟指定时间后投递执行
+     */
+    protected Timeout scheduleAfter(T scheduled, long delay) {
+        long expectFireAt = System.currentTimeMillis() + delay;
 
         // 在timer上调度作业执行
-        this.timer.newTimeout(timeout -> {
-            Throwable thrown = null;
+        return this.timer.newTimeout(timeout -> {
+            long lag = System.currentTimeMillis() - expectFireAt;
+            lastTickLag.set(lag);
+            maxTickLag.accumulate(lag);
+            afterExpire(scheduled, timeout);
+
             try {
-                // 已经取消调度了，则不再重新调度作业
-                if (!isScheduling(scheduled.scheduleId())) {
-                    return;
-                }
-
-                scheduled.execute();
-
-            } catch (Exception e) {
-                log.error("[HashedWheelTimerScheduler] schedule fail id:{}", scheduled.scheduleId(), e);
-                thrown = e;
-            } finally {
-                afterExecute(scheduled, thrown);
+                executor(scheduled).execute(() -> doExecute(scheduled));
+            } catch (RejectedExecutionException e) {
+                // 执行器已满，不能阻塞时间轮线程。此时 scheduleAt 已过期，立即重新投递会在每个 tick 空转，延迟一段时间后再投递
+                rejectedTimes.increment();
+                warnRejected(scheduled);
+                scheduleAfter(scheduled, REJECTED_RETRY_DELAY);
             }
         }, delay, TimeUnit.MILLISECONDS);
     }
 
+    private void doExecute(T scheduled) {
+        Throwable thrown = null;
+        try {
+            // 已经取消调度了，则不再重新调度作业
+            if (!isScheduling(scheduled.scheduleId())) {
+                return;
+            }
+
+            scheduled.execute();
+
+        } catch (Exception e) {
+            log.error("[HashedWheelTimerScheduler] schedule fail id:{}", scheduled.scheduleId(), e);
+            thrown = e;
+        } finally {
+            afterExecute(scheduled, thrown);
+        }
+    }
+
+    /**
+     * 执行器饱和期间会持续拒绝，限制告警日志的频率
+     */
+    private void warnRejected(T scheduled) {
+        long now = System.currentTimeMillis();
+        long last = lastRejectedWarnAt.get();
+        if (now - last >= REJECTED_WARN_INTERVAL && lastRejectedWarnAt.compareAndSet(last, now)) {
+            log.warn("[HashedWheelTimerScheduler] executor rejected id:{}, retry after {}ms, total rejected:{}",
+                    scheduled.scheduleId(), REJECTED_RETRY_DELAY, rejectedTimes.sum());
+        } else if (log.isDebugEnabled()) {
+            log.debug("[HashedWheelTimerScheduler] executor rejected id:{}", scheduled.scheduleId());
+        }
+    }
+
+    /**
+     * 停止时间轮，未到期的作业不再触发
+     */
+    public void stop() {
+        timer.stop();
+    }
+
+    /**
+     * 作业到期后的执行器，默认在时间轮线程中直接执行，子类可根据作业返回不同的执行器。
+     */
+    protected Executor executor(T scheduled) {
+        return Runnable::run;
+    }
+
+    /**
+     * 作业在时间轮上到期，投递执行前调用
+     */
+    protected void afterExpire(T scheduled, Timeout timeout) { }
+
     protected void afterExecute(T scheduled, Throwable t) { }
 
+    /**
+     * 最近一次时间轮触发延迟，毫秒
+     */
+    public long getLastTickLag() {
+        return lastTickLag.get();
+    }
+
+    /**
+     * 最大时间轮触发延迟，毫秒
+     */
+    public long getMaxTickLag() {
+        return maxTickLag.get();
+    }
+
+    /**
+     * 执行器拒绝投递的次数
+     */
+    public long getRejectedTimes() {
+        return rejectedTimes.sum();
+    }
+
 }
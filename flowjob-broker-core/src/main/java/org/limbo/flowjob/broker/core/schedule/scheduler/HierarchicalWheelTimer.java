@@ -0,0 +1,543 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.schedule.scheduler;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮。最底层时间轮按 tickDuration 推进，超出本层范围的任务放入上层时间轮（上层 tick 为下层一圈的时长），
+ * 到期前逐层降级，因此可以用较小的 tick（如 10ms）同时支持天级别的延迟，且远期任务不会在每一圈被重复扫描。
+ * 各层的桶只在非空时放入 DelayQueue，推进时间轮只需处理到期的桶，与等待中的任务总数无关。
+ *
+ * 与 Netty {@link io.netty.util.HashedWheelTimer} 一致，任务不会早于到期时间执行，最多延迟一个 tick；
+ * 到期的 {@link TimerTask} 在时间轮线程中执行，耗时任务应自行投递到其他线程。
+ *
+ * @author Brozen
+ * @since 2023-06-05
+ */
+@Slf4j
+public class HierarchicalWheelTimer implements Timer {
+
+    private static final int WORKER_STATE_INIT = 0;
+    private static final int WORKER_STATE_STARTED = 1;
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+
+    /**
+     * 到期桶的处理顺序：上层时间轮的桶在前，同层按到期时间排序
+     */
+    private static final Comparator<TimerBucket> BUCKET_CASCADE_ORDER = Comparator
+            .comparingLong((TimerBucket b) -> b.tickMs).reversed()
+            .thenComparingLong(TimerBucket::getExpiration);
+
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_STATE_INIT);
+
+    private final Thread workerThread;
+
+    /**
+     * 最底层时间轮的 tick，毫秒
+     */
+    private final long tickMs;
+
+    /**
+     * 最底层时间轮
+     */
+    private final TimingWheel timingWheel;
+
+    /**
+     * 所有层级时间轮共用的桶延迟队列
+     */
+    private final DelayQueue<TimerBucket> delayQueue = new DelayQueue<>();
+
+    /**
+     * 已到期待执行的任务，由时间轮线程执行
+     */
+    private final BlockingQueue<WheelTimeout> expiredTimeouts = new LinkedBlockingQueue<>();
+
+    /**
+     * 添加任务时持有读锁，推进时间轮时持有写锁
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 等待到期的任务数
+     */
+    private final AtomicLong pendingTimeouts = new AtomicLong(0);
+
+    /**
+     * @param threadFactory 时间轮线程工厂
+     * @param tickDuration 最底层时间轮的 tick
+     * @param unit tick 时间单位
+     * @param wheelSize 每层时间轮的桶数量
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("wheelSize must be greater than 0: " + wheelSize);
+        }
+
+        this.tickMs = Math.max(unit.toMillis(tickDuration), 1);
+        this.timingWheel = new TimingWheel(tickMs, wheelSize, currentTimeMs(), true, delayQueue);
+        this.workerThread = threadFactory.newThread(new Worker());
+    }
+
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit) {
+        this(threadFactory, tickDuration, unit, 512);
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        start();
+
+        WheelTimeout timeout = new WheelTimeout(this, task, currentTimeMs() + Math.max(unit.toMillis(delay), 0));
+        pendingTimeouts.incrementAndGet();
+
+        lock.readLock().lock();
+        try {
+            addOrExpire(timeout);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return timeout;
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException(HierarchicalWheelTimer.class.getSimpleName() + ".stop() cannot be called from " + TimerTask.class.getSimpleName());
+        }
+
+        if (workerState.getAndSet(WORKER_STATE_SHUTDOWN) != WORKER_STATE_STARTED) {
+            return Collections.emptySet();
+        }
+
+        workerThread.interrupt();
+        try {
+            workerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 收集未执行的任务
+        Set<Timeout> unprocessed = new HashSet<>();
+        Consumer<WheelTimeout> collector = timeout -> {
+            if (!timeout.isCancelled()) {
+                unprocessed.add(timeout);
+            }
+        };
+        lock.writeLock().lock();
+        try {
+            timingWheel.flushAll(collector);
+            expiredTimeouts.forEach(collector);
+            expiredTimeouts.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return Collections.unmodifiableSet(unprocessed);
+    }
+
+    /**
+     * 等待到期的任务数
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    private void start() {
+        switch (workerState.get()) {
+            case WORKER_STATE_INIT:
+                if (workerState.compareAndSet(WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+    }
+
+    /**
+     * 放入时间轮，已到期的任务交给时间轮线程执行。调用方需持有锁。
+     */
+    private void addOrExpire(WheelTimeout timeout) {
+        if (timeout.isCancelled()) {
+            return;
+        }
+        if (!timingWheel.add(timeout)) {
+            expiredTimeouts.offer(timeout);
+        }
+    }
+
+    private static long currentTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+
+    private final class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            List<WheelTimeout> expired = new ArrayList<>();
+            while (workerState.get() == WORKER_STATE_STARTED) {
+                try {
+                    advance();
+                } catch (InterruptedException e) {
+                    // stop 时会中断时间轮线程
+                    continue;
+                }
+
+                // 只处理当前已到期的任务，执行过程中新加入的到期任务放到下一轮，避免重新投递的任务在本轮内循环
+                expiredTimeouts.drainTo(expired);
+                for (WheelTimeout timeout : expired) {
+                    timeout.expire();
+                }
+                expired.clear();
+            }
+        }
+
+        private void advance() throws InterruptedException {
+            TimerBucket bucket = delayQueue.poll(tickMs, TimeUnit.MILLISECONDS);
+            if (bucket == null) {
+                return;
+            }
+
+            lock.writeLock().lock();
+            try {
+                // 先取出全部到期的桶并推进时间，再重新分配桶中的任务。
+                // 否则上层桶降级的任务可能落入同一时刻到期、但尚未取出的下层桶，导致桶在延迟队列中的到期时间被修改
+                List<TimerBucket> buckets = new ArrayList<>();
+                while (bucket != null) {
+                    timingWheel.advanceClock(bucket.getExpiration());
+                    buckets.add(bucket);
+                    bucket = delayQueue.poll();
+                }
+                // 同一时刻到期的桶，先处理上层时间轮的桶完成降级，再处理最底层的桶，保证同一 tick 到期的任务按到期时间一起执行
+                buckets.sort(BUCKET_CASCADE_ORDER);
+                for (TimerBucket expired : buckets) {
+                    expired.flush(HierarchicalWheelTimer.this::addOrExpire);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+    }
+
+
+    /**
+     * 单层时间轮
+     */
+    private static final class TimingWheel {
+
+        private final long tickMs;
+
+        private final int wheelSize;
+
+        /**
+         * 本层时间轮一圈的时长
+         */
+        private final long interval;
+
+        /**
+         * 桶的到期时间是否向上取整。最底层时间轮向上取整保证任务不会提前执行；
+         * 上层时间轮向下取整，桶到期时任务降级到下层时间轮，由下层保证精度
+         */
+        private final boolean roundUp;
+
+        private final TimerBucket[] buckets;
+
+        private final DelayQueue<TimerBucket> delayQueue;
+
+        /**
+         * 当前时间，为 tickMs 的整数倍。读取时持有读锁，修改时持有写锁
+         */
+        private long currentTime;
+
+        /**
+         * 上层时间轮，首次需要时创建
+         */
+        private volatile TimingWheel overflowWheel;
+
+        private TimingWheel(long tickMs, int wheelSize, long startMs, boolean roundUp, DelayQueue<TimerBucket> delayQueue) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.roundUp = roundUp;
+            this.delayQueue = delayQueue;
+            this.currentTime = startMs - (startMs % tickMs);
+            this.buckets = new TimerBucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                this.buckets[i] = new TimerBucket(tickMs);
+            }
+        }
+
+        /**
+         * @return 是否放入时间轮，已到期时返回 false
+         */
+        private boolean add(WheelTimeout timeout) {
+            long deadline = timeout.deadline;
+            if (deadline < currentTime + (roundUp ? 0 : tickMs)) {
+                return false;
+            }
+
+            if (deadline < currentTime + interval) {
+                long virtualId = deadline / tickMs;
+                TimerBucket bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.add(timeout);
+                // 桶的到期时间变化说明桶被复用了，需要重新放入延迟队列
+                long expiration = (roundUp ? virtualId + 1 : virtualId) * tickMs;
+                if (bucket.setExpiration(expiration)) {
+                    delayQueue.offer(bucket);
+                }
+                return true;
+            }
+
+            return overflowWheel().add(timeout);
+        }
+
+        private TimingWheel overflowWheel() {
+            if (overflowWheel == null) {
+                synchronized (this) {
+                    if (overflowWheel == null) {
+                        overflowWheel = new TimingWheel(interval, wheelSize, currentTime, false, delayQueue);
+                    }
+                }
+            }
+            return overflowWheel;
+        }
+
+        private void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                TimingWheel overflow = overflowWheel;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+
+        private void flushAll(Consumer<WheelTimeout> consumer) {
+            for (TimerBucket bucket : buckets) {
+                bucket.flush(consumer);
+            }
+            TimingWheel overflow = overflowWheel;
+            if (overflow != null) {
+                overflow.flushAll(consumer);
+            }
+        }
+
+    }
+
+
+    /**
+     * 时间轮的桶，双向链表存储同一 tick 内到期的任务
+     */
+    private static final class TimerBucket implements Delayed {
+
+        /**
+         * 哨兵节点
+         */
+        private final WheelTimeout root = new WheelTimeout(null, null, -1);
+
+        private final AtomicLong expiration = new AtomicLong(-1);
+
+        /**
+         * 所属时间轮的 tick，层级越高 tick 越大
+         */
+        private final long tickMs;
+
+        private TimerBucket(long tickMs) {
+            this.tickMs = tickMs;
+            root.next = root;
+            root.prev = root;
+        }
+
+        private boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        private long getExpiration() {
+            return expiration.get();
+        }
+
+        private synchronized void add(WheelTimeout timeout) {
+            WheelTimeout tail = root.prev;
+            timeout.next = root;
+            timeout.prev = tail;
+            timeout.bucket = this;
+            tail.next = timeout;
+            root.prev = timeout;
+        }
+
+        private synchronized void remove(WheelTimeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            timeout.next.prev = timeout.prev;
+            timeout.prev.next = timeout.next;
+            timeout.next = null;
+            timeout.prev = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * 取出桶中全部任务，并重置桶的到期时间
+         */
+        private void flush(Consumer<WheelTimeout> consumer) {
+            List<WheelTimeout> timeouts = new ArrayList<>();
+            synchronized (this) {
+                WheelTimeout head = root.next;
+                while (head != root) {
+                    WheelTimeout next = head.next;
+                    head.next = null;
+                    head.prev = null;
+                    head.bucket = null;
+                    timeouts.add(head);
+                    head = next;
+                }
+                root.next = root;
+                root.prev = root;
+                expiration.set(-1);
+            }
+
+            for (WheelTimeout timeout : timeouts) {
+                consumer.accept(timeout);
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - currentTimeMs(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getExpiration(), ((TimerBucket) o).getExpiration());
+        }
+
+    }
+
+
+    private static final class WheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final HierarchicalWheelTimer timer;
+
+        private final TimerTask task;
+
+        /**
+         * 到期时间，毫秒
+         */
+        private final long deadline;
+
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        /**
+         * 所在的桶及链表指针，由桶加锁维护
+         */
+        private volatile TimerBucket bucket;
+        private WheelTimeout prev;
+        private WheelTimeout next;
+
+        private WheelTimeout(HierarchicalWheelTimer timer, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+
+            timer.pendingTimeouts.decrementAndGet();
+            TimerBucket b = bucket;
+            if (b != null) {
+                b.remove(this);
+            }
+            return true;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+
+            timer.pendingTimeouts.decrementAndGet();
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                log.warn("An exception was thrown by {}.", TimerTask.class.getSimpleName(), t);
+            }
+        }
+
+    }
+
+}
@@ -22,10 +22,12 @@ import org.limbo.flowjob.broker.core.schedule.Scheduled;
 /**
  * 调度器，封装了调度流程，根据{@link ScheduleType}有不同实现。
  *
+ * @param <K> 调度对象ID类型
+ * @param <T> 调度对象类型
  * @author Brozen
  * @since 2021-05-18
  */
-public interface Scheduler<T extends Scheduled> {
+public interface Scheduler<K, T extends Scheduled<K>> {
 
     /**
      * 进行一次调度 如果任务已存在 不会重复调度
@@ -37,12 +39,12 @@ public interface Scheduler<T extends Scheduled> {
      * 停止调度
      * @param id 待调度的对象 id
      */
-    void unschedule(String id);
+    void unschedule(K id);
 
     /**
      * 判断是否在调度中
      * @param id 调度的对象 id
      */
-    boolean isScheduling(String id);
+    boolean isScheduling(K id);
 
 }
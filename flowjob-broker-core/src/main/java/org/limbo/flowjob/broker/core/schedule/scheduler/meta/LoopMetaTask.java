@@ -32,7 +32,10 @@ import org.limbo.flowjob.api.constants.MsgConstants;
 import org.limbo.flowjob.api.constants.ScheduleType;
 import org.limbo.flowjob.common.utils.time.TimeUtils;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * 不断循环执行的任务
@@ -79,6 +82,39 @@ public abstract class LoopMetaTask implements MetaTask, Calculated {
     @ToString.Exclude
     protected MetaTaskScheduler metaTaskScheduler;
 
+    /**
+     * 触发时间预计算窗口，为空时每次触发后计算下一次触发时间
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private Duration precomputeWindow;
+
+    /**
+     * 一次预计算最多计算的触发次数
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private int precomputeLimit;
+
+    /**
+     * 预计算得到的待触发时间，按时间顺序排列。同一个元任务不会并发触发，无需同步
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final Deque<LocalDateTime> precomputedTriggerAts = new ArrayDeque<>();
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private MetaTaskKey scheduleId;
+
     protected LoopMetaTask(LocalDateTime lastTriggerAt, LocalDateTime lastFeedbackAt, ScheduleOption scheduleOption, MetaTaskScheduler metaTaskScheduler) {
         this.lastTriggerAt = lastTriggerAt;
         this.lastFeedbackAt = lastFeedbackAt;
@@ -87,6 +123,18 @@ public abstract class LoopMetaTask implements MetaTask, Calculated {
         this.nextTriggerAt = calNextTriggerAt();
     }
 
+    /**
+     * {@inheritDoc}
+     * 首次调用时创建，MetaTaskKey 不可变，并发创建不影响结果
+     */
+    @Override
+    public MetaTaskKey scheduleId() {
+        if (scheduleId == null) {
+            scheduleId = MetaTaskKey.of(getType(), getMetaId());
+        }
+        return scheduleId;
+    }
+
     /**
      * 触发元任务执行，并更新元任务的触发时间。
      */
@@ -112,10 +160,14 @@ public abstract class LoopMetaTask implements MetaTask, Calculated {
 
     protected void executeFixedRate() {
         lastTriggerAt = nextTriggerAt;
-        nextTriggerAt = calNextTriggerAt();
-        metaTaskScheduler.reschedule(this);
-        executeTask();
-        lastFeedbackAt = TimeUtils.currentLocalDateTime();
+        nextTriggerAt = nextFixedRateTriggerAt();
+        try {
+            executeTask();
+            lastFeedbackAt = TimeUtils.currentLocalDateTime();
+        } finally {
+            // 执行完成后再下发下次调度，避免执行耗时超过周期时同一个元任务并发执行；超时的情况下次调度会立即触发
+            metaTaskScheduler.reschedule(this);
+        }
     }
 
     protected void executeFixedDelay() {
@@ -159,6 +211,44 @@ public abstract class LoopMetaTask implements MetaTask, Calculated {
         return TimeUtils.toLocalDateTime(calculate);
     }
 
+    /**
+     * 开启触发时间预计算，仅对固定速度、CRON调度生效。开启后一次计算窗口内的多个触发时间，后续触发直接使用。
+     * @param window 预计算窗口
+     * @param limit 一次最多计算的触发次数
+     */
+    public void enablePrecompute(Duration window, int limit) {
+        this.precomputeWindow = window;
+        this.precomputeLimit = limit;
+    }
+
+    /**
+     * 计算固定速度、CRON调度的下次触发时间。开启预计算时取出下一个预计算的触发时间，已用完时重新计算一批。
+     * <p>
+     * 错过触发的处理与是否开启预计算无关：下次触发时间由 {@link ScheduleCalculator} 保证不早于当前时间，
+     * 调度停顿期间错过的触发不逐个补触发，到期的触发执行一次后回到当前时间之后的调度节奏。
+     * 预计算的触发时间已过期时整批丢弃，按当前时间重新计算，与未开启预计算时直接计算的结果一致。
+     */
+    private LocalDateTime nextFixedRateTriggerAt() {
+        if (precomputeWindow == null || precomputeLimit <= 1) {
+            return calNextTriggerAt();
+        }
+
+        LocalDateTime head = precomputedTriggerAts.peekFirst();
+        if (head != null && head.isBefore(TimeUtils.currentLocalDateTime())) {
+            log.warn("[LoopMetaTask] {} discard {} precomputed trigger after stall", scheduleId(), precomputedTriggerAts.size());
+            precomputedTriggerAts.clear();
+        }
+        if (precomputedTriggerAts.isEmpty()) {
+            long windowEndAt = TimeUtils.currentInstant().toEpochMilli() + precomputeWindow.toMillis();
+            for (Long triggerAt : lazyInitTriggerCalculator().calculateWithin(this, windowEndAt, precomputeLimit)) {
+                precomputedTriggerAts.addLast(TimeUtils.toLocalDateTime(triggerAt));
+            }
+        }
+
+        LocalDateTime triggerAt = precomputedTriggerAts.pollFirst();
+        return triggerAt != null ? triggerAt : calNextTriggerAt();
+    }
+
     @Override
     public LocalDateTime lastFeedbackAt() {
         return lastFeedbackAt;
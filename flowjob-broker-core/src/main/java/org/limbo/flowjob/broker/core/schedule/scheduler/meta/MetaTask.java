@@ -22,7 +22,7 @@ import org.limbo.flowjob.broker.core.schedule.Scheduled;
  * @author Brozen
  * @since 2022-10-11
  */
-public interface MetaTask extends Scheduled {
+public interface MetaTask extends Scheduled<MetaTaskKey> {
 
     /**
      * @return 任务类型
@@ -34,8 +34,10 @@ public interface MetaTask extends Scheduled {
      */
     String getMetaId();
 
-    default String scheduleId() {
-        return getType().name() + "-" + getMetaId();
-    }
+    /**
+     * 调度ID，每次触发时都会用于查询调度状态，实现类应在创建后缓存
+     */
+    @Override
+    MetaTaskKey scheduleId();
 
 }
@@ -0,0 +1,46 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.schedule.scheduler.meta;
+
+/**
+ * 元任务执行分组，同一分组的元任务共用一个执行线程池，避免不同类型的元任务互相阻塞。
+ *
+ * @author Brozen
+ * @since 2023-06-01
+ */
+public enum MetaTaskExecutorGroup {
+
+    /**
+     * 计划调度，对触发时间敏感
+     */
+    PLAN,
+
+    /**
+     * 任务、实例的下发
+     */
+    TASK,
+
+    /**
+     * 定时加载、检测类元任务，通常涉及数据库扫描，耗时较长
+     */
+    CHECK,
+
+    ;
+
+}
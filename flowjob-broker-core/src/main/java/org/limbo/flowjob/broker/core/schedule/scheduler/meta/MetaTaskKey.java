@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.limbo.flowjob.broker.core.schedule.scheduler.meta;
+
+import java.util.Objects;
+
+/**
+ * 元任务调度ID，由类型、业务ID、版本组成。创建时计算哈希值，作为调度索引的 key 时比较无需额外创建对象。
+ *
+ * @author Brozen
+ * @since 2023-06-07
+ */
+public final class MetaTaskKey {
+
+    private final MetaTaskType type;
+
+    private final String id;
+
+    /**
+     * 版本，可为空
+     */
+    private final String version;
+
+    private final int hash;
+
+    private MetaTaskKey(MetaTaskType type, String id, String version) {
+        this.type = Objects.requireNonNull(type, "type");
+        this.id = Objects.requireNonNull(id, "id");
+        this.version = version;
+        this.hash = Objects.hash(type, id, version);
+    }
+
+    public static MetaTaskKey of(MetaTaskType type, String id) {
+        return new MetaTaskKey(type, id, null);
+    }
+
+    public static MetaTaskKey of(MetaTaskType type, String id, String version) {
+        return new MetaTaskKey(type, id, version);
+    }
+
+    public MetaTaskType getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetaTaskKey)) {
+            return false;
+        }
+        MetaTaskKey that = (MetaTaskKey) o;
+        return hash == that.hash
+                && type == that.type
+                && id.equals(that.id)
+                && Objects.equals(version, that.version);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return version == null ? type.name() + "-" + id : type.name() + "-" + id + "-" + version;
+    }
+
+}
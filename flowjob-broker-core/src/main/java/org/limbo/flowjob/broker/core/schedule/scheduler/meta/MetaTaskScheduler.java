@@ -16,14 +16,22 @@
 
 package org.limbo.flowjob.broker.core.schedule.scheduler.meta;
 
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.limbo.flowjob.broker.core.schedule.scheduler.HashedWheelTimerScheduler;
+import org.limbo.flowjob.broker.core.schedule.scheduler.NamedThreadFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -31,28 +39,99 @@ import java.util.concurrent.TimeUnit;
  * @since 2022-10-11
  */
 @Slf4j
-public class MetaTaskScheduler extends HashedWheelTimerScheduler<MetaTask> {
+public class MetaTaskScheduler extends HashedWheelTimerScheduler<MetaTaskKey, MetaTask> {
 
-    private final Map<MetaTaskType, Map<String, MetaTask>> scheduling;
+    /**
+     * 停止时等待执行线程池终止的时间，秒
+     */
+    private static final long STOP_TIMEOUT = 10;
+
+    /**
+     * 调度中的元任务，触发、重新调度时只访问此索引
+     */
+    private final Map<MetaTaskKey, MetaTask> scheduling = new ConcurrentHashMap<>();
+
+    /**
+     * 调度中元任务的 key 按类型分组，仅用于按类型查询，无需遍历全部元任务。
+     * 与 {@link #scheduling} 非原子更新，查询时以 {@link #scheduling} 为准。创建后不再修改外层结构
+     */
+    private final Map<MetaTaskType, Set<MetaTaskKey>> keysByType = initKeysByType();
+
+    /**
+     * 元任务在时间轮上等待到期的 timeout，取消调度时从时间轮上移除
+     */
+    private final Map<MetaTaskKey, Timeout> pendingTimeouts = new ConcurrentHashMap<>();
+
+    /**
+     * 各分组元任务的执行线程池
+     */
+    private final Map<MetaTaskExecutorGroup, ThreadPoolExecutor> executors;
 
     public MetaTaskScheduler(long tickDuration, TimeUnit unit) {
+        this(tickDuration, unit, Collections.emptyMap());
+    }
+
+    /**
+     * @param executorConfigs 各分组执行线程池配置，未配置的分组使用默认配置
+     */
+    public MetaTaskScheduler(long tickDuration, TimeUnit unit, Map<MetaTaskExecutorGroup, MetaTaskExecutorConfig> executorConfigs) {
         super(tickDuration, unit);
-        this.scheduling = new EnumMap<>(MetaTaskType.class);
+        this.executors = initExecutors(executorConfigs);
+    }
+
+    /**
+     * @param timer 时间轮，如 {@link org.limbo.flowjob.broker.core.schedule.scheduler.HierarchicalWheelTimer}
+     * @param executorConfigs 各分组执行线程池配置，未配置的分组使用默认配置
+     */
+    public MetaTaskScheduler(Timer timer, Map<MetaTaskExecutorGroup, MetaTaskExecutorConfig> executorConfigs) {
+        super(timer);
+        this.executors = initExecutors(executorConfigs);
+    }
+
+    private static Map<MetaTaskType, Set<MetaTaskKey>> initKeysByType() {
+        Map<MetaTaskType, Set<MetaTaskKey>> keysByType = new EnumMap<>(MetaTaskType.class);
         for (MetaTaskType type : MetaTaskType.values()) {
-            this.scheduling.put(type, new ConcurrentHashMap<>());
+            keysByType.put(type, ConcurrentHashMap.newKeySet());
         }
+        return keysByType;
+    }
+
+    private Map<MetaTaskExecutorGroup, ThreadPoolExecutor> initExecutors(Map<MetaTaskExecutorGroup, MetaTaskExecutorConfig> executorConfigs) {
+        Map<MetaTaskExecutorGroup, ThreadPoolExecutor> executors = new EnumMap<>(MetaTaskExecutorGroup.class);
+        for (MetaTaskExecutorGroup group : MetaTaskExecutorGroup.values()) {
+            MetaTaskExecutorConfig config = executorConfigs.get(group);
+            executors.put(group, createExecutor(group, config == null ? new MetaTaskExecutorConfig() : config));
+        }
+        return executors;
+    }
+
+    private ThreadPoolExecutor createExecutor(MetaTaskExecutorGroup group, MetaTaskExecutorConfig config) {
+        // 拒绝时抛出异常，由时间轮延迟一段时间后重新投递，不能使用 CallerRunsPolicy 阻塞时间轮线程
+        return new ThreadPoolExecutor(
+                config.getThreads(),
+                config.getThreads(),
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getQueueSize()),
+                NamedThreadFactory.newInstance(getClass().getSimpleName() + "-" + group.name()),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @Override
+    protected Executor executor(MetaTask scheduled) {
+        return executors.get(scheduled.getType().executorGroup);
     }
 
     @Override
     public void schedule(MetaTask task) {
-        String scheduleId = task.scheduleId();
+        MetaTaskKey scheduleId = task.scheduleId();
         try {
-            if (isScheduling(scheduleId)) {
+            // 放入缓存，已存在则不重复调度
+            if (scheduling.putIfAbsent(scheduleId, task) != null) {
                 return;
             }
-
-            // 放入缓存
-            scheduling.get(task.getType()).put(scheduleId, task);
+            keysByType.get(scheduleId.getType()).add(scheduleId);
 
             calAndSchedule(task);
         } catch (Exception e) {
@@ -60,6 +139,23 @@ public class MetaTaskScheduler extends HashedWheelTimerScheduler<MetaTask> {
         }
     }
 
+    @Override
+    protected Timeout scheduleAfter(MetaTask task, long delay) {
+        MetaTaskKey scheduleId = task.scheduleId();
+        Timeout timeout = super.scheduleAfter(task, delay);
+        pendingTimeouts.put(scheduleId, timeout);
+        // 已到期或并发取消了调度，不再保留
+        if (timeout.isExpired() || !isScheduling(scheduleId)) {
+            pendingTimeouts.remove(scheduleId, timeout);
+        }
+        return timeout;
+    }
+
+    @Override
+    protected void afterExpire(MetaTask scheduled, Timeout timeout) {
+        pendingTimeouts.remove(scheduled.scheduleId(), timeout);
+    }
+
     @Override
     protected void afterExecute(MetaTask scheduled, Throwable t) {
         super.afterExecute(scheduled, t);
@@ -69,35 +165,73 @@ public class MetaTaskScheduler extends HashedWheelTimerScheduler<MetaTask> {
     }
 
     @Override
-    public void unschedule(String id) {
-        Map<String, MetaTask> metaTaskMap = scheduling.get(getType(id));
-        metaTaskMap.remove(id);
+    public void unschedule(MetaTaskKey id) {
+        scheduling.remove(id);
+        keysByType.get(id.getType()).remove(id);
+        Timeout timeout = pendingTimeouts.remove(id);
+        if (timeout != null) {
+            timeout.cancel();
+        }
     }
 
     @Override
-    public boolean isScheduling(String id) {
-        Map<String, MetaTask> metaTaskMap = scheduling.get(getType(id));
-        return metaTaskMap.containsKey(id);
+    public boolean isScheduling(MetaTaskKey id) {
+        return scheduling.containsKey(id);
+    }
+
+    /**
+     * 返回调度中的数据
+     */
+    public List<MetaTask> getSchedulingByType(MetaTaskType type) {
+        List<MetaTask> tasks = new ArrayList<>();
+        for (MetaTaskKey key : keysByType.get(type)) {
+            MetaTask task = scheduling.get(key);
+            if (task != null) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
     }
 
+    /**
+     * 返回分组执行线程池中等待执行的元任务数量
+     */
+    public int getQueueDepth(MetaTaskExecutorGroup group) {
+        return executors.get(group).getQueue().size();
+    }
 
     /**
-     * org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTask#scheduleId()
+     * 返回分组执行线程池中正在执行的元任务数量
      */
-    private MetaTaskType getType(String scheduleId) {
-        String[] split = scheduleId.split("-");
-        return MetaTaskType.parse(split[0]);
+    public int getActiveCount(MetaTaskExecutorGroup group) {
+        return executors.get(group).getActiveCount();
     }
 
     /**
-     * 返回调度中的数据
+     * 停止时间轮，并关闭各分组执行线程池，正在执行的元任务会执行完成
      */
-    public List<MetaTask> getSchedulingByType(MetaTaskType type) {
-        return new ArrayList<>(scheduling.get(type).values());
+    @Override
+    public void stop() {
+        super.stop();
+        scheduling.clear();
+        keysByType.values().forEach(Set::clear);
+        pendingTimeouts.clear();
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+        for (Map.Entry<MetaTaskExecutorGroup, ThreadPoolExecutor> entry : executors.entrySet()) {
+            try {
+                if (!entry.getValue().awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS)) {
+                    log.warn("Meta task executor {} not terminated in {}s", entry.getKey(), STOP_TIMEOUT);
+                    entry.getValue().shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                entry.getValue().shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     public void reschedule(MetaTask task) {
-        String scheduleId = task.scheduleId();
+        MetaTaskKey scheduleId = task.scheduleId();
         try {
             if (!isScheduling(scheduleId)) {
                 return;
@@ -26,26 +26,45 @@ import org.apache.commons.lang3.StringUtils;
  */
 public enum MetaTaskType {
 
-    PLAN,
+    PLAN(MetaTaskExecutorGroup.PLAN),
 
-    PLAN_LOAD,
+    PLAN_LOAD(MetaTaskExecutorGroup.CHECK),
 
-    UPDATED_PLAN_LOAD,
+    UPDATED_PLAN_LOAD(MetaTaskExecutorGroup.CHECK),
 
-    PLAN_EXECUTE_CHECK,
+    PLAN_EXECUTE_CHECK(MetaTaskExecutorGroup.CHECK),
 
-    JOB_EXECUTE_CHECK,
+    JOB_EXECUTE_CHECK(MetaTaskExecutorGroup.CHECK),
 
-    TASK,
+    TASK(MetaTaskExecutorGroup.TASK),
 
-    TASK_DISPATCH_CHECK,
+    PLAN_INSTANCE(MetaTaskExecutorGroup.TASK),
 
-    TASK_EXECUTE_CHECK,
+    JOB_INSTANCE(MetaTaskExecutorGroup.TASK),
 
-    WORKER_OFFLINE,
+    TASK_DISPATCH_CHECK(MetaTaskExecutorGroup.CHECK),
+
+    TASK_EXECUTE_CHECK(MetaTaskExecutorGroup.CHECK),
+
+    WORKER_OFFLINE(MetaTaskExecutorGroup.CHECK),
+
+    WORKER_SYNC(MetaTaskExecutorGroup.CHECK),
+
+    INSTANCE_ARCHIVE(MetaTaskExecutorGroup.CHECK),
+
+    PLAN_CACHE_STATS(MetaTaskExecutorGroup.CHECK),
 
     ;
 
+    /**
+     * 执行分组，决定元任务在哪个线程池中执行
+     */
+    public final MetaTaskExecutorGroup executorGroup;
+
+    MetaTaskType(MetaTaskExecutorGroup executorGroup) {
+        this.executorGroup = executorGroup;
+    }
+
     public static MetaTaskType parse(String value) {
         if (StringUtils.isBlank(value)) {
             return null;
@@ -93,7 +93,7 @@ public class Worker implements WorkerRpc, LBServer {
      * Worker 状态指标
      */
     @Setter
-    private WorkerMetric metric;
+    private volatile WorkerMetric metric;
 
     /**
      * 是否启用
@@ -173,4 +173,12 @@ public class Worker implements WorkerRpc, LBServer {
         return this.rpc;
     }
 
+
+    /**
+     * 清除懒加载的 RPC 模块，通信客户端被回收后调用，下次通信时重新创建
+     */
+    public synchronized void resetRPC() {
+        this.rpc = null;
+    }
+
 }
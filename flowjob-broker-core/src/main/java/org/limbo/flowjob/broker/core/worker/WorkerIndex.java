@@ -0,0 +1,238 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.worker;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.limbo.flowjob.broker.core.worker.executor.WorkerExecutor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 可用 worker 的索引，不可变。按执行器名称、标签名、标签值分别维护 worker 位置的 {@link BitSet}，
+ * 下发任务时通过位运算过滤 worker，不需要遍历每个 worker 的执行器、标签。
+ * <p>
+ * 由 {@link WorkerRegistry} 在可用 worker 变化时生成；worker 的执行器、标签未变化时（如心跳）复用已有的位图。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class WorkerIndex {
+
+    public static final WorkerIndex EMPTY = build(Collections.emptyList());
+
+    private static final BitSet NONE = new BitSet(0);
+
+    /**
+     * 索引的 worker，位图中的位置即为此列表中的下标
+     */
+    private final List<Worker> workers;
+
+    /**
+     * 执行器名称 -> worker 位图
+     */
+    private final Map<String, BitSet> executors;
+
+    /**
+     * 标签名 -> 有此标签的 worker 位图
+     */
+    private final Map<String, BitSet> tags;
+
+    /**
+     * 标签名 -> 标签值 -> worker 位图
+     */
+    private final Map<String, Map<String, BitSet>> tagValues;
+
+    /**
+     * 生成索引时各 worker 的执行器、标签，用于判断索引能否复用
+     */
+    private final Object[] indexedExecutors;
+
+    private final Object[] indexedTags;
+
+    /**
+     * 排除的 worker 位置，如下发失败的 worker
+     */
+    private final BitSet excluded;
+
+    private WorkerIndex(List<Worker> workers, Map<String, BitSet> executors, Map<String, BitSet> tags,
+                        Map<String, Map<String, BitSet>> tagValues, Object[] indexedExecutors, Object[] indexedTags,
+                        BitSet excluded) {
+        this.workers = workers;
+        this.executors = executors;
+        this.tags = tags;
+        this.tagValues = tagValues;
+        this.indexedExecutors = indexedExecutors;
+        this.indexedTags = indexedTags;
+        this.excluded = excluded;
+    }
+
+
+    /**
+     * 为 worker 列表生成索引
+     */
+    public static WorkerIndex build(List<Worker> workers) {
+        int size = workers.size();
+        Map<String, BitSet> executors = new HashMap<>();
+        Map<String, BitSet> tags = new HashMap<>();
+        Map<String, Map<String, BitSet>> tagValues = new HashMap<>();
+        Object[] indexedExecutors = new Object[size];
+        Object[] indexedTags = new Object[size];
+
+        for (int i = 0; i < size; i++) {
+            Worker worker = workers.get(i);
+            List<WorkerExecutor> workerExecutors = worker.getExecutors();
+            indexedExecutors[i] = workerExecutors;
+            if (workerExecutors != null) {
+                for (WorkerExecutor executor : workerExecutors) {
+                    executors.computeIfAbsent(executor.getName(), k -> new BitSet(size)).set(i);
+                }
+            }
+
+            Map<String, List<String>> workerTags = worker.getTags();
+            indexedTags[i] = workerTags;
+            if (workerTags != null) {
+                for (Map.Entry<String, List<String>> tag : workerTags.entrySet()) {
+                    if (CollectionUtils.isEmpty(tag.getValue())) {
+                        continue;
+                    }
+                    tags.computeIfAbsent(tag.getKey(), k -> new BitSet(size)).set(i);
+                    Map<String, BitSet> values = tagValues.computeIfAbsent(tag.getKey(), k -> new HashMap<>());
+                    for (String value : tag.getValue()) {
+                        values.computeIfAbsent(value, k -> new BitSet(size)).set(i);
+                    }
+                }
+            }
+        }
+
+        return new WorkerIndex(Collections.unmodifiableList(new ArrayList<>(workers)),
+                executors, tags, tagValues, indexedExecutors, indexedTags, NONE);
+    }
+
+
+    /**
+     * 根据最新的 worker 列表更新索引。worker 及其顺序、执行器、标签均未变化时复用已有位图，否则重新生成
+     */
+    public WorkerIndex refresh(List<Worker> latest) {
+        if (latest.size() != workers.size()) {
+            return build(latest);
+        }
+
+        for (int i = 0; i < latest.size(); i++) {
+            Worker worker = latest.get(i);
+            if (!Objects.equals(worker.getId(), workers.get(i).getId())
+                    || worker.getExecutors() != indexedExecutors[i]
+                    || worker.getTags() != indexedTags[i]) {
+                return build(latest);
+            }
+        }
+
+        return new WorkerIndex(Collections.unmodifiableList(new ArrayList<>(latest)),
+                executors, tags, tagValues, indexedExecutors, indexedTags, NONE);
+    }
+
+
+    /**
+     * 排除指定 worker，返回新的索引，位图共享
+     */
+    public WorkerIndex without(String workerId) {
+        for (int i = 0; i < workers.size(); i++) {
+            if (Objects.equals(workers.get(i).getId(), workerId)) {
+                BitSet newExcluded = (BitSet) excluded.clone();
+                newExcluded.set(i);
+                return new WorkerIndex(workers, executors, tags, tagValues, indexedExecutors, indexedTags, newExcluded);
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * 有指定执行器且未被排除的 worker，返回新的位图，调用方可以继续修改
+     */
+    public BitSet candidates(String executorName) {
+        BitSet candidates = (BitSet) executors.getOrDefault(executorName, NONE).clone();
+        candidates.andNot(excluded);
+        return candidates;
+    }
+
+
+    /**
+     * 有指定标签的 worker，返回的位图不可修改
+     */
+    public BitSet withTag(String tagName) {
+        return tags.getOrDefault(tagName, NONE);
+    }
+
+
+    /**
+     * 有指定标签值的 worker，返回的位图不可修改
+     */
+    public BitSet withTagValue(String tagName, String tagValue) {
+        return tagValues.getOrDefault(tagName, Collections.emptyMap()).getOrDefault(tagValue, NONE);
+    }
+
+
+    /**
+     * 指定标签的所有值及对应的 worker，返回的位图不可修改
+     */
+    public Map<String, BitSet> tagValues(String tagName) {
+        return tagValues.getOrDefault(tagName, Collections.emptyMap());
+    }
+
+
+    /**
+     * 获取指定位置的 worker
+     */
+    public Worker get(int position) {
+        return workers.get(position);
+    }
+
+
+    /**
+     * 未被排除的 worker
+     */
+    public List<Worker> workers() {
+        if (excluded.isEmpty()) {
+            return workers;
+        }
+
+        List<Worker> remains = new ArrayList<>(workers.size());
+        for (int i = 0; i < workers.size(); i++) {
+            if (!excluded.get(i)) {
+                remains.add(workers.get(i));
+            }
+        }
+        return remains;
+    }
+
+
+    /**
+     * 是否没有可用的 worker
+     */
+    public boolean isEmpty() {
+        return workers.size() <= excluded.cardinality();
+    }
+
+}
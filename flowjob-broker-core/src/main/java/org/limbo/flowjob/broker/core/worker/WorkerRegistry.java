@@ -0,0 +1,222 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.worker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.limbo.flowjob.broker.core.worker.metric.WorkerMetric;
+import org.limbo.flowjob.broker.core.worker.metric.WorkerResourceReservations;
+import org.limbo.flowjob.broker.core.worker.rpc.WorkerRpcFactory;
+import org.limbo.flowjob.common.utils.time.TimeUtils;
+
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * broker 端的 worker 缓存，保存组装好的 {@link Worker}，下发任务时无锁读取，不再访问 DB。
+ * <p>
+ * 本节点收到的注册、心跳直接更新缓存；其它 broker 收到的注册、心跳通过定时增量同步获取，
+ * 已删除的 worker 在定时全量同步时移除。
+ *
+ * @author Brozen
+ * @since 2023-06-15
+ */
+@Slf4j
+public class WorkerRegistry {
+
+    /**
+     * 增量同步时向前多查询的时间，毫秒，用于容忍 broker 之间的时钟偏差
+     */
+    private static final long SYNC_OVERLAP = 5000;
+
+    private final WorkerRepository workerRepository;
+
+    /**
+     * worker 心跳过期时间，毫秒
+     */
+    private final long heartbeatTimeout;
+
+    /**
+     * 缓存的 worker
+     */
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+
+    /**
+     * 可用 worker 快照，不可变
+     */
+    private volatile List<Worker> availableWorkers = Collections.emptyList();
+
+    /**
+     * 可用 worker 的执行器、标签索引，与 {@link #availableWorkers} 同时更新
+     */
+    private volatile WorkerIndex index = WorkerIndex.EMPTY;
+
+    /**
+     * 下发任务时对 worker 资源的预占，心跳时对账
+     */
+    private final WorkerResourceReservations reservations;
+
+    /**
+     * 上次同步时间，为空表示未全量同步过
+     */
+    private volatile LocalDateTime lastSyncAt;
+
+    public WorkerRegistry(WorkerRepository workerRepository, long heartbeatTimeout) {
+        this.workerRepository = workerRepository;
+        this.heartbeatTimeout = heartbeatTimeout;
+        this.reservations = new WorkerResourceReservations(heartbeatTimeout);
+    }
+
+    /**
+     * 根据id获取缓存的worker
+     */
+    public Worker get(String id) {
+        return id == null ? null : workers.get(id);
+    }
+
+    /**
+     * 获取所有可用的worker，返回不可变的快照
+     */
+    public List<Worker> availableWorkers() {
+        return availableWorkers;
+    }
+
+    /**
+     * 获取可用worker的索引，用于下发任务时过滤worker
+     */
+    public WorkerIndex index() {
+        return index;
+    }
+
+    /**
+     * 获取 worker 资源预占
+     */
+    public WorkerResourceReservations reservations() {
+        return reservations;
+    }
+
+    /**
+     * worker 注册后更新缓存
+     */
+    public synchronized void register(Worker worker) {
+        workers.put(worker.getId(), worker);
+        reservations.reconcile(worker);
+        refreshAvailableWorkers();
+    }
+
+    /**
+     * worker 心跳后更新缓存，心跳上报的资源已包含之前下发的任务，对账资源预占
+     */
+    public synchronized void heartbeat(Worker worker) {
+        workers.put(worker.getId(), worker);
+        reservations.reconcile(worker);
+        refreshAvailableWorkers();
+    }
+
+    /**
+     * 同步 DB 中的 worker，首次以及指定时全量同步，否则增量同步
+     *
+     * @param full 是否全量同步
+     */
+    public synchronized void sync(boolean full) {
+        LocalDateTime now = TimeUtils.currentLocalDateTime();
+        if (full || lastSyncAt == null) {
+            Map<String, Worker> latest = new HashMap<>();
+            for (Worker worker : workerRepository.listAvailableWorkers()) {
+                latest.put(worker.getId(), worker);
+            }
+            workers.keySet().retainAll(latest.keySet());
+            workers.putAll(latest);
+            latest.values().forEach(reservations::reconcile);
+        } else {
+            List<Worker> updated = workerRepository.listUpdatedWorkers(lastSyncAt.minus(SYNC_OVERLAP, ChronoUnit.MILLIS));
+            for (Worker worker : updated) {
+                workers.put(worker.getId(), worker);
+                reservations.reconcile(worker);
+            }
+        }
+
+        lastSyncAt = now;
+        refreshAvailableWorkers();
+    }
+
+    /**
+     * 重新生成可用 worker 快照，过滤掉停止、禁用以及心跳过期的 worker
+     */
+    private void refreshAvailableWorkers() {
+        LocalDateTime expireAt = TimeUtils.currentLocalDateTime().minus(heartbeatTimeout, ChronoUnit.MILLIS);
+        List<Worker> previous = availableWorkers;
+        List<Worker> current = Collections.unmodifiableList(workers.values().stream()
+                .filter(worker -> worker.isAlive() && worker.isEnabled())
+                .filter(worker -> {
+                    WorkerMetric metric = worker.getMetric();
+                    return metric != null && metric.getLastHeartbeatAt() != null && metric.getLastHeartbeatAt().isAfter(expireAt);
+                })
+                .collect(Collectors.toList()));
+        availableWorkers = current;
+        index = index.refresh(current);
+        reservations.retain(workers.keySet());
+
+        evictOfflineRpc(previous, current);
+    }
+
+
+    /**
+     * 移除下线 worker 的 RPC 客户端，通信地址仍被其它可用 worker 使用的不移除。
+     * 下线的 worker 仍在缓存中，心跳恢复后会复用，因此同时清除使用该地址的 worker 懒加载的 RPC 模块
+     */
+    private void evictOfflineRpc(List<Worker> previous, List<Worker> current) {
+        if (previous.isEmpty()) {
+            return;
+        }
+
+        Set<String> currentIds = new HashSet<>();
+        // URL 的 equals 会解析域名，这里比较字符串
+        Set<String> currentUrls = new HashSet<>();
+        for (Worker worker : current) {
+            currentIds.add(worker.getId());
+            currentUrls.add(String.valueOf(worker.getRpcBaseUrl()));
+        }
+
+        for (Worker worker : previous) {
+            URL url = worker.getRpcBaseUrl();
+            if (currentIds.contains(worker.getId()) || url == null || currentUrls.contains(url.toString())) {
+                continue;
+            }
+
+            WorkerRpcFactory.getInstance().evict(url);
+            worker.resetRPC();
+            for (Worker cached : workers.values()) {
+                if (url.toString().equals(String.valueOf(cached.getRpcBaseUrl()))) {
+                    cached.resetRPC();
+                }
+            }
+            log.info("worker {} offline, evict rpc client of {}", worker.getId(), url);
+        }
+    }
+
+}
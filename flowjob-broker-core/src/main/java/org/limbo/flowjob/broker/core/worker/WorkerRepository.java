@@ -19,6 +19,7 @@ package org.limbo.flowjob.broker.core.worker;
 import org.limbo.flowjob.api.constants.WorkerStatus;
 
 import javax.annotation.Nullable;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -64,6 +65,14 @@ public interface WorkerRepository {
     List<Worker> listAvailableWorkers();
 
 
+    /**
+     * 获取指定时间后注册信息或心跳有变化的worker，不包括已删除的worker。
+     * @param since 起始时间
+     * @return 有变化的worker
+     */
+    List<Worker> listUpdatedWorkers(LocalDateTime since);
+
+
     /**
      * 删除一个worker，软删除
      * @param id 需要被移除的workerId
@@ -0,0 +1,274 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.worker.metric;
+
+import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.common.utils.time.TimeUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * broker 端对 worker 资源的乐观预占。
+ * <p>
+ * worker 可用资源只在心跳时更新，两次心跳之间下发的任务会全部落在同一个"空闲" worker 上。
+ * 下发任务前先从 worker 上报的可用资源中扣除已预占的部分，预占成功才下发，下发失败时释放；
+ * worker 心跳上报后，心跳之前的预占已体现在上报的资源中，将其移除。未等到心跳的预占在过期后移除。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class WorkerResourceReservations {
+
+    /**
+     * 预占过期时间，毫秒
+     */
+    private final long expireAfter;
+
+    /**
+     * workerId 到该 worker 上预占的映射
+     */
+    private final Map<String, Ledger> ledgers = new ConcurrentHashMap<>();
+
+    public WorkerResourceReservations(long expireAfter) {
+        this.expireAfter = expireAfter;
+    }
+
+
+    /**
+     * 获取 worker 扣除预占后的可用资源
+     */
+    public WorkerAvailableResource available(Worker worker) {
+        WorkerAvailableResource reported = reported(worker);
+        Ledger ledger = ledgers.get(worker.getId());
+        if (ledger == null) {
+            return reported;
+        }
+        synchronized (ledger) {
+            ledger.expire(expireAt());
+            return ledger.subtractFrom(reported);
+        }
+    }
+
+
+    /**
+     * worker 扣除预占后的可用资源是否满足需求。需求小于等于 0 表示未定义，此时只要求可用资源大于 0
+     *
+     * @param cpu 所需 CPU 核心数
+     * @param ram 所需内存 GB 数
+     */
+    public boolean fits(Worker worker, float cpu, float ram) {
+        return fits(available(worker), cpu, ram);
+    }
+
+
+    /**
+     * 在 worker 上预占资源，扣除已有预占后资源不足时返回 null
+     *
+     * @param cpu 所需 CPU 核心数
+     * @param ram 所需内存 GB 数
+     * @return 预占记录，用于下发失败时释放
+     */
+    public Reservation reserve(Worker worker, float cpu, float ram) {
+        WorkerAvailableResource reported = reported(worker);
+        Ledger ledger = ledgers.computeIfAbsent(worker.getId(), id -> new Ledger());
+        synchronized (ledger) {
+            ledger.expire(expireAt());
+            if (!fits(ledger.subtractFrom(reported), cpu, ram)) {
+                return null;
+            }
+            Reservation reservation = new Reservation(worker.getId(), Math.max(cpu, 0), Math.max(ram, 0), TimeUtils.currentLocalDateTime());
+            ledger.add(reservation);
+            return reservation;
+        }
+    }
+
+
+    /**
+     * 释放预占，用于任务下发失败
+     */
+    public void release(Reservation reservation) {
+        if (reservation == null) {
+            return;
+        }
+        Ledger ledger = ledgers.get(reservation.workerId);
+        if (ledger == null) {
+            return;
+        }
+        synchronized (ledger) {
+            ledger.remove(reservation);
+        }
+    }
+
+
+    /**
+     * worker 上报资源后，移除上报之前的预占
+     */
+    public void reconcile(Worker worker) {
+        Ledger ledger = ledgers.get(worker.getId());
+        if (ledger == null) {
+            return;
+        }
+        WorkerMetric metric = worker.getMetric();
+        LocalDateTime reportedAt = metric == null ? null : metric.getLastHeartbeatAt();
+        synchronized (ledger) {
+            ledger.expire(expireAt());
+            if (reportedAt != null) {
+                ledger.expire(reportedAt);
+            }
+        }
+    }
+
+
+    /**
+     * 只保留指定 worker 的预占，用于移除下线 worker 的数据
+     */
+    public void retain(Collection<String> workerIds) {
+        ledgers.keySet().retainAll(workerIds);
+    }
+
+
+    private LocalDateTime expireAt() {
+        return TimeUtils.currentLocalDateTime().minus(expireAfter, ChronoUnit.MILLIS);
+    }
+
+
+    private static WorkerAvailableResource reported(Worker worker) {
+        WorkerMetric metric = worker.getMetric();
+        WorkerAvailableResource resource = metric == null ? null : metric.getAvailableResource();
+        return resource == null ? new WorkerAvailableResource(0, 0, 0) : resource;
+    }
+
+
+    private static boolean fits(WorkerAvailableResource available, float cpu, float ram) {
+        if (available.getAvailableQueueLimit() <= 0) {
+            return false;
+        }
+        if (cpu > 0 ? available.getAvailableCpu() < cpu : available.getAvailableCpu() <= 0) {
+            return false;
+        }
+        return ram > 0 ? available.getAvailableRam() >= ram : available.getAvailableRam() > 0;
+    }
+
+
+    /**
+     * 将作业定义的资源需求转换为预占数值，小于等于 0 或未定义时为 0
+     */
+    public static float requirement(BigDecimal requirement) {
+        return requirement == null ? 0 : Math.max(requirement.floatValue(), 0);
+    }
+
+
+    /**
+     * 一次预占
+     */
+    public static class Reservation {
+
+        private final String workerId;
+
+        private final float cpu;
+
+        private final float ram;
+
+        private final LocalDateTime reservedAt;
+
+        Reservation(String workerId, float cpu, float ram, LocalDateTime reservedAt) {
+            this.workerId = workerId;
+            this.cpu = cpu;
+            this.ram = ram;
+            this.reservedAt = reservedAt;
+        }
+
+        public String getWorkerId() {
+            return workerId;
+        }
+
+    }
+
+
+    /**
+     * 单个 worker 的预占记录，按预占时间排序，访问时需要加锁
+     */
+    private static class Ledger {
+
+        private final Deque<Reservation> reservations = new ArrayDeque<>();
+
+        private float cpu;
+
+        private float ram;
+
+        void add(Reservation reservation) {
+            reservations.addLast(reservation);
+            cpu += reservation.cpu;
+            ram += reservation.ram;
+        }
+
+        void remove(Reservation reservation) {
+            if (reservations.remove(reservation)) {
+                deduct(reservation);
+            }
+        }
+
+        /**
+         * 移除指定时间之前的预占
+         */
+        void expire(LocalDateTime before) {
+            Iterator<Reservation> iterator = reservations.iterator();
+            while (iterator.hasNext()) {
+                Reservation reservation = iterator.next();
+                if (!reservation.reservedAt.isBefore(before)) {
+                    break;
+                }
+                iterator.remove();
+                deduct(reservation);
+            }
+        }
+
+        WorkerAvailableResource subtractFrom(WorkerAvailableResource reported) {
+            if (reservations.isEmpty()) {
+                return reported;
+            }
+            return new WorkerAvailableResource(
+                    reported.getAvailableCpu() - cpu,
+                    reported.getAvailableRam() - ram,
+                    reported.getAvailableQueueLimit() - reservations.size()
+            );
+        }
+
+        private void deduct(Reservation reservation) {
+            if (reservations.isEmpty()) {
+                // 避免浮点累计误差
+                cpu = 0;
+                ram = 0;
+            } else {
+                cpu -= reservation.cpu;
+                ram -= reservation.ram;
+            }
+        }
+
+    }
+
+}
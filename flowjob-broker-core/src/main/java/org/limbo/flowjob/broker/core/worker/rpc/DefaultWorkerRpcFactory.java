@@ -16,19 +16,131 @@
 
 package org.limbo.flowjob.broker.core.worker.rpc;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
 import org.limbo.flowjob.api.constants.Protocol;
 import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.common.rpc.netty.NettyRpcClient;
+import org.limbo.flowjob.common.rpc.netty.NettyRpcEndpoint;
+import org.limbo.flowjob.common.rpc.netty.RpcMessageType;
+import org.limbo.flowjob.common.rpc.netty.RpcRequestHandler;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
 
+import java.net.InetSocketAddress;
+import java.net.Proxy;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 默认的 Worker RPC 协议工厂，先在这里写死，后面提取到独立的模块中，通过 SPI 加载。
+ * <p>
+ * 所有 worker 共享同一个 {@link OkHttpClient} 及其连接池，按 worker 通信地址缓存 Retrofit 接口，
+ * 避免每次下发任务都新建客户端和 TCP 连接。
+ * <p>
+ * tcp 协议的 worker 使用 Netty 长连接通信，每个 worker 一个连接，worker 也会通过此连接发送心跳和任务反馈。
  *
  * @author Brozen
  * @since 2022-08-12
  */
 public class DefaultWorkerRpcFactory implements WorkerRpcFactory {
 
+    /**
+     * 连接池最大空闲连接数
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 64;
+
+    /**
+     * 空闲连接保持时间，分钟
+     */
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    /**
+     * 异步请求最大并发数
+     */
+    private static final int MAX_REQUESTS = 256;
+
+    /**
+     * 单个 worker 异步请求最大并发数
+     */
+    private static final int MAX_REQUESTS_PER_HOST = 64;
+
+    /**
+     * 长连接建立超时时间，毫秒
+     */
+    private static final int NETTY_CONNECT_TIMEOUT = 3000;
+
+    /**
+     * 长连接请求超时时间，毫秒
+     */
+    private static final long NETTY_REQUEST_TIMEOUT = 10000;
+
+    /**
+     * 处理 worker 请求的线程数
+     */
+    private static final int NETTY_HANDLER_THREADS = 8;
+
+    /**
+     * 处理 worker 请求的队列长度
+     */
+    private static final int NETTY_HANDLER_QUEUE_SIZE = 4096;
+
+    /**
+     * 获取连接次数
+     */
+    private final LongAdder acquiredConnections = new LongAdder();
+
+    /**
+     * 新建连接次数
+     */
+    private final LongAdder createdConnections = new LongAdder();
+
+    private final ConnectionPool connectionPool = new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher())
+            .eventListener(new ConnectionStatsListener())
+            .build();
+
+    /**
+     * 所有接口共享的 JSON 序列化，与 worker 端使用相同的 Jackson 配置
+     */
+    private final Converter.Factory converterFactory = new JacksonRpcConverterFactory();
+
+    /**
+     * 按 worker 通信地址缓存的接口
+     */
+    private final Map<String, RetrofitHttpWorkerRpc.RetrofitWorkerApi> apis = new ConcurrentHashMap<>();
+
+    /**
+     * 按 worker 通信地址缓存的长连接客户端
+     */
+    private final Map<String, NettyRpcClient> nettyClients = new ConcurrentHashMap<>();
+
+    /**
+     * 处理 worker 请求的处理器，所有长连接共享
+     */
+    private final Map<RpcMessageType, RpcRequestHandler> nettyHandlers = new ConcurrentHashMap<>();
+
+    /**
+     * 长连接 IO 线程，首次创建 tcp 协议客户端时初始化
+     */
+    private volatile EventLoopGroup nettyGroup;
+
+    private volatile ExecutorService nettyHandlerExecutor;
+
 
     /**
      * {@inheritDoc}
@@ -42,12 +154,140 @@ public class DefaultWorkerRpcFactory implements WorkerRpcFactory {
         switch (protocol) {
             case HTTP:
             case HTTPS:
-                return new RetrofitHttpWorkerRpc(worker);
+                return new RetrofitHttpWorkerRpc(worker, retrofitApi(rpcBaseUrl));
+            case TCP:
+                return new NettyWorkerRpc(worker, nettyClient(rpcBaseUrl));
             default:
                 throw new IllegalArgumentException("不支持的 Worker 通信协议：" + rpcBaseUrl.getProtocol());
         }
     }
 
 
+    /**
+     * 异步请求的 Dispatcher，限制同时在途的下发请求数量
+     */
+    private static Dispatcher dispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        return dispatcher;
+    }
+
+
+    /**
+     * 获取或创建通信地址对应的接口
+     */
+    private RetrofitHttpWorkerRpc.RetrofitWorkerApi retrofitApi(URL rpcBaseUrl) {
+        return apis.computeIfAbsent(rpcBaseUrl.toString(), url -> new Retrofit.Builder()
+                .client(client)
+                .baseUrl(rpcBaseUrl)
+                .addConverterFactory(converterFactory)
+                .build().create(RetrofitHttpWorkerRpc.RetrofitWorkerApi.class));
+    }
+
+
+    /**
+     * 获取或创建通信地址对应的长连接客户端
+     */
+    private NettyRpcClient nettyClient(URL rpcBaseUrl) {
+        if (nettyGroup == null) {
+            synchronized (this) {
+                if (nettyGroup == null) {
+                    nettyHandlerExecutor = NettyRpcEndpoint.newHandlerExecutor(
+                            "flowjob-worker-rpc-handler", NETTY_HANDLER_THREADS, NETTY_HANDLER_QUEUE_SIZE);
+                    nettyGroup = new NioEventLoopGroup(0, new DefaultThreadFactory("flowjob-worker-rpc-io", true));
+                }
+            }
+        }
+
+        int port = rpcBaseUrl.getPort() > 0 ? rpcBaseUrl.getPort() : Protocol.TCP.port;
+        return nettyClients.computeIfAbsent(rpcBaseUrl.toString(), url -> new NettyRpcClient(
+                rpcBaseUrl.getHost(), port, nettyGroup, nettyHandlerExecutor, nettyHandlers,
+                NETTY_CONNECT_TIMEOUT, NETTY_REQUEST_TIMEOUT
+        ));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * @param rpcBaseUrl
+     */
+    @Override
+    public void evict(URL rpcBaseUrl) {
+        if (rpcBaseUrl != null) {
+            apis.remove(rpcBaseUrl.toString());
+            NettyRpcClient client = nettyClients.remove(rpcBaseUrl.toString());
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * @param type
+     * @param handler
+     */
+    @Override
+    public void registerHandler(RpcMessageType type, RpcRequestHandler handler) {
+        nettyHandlers.put(type, handler);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * 关闭所有长连接及 IO、处理线程，并释放 HTTP 连接池
+     */
+    @Override
+    public synchronized void close() {
+        nettyClients.values().forEach(NettyRpcClient::close);
+        nettyClients.clear();
+        apis.clear();
+
+        if (nettyGroup != null) {
+            nettyGroup.shutdownGracefully();
+            nettyHandlerExecutor.shutdown();
+            nettyGroup = null;
+            nettyHandlerExecutor = null;
+        }
+
+        client.dispatcher().executorService().shutdown();
+        connectionPool.evictAll();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * @return
+     */
+    @Override
+    public WorkerRpcStats stats() {
+        return WorkerRpcStats.builder()
+                .cachedClients(apis.size() + nettyClients.size())
+                .connections(connectionPool.connectionCount())
+                .idleConnections(connectionPool.idleConnectionCount())
+                .acquiredConnections(acquiredConnections.sum())
+                .createdConnections(createdConnections.sum())
+                .build();
+    }
+
+
+    /**
+     * 统计连接获取、新建次数，用于计算连接复用率
+     */
+    private class ConnectionStatsListener extends EventListener {
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            createdConnections.increment();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            acquiredConnections.increment();
+        }
+
+    }
 
 }
@@ -0,0 +1,122 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.worker.rpc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import org.limbo.flowjob.common.utils.json.JacksonUtils;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Worker RPC 使用的 Jackson 序列化，与 worker 端使用相同的 {@link JacksonUtils} 配置，保证日期等格式一致。
+ * <p>
+ * 按类型缓存预先构建的 {@link ObjectWriter}、{@link ObjectReader}，所有 Retrofit 接口共享；
+ * 请求体直接序列化到 OkHttp 的输出流，响应体直接从输入流反序列化，不生成中间字符串。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+class JacksonRpcConverterFactory extends Converter.Factory {
+
+    private static final MediaType MEDIA_TYPE = MediaType.get("application/json; charset=UTF-8");
+
+    private final ObjectMapper mapper;
+
+    private final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    JacksonRpcConverterFactory() {
+        this.mapper = JacksonUtils.newObjectMapper();
+        // 使用字节码生成的属性访问器代替反射
+        this.mapper.registerModule(new AfterburnerModule());
+    }
+
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                          Annotation[] methodAnnotations, Retrofit retrofit) {
+        // 输出流由 OkHttp 负责关闭
+        ObjectWriter writer = writers.computeIfAbsent(type, t -> mapper.writerFor(javaType(t))
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        return value -> new StreamingJsonBody(writer, value);
+    }
+
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        ObjectReader reader = readers.computeIfAbsent(type, t -> mapper.readerFor(javaType(t)));
+        return body -> {
+            try (InputStream in = body.byteStream()) {
+                return reader.readValue(in);
+            } finally {
+                body.close();
+            }
+        };
+    }
+
+
+    private JavaType javaType(Type type) {
+        return mapper.getTypeFactory().constructType(type);
+    }
+
+
+    /**
+     * 写出时直接序列化到输出流的请求体
+     */
+    private static class StreamingJsonBody extends RequestBody {
+
+        private final ObjectWriter writer;
+
+        private final Object value;
+
+        StreamingJsonBody(ObjectWriter writer, Object value) {
+            this.writer = writer;
+            this.value = value;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return MEDIA_TYPE;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            writer.writeValue(sink.outputStream(), value);
+        }
+
+    }
+
+}
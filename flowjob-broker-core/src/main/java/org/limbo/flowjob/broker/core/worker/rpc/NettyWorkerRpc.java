@@ -0,0 +1,138 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.worker.rpc;
+
+import org.limbo.flowjob.api.remote.param.TaskSubmitParam;
+import org.limbo.flowjob.broker.core.domain.task.Task;
+import org.limbo.flowjob.broker.core.exceptions.WorkerException;
+import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.common.rpc.netty.NettyRpcClient;
+import org.limbo.flowjob.common.rpc.netty.RpcMessageType;
+import org.limbo.flowjob.common.rpc.netty.RpcPayloads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * 基于 Netty 长连接的二进制协议通信，多个请求复用同一个连接。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class NettyWorkerRpc extends AbstractWorkerRpc {
+
+    private final NettyRpcClient client;
+
+    /**
+     * @param worker 绑定的 worker
+     * @param client 按 worker 通信地址缓存的客户端，由 {@link DefaultWorkerRpcFactory} 创建
+     */
+    public NettyWorkerRpc(Worker worker, NettyRpcClient client) {
+        super(worker);
+        this.client = client;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param task 作业实例
+     * @return
+     */
+    @Override
+    public boolean sendTask(Task task) {
+        return join(sendTaskAsync(task));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param task 作业实例
+     * @return
+     */
+    @Override
+    public CompletableFuture<Boolean> sendTaskAsync(Task task) {
+        byte[] body = RpcPayloads.encodeTask(WorkerConverter.toTaskSubmitParam(task));
+        return send(RpcMessageType.SUBMIT_TASK, body, RpcPayloads::decodeBoolean);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param tasks 作业实例
+     * @return
+     */
+    @Override
+    public Map<String, Boolean> sendTasks(List<Task> tasks) {
+        return join(sendTasksAsync(tasks));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param tasks 作业实例
+     * @return
+     */
+    @Override
+    public CompletableFuture<Map<String, Boolean>> sendTasksAsync(List<Task> tasks) {
+        List<TaskSubmitParam> params = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            params.add(WorkerConverter.toTaskSubmitParam(task));
+        }
+        return send(RpcMessageType.SUBMIT_TASKS, RpcPayloads.encodeTasks(params), RpcPayloads::decodeSubmitResults);
+    }
+
+
+    /**
+     * 发起请求，异常统一包装为 {@link WorkerException}
+     */
+    private <T> CompletableFuture<T> send(RpcMessageType type, byte[] body, Function<byte[], T> decoder) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        client.request(type, body).whenComplete((response, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                future.completeExceptionally(new WorkerException(workerId(), "rpc execute error", cause));
+                return;
+            }
+
+            try {
+                future.complete(decoder.apply(response));
+            } catch (Exception ex) {
+                future.completeExceptionally(new WorkerException(workerId(), "rpc decode response error", ex));
+            }
+        });
+        return future;
+    }
+
+
+    private <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof WorkerException) {
+                throw (WorkerException) e.getCause();
+            }
+            throw new WorkerException(workerId(), "rpc execute error", e.getCause());
+        }
+    }
+
+}
@@ -19,17 +19,23 @@ package org.limbo.flowjob.broker.core.worker.rpc;
 import org.apache.commons.lang3.BooleanUtils;
 import org.limbo.flowjob.api.remote.constants.HttpWorkerApi;
 import org.limbo.flowjob.api.ResponseDTO;
+import org.limbo.flowjob.api.remote.dto.TaskSubmitResultDTO;
+import org.limbo.flowjob.api.remote.param.TaskBatchSubmitParam;
 import org.limbo.flowjob.api.remote.param.TaskSubmitParam;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 import org.limbo.flowjob.broker.core.exceptions.WorkerException;
 import org.limbo.flowjob.broker.core.worker.Worker;
 import retrofit2.Call;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.Callback;
+import retrofit2.Response;
 import retrofit2.http.Body;
 import retrofit2.http.Headers;
 import retrofit2.http.POST;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Brozen
  * @since 2022-08-26
@@ -38,12 +44,13 @@ public class RetrofitHttpWorkerRpc extends HttpWorkerRpc {
 
     private final RetrofitWorkerApi api;
 
-    public RetrofitHttpWorkerRpc(Worker worker) {
+    /**
+     * @param worker 绑定的 worker
+     * @param api 按 worker 通信地址缓存的接口，由 {@link DefaultWorkerRpcFactory} 创建
+     */
+    public RetrofitHttpWorkerRpc(Worker worker, RetrofitWorkerApi api) {
         super(worker);
-        this.api = new Retrofit.Builder()
-                .baseUrl(getBaseUrl())
-                .addConverterFactory(GsonConverterFactory.create())
-                .build().create(RetrofitWorkerApi.class);
+        this.api = api;
     }
 
     /**
@@ -58,6 +65,41 @@ public class RetrofitHttpWorkerRpc extends HttpWorkerRpc {
         return BooleanUtils.isTrue(result);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @param task 作业实例
+     * @return
+     */
+    @Override
+    public CompletableFuture<Boolean> sendTaskAsync(Task task) {
+        return sendAsync(api.sendTask(WorkerConverter.toTaskSubmitParam(task)))
+                .thenApply(BooleanUtils::isTrue);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param tasks 作业实例
+     * @return
+     */
+    @Override
+    public Map<String, Boolean> sendTasks(List<Task> tasks) {
+        return WorkerConverter.toTaskSubmitResults(send(api.sendTasks(WorkerConverter.toTaskBatchSubmitParam(tasks))));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param tasks 作业实例
+     * @return
+     */
+    @Override
+    public CompletableFuture<Map<String, Boolean>> sendTasksAsync(List<Task> tasks) {
+        return sendAsync(api.sendTasks(WorkerConverter.toTaskBatchSubmitParam(tasks)))
+                .thenApply(WorkerConverter::toTaskSubmitResults);
+    }
+
     private <T> T send(Call<ResponseDTO<T>> call) {
         return getResponseData(() -> {
             try {
@@ -69,6 +111,30 @@ public class RetrofitHttpWorkerRpc extends HttpWorkerRpc {
     }
 
 
+    /**
+     * 通过 OkHttp 的 Dispatcher 异步执行请求，不阻塞调用线程
+     */
+    private <T> CompletableFuture<T> sendAsync(Call<ResponseDTO<T>> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.enqueue(new Callback<ResponseDTO<T>>() {
+            @Override
+            public void onResponse(Call<ResponseDTO<T>> call, Response<ResponseDTO<T>> response) {
+                try {
+                    future.complete(getResponseData(response::body));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ResponseDTO<T>> call, Throwable t) {
+                future.completeExceptionally(new WorkerException(workerId(), "http api execute error", t));
+            }
+        });
+        return future;
+    }
+
+
     /**
      * Worker HTTP 协议通信接口
      */
@@ -80,6 +146,12 @@ public class RetrofitHttpWorkerRpc extends HttpWorkerRpc {
         @POST(HttpWorkerApi.API_SEND_TASK)
         Call<ResponseDTO<Boolean>> sendTask(@Body TaskSubmitParam param);
 
+        @Headers(
+                "Content-Type: application/json"
+        )
+        @POST(HttpWorkerApi.API_SEND_TASKS)
+        Call<ResponseDTO<List<TaskSubmitResultDTO>>> sendTasks(@Body TaskBatchSubmitParam param);
+
     }
 
 }
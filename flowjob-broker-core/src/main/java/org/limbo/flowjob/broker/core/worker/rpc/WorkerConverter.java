@@ -19,11 +19,14 @@
 package org.limbo.flowjob.broker.core.worker.rpc;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.limbo.flowjob.api.remote.dto.TaskSubmitResultDTO;
+import org.limbo.flowjob.api.remote.param.TaskBatchSubmitParam;
 import org.limbo.flowjob.api.remote.param.TaskSubmitParam;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 import org.limbo.flowjob.common.utils.attribute.Attributes;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -66,4 +69,20 @@ public class WorkerConverter {
         }
         return taskSubmitParam;
     }
+
+    public static TaskBatchSubmitParam toTaskBatchSubmitParam(List<Task> tasks) {
+        TaskBatchSubmitParam param = new TaskBatchSubmitParam();
+        param.setTasks(tasks.stream().map(WorkerConverter::toTaskSubmitParam).collect(Collectors.toList()));
+        return param;
+    }
+
+    public static Map<String, Boolean> toTaskSubmitResults(List<TaskSubmitResultDTO> results) {
+        Map<String, Boolean> accepted = new HashMap<>();
+        if (CollectionUtils.isNotEmpty(results)) {
+            for (TaskSubmitResultDTO result : results) {
+                accepted.put(result.getTaskId(), result.isAccepted());
+            }
+        }
+        return accepted;
+    }
 }
@@ -19,6 +19,11 @@ package org.limbo.flowjob.broker.core.worker.rpc;
 import org.limbo.flowjob.api.constants.Protocol;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Worker 通信接口
  *
@@ -34,6 +39,55 @@ public interface WorkerRpc {
      */
     boolean sendTask(Task task);
 
+    /**
+     * 异步发送一个作业到worker执行。默认实现同步调用 {@link #sendTask(Task)}，实现类应使用非阻塞的方式发送
+     * @param task 作业实例
+     * @return worker接受task后完成，发送失败时异常完成
+     */
+    default CompletableFuture<Boolean> sendTaskAsync(Task task) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        try {
+            future.complete(sendTask(task));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 批量发送作业到worker执行，worker单独判断每个task是否接受。默认实现逐个调用 {@link #sendTask(Task)}
+     * @param tasks 作业实例
+     * @return taskId -> worker是否接受了task
+     */
+    default Map<String, Boolean> sendTasks(List<Task> tasks) {
+        Map<String, Boolean> results = new HashMap<>();
+        for (Task task : tasks) {
+            boolean accepted;
+            try {
+                accepted = sendTask(task);
+            } catch (Exception e) {
+                accepted = false;
+            }
+            results.put(task.getTaskId(), accepted);
+        }
+        return results;
+    }
+
+    /**
+     * 异步批量发送作业到worker执行。默认实现同步调用 {@link #sendTasks(List)}
+     * @param tasks 作业实例
+     * @return taskId -> worker是否接受了task，发送失败时异常完成
+     */
+    default CompletableFuture<Map<String, Boolean>> sendTasksAsync(List<Task> tasks) {
+        CompletableFuture<Map<String, Boolean>> future = new CompletableFuture<>();
+        try {
+            future.complete(sendTasks(tasks));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     String workerId();
 
     Protocol protocol();
@@ -17,6 +17,10 @@
 package org.limbo.flowjob.broker.core.worker.rpc;
 
 import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.common.rpc.netty.RpcMessageType;
+import org.limbo.flowjob.common.rpc.netty.RpcRequestHandler;
+
+import java.net.URL;
 
 /**
  * @author Brozen
@@ -40,5 +44,33 @@ public interface WorkerRpcFactory {
     WorkerRpc createRPC(Worker worker);
 
 
+    /**
+     * 移除指定通信地址缓存的 RPC 客户端，worker 下线时调用。
+     */
+    default void evict(URL rpcBaseUrl) {
+    }
+
+
+    /**
+     * RPC 客户端连接池统计。
+     */
+    default WorkerRpcStats stats() {
+        return new WorkerRpcStats(0, 0, 0, 0, 0);
+    }
+
+
+    /**
+     * 注册处理 worker 请求的处理器，用于 worker 通过长连接发送心跳、反馈任务等。不支持长连接的实现忽略即可。
+     */
+    default void registerHandler(RpcMessageType type, RpcRequestHandler handler) {
+    }
+
+
+    /**
+     * 关闭所有 RPC 客户端，释放连接及线程，broker 停止时调用。
+     */
+    default void close() {
+    }
+
 
 }
@@ -0,0 +1,73 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.core.worker.rpc;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Worker RPC 客户端连接池统计
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Data
+@AllArgsConstructor
+@Builder(builderClassName = "Builder")
+public class WorkerRpcStats {
+
+    /**
+     * 缓存的 RPC 客户端数量，每个 worker 通信地址一个
+     */
+    private final int cachedClients;
+
+    /**
+     * 连接池中的连接数
+     */
+    private final int connections;
+
+    /**
+     * 连接池中的空闲连接数
+     */
+    private final int idleConnections;
+
+    /**
+     * 请求获取连接的次数
+     */
+    private final long acquiredConnections;
+
+    /**
+     * 新建连接的次数
+     */
+    private final long createdConnections;
+
+
+    /**
+     * 连接复用率，获取连接时复用已有连接的比例
+     */
+    public double getReuseRatio() {
+        if (acquiredConnections <= 0) {
+            return 0;
+        }
+        long reused = Math.max(0, acquiredConnections - createdConnections);
+        return (double) reused / acquiredConnections;
+    }
+
+}
@@ -30,7 +30,6 @@ import org.limbo.flowjob.broker.core.domain.plan.WorkflowPlan;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 import org.limbo.flowjob.broker.core.schedule.ScheduleOption;
 import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
-import org.limbo.flowjob.broker.dao.entity.PlanEntity;
 import org.limbo.flowjob.broker.dao.entity.PlanInfoEntity;
 import org.limbo.flowjob.broker.dao.entity.TaskEntity;
 import org.limbo.flowjob.api.constants.PlanType;
@@ -54,7 +53,7 @@ import java.util.List;
 @Slf4j
 public class DomainConverter {
 
-    public static Plan toPlan(PlanEntity entity, PlanInfoEntity planInfoEntity) {
+    public static Plan toPlan(PlanInfoEntity planInfoEntity) {
         Plan plan;
         PlanType planType = PlanType.parse(planInfoEntity.getPlanType());
         if (PlanType.NORMAL == planType) {
@@ -74,7 +73,7 @@ public class DomainConverter {
                     toJobDag(planInfoEntity.getJobInfo())
             );
         } else {
-            throw new IllegalArgumentException("Illegal PlanType in plan:" + entity.getPlanId() + " version:" + entity.getCurrentVersion());
+            throw new IllegalArgumentException("Illegal PlanType in plan:" + planInfoEntity.getPlanId() + " version:" + planInfoEntity.getPlanInfoId());
         }
         return plan;
     }
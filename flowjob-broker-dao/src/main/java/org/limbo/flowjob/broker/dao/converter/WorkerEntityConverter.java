@@ -33,6 +33,7 @@ import org.limbo.flowjob.broker.dao.entity.WorkerExecutorEntity;
 import org.limbo.flowjob.broker.dao.entity.WorkerMetricEntity;
 import org.limbo.flowjob.broker.dao.entity.WorkerTagEntity;
 import org.limbo.flowjob.api.constants.WorkerStatus;
+import org.limbo.flowjob.common.utils.NetUtils;
 import org.limbo.flowjob.common.utils.json.JacksonUtils;
 import org.springframework.stereotype.Component;
 
@@ -87,7 +88,7 @@ public class WorkerEntityConverter {
     @Nonnull
     private URL workerRpcBaseUrl(WorkerEntity po) {
         try {
-            return new URL(po.getProtocol(), po.getHost(), po.getPort(), "");
+            return NetUtils.newURL(po.getProtocol(), po.getHost(), po.getPort());
         } catch (Exception e) {
             throw new IllegalStateException("parse worker rpc info error", e);
         }
@@ -20,21 +20,14 @@ package org.limbo.flowjob.broker.dao.domain;
 
 import lombok.Setter;
 import org.limbo.flowjob.api.constants.JobStatus;
-import org.limbo.flowjob.api.constants.MsgConstants;
-import org.limbo.flowjob.api.constants.PlanType;
 import org.limbo.flowjob.broker.core.domain.job.JobInfo;
 import org.limbo.flowjob.broker.core.domain.job.JobInstance;
 import org.limbo.flowjob.broker.core.domain.job.JobInstanceRepository;
-import org.limbo.flowjob.broker.core.domain.job.WorkflowJobInfo;
-import org.limbo.flowjob.broker.core.exceptions.VerifyException;
-import org.limbo.flowjob.broker.dao.converter.DomainConverter;
+import org.limbo.flowjob.broker.core.domain.plan.Plan;
 import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
-import org.limbo.flowjob.broker.dao.entity.PlanInfoEntity;
 import org.limbo.flowjob.broker.dao.repositories.JobInstanceEntityRepo;
-import org.limbo.flowjob.broker.dao.repositories.PlanInfoEntityRepo;
+import org.limbo.flowjob.broker.dao.support.PlanVersionCache;
 import org.limbo.flowjob.common.utils.attribute.Attributes;
-import org.limbo.flowjob.common.utils.dag.DAG;
-import org.limbo.flowjob.common.utils.json.JacksonUtils;
 import org.springframework.stereotype.Repository;
 
 import javax.inject.Inject;
@@ -50,7 +43,7 @@ public class JobInstanceRepo implements JobInstanceRepository {
     private JobInstanceEntityRepo jobInstanceEntityRepo;
 
     @Setter(onMethod_ = @Inject)
-    private PlanInfoEntityRepo planInfoEntityRepo;
+    private PlanVersionCache planVersionCache;
 
     @Override
     public JobInstance get(String id) {
@@ -73,31 +66,21 @@ public class JobInstanceRepo implements JobInstanceRepository {
     }
 
     private JobInstance getByEntity(JobInstanceEntity entity) {
-        PlanInfoEntity planInfoEntity = planInfoEntityRepo.findById(entity.getPlanInfoId())
-                .orElseThrow(VerifyException.supplier(MsgConstants.CANT_FIND_PLAN_INSTANCE + entity.getPlanId()));
+        Plan plan = planVersionCache.getPlan(entity.getPlanInfoId());
+        JobInfo jobInfo = planVersionCache.getJobInfo(entity.getPlanInfoId(), entity.getJobId());
 
         JobInstance jobInstance = new JobInstance();
-        PlanType planType = PlanType.parse(planInfoEntity.getPlanType());
-        JobInfo jobInfo;
-        if (PlanType.NORMAL == planType) {
-            jobInfo = JacksonUtils.parseObject(planInfoEntity.getJobInfo(), JobInfo.class);
-        } else if (PlanType.WORKFLOW == planType) {
-            DAG<WorkflowJobInfo> dag = DomainConverter.toJobDag(planInfoEntity.getJobInfo());
-            jobInfo = dag.getNode(entity.getJobId());
-        } else {
-            throw new IllegalArgumentException("Illegal PlanType in plan:" + planInfoEntity.getPlanId() + " version:" + planInfoEntity.getPlanInfoId());
-        }
-
         jobInstance.setJobInfo(jobInfo);
-        jobInstance.setPlanType(planType);
+        jobInstance.setPlanType(plan.getType());
         jobInstance.setPlanId(entity.getPlanId());
         jobInstance.setRetryTimes(entity.getRetryTimes());
         jobInstance.setPlanInstanceId(entity.getPlanInstanceId());
-        jobInstance.setPlanVersion(entity.getPlanInstanceId());
+        jobInstance.setPlanVersion(entity.getPlanInfoId());
         jobInstance.setStatus(JobStatus.SCHEDULING);
         jobInstance.setTriggerAt(entity.getTriggerAt());
         jobInstance.setContext(new Attributes(entity.getContext()));
-        jobInstance.setJobAttributes(jobInfo.getAttributes() == null ? new Attributes() : jobInfo.getAttributes());
+        // jobInfo 为缓存中各实例共享的对象，复制一份，任务返回的作业参数只写入当前实例
+        jobInstance.setJobAttributes(jobInfo.getAttributes() == null ? new Attributes() : new Attributes(jobInfo.getAttributes().toMap()));
         jobInstance.setJobInstanceId(entity.getJobInstanceId());
         jobInstance.setStatus(JobStatus.parse(entity.getStatus()));
         jobInstance.setStartAt(entity.getStartAt());
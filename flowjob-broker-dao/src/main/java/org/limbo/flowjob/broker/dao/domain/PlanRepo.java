@@ -20,20 +20,12 @@ package org.limbo.flowjob.broker.dao.domain;
 
 import lombok.Setter;
 import org.limbo.flowjob.api.constants.MsgConstants;
-import org.limbo.flowjob.api.constants.PlanType;
-import org.limbo.flowjob.api.constants.TriggerType;
-import org.limbo.flowjob.broker.core.domain.job.JobInfo;
 import org.limbo.flowjob.broker.core.domain.plan.Plan;
 import org.limbo.flowjob.broker.core.domain.plan.PlanRepository;
-import org.limbo.flowjob.broker.core.domain.plan.NormalPlan;
-import org.limbo.flowjob.broker.core.domain.plan.WorkflowPlan;
 import org.limbo.flowjob.broker.core.exceptions.VerifyException;
-import org.limbo.flowjob.broker.dao.converter.DomainConverter;
 import org.limbo.flowjob.broker.dao.entity.PlanEntity;
-import org.limbo.flowjob.broker.dao.entity.PlanInfoEntity;
 import org.limbo.flowjob.broker.dao.repositories.PlanEntityRepo;
-import org.limbo.flowjob.broker.dao.repositories.PlanInfoEntityRepo;
-import org.limbo.flowjob.common.utils.json.JacksonUtils;
+import org.limbo.flowjob.broker.dao.support.PlanVersionCache;
 import org.springframework.stereotype.Repository;
 
 import javax.inject.Inject;
@@ -50,49 +42,20 @@ public class PlanRepo implements PlanRepository {
     private PlanEntityRepo planEntityRepo;
 
     @Setter(onMethod_ = @Inject)
-    private PlanInfoEntityRepo planInfoEntityRepo;
+    private PlanVersionCache planVersionCache;
 
     @Override
     public Plan get(String id) {
         PlanEntity planEntity = planEntityRepo.findById(id).orElseThrow(VerifyException.supplier(MsgConstants.CANT_FIND_PLAN + id));
-        PlanInfoEntity planInfoEntity = planInfoEntityRepo.findById(planEntity.getCurrentVersion())
-                .orElseThrow(VerifyException.supplier(MsgConstants.CANT_FIND_PLAN_INFO + planEntity.getCurrentVersion()));
-        return assemble(planEntity, planInfoEntity);
+        return planVersionCache.getPlan(planEntity.getCurrentVersion());
     }
 
     @Override
     public Plan getByVersion(String id, String version) {
-        PlanEntity planEntity = planEntityRepo.findById(id).orElseThrow(VerifyException.supplier(MsgConstants.CANT_FIND_PLAN + id));
-        PlanInfoEntity planInfoEntity = planInfoEntityRepo.findById(version)
-                .orElseThrow(VerifyException.supplier(MsgConstants.CANT_FIND_PLAN_INFO + planEntity.getCurrentVersion()));
-        if (!Objects.equals(planInfoEntity.getPlanId(), planEntity.getPlanId())) {
+        Plan plan = planVersionCache.getPlan(version);
+        if (!Objects.equals(plan.getPlanId(), id)) {
             throw new IllegalArgumentException("plan:" + id + " version:" + version + " not match");
         }
-        return assemble(planEntity, planInfoEntity);
-    }
-
-    private Plan assemble(PlanEntity planEntity, PlanInfoEntity planInfoEntity) {
-        Plan plan;
-        PlanType planType = PlanType.parse(planInfoEntity.getPlanType());
-        if (PlanType.NORMAL == planType) {
-            plan = new NormalPlan(
-                    planInfoEntity.getPlanId(),
-                    planInfoEntity.getPlanInfoId(),
-                    TriggerType.parse(planInfoEntity.getTriggerType()),
-                    DomainConverter.toScheduleOption(planInfoEntity),
-                    JacksonUtils.parseObject(planInfoEntity.getJobInfo(), JobInfo.class)
-            );
-        } else if (PlanType.WORKFLOW == planType) {
-            plan = new WorkflowPlan(
-                    planInfoEntity.getPlanId(),
-                    planInfoEntity.getPlanInfoId(),
-                    TriggerType.parse(planInfoEntity.getTriggerType()),
-                    DomainConverter.toScheduleOption(planInfoEntity),
-                    DomainConverter.toJobDag(planInfoEntity.getJobInfo())
-            );
-        } else {
-            throw new IllegalArgumentException("Illegal PlanType in plan:" + planEntity.getPlanId() + " version:" + planEntity.getCurrentVersion());
-        }
         return plan;
     }
 
@@ -16,41 +16,78 @@
 
 package org.limbo.flowjob.broker.dao.domain;
 
-import lombok.AllArgsConstructor;
-import lombok.Setter;
 import org.limbo.flowjob.broker.core.domain.task.Task;
 import org.limbo.flowjob.broker.core.statistics.WorkerLBStatistics;
 import org.limbo.flowjob.broker.core.statistics.WorkerStatisticsRepository;
 import org.limbo.flowjob.broker.core.worker.Worker;
-import org.limbo.flowjob.common.utils.concurrent.Lockable;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 单机内存存储 Worker 统计数据
+ * <p>
+ * 每个 worker 使用一个按时间分桶的环形数组计数，桶内使用 {@link LongAdder} 累加下发次数，记录时无锁，内存占用与下发次数无关。
+ * <p>
+ * 不再写入的桶在查询时封存，封存的桶维护一个滑动窗口内的累计值，桶滑入、滑出窗口时增减，
+ * 查询时只需从累计值中扣除查询时间点之前的桶，或直接累加查询范围内的封存桶，取二者中较少的一边，再加上未封存的桶。
+ * 下发次数按桶统计，查询时间点所在的桶会整体计入。
  *
  * @author Brozen
  * @since 2022-12-21
  */
-public class SingletonWorkerStatisticsRepo extends Lockable<List<SingletonWorkerStatisticsRepo.WorkerDispatchRecord>> implements WorkerStatisticsRepository {
+public class SingletonWorkerStatisticsRepo implements WorkerStatisticsRepository {
 
     /**
-     * 最久统计多长时间的数据，默认 12H。
+     * 单个桶的时长，毫秒
      */
-    @Setter
-    private Duration maxStatisticDuration = Duration.ofHours(12);
+    private final long bucketMillis;
 
+    /**
+     * 每个 worker 的桶数量
+     */
+    private final int bucketCount;
+
+    /**
+     * 最久统计多长时间的数据，毫秒
+     */
+    private final long maxStatisticMillis;
 
+    /**
+     * 最近的几个桶可能仍有写入，查询时不封存
+     */
+    private static final int LIVE_BUCKETS = 2;
+
+    /**
+     * workerId 到统计数据的映射
+     */
+    private final Map<String, DispatchCounter> counters = new ConcurrentHashMap<>();
+
+
+    /**
+     * 默认统计 12H 的数据，每分钟一个桶
+     */
     public SingletonWorkerStatisticsRepo() {
-        super(new ArrayList<>());
+        this(Duration.ofHours(12), Duration.ofMinutes(1));
+    }
+
+
+    /**
+     * @param maxStatisticDuration 最久统计多长时间的数据
+     * @param bucketDuration 单个桶的时长
+     */
+    public SingletonWorkerStatisticsRepo(Duration maxStatisticDuration, Duration bucketDuration) {
+        this.bucketMillis = Math.max(bucketDuration.toMillis(), 1);
+        this.maxStatisticMillis = maxStatisticDuration.toMillis();
+        this.bucketCount = (int) Math.max((maxStatisticMillis + bucketMillis - 1) / bucketMillis, 1);
     }
 
 
@@ -59,29 +96,14 @@ public class SingletonWorkerStatisticsRepo extends Lockable<List<SingletonWorker
      */
     @Override
     public void recordTaskDispatched(Task task, Worker worker) {
-        runInWriteLock(records -> {
-            // 新增记录
-            records.add(new WorkerDispatchRecord(
-                    task.getWorkerId(), Instant.now()
-            ));
-
-            // 同时检测头部 10 条记录是否过时，如过时需要移除
-            int maxDetectItems = 10;
-            Instant expiresLimit = Instant.now().plusSeconds(-maxStatisticDuration.getSeconds());
-            Iterator<WorkerDispatchRecord> iterator = records.iterator();
-            for (int i = 0; i < maxDetectItems; i++) {
-                if (!iterator.hasNext()) {
-                    break;
-                }
-
-                WorkerDispatchRecord r = iterator.next();
-                if (r.dispatchAt.isBefore(expiresLimit)) {
-                    iterator.remove();
-                } else {
-                    break;
-                }
-            }
-        });
+        long now = System.currentTimeMillis();
+        DispatchCounter counter = counters.get(worker.getId());
+        if (counter == null) {
+            // 新 worker 出现时顺便清理长时间未下发的 worker，避免统计数据无限增长
+            evictIdle(now);
+            counter = counters.computeIfAbsent(worker.getId(), id -> new DispatchCounter(bucketCount, now / bucketMillis, now));
+        }
+        counter.record(now / bucketMillis, now);
     }
 
 
@@ -93,57 +115,202 @@ public class SingletonWorkerStatisticsRepo extends Lockable<List<SingletonWorker
      */
     @Override
     public List<WorkerLBStatistics> list(Set<String> workerIds, Instant limit) {
-        // 读取所有统计数据
-        Map<String, MutableWorkerLBStatistics> statistics = new HashMap<>();
-        runInReadLock(records -> {
-            for (int i = records.size() - 1; i >= 0; i--) {
-                WorkerDispatchRecord record = records.get(i);
-                if (workerIds.contains(record.workerId)
-                        && record.dispatchAt.isAfter(limit)) {
-                    MutableWorkerLBStatistics s = statistics.computeIfAbsent(
-                            record.workerId,
-                            MutableWorkerLBStatistics::new
-                    );
-                    s.statisticRecord(record);
-                }
+        long limitMillis = limit.toEpochMilli();
+        long currentBucket = System.currentTimeMillis() / bucketMillis;
+        long fromBucket = Math.max(limitMillis / bucketMillis, currentBucket - bucketCount + 1);
+
+        List<WorkerLBStatistics> statistics = new ArrayList<>(workerIds.size());
+        for (String workerId : workerIds) {
+            DispatchCounter counter = counters.get(workerId);
+            if (counter == null) {
+                continue;
             }
-        });
 
-        return statistics.values().stream()
-                .map(s -> new WorkerLBStatistics(s.workerId, s.lastDispatchTaskAt, s.dispatchTimes))
-                .collect(Collectors.toList());
+            long lastDispatchAt = counter.lastDispatchAt.get();
+            if (lastDispatchAt <= limitMillis) {
+                continue;
+            }
+
+            long dispatchTimes = counter.count(fromBucket, currentBucket);
+            statistics.add(new WorkerLBStatistics(
+                    workerId, Instant.ofEpochMilli(lastDispatchAt), (int) Math.min(dispatchTimes, Integer.MAX_VALUE)
+            ));
+        }
+        return statistics;
     }
 
 
+    /**
+     * 移除超过统计时长未下发任务的 worker
+     */
+    private void evictIdle(long now) {
+        long expireAt = now - maxStatisticMillis;
+        counters.values().removeIf(counter -> counter.lastDispatchAt.get() < expireAt);
+    }
+
 
-    public static class MutableWorkerLBStatistics {
-        private final String workerId;
-        private Instant lastDispatchTaskAt;
-        private int dispatchTimes;
+    /**
+     * 单个 worker 的下发统计
+     */
+    private static class DispatchCounter {
 
-        MutableWorkerLBStatistics(String workerId) {
-            this.workerId = workerId;
+        /**
+         * 环形数组，下标为桶序号对桶数量取模
+         */
+        private final AtomicReferenceArray<Bucket> buckets;
+
+        /**
+         * 最近一次下发时间戳，毫秒
+         */
+        private final LongAccumulator lastDispatchAt = new LongAccumulator(Long::max, Long.MIN_VALUE);
+
+        /**
+         * 封存时桶内的下发次数，下标与 buckets 一致
+         */
+        private final long[] sealedCounts;
+
+        /**
+         * 已封存且仍在统计窗口内的桶序号范围 [sealedFrom, sealedTo]，范围为空时 sealedFrom 大于 sealedTo
+         */
+        private long sealedFrom;
+
+        private long sealedTo;
+
+        /**
+         * [sealedFrom, sealedTo] 内的下发次数之和
+         */
+        private long sealedSum;
+
+        DispatchCounter(int bucketCount, long createdBucket, long createdAt) {
+            this.buckets = new AtomicReferenceArray<>(bucketCount);
+            this.sealedCounts = new long[bucketCount];
+            this.sealedFrom = createdBucket;
+            this.sealedTo = createdBucket - 1;
+            // 创建即视为活跃，避免记录前被清理
+            this.lastDispatchAt.accumulate(createdAt);
+        }
+
+        void record(long bucketId, long now) {
+            bucket(bucketId).count.increment();
+            lastDispatchAt.accumulate(now);
         }
 
-        void statisticRecord(WorkerDispatchRecord record) {
-            if (this.lastDispatchTaskAt == null
-                    || this.lastDispatchTaskAt.isBefore(record.dispatchAt)) {
-                this.lastDispatchTaskAt = record.dispatchAt;
+        /**
+         * 获取桶，环形数组中的桶已过期时替换为新桶
+         */
+        private Bucket bucket(long bucketId) {
+            int i = index(bucketId);
+            while (true) {
+                Bucket bucket = buckets.get(i);
+                // 时钟回拨时直接计入已有的桶
+                if (bucket != null && bucket.id >= bucketId) {
+                    return bucket;
+                }
+
+                Bucket created = new Bucket(bucketId);
+                if (buckets.compareAndSet(i, bucket, created)) {
+                    return created;
+                }
             }
+        }
 
-            this.dispatchTimes++;
+        /**
+         * 统计桶序号在 [from, current] 之间的下发次数，from 不早于统计窗口的起点
+         */
+        synchronized long count(long from, long current) {
+            long sealUntil = current - LIVE_BUCKETS;
+            // 时钟回拨，已封存的桶可能晚于当前时间，直接累加
+            if (sealedTo > sealUntil) {
+                return sum(from, current);
+            }
+
+            advance(current - sealedCounts.length + 1, sealUntil);
+            if (from > sealUntil) {
+                return sum(from, current);
+            }
+
+            long sealed;
+            if (from - sealedFrom <= sealUntil - from) {
+                sealed = sealedSum - sumSealed(sealedFrom, from - 1);
+            } else {
+                sealed = sumSealed(from, sealUntil);
+            }
+            return sealed + sum(sealUntil + 1, current);
+        }
+
+        /**
+         * 移除滑出统计窗口的桶，封存不再写入的桶
+         */
+        private void advance(long windowStart, long sealUntil) {
+            // 长时间未查询，已封存的桶全部滑出窗口
+            if (sealedTo < windowStart - 1) {
+                sealedFrom = windowStart;
+                sealedTo = windowStart - 1;
+                sealedSum = 0;
+            }
+
+            for (; sealedFrom < windowStart; sealedFrom++) {
+                sealedSum -= sealedCounts[index(sealedFrom)];
+            }
+
+            // 窗口长度大于未封存的桶数，封存的桶不会覆盖窗口内的其他封存桶
+            while (sealedTo < sealUntil) {
+                sealedTo++;
+                long count = countOf(sealedTo);
+                sealedCounts[index(sealedTo)] = count;
+                sealedSum += count;
+            }
+        }
+
+        /**
+         * 累加桶序号在 [from, to] 之间的封存次数
+         */
+        private long sumSealed(long from, long to) {
+            long sum = 0;
+            for (long bucketId = from; bucketId <= to; bucketId++) {
+                sum += sealedCounts[index(bucketId)];
+            }
+            return sum;
+        }
+
+        /**
+         * 累加桶序号在 [from, to] 之间的下发次数
+         */
+        private long sum(long from, long to) {
+            long sum = 0;
+            for (long bucketId = from; bucketId <= to; bucketId++) {
+                sum += countOf(bucketId);
+            }
+            return sum;
+        }
+
+        private long countOf(long bucketId) {
+            Bucket bucket = buckets.get(index(bucketId));
+            return bucket != null && bucket.id == bucketId ? bucket.count.sum() : 0;
+        }
+
+        private int index(long bucketId) {
+            return (int) (bucketId % buckets.length());
         }
 
     }
 
 
+    /**
+     * 时间桶
+     */
+    private static class Bucket {
 
-    @AllArgsConstructor
-    public static class WorkerDispatchRecord {
+        /**
+         * 桶序号，时间戳除以桶时长
+         */
+        private final long id;
 
-        public final String workerId;
+        private final LongAdder count = new LongAdder();
 
-        public final Instant dispatchAt;
+        Bucket(long id) {
+            this.id = id;
+        }
 
     }
 
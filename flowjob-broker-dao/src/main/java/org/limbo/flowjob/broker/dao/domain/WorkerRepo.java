@@ -41,9 +41,17 @@ import org.springframework.stereotype.Repository;
 
 import javax.inject.Inject;
 import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -160,20 +168,102 @@ public class WorkerRepo implements WorkerRepository {
      * @return
      */
     @Override
+    @Transactional
     public List<Worker> listAvailableWorkers() {
-        return workerEntityRepo.findByStatusAndEnabledAndDeleted(WorkerStatus.RUNNING.status, true, false)
-                .stream()
-                .map(this::toWorkerWithLazyInit)
-                .filter(worker -> {
-                    // 处理心跳过期的
-                    if (worker.getMetric().getLastHeartbeatAt().isBefore(TimeUtils.currentLocalDateTime().plusSeconds(-heartbeatExpireInterval / 1000))) {
-                        workerEntityRepo.updateStatus(worker.getId(), WorkerStatus.RUNNING.status, WorkerStatus.TERMINATED.status);
-                        return false;
-                    } else {
-                        return true;
-                    }
-                })
+        List<WorkerEntity> entities = workerEntityRepo.findByStatusAndEnabledAndDeleted(WorkerStatus.RUNNING.status, true, false);
+        LocalDateTime now = TimeUtils.currentLocalDateTime();
+        LocalDateTime expireAt = now.plusSeconds(-heartbeatExpireInterval / 1000);
+
+        // 心跳过期的 worker 收集后一次性置为终止
+        List<Worker> workers = new ArrayList<>();
+        List<String> expiredIds = new ArrayList<>();
+        for (Worker worker : toWorkers(entities, Collections.emptyMap())) {
+            if (worker.getMetric().getLastHeartbeatAt().isBefore(expireAt)) {
+                expiredIds.add(worker.getId());
+            } else {
+                workers.add(worker);
+            }
+        }
+        if (!expiredIds.isEmpty()) {
+            workerEntityRepo.updateStatusByIds(expiredIds, WorkerStatus.RUNNING.status, WorkerStatus.TERMINATED.status, now);
+        }
+        return workers;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param since 起始时间
+     * @return
+     */
+    @Override
+    public List<Worker> listUpdatedWorkers(LocalDateTime since) {
+        Map<String, WorkerEntity> entities = new HashMap<>();
+        for (WorkerEntity entity : workerEntityRepo.findByUpdatedAtAfter(since)) {
+            entities.put(entity.getWorkerId(), entity);
+        }
+
+        Map<String, WorkerMetricEntity> metrics = new HashMap<>();
+        for (WorkerMetricEntity metric : metricEntityRepo.findByLastHeartbeatAtAfter(since)) {
+            metrics.put(metric.getWorkerId(), metric);
+        }
+
+        // 只有心跳变化的 worker 补查基础信息
+        Set<String> missing = new HashSet<>(metrics.keySet());
+        missing.removeAll(entities.keySet());
+        if (!missing.isEmpty()) {
+            for (WorkerEntity entity : workerEntityRepo.findAllById(missing)) {
+                entities.put(entity.getWorkerId(), entity);
+            }
+        }
+
+        return toWorkers(entities.values(), metrics);
+    }
+
+
+    /**
+     * 批量将 Worker 持久化对象转为领域模型，tags、executors、metric 各只查询一次。已删除或缺少指标的 worker 不返回。
+     *
+     * @param knownMetrics 已查询出的指标，不再重复查询
+     */
+    private List<Worker> toWorkers(Collection<WorkerEntity> entities, Map<String, WorkerMetricEntity> knownMetrics) {
+        List<String> workerIds = entities.stream()
+                .filter(entity -> !entity.isDeleted())
+                .map(WorkerEntity::getWorkerId)
+                .collect(Collectors.toList());
+        if (workerIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, List<WorkerTagEntity>> tags = tagEntityRepo.findByWorkerIdIn(workerIds).stream()
+                .collect(Collectors.groupingBy(WorkerTagEntity::getWorkerId));
+        Map<String, List<WorkerExecutorEntity>> executors = executorEntityRepo.findByWorkerIdIn(workerIds).stream()
+                .collect(Collectors.groupingBy(WorkerExecutorEntity::getWorkerId));
+
+        Map<String, WorkerMetricEntity> metrics = new HashMap<>(knownMetrics);
+        List<String> metricMissing = workerIds.stream()
+                .filter(workerId -> !metrics.containsKey(workerId))
                 .collect(Collectors.toList());
+        if (!metricMissing.isEmpty()) {
+            for (WorkerMetricEntity metric : metricEntityRepo.findAllById(metricMissing)) {
+                metrics.put(metric.getWorkerId(), metric);
+            }
+        }
+
+        List<Worker> workers = new ArrayList<>();
+        for (WorkerEntity entity : entities) {
+            WorkerMetricEntity metric = metrics.get(entity.getWorkerId());
+            if (entity.isDeleted() || metric == null) {
+                continue;
+            }
+            workers.add(converter.toWorker(entity,
+                    converter.toTags(tags.get(entity.getWorkerId())),
+                    converter.toExecutors(executors.get(entity.getWorkerId())),
+                    converter.toMetric(metric)
+            ));
+        }
+        return workers;
     }
 
 
@@ -20,7 +20,11 @@ package org.limbo.flowjob.broker.dao.repositories;
 
 import org.limbo.flowjob.broker.dao.entity.BrokerEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import javax.transaction.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -34,4 +38,18 @@ public interface BrokerEntityRepo extends JpaRepository<BrokerEntity, String> {
     Optional<BrokerEntity> findByName(String name);
 
     List<BrokerEntity> findByLastHeartbeatBetween(LocalDateTime startTime, LocalDateTime endTime);
+
+    /**
+     * 查询指定时间后有过心跳的 broker
+     */
+    List<BrokerEntity> findByLastHeartbeatAfter(LocalDateTime after);
+
+    /**
+     * 删除指定时间前最后一次心跳的 broker 登记
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from BrokerEntity where lastHeartbeat < :before")
+    int deleteByLastHeartbeatBefore(@Param("before") LocalDateTime before);
+
 }
@@ -0,0 +1,198 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.dao.repositories;
+
+import lombok.Setter;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
+import org.limbo.flowjob.broker.dao.entity.TaskEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.inject.Inject;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量插入 {@link TaskEntity}、{@link JobInstanceEntity}。
+ * <p>
+ * 实体的 ID 由业务生成，通过 JPA 的 saveAll 保存时，每个实体都会先 SELECT 再逐条 INSERT。
+ * 这里直接通过 JDBC 按批次生成多行 VALUES 的 INSERT 语句，一个批次只需一次交互。
+ * 使用 JdbcTemplate 执行，会加入当前 Spring 事务。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Repository
+public class EntityBatchInsertRepo {
+
+    /**
+     * 单条语句的占位符上限，MySQL 为 65535
+     */
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    private static final String[] TASK_COLUMNS = {
+            "task_id", "job_instance_id", "job_id", "plan_id", "plan_instance_id", "plan_info_id", "worker_id",
+            "executor_name", "dispatch_option", "context", "job_attributes", "task_attributes", "type", "status",
+            "start_at", "end_at", "result", "error_msg", "error_stack_trace", "is_deleted"
+    };
+
+    private static final String[] JOB_INSTANCE_COLUMNS = {
+            "job_instance_id", "job_id", "plan_instance_id", "retry_times", "plan_id", "plan_info_id", "trigger_at",
+            "context", "start_at", "end_at", "status", "error_msg", "is_deleted"
+    };
+
+    @Setter(onMethod_ = @Inject)
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 单个批次插入的最大行数
+     */
+    @Setter
+    @Value("${flowjob.broker.persist-batch-size:500}")
+    private int batchSize = 500;
+
+
+    /**
+     * 批量插入任务
+     */
+    public void insertTasks(List<TaskEntity> tasks) {
+        insert("flowjob_task", TASK_COLUMNS, tasks, (ps, i, task) -> {
+            ps.setString(i++, task.getTaskId());
+            ps.setString(i++, StringUtils.defaultString(task.getJobInstanceId()));
+            ps.setString(i++, StringUtils.defaultString(task.getJobId()));
+            ps.setString(i++, StringUtils.defaultString(task.getPlanId()));
+            ps.setString(i++, StringUtils.defaultString(task.getPlanInstanceId()));
+            ps.setString(i++, StringUtils.defaultString(task.getPlanInfoId()));
+            ps.setString(i++, StringUtils.defaultString(task.getWorkerId()));
+            ps.setString(i++, StringUtils.defaultString(task.getExecutorName()));
+            ps.setString(i++, StringUtils.defaultString(task.getDispatchOption()));
+            ps.setString(i++, StringUtils.defaultString(task.getContext()));
+            ps.setString(i++, StringUtils.defaultString(task.getJobAttributes()));
+            ps.setString(i++, StringUtils.defaultString(task.getTaskAttributes()));
+            ps.setInt(i++, task.getType());
+            ps.setInt(i++, task.getStatus());
+            ps.setTimestamp(i++, toTimestamp(task.getStartAt()));
+            ps.setTimestamp(i++, toTimestamp(task.getEndAt()));
+            ps.setString(i++, StringUtils.defaultString(task.getResult()));
+            ps.setString(i++, StringUtils.defaultString(task.getErrorMsg()));
+            ps.setString(i++, task.getErrorStackTrace());
+            ps.setBoolean(i, task.isDeleted());
+        });
+    }
+
+
+    /**
+     * 批量插入作业实例
+     */
+    public void insertJobInstances(List<JobInstanceEntity> jobInstances) {
+        insert("flowjob_job_instance", JOB_INSTANCE_COLUMNS, jobInstances, (ps, i, jobInstance) -> {
+            ps.setString(i++, jobInstance.getJobInstanceId());
+            ps.setString(i++, StringUtils.defaultString(jobInstance.getJobId()));
+            ps.setString(i++, StringUtils.defaultString(jobInstance.getPlanInstanceId()));
+            ps.setInt(i++, jobInstance.getRetryTimes() == null ? 1 : jobInstance.getRetryTimes());
+            ps.setString(i++, StringUtils.defaultString(jobInstance.getPlanId()));
+            ps.setString(i++, StringUtils.defaultString(jobInstance.getPlanInfoId()));
+            ps.setTimestamp(i++, toTimestamp(jobInstance.getTriggerAt()));
+            ps.setString(i++, StringUtils.defaultString(jobInstance.getContext()));
+            ps.setTimestamp(i++, toTimestamp(jobInstance.getStartAt()));
+            ps.setTimestamp(i++, toTimestamp(jobInstance.getEndAt()));
+            ps.setInt(i++, jobInstance.getStatus());
+            ps.setString(i++, StringUtils.defaultString(jobInstance.getErrorMsg()));
+            ps.setBoolean(i, jobInstance.isDeleted());
+        });
+    }
+
+
+    /**
+     * 按批次生成多行 VALUES 的 INSERT 语句执行
+     */
+    private <T> void insert(String table, String[] columns, List<T> entities, RowBinder<T> binder) {
+        if (CollectionUtils.isEmpty(entities)) {
+            return;
+        }
+
+        int rowsPerStatement = Math.max(1, Math.min(batchSize, MAX_PLACEHOLDERS / columns.length));
+        String fullSql = null;
+        for (int from = 0; from < entities.size(); from += rowsPerStatement) {
+            List<T> rows = entities.subList(from, Math.min(from + rowsPerStatement, entities.size()));
+            // 除最后一批外语句相同，复用 SQL 字符串
+            String sql;
+            if (rows.size() == rowsPerStatement) {
+                if (fullSql == null) {
+                    fullSql = insertSql(table, columns, rowsPerStatement);
+                }
+                sql = fullSql;
+            } else {
+                sql = insertSql(table, columns, rows.size());
+            }
+
+            jdbcTemplate.update(sql, ps -> {
+                int index = 1;
+                for (T row : rows) {
+                    binder.bind(ps, index, row);
+                    index += columns.length;
+                }
+            });
+        }
+    }
+
+
+    private String insertSql(String table, String[] columns, int rows) {
+        String placeholders = "(" + String.join(",", Collections.nCopies(columns.length, "?")) + ")";
+        StringBuilder sql = new StringBuilder(64 + rows * (placeholders.length() + 1))
+                .append("insert into ").append(table)
+                .append(" (").append(String.join(",", columns)).append(") values ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(placeholders);
+        }
+        return sql.toString();
+    }
+
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time == null ? null : Timestamp.valueOf(time);
+    }
+
+
+    /**
+     * 设置单行数据的参数
+     */
+    @FunctionalInterface
+    private interface RowBinder<T> {
+
+        /**
+         * @param ps 语句
+         * @param index 该行第一个参数的位置
+         * @param row 行数据
+         */
+        void bind(PreparedStatement ps, int index, T row) throws SQLException;
+
+    }
+
+}
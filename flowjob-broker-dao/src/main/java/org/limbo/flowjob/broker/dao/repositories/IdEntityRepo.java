@@ -24,12 +24,15 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import javax.transaction.Transactional;
+
 /**
  * @author Devil
  * @since 2022/7/18
  */
 public interface IdEntityRepo extends JpaRepository<IdEntity, String> {
 
+    @Transactional
     @Modifying(clearAutomatically = true)
     @Query(value = "update IdEntity set currentId = :newCurrentId where currentId = :oldCurrentId and type = :type")
     int casGainId(@Param("type") String type, @Param("newCurrentId") Long newCurrentId, @Param("oldCurrentId") Long oldCurrentId);
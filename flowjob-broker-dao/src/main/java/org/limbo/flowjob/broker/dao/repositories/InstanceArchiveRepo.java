@@ -0,0 +1,179 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.dao.repositories;
+
+import lombok.Setter;
+import org.apache.commons.collections4.CollectionUtils;
+import org.limbo.flowjob.api.constants.PlanStatus;
+import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
+import org.limbo.flowjob.broker.dao.entity.PlanInstanceEntity;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 计划实例、作业实例、任务的冷热分离。
+ * <p>
+ * 已完成的计划实例超过保留期后，连同其下的作业实例、任务一起从热表移入 *_history 表，
+ * 避免调度扫描、按触发时间取最新实例的查询随历史数据增长而变慢。控制台查询同时读取热表与历史表。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Repository
+public class InstanceArchiveRepo {
+
+    private static final String PLAN_INSTANCE = "flowjob_plan_instance";
+
+    private static final String JOB_INSTANCE = "flowjob_job_instance";
+
+    private static final String TASK = "flowjob_task";
+
+    private static final String HISTORY_SUFFIX = "_history";
+
+    /**
+     * 与 PlanInstanceEntityRepo 中查询最新实例的条件一致
+     */
+    private static final String SAME_GROUP = "n.plan_id = pi.plan_id and n.plan_info_id = pi.plan_info_id " +
+            "and n.schedule_type = pi.schedule_type and n.trigger_type = pi.trigger_type";
+
+    private static final RowMapper<PlanInstanceEntity> PLAN_INSTANCE_MAPPER = new BeanPropertyRowMapper<>(PlanInstanceEntity.class);
+
+    private static final RowMapper<JobInstanceEntity> JOB_INSTANCE_MAPPER = new BeanPropertyRowMapper<>(JobInstanceEntity.class);
+
+    @Setter(onMethod_ = @Inject)
+    private JdbcTemplate jdbcTemplate;
+
+
+    /**
+     * 查询槽位下可归档的计划实例：已完成，且 feedback_at 早于 before。
+     * 固定延迟、重复触发校验等逻辑按 plan_id、plan_info_id、schedule_type、trigger_type 分组，
+     * 取组内触发时间最新、反馈时间最新的实例，这些实例不归档，否则 API 触发的实例会导致调度触发的最新实例被归档。
+     *
+     * @param slots 当前节点负责的槽位
+     * @param before 完成时间早于此时间的实例可以归档
+     * @param limit 最多返回多少条
+     */
+    public List<String> findArchivablePlanInstanceIds(List<Integer> slots, LocalDateTime before, int limit) {
+        if (CollectionUtils.isEmpty(slots)) {
+            return Collections.emptyList();
+        }
+
+        String sql = "select pi.plan_instance_id from flowjob_plan_instance pi " +
+                "join flowjob_plan_slot ps on pi.plan_id = ps.plan_id " +
+                "where ps.slot in (" + placeholders(slots.size()) + ") and pi.status in (?, ?) and pi.feedback_at < ? " +
+                "and exists (select 1 from flowjob_plan_instance n where " + SAME_GROUP + " and n.trigger_at > pi.trigger_at) " +
+                "and exists (select 1 from flowjob_plan_instance n where " + SAME_GROUP + " and n.feedback_at > pi.feedback_at) " +
+                "limit ?";
+        List<Object> args = new ArrayList<>(slots);
+        args.add(PlanStatus.SUCCEED.status);
+        args.add(PlanStatus.FAILED.status);
+        args.add(Timestamp.valueOf(before));
+        args.add(limit);
+        return jdbcTemplate.queryForList(sql, String.class, args.toArray());
+    }
+
+
+    /**
+     * 将计划实例及其下的作业实例、任务移入历史表，在一个事务中完成
+     *
+     * @return 移动的计划实例、作业实例、任务总行数
+     */
+    @Transactional
+    public int archive(List<String> planInstanceIds) {
+        if (CollectionUtils.isEmpty(planInstanceIds)) {
+            return 0;
+        }
+
+        List<String> jobInstanceIds = jdbcTemplate.queryForList(
+                "select job_instance_id from flowjob_job_instance where plan_instance_id in (" + placeholders(planInstanceIds.size()) + ")",
+                String.class, planInstanceIds.toArray()
+        );
+
+        int rows = 0;
+        if (CollectionUtils.isNotEmpty(jobInstanceIds)) {
+            rows += move(TASK, "job_instance_id", jobInstanceIds);
+            rows += move(JOB_INSTANCE, "job_instance_id", jobInstanceIds);
+        }
+        rows += move(PLAN_INSTANCE, "plan_instance_id", planInstanceIds);
+        return rows;
+    }
+
+
+    /**
+     * 复制到历史表后从热表删除
+     */
+    private int move(String table, String column, List<String> ids) {
+        String condition = " where " + column + " in (" + placeholders(ids.size()) + ")";
+        Object[] args = ids.toArray();
+        jdbcTemplate.update("insert into " + table + HISTORY_SUFFIX + " select * from " + table + condition, args);
+        return jdbcTemplate.update("delete from " + table + condition, args);
+    }
+
+
+    /**
+     * 分页查询计划的实例，同时读取热表与历史表，按触发时间倒序
+     */
+    public List<PlanInstanceEntity> findPlanInstances(String planId, int offset, int limit) {
+        String sql = "select * from (" +
+                "select * from flowjob_plan_instance where plan_id = ? " +
+                "union all " +
+                "select * from flowjob_plan_instance_history where plan_id = ?" +
+                ") t order by trigger_at desc limit ?, ?";
+        return jdbcTemplate.query(sql, PLAN_INSTANCE_MAPPER, planId, planId, offset, limit);
+    }
+
+
+    /**
+     * 统计计划的实例数量，包括已归档的实例
+     */
+    public long countPlanInstances(String planId) {
+        Long hot = jdbcTemplate.queryForObject("select count(*) from flowjob_plan_instance where plan_id = ?", Long.class, planId);
+        Long history = jdbcTemplate.queryForObject("select count(*) from flowjob_plan_instance_history where plan_id = ?", Long.class, planId);
+        return (hot == null ? 0 : hot) + (history == null ? 0 : history);
+    }
+
+
+    /**
+     * 查询计划实例下的作业实例，先查热表，热表中没有说明已经整体归档，再查历史表
+     */
+    public List<JobInstanceEntity> findJobInstances(String planInstanceId) {
+        String sql = "select * from %s where plan_instance_id = ? order by trigger_at, retry_times";
+        List<JobInstanceEntity> jobInstances = jdbcTemplate.query(String.format(sql, JOB_INSTANCE), JOB_INSTANCE_MAPPER, planInstanceId);
+        if (CollectionUtils.isNotEmpty(jobInstances)) {
+            return jobInstances;
+        }
+        return jdbcTemplate.query(String.format(sql, JOB_INSTANCE + HISTORY_SUFFIX), JOB_INSTANCE_MAPPER, planInstanceId);
+    }
+
+
+    private String placeholders(int size) {
+        return String.join(", ", Collections.nCopies(size, "?"));
+    }
+
+}
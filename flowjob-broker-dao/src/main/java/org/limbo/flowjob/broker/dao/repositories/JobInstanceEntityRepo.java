@@ -41,7 +41,15 @@ public interface JobInstanceEntityRepo extends JpaRepository<JobInstanceEntity,
 
     List<JobInstanceEntity> findByPlanInstanceIdAndJobIdIn(String planInstanceId, List<String> jobIds);
 
-    List<JobInstanceEntity> findByPlanIdInAndTriggerAtLessThanEqualAndStatus(List<String> planIds, LocalDateTime triggerAt, Integer status);
+    /**
+     * 查询槽位下触发时间早于 triggerAt 且为指定状态的实例。
+     * 按自增 id 做 keyset 分页，返回 id 大于 afterId 的至多 limit 条数据
+     */
+    @Query(value = "select ji.* from flowjob_job_instance ji join flowjob_plan_slot ps on ji.plan_id = ps.plan_id " +
+            "where ps.slot in :slots and ji.status = :status and ji.trigger_at <= :triggerAt and ji.id > :afterId " +
+            "order by ji.id limit :limit", nativeQuery = true)
+    List<JobInstanceEntity> findBySlotsAndTriggerAtLessThanEqualAndStatus(@Param("slots") List<Integer> slots, @Param("triggerAt") LocalDateTime triggerAt, @Param("status") Integer status,
+            @Param("afterId") Long afterId, @Param("limit") Integer limit);
 
     List<JobInstanceEntity> findByPlanInstanceId(String planInstanceId);
 
@@ -38,14 +38,16 @@ public interface PlanEntityRepo extends JpaRepository<PlanEntity, String>, JpaSp
     @Query(value = "select * from flowjob_plan where plan_id = :planId for update", nativeQuery = true)
     PlanEntity selectForUpdate(@Param("planId") String planId);
 
-    @Query(value = "select * from flowjob_plan where plan_id in :planIds and is_enabled = true and is_deleted = false", nativeQuery = true)
-    List<PlanEntity> loadPlans(@Param("planIds") List<String> planIds);
+    @Query(value = "select p.* from flowjob_plan p join flowjob_plan_slot ps on p.plan_id = ps.plan_id " +
+            "where ps.slot in :slots and p.is_enabled = true and p.is_deleted = false", nativeQuery = true)
+    List<PlanEntity> loadPlans(@Param("slots") List<Integer> slots);
 
     /**
      * 修改过的plan
      */
-    @Query(value = "select * from flowjob_plan where plan_id in :planIds and updated_at >= :updatedAt and is_enabled = true and is_deleted = false", nativeQuery = true)
-    List<PlanEntity> loadUpdatedPlans(@Param("planIds") List<String> planIds, @Param("updatedAt") LocalDateTime updatedAt);
+    @Query(value = "select p.* from flowjob_plan p join flowjob_plan_slot ps on p.plan_id = ps.plan_id " +
+            "where ps.slot in :slots and p.updated_at >= :updatedAt and p.is_enabled = true and p.is_deleted = false", nativeQuery = true)
+    List<PlanEntity> loadUpdatedPlans(@Param("slots") List<Integer> slots, @Param("updatedAt") LocalDateTime updatedAt);
 
     @Modifying(clearAutomatically = true)
     @Query(value = "update PlanEntity set currentVersion = :newCurrentVersion, recentlyVersion = :newRecentlyVersion, name = :name" +
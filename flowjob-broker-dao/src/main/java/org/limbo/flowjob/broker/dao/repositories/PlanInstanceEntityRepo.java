@@ -39,7 +39,15 @@ public interface PlanInstanceEntityRepo extends JpaRepository<PlanInstanceEntity
 
     PlanInstanceEntity findByPlanIdAndTriggerAtAndTriggerType(String planId, LocalDateTime triggerAt, Integer triggerType);
 
-    List<PlanInstanceEntity> findByPlanIdInAndTriggerAtLessThanEqualAndStatus(List<String> planIds, LocalDateTime triggerAt, Integer status);
+    /**
+     * 查询槽位下触发时间早于 triggerAt 且为指定状态的实例。
+     * 按自增 id 做 keyset 分页，返回 id 大于 afterId 的至多 limit 条数据
+     */
+    @Query(value = "select pi.* from flowjob_plan_instance pi join flowjob_plan_slot ps on pi.plan_id = ps.plan_id " +
+            "where ps.slot in :slots and pi.status = :status and pi.trigger_at <= :triggerAt and pi.id > :afterId " +
+            "order by pi.id limit :limit", nativeQuery = true)
+    List<PlanInstanceEntity> findBySlotsAndTriggerAtLessThanEqualAndStatus(@Param("slots") List<Integer> slots, @Param("triggerAt") LocalDateTime triggerAt, @Param("status") Integer status,
+            @Param("afterId") Long afterId, @Param("limit") Integer limit);
 
     @Query(value = "select * from flowjob_plan_instance " +
             "where plan_id = :planId and schedule_type = :scheduleType and trigger_type = :triggerType and plan_info_id =:planInfoId " +
@@ -33,4 +33,9 @@ public interface PlanSlotEntityRepo extends JpaRepository<PlanSlotEntity, Long>
 
     PlanSlotEntity findByPlanId(String planId);
 
+    /**
+     * 增量查询 id 大于 id 的槽位记录，用于同步其它节点新建的 plan
+     */
+    List<PlanSlotEntity> findByIdGreaterThanOrderByIdAsc(Long id);
+
 }
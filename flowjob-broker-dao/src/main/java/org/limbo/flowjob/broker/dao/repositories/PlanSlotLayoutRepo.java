@@ -0,0 +1,103 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.limbo.flowjob.broker.dao.repositories;
+
+import lombok.Setter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+/**
+ * plan_slot 槽位布局。flowjob_plan_slot_layout 中只有一行，记录 plan_slot 中的槽位按多大的 slot-size 计算，
+ * 为 0 表示旧版本写入的槽位，需要重算一次。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Repository
+public class PlanSlotLayoutRepo {
+
+    /**
+     * 旧版本按 planId.hashCode() % 64 写入的槽位
+     */
+    public static final int LEGACY_SLOT_SIZE = 0;
+
+    private static final long LAYOUT_ID = 1;
+
+    private static final int PAGE_SIZE = 1000;
+
+    @Setter(onMethod_ = @Inject)
+    private JdbcTemplate jdbcTemplate;
+
+
+    /**
+     * 锁定布局记录，槽位为旧版本写入时按 slotFn 重算所有 plan_slot 并记录 slotSize，只会执行一次。
+     * 多个 broker 同时启动时由行锁串行化，后获得锁的节点看到已记录的 slotSize 后直接返回。
+     *
+     * @param slotSize 当前配置的槽位数量
+     * @param slotFn 根据 planId 计算槽位
+     * @return 重写的 plan_slot 行数
+     * @throws IllegalStateException 已记录的 slotSize 与配置不一致
+     */
+    @Transactional
+    public int rehashIfLegacy(int slotSize, ToIntFunction<String> slotFn) {
+        Integer stored = jdbcTemplate.queryForObject(
+                "select slot_size from flowjob_plan_slot_layout where id = ? for update", Integer.class, LAYOUT_ID
+        );
+        if (Objects.equals(stored, slotSize)) {
+            return 0;
+        }
+        if (stored == null || stored != LEGACY_SLOT_SIZE) {
+            throw new IllegalStateException("slot-size " + slotSize + " mismatch plan slot layout " + stored
+                    + ", stop all brokers and reset flowjob_plan_slot_layout.slot_size to 0 before changing slot-size");
+        }
+
+        int updated = 0;
+        long afterId = 0;
+        List<Map<String, Object>> rows;
+        do {
+            rows = jdbcTemplate.queryForList(
+                    "select id, plan_id, slot from flowjob_plan_slot where id > ? order by id limit ?", afterId, PAGE_SIZE
+            );
+            List<Object[]> changed = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                afterId = ((Number) row.get("id")).longValue();
+                int slot = slotFn.applyAsInt((String) row.get("plan_id"));
+                Number oldSlot = (Number) row.get("slot");
+                if (oldSlot == null || oldSlot.intValue() != slot) {
+                    changed.add(new Object[]{slot, afterId});
+                }
+            }
+            if (!changed.isEmpty()) {
+                jdbcTemplate.batchUpdate("update flowjob_plan_slot set slot = ? where id = ?", changed);
+            }
+            updated += changed.size();
+        } while (rows.size() >= PAGE_SIZE);
+
+        jdbcTemplate.update("update flowjob_plan_slot_layout set slot_size = ? where id = ?", slotSize, LAYOUT_ID);
+        return updated;
+    }
+
+}
@@ -36,7 +36,15 @@ public interface TaskEntityRepo extends JpaRepository<TaskEntity, String> {
 
     List<TaskEntity> findByJobInstanceIdAndType(String jobInstanceId, Integer type);
 
-    List<TaskEntity> findByPlanIdInAndStatus(List<String> planIds, Integer status);
+    /**
+     * 查询槽位下指定状态的任务，通过 plan_slot 关联过滤，避免传入大量 planId。
+     * 按自增 id 做 keyset 分页，返回 id 大于 afterId 的至多 limit 条数据
+     */
+    @Query(value = "select t.* from flowjob_task t join flowjob_plan_slot ps on t.plan_id = ps.plan_id " +
+            "where ps.slot in :slots and t.status = :status and t.id > :afterId " +
+            "order by t.id limit :limit", nativeQuery = true)
+    List<TaskEntity> findBySlotsAndStatus(@Param("slots") List<Integer> slots, @Param("status") Integer status,
+                                          @Param("afterId") Long afterId, @Param("limit") Integer limit);
 
     @Modifying(clearAutomatically = true)
     @Query(value = "update TaskEntity " +
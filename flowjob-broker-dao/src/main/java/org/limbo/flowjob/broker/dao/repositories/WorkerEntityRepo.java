@@ -25,6 +25,8 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,8 +45,17 @@ public interface WorkerEntityRepo extends JpaRepository<WorkerEntity, String>, J
      */
     List<WorkerEntity> findByStatusAndEnabledAndDeleted(Integer status, boolean enabled, boolean deleted);
 
+    /**
+     * 查询指定时间后更新过的worker，包括已删除的
+     */
+    List<WorkerEntity> findByUpdatedAtAfter(LocalDateTime updatedAt);
+
+    /**
+     * 批量更新状态，同时刷新 updatedAt 以便增量同步感知
+     */
     @Modifying(clearAutomatically = true)
-    @Query(value = "update WorkerEntity set status = :newStatus where workerId = :workerId and status = :oldStatus ")
-    int updateStatus(@Param("workerId") String workerId, @Param("oldStatus") Integer oldStatus, @Param("newStatus") Integer newStatus);
+    @Query(value = "update WorkerEntity set status = :newStatus, updatedAt = :updatedAt where workerId in :workerIds and status = :oldStatus ")
+    int updateStatusByIds(@Param("workerIds") Collection<String> workerIds, @Param("oldStatus") Integer oldStatus,
+                          @Param("newStatus") Integer newStatus, @Param("updatedAt") LocalDateTime updatedAt);
 
 }
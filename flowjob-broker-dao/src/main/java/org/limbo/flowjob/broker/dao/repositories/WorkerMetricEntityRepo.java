@@ -21,11 +21,18 @@ package org.limbo.flowjob.broker.dao.repositories;
 import org.limbo.flowjob.broker.dao.entity.WorkerMetricEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * @author Devil
  * @since 2022/6/24
  */
 public interface WorkerMetricEntityRepo extends JpaRepository<WorkerMetricEntity, String> {
 
+    /**
+     * 查询指定时间后有心跳的worker指标
+     */
+    List<WorkerMetricEntity> findByLastHeartbeatAtAfter(LocalDateTime lastHeartbeatAt);
 
 }
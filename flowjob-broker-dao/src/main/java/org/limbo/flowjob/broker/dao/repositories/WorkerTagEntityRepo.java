@@ -22,6 +22,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -37,4 +38,6 @@ public interface WorkerTagEntityRepo extends JpaRepository<WorkerTagEntity, Stri
 
     List<WorkerTagEntity> findByWorkerId(String workerId);
 
+    List<WorkerTagEntity> findByWorkerIdIn(Collection<String> workerIds);
+
 }
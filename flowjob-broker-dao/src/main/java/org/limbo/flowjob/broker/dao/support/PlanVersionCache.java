@@ -0,0 +1,142 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.broker.dao.support;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.Setter;
+import org.limbo.flowjob.api.constants.MsgConstants;
+import org.limbo.flowjob.broker.core.domain.job.JobInfo;
+import org.limbo.flowjob.broker.core.domain.job.WorkflowJobInfo;
+import org.limbo.flowjob.broker.core.domain.plan.NormalPlan;
+import org.limbo.flowjob.broker.core.domain.plan.Plan;
+import org.limbo.flowjob.broker.core.domain.plan.WorkflowPlan;
+import org.limbo.flowjob.broker.core.exceptions.VerifyException;
+import org.limbo.flowjob.broker.dao.converter.DomainConverter;
+import org.limbo.flowjob.broker.dao.entity.PlanInfoEntity;
+import org.limbo.flowjob.broker.dao.repositories.PlanInfoEntityRepo;
+import org.limbo.flowjob.common.utils.dag.DAG;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 按计划版本（planInfoId）缓存解析后的 {@link Plan}，普通计划的 {@link JobInfo}、工作流计划的 DAG 都从缓存的 Plan 中获取。
+ * <p>
+ * 计划版本写入后不会再修改，缓存无需失效，只按容量淘汰。
+ * 缓存的 Plan、JobInfo、DAG 被所有线程共享，调用方不能修改，需要修改的数据（如作业参数）先复制。
+ * 避免每次查询作业实例、处理任务反馈、推进工作流时，都重新读取 plan_info 并解析 JSON、构建 DAG 做环检测。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Component
+public class PlanVersionCache {
+
+    private final Cache<String, Plan> plans;
+
+    @Setter(onMethod_ = @Inject)
+    private PlanInfoEntityRepo planInfoEntityRepo;
+
+    public PlanVersionCache(@Value("${flowjob.broker.plan-cache-size:1024}") long maximumSize) {
+        this.plans = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+
+    /**
+     * 获取指定版本的计划，未命中缓存时从 DB 加载
+     *
+     * @param version 计划版本，即 planInfoId
+     */
+    public Plan getPlan(String version) {
+        try {
+            // 并发加载同一版本时只有一个线程加载，其他线程等待结果
+            return plans.get(version, () -> loadPlan(version));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof VerifyException) {
+                throw (VerifyException) cause;
+            }
+            throw new VerifyException("Load plan version failed " + version, cause);
+        }
+    }
+
+
+    private Plan loadPlan(String version) {
+        PlanInfoEntity planInfoEntity = planInfoEntityRepo.findById(version)
+                .orElseThrow(VerifyException.supplier(MsgConstants.CANT_FIND_PLAN_INFO + version));
+        return DomainConverter.toPlan(planInfoEntity);
+    }
+
+
+    /**
+     * 获取指定版本计划中的作业。普通计划只有一个作业，忽略 jobId
+     *
+     * @param version 计划版本
+     * @param jobId 工作流中的作业 ID
+     */
+    public JobInfo getJobInfo(String version, String jobId) {
+        Plan plan = getPlan(version);
+        if (plan instanceof NormalPlan) {
+            return ((NormalPlan) plan).getJobInfo();
+        } else if (plan instanceof WorkflowPlan) {
+            return ((WorkflowPlan) plan).getDag().getNode(jobId);
+        } else {
+            throw new IllegalArgumentException("Illegal PlanType in plan:" + plan.getPlanId() + " version:" + version);
+        }
+    }
+
+
+    /**
+     * 获取指定版本工作流计划的 DAG
+     *
+     * @param version 计划版本
+     */
+    public DAG<WorkflowJobInfo> getDag(String version) {
+        Plan plan = getPlan(version);
+        if (!(plan instanceof WorkflowPlan)) {
+            throw new IllegalArgumentException("plan:" + plan.getPlanId() + " version:" + version + " is not a workflow plan");
+        }
+        return ((WorkflowPlan) plan).getDag();
+    }
+
+
+    /**
+     * 缓存的命中统计
+     */
+    public CacheStats stats() {
+        return plans.stats();
+    }
+
+
+    /**
+     * 缓存的计划版本数量
+     */
+    public long size() {
+        return plans.size();
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.common.rpc.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 二进制协议客户端，维持到一个服务端的长连接，首次请求时建立连接，连接断开后下次请求时重连。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class NettyRpcClient extends NettyRpcEndpoint {
+
+    @Getter
+    private final String host;
+
+    @Getter
+    private final int port;
+
+    private final Bootstrap bootstrap;
+
+    private volatile CompletableFuture<Channel> channelFuture;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param group 共享的 IO 线程组，由调用方管理生命周期
+     * @param handlerExecutor 处理服务端请求的线程池，由调用方管理生命周期
+     * @param handlers 处理服务端请求的处理器，可以在多个客户端之间共享
+     */
+    public NettyRpcClient(String host, int port, EventLoopGroup group,
+                          Executor handlerExecutor, Map<RpcMessageType, RpcRequestHandler> handlers,
+                          int connectTimeout, long requestTimeout) {
+        super(handlers, handlerExecutor, requestTimeout);
+        this.host = host;
+        this.port = port;
+        this.bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        initPipeline(ch.pipeline());
+                    }
+                });
+    }
+
+
+    /**
+     * 发起请求，未连接时先建立连接
+     */
+    public CompletableFuture<byte[]> request(RpcMessageType type, byte[] body) {
+        return connect().thenCompose(channel -> request(channel, type, body));
+    }
+
+
+    /**
+     * 是否已建立可用的连接
+     */
+    public boolean isConnected() {
+        CompletableFuture<Channel> future = channelFuture;
+        return future != null && isActive(future);
+    }
+
+
+    /**
+     * 获取可用连接，没有则建立新连接
+     */
+    private CompletableFuture<Channel> connect() {
+        CompletableFuture<Channel> future = channelFuture;
+        if (future != null && (!future.isDone() || isActive(future))) {
+            return future;
+        }
+
+        synchronized (this) {
+            if (closed) {
+                CompletableFuture<Channel> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new RpcException("Client closed " + host + ":" + port));
+                return failed;
+            }
+
+            future = channelFuture;
+            if (future != null && (!future.isDone() || isActive(future))) {
+                return future;
+            }
+
+            CompletableFuture<Channel> connecting = new CompletableFuture<>();
+            bootstrap.connect(host, port).addListener((ChannelFutureListener) cf -> {
+                if (cf.isSuccess()) {
+                    connecting.complete(cf.channel());
+                } else {
+                    connecting.completeExceptionally(new RpcException("Connect to " + host + ":" + port + " failed", cf.cause()));
+                }
+            });
+            channelFuture = connecting;
+            return connecting;
+        }
+    }
+
+
+    private boolean isActive(CompletableFuture<Channel> future) {
+        return future.isDone() && !future.isCompletedExceptionally() && future.join().isActive();
+    }
+
+
+    @Override
+    public void close() {
+        CompletableFuture<Channel> future;
+        synchronized (this) {
+            closed = true;
+            future = channelFuture;
+        }
+
+        if (future != null) {
+            future.thenAccept(Channel::close);
+        }
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.common.rpc.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 二进制协议通信端点，客户端与服务端共用。连接建立后两端是对等的，都可以在同一个连接上发起请求、处理请求。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Slf4j
+public abstract class NettyRpcEndpoint implements Closeable {
+
+    /**
+     * 单帧最大长度
+     */
+    public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * 帧长度字段的字节数
+     */
+    public static final int LENGTH_FIELD_LENGTH = 4;
+
+    private final AtomicLong requestIdGenerator = new AtomicLong();
+
+    /**
+     * 未完成的请求
+     */
+    private final Map<Long, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+    /**
+     * 请求处理器
+     */
+    private final Map<RpcMessageType, RpcRequestHandler> handlers;
+
+    /**
+     * 执行请求处理器的线程池，避免阻塞 IO 线程
+     */
+    private final Executor handlerExecutor;
+
+    /**
+     * 请求超时时间，毫秒
+     */
+    private final long requestTimeout;
+
+    private final InboundHandler inboundHandler = new InboundHandler();
+
+    protected NettyRpcEndpoint(Map<RpcMessageType, RpcRequestHandler> handlers, Executor handlerExecutor, long requestTimeout) {
+        this.handlers = handlers;
+        this.handlerExecutor = handlerExecutor;
+        this.requestTimeout = requestTimeout;
+    }
+
+
+    /**
+     * 生成执行请求处理器的线程池，队列满时拒绝请求，对端会收到异常响应
+     */
+    public static ThreadPoolExecutor newHandlerExecutor(String name, int threads, int queueSize) {
+        return new ThreadPoolExecutor(
+                threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new DefaultThreadFactory(name, true),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+
+    /**
+     * 注册请求处理器，同一类型的处理器会被覆盖
+     */
+    public void registerHandler(RpcMessageType type, RpcRequestHandler handler) {
+        handlers.put(type, handler);
+    }
+
+
+    /**
+     * 初始化连接的 pipeline
+     */
+    protected void initPipeline(ChannelPipeline pipeline) {
+        initCodec(pipeline);
+        pipeline.addLast(inboundHandler);
+    }
+
+
+    /**
+     * 添加拆包、组包与消息帧编解码的 handler
+     */
+    public static void initCodec(ChannelPipeline pipeline) {
+        pipeline.addLast(new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, LENGTH_FIELD_LENGTH, 0, LENGTH_FIELD_LENGTH));
+        pipeline.addLast(new LengthFieldPrepender(LENGTH_FIELD_LENGTH));
+        pipeline.addLast(new RpcMessageCodec());
+    }
+
+
+    /**
+     * 在指定连接上发起请求
+     *
+     * @return 响应消息体，超时、连接断开或对端处理异常时异常结束。注意 future 在 IO 线程中完成。
+     */
+    protected CompletableFuture<byte[]> request(Channel channel, RpcMessageType type, byte[] body) {
+        long requestId = requestIdGenerator.incrementAndGet();
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        pendingRequests.put(requestId, new PendingRequest(channel, future));
+
+        ScheduledFuture<?> timeout = channel.eventLoop().schedule(
+                () -> failPending(requestId, new RpcException("Request timeout after " + requestTimeout + "ms, type=" + type)),
+                requestTimeout, TimeUnit.MILLISECONDS
+        );
+        future.whenComplete((r, e) -> timeout.cancel(false));
+
+        channel.writeAndFlush(RpcMessage.request(requestId, type, body)).addListener(f -> {
+            if (!f.isSuccess()) {
+                failPending(requestId, new RpcException("Send request failed, type=" + type, f.cause()));
+            }
+        });
+        return future;
+    }
+
+
+    private void failPending(long requestId, Throwable cause) {
+        PendingRequest pending = pendingRequests.remove(requestId);
+        if (pending != null) {
+            pending.future.completeExceptionally(cause);
+        }
+    }
+
+
+    /**
+     * 连接断开时，结束该连接上所有未完成的请求
+     */
+    private void failPendingOf(Channel channel) {
+        Iterator<PendingRequest> iterator = pendingRequests.values().iterator();
+        while (iterator.hasNext()) {
+            PendingRequest pending = iterator.next();
+            if (pending.channel == channel) {
+                iterator.remove();
+                pending.future.completeExceptionally(new RpcException("Connection closed " + channel.remoteAddress()));
+            }
+        }
+    }
+
+
+    /**
+     * 处理对端的请求
+     */
+    private void handleRequest(ChannelHandlerContext ctx, RpcMessage request) {
+        RpcMessageType type = RpcMessageType.parse(request.getType());
+        RpcRequestHandler handler = type == null ? null : handlers.get(type);
+        if (handler == null) {
+            ctx.writeAndFlush(request.error("No handler for message type " + request.getType()));
+            return;
+        }
+
+        try {
+            handlerExecutor.execute(() -> {
+                RpcMessage response;
+                try {
+                    response = request.response(handler.handle(request.getBody()));
+                } catch (Exception e) {
+                    log.error("Handle rpc request failed, type={}", type, e);
+                    response = request.error(e.getMessage() == null ? e.getClass().getName() : e.getMessage());
+                }
+                ctx.writeAndFlush(response);
+            });
+        } catch (RejectedExecutionException e) {
+            ctx.writeAndFlush(request.error("Too many requests, rejected type " + type));
+        }
+    }
+
+
+    /**
+     * 处理对端的响应
+     */
+    private void handleResponse(RpcMessage response) {
+        PendingRequest pending = pendingRequests.remove(response.getRequestId());
+        if (pending == null) {
+            log.warn("Receive response of unknown request {}, may be timeout", response.getRequestId());
+            return;
+        }
+
+        if (response.isError()) {
+            pending.future.completeExceptionally(new RpcException(RpcPayloads.decodeString(response.getBody())));
+        } else {
+            pending.future.complete(response.getBody());
+        }
+    }
+
+
+    private static class PendingRequest {
+
+        private final Channel channel;
+
+        private final CompletableFuture<byte[]> future;
+
+        PendingRequest(Channel channel, CompletableFuture<byte[]> future) {
+            this.channel = channel;
+            this.future = future;
+        }
+
+    }
+
+
+    @ChannelHandler.Sharable
+    private class InboundHandler extends SimpleChannelInboundHandler<RpcMessage> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, RpcMessage msg) {
+            if (msg.isResponse()) {
+                handleResponse(msg);
+            } else {
+                handleRequest(ctx, msg);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            failPendingOf(ctx.channel());
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.error("Rpc connection {} error, close it", ctx.channel().remoteAddress(), cause);
+            ctx.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.common.rpc.netty;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 二进制协议服务端，接受对端建立的长连接。服务端也可以通过已建立的连接主动向对端发起请求。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Slf4j
+public class NettyRpcServer extends NettyRpcEndpoint {
+
+    @Getter
+    private final int port;
+
+    private final int ioThreads;
+
+    private final ThreadPoolExecutor handlerExecutor;
+
+    /**
+     * 已建立的连接，连接关闭后会自动移除
+     */
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+    private EventLoopGroup bossGroup;
+
+    private EventLoopGroup workerGroup;
+
+    private Channel serverChannel;
+
+    public NettyRpcServer(int port, int ioThreads, int handlerThreads, int handlerQueueSize, long requestTimeout) {
+        this(port, ioThreads, newHandlerExecutor("flowjob-rpc-handler", handlerThreads, handlerQueueSize), requestTimeout);
+    }
+
+    private NettyRpcServer(int port, int ioThreads, ThreadPoolExecutor handlerExecutor, long requestTimeout) {
+        super(new ConcurrentHashMap<>(), handlerExecutor, requestTimeout);
+        this.port = port;
+        this.ioThreads = ioThreads;
+        this.handlerExecutor = handlerExecutor;
+    }
+
+
+    /**
+     * 绑定端口，启动服务
+     */
+    public synchronized void start() throws InterruptedException {
+        if (serverChannel != null) {
+            return;
+        }
+
+        bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("flowjob-rpc-boss", true));
+        workerGroup = new NioEventLoopGroup(ioThreads, new DefaultThreadFactory("flowjob-rpc-io", true));
+        serverChannel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        channels.add(ch);
+                        initPipeline(ch.pipeline());
+                    }
+                })
+                .bind(port)
+                .sync()
+                .channel();
+        log.info("Rpc server started on port {}", port);
+    }
+
+
+    /**
+     * 是否有对端连接
+     */
+    public boolean hasConnection() {
+        for (Channel channel : channels) {
+            if (channel.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * 通过任意一个已建立的连接向对端发起请求
+     */
+    public CompletableFuture<byte[]> request(RpcMessageType type, byte[] body) {
+        Iterator<Channel> iterator = channels.iterator();
+        while (iterator.hasNext()) {
+            Channel channel = iterator.next();
+            if (channel.isActive()) {
+                return request(channel, type, body);
+            }
+        }
+
+        CompletableFuture<byte[]> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new RpcException("No active connection on port " + port));
+        return failed;
+    }
+
+
+    @Override
+    public synchronized void close() {
+        if (serverChannel != null) {
+            serverChannel.close();
+            serverChannel = null;
+        }
+        channels.close();
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+        }
+        handlerExecutor.shutdown();
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.common.rpc.netty;
+
+import lombok.Getter;
+
+/**
+ * 二进制协议的消息帧。请求与响应通过 requestId 对应，一个连接上可以同时存在多个未完成的请求。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Getter
+public class RpcMessage {
+
+    /**
+     * 标记为响应
+     */
+    static final byte FLAG_RESPONSE = 1;
+
+    /**
+     * 标记为异常响应，body 为异常信息
+     */
+    static final byte FLAG_ERROR = 1 << 1;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * 请求 ID，响应与请求一致
+     */
+    private final long requestId;
+
+    /**
+     * 消息类型编码
+     * @see RpcMessageType
+     */
+    private final byte type;
+
+    /**
+     * 消息标记
+     */
+    private final byte flags;
+
+    /**
+     * 消息体
+     */
+    private final byte[] body;
+
+    RpcMessage(long requestId, byte type, byte flags, byte[] body) {
+        this.requestId = requestId;
+        this.type = type;
+        this.flags = flags;
+        this.body = body == null ? EMPTY : body;
+    }
+
+
+    /**
+     * 生成请求
+     */
+    static RpcMessage request(long requestId, RpcMessageType type, byte[] body) {
+        return new RpcMessage(requestId, type.code, (byte) 0, body);
+    }
+
+
+    /**
+     * 生成请求对应的响应
+     */
+    RpcMessage response(byte[] body) {
+        return new RpcMessage(requestId, type, FLAG_RESPONSE, body);
+    }
+
+
+    /**
+     * 生成请求对应的异常响应
+     */
+    RpcMessage error(String message) {
+        return new RpcMessage(requestId, type, (byte) (FLAG_RESPONSE | FLAG_ERROR), RpcPayloads.encodeString(message));
+    }
+
+
+    public boolean isResponse() {
+        return (flags & FLAG_RESPONSE) != 0;
+    }
+
+
+    public boolean isError() {
+        return (flags & FLAG_ERROR) != 0;
+    }
+
+}
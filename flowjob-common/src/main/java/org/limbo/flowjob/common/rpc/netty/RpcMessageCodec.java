@@ -0,0 +1,83 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.common.rpc.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageCodec;
+
+import java.util.List;
+
+/**
+ * 消息帧编解码，需配合长度字段的拆包、组包使用。帧格式：
+ * <pre>
+ * | magic 2 | version 1 | type 1 | flags 1 | requestId 8 | body |
+ * </pre>
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class RpcMessageCodec extends MessageToMessageCodec<ByteBuf, RpcMessage> {
+
+    /**
+     * 魔数 "FJ"
+     */
+    static final short MAGIC = 0x464A;
+
+    static final byte VERSION = 1;
+
+    static final int HEADER_LENGTH = 2 + 1 + 1 + 1 + 8;
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, RpcMessage msg, List<Object> out) {
+        ByteBuf buf = ctx.alloc().buffer(HEADER_LENGTH + msg.getBody().length);
+        buf.writeShort(MAGIC);
+        buf.writeByte(VERSION);
+        buf.writeByte(msg.getType());
+        buf.writeByte(msg.getFlags());
+        buf.writeLong(msg.getRequestId());
+        buf.writeBytes(msg.getBody());
+        out.add(buf);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf buf, List<Object> out) {
+        if (buf.readableBytes() < HEADER_LENGTH) {
+            throw new CorruptedFrameException("frame too short: " + buf.readableBytes());
+        }
+
+        short magic = buf.readShort();
+        if (magic != MAGIC) {
+            throw new CorruptedFrameException("unknown magic: " + magic);
+        }
+        byte version = buf.readByte();
+        if (version != VERSION) {
+            throw new CorruptedFrameException("unsupported version: " + version);
+        }
+
+        byte type = buf.readByte();
+        byte flags = buf.readByte();
+        long requestId = buf.readLong();
+        byte[] body = new byte[buf.readableBytes()];
+        buf.readBytes(body);
+        out.add(new RpcMessage(requestId, type, flags, body));
+    }
+
+}
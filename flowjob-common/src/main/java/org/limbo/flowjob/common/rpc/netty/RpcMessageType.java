@@ -0,0 +1,70 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.common.rpc.netty;
+
+/**
+ * 二进制协议的消息类型
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public enum RpcMessageType {
+
+    /**
+     * broker 下发单个任务到 worker
+     */
+    SUBMIT_TASK((byte) 1),
+
+    /**
+     * broker 批量下发任务到 worker
+     */
+    SUBMIT_TASKS((byte) 2),
+
+    /**
+     * worker 向 broker 发送心跳
+     */
+    HEARTBEAT((byte) 3),
+
+    /**
+     * worker 向 broker 反馈任务执行结果，支持批量
+     */
+    FEEDBACK_TASKS((byte) 4),
+
+    ;
+
+    public final byte code;
+
+    RpcMessageType(byte code) {
+        this.code = code;
+    }
+
+
+    /**
+     * 根据编码解析消息类型，未知编码返回 null
+     */
+    public static RpcMessageType parse(byte code) {
+        for (RpcMessageType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,382 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.common.rpc.netty;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.apache.commons.lang3.tuple.Pair;
+import org.limbo.flowjob.api.remote.param.TaskFeedbackParam;
+import org.limbo.flowjob.api.remote.param.TaskSubmitParam;
+import org.limbo.flowjob.api.remote.param.WorkerHeartbeatParam;
+import org.limbo.flowjob.common.utils.json.JacksonUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制协议中各类消息体的编解码。固定结构的字段直接按二进制写入，
+ * 上下文、属性这类结构不固定的 Map 仍以 JSON 字符串的形式写入。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class RpcPayloads {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    private static final TypeReference<List<Map<String, Object>>> MAP_LIST_TYPE = new TypeReference<List<Map<String, Object>>>() {
+    };
+
+    private RpcPayloads() {
+    }
+
+
+    public static byte[] encodeString(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    public static String decodeString(byte[] body) {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+
+    public static byte[] encodeBoolean(boolean value) {
+        return new byte[]{(byte) (value ? 1 : 0)};
+    }
+
+
+    public static boolean decodeBoolean(byte[] body) {
+        return body.length > 0 && body[0] != 0;
+    }
+
+
+    public static byte[] encodeStrings(List<String> values) {
+        Writer writer = new Writer();
+        writer.writeVarInt(values.size());
+        for (String value : values) {
+            writer.writeString(value);
+        }
+        return writer.toByteArray();
+    }
+
+
+    public static List<String> decodeStrings(byte[] body) {
+        Reader reader = new Reader(body);
+        int size = reader.readVarInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(reader.readString());
+        }
+        return values;
+    }
+
+
+    /**
+     * 以 JSON 编码对象，用于心跳这类不在热路径上的消息
+     */
+    public static byte[] encodeJson(Object value) {
+        return encodeString(JacksonUtils.toJSONString(value));
+    }
+
+
+    public static <T> T decodeJson(byte[] body, Class<T> type) {
+        return JacksonUtils.parseObject(decodeString(body), type);
+    }
+
+
+    public static byte[] encodeTask(TaskSubmitParam task) {
+        Writer writer = new Writer();
+        writeTask(writer, task);
+        return writer.toByteArray();
+    }
+
+
+    public static TaskSubmitParam decodeTask(byte[] body) {
+        return readTask(new Reader(body));
+    }
+
+
+    public static byte[] encodeTasks(List<TaskSubmitParam> tasks) {
+        Writer writer = new Writer();
+        writer.writeVarInt(tasks.size());
+        for (TaskSubmitParam task : tasks) {
+            writeTask(writer, task);
+        }
+        return writer.toByteArray();
+    }
+
+
+    public static List<TaskSubmitParam> decodeTasks(byte[] body) {
+        Reader reader = new Reader(body);
+        int size = reader.readVarInt();
+        List<TaskSubmitParam> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(readTask(reader));
+        }
+        return tasks;
+    }
+
+
+    /**
+     * 编码批量下发的结果，key 为 taskId，value 为是否接收
+     */
+    public static byte[] encodeSubmitResults(Map<String, Boolean> results) {
+        Writer writer = new Writer();
+        writer.writeVarInt(results.size());
+        for (Map.Entry<String, Boolean> entry : results.entrySet()) {
+            writer.writeString(entry.getKey());
+            writer.writeBoolean(Boolean.TRUE.equals(entry.getValue()));
+        }
+        return writer.toByteArray();
+    }
+
+
+    public static Map<String, Boolean> decodeSubmitResults(byte[] body) {
+        Reader reader = new Reader(body);
+        int size = reader.readVarInt();
+        Map<String, Boolean> results = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            results.put(reader.readString(), reader.readBoolean());
+        }
+        return results;
+    }
+
+
+    public static byte[] encodeFeedbacks(List<TaskFeedbackParam> feedbacks) {
+        Writer writer = new Writer();
+        writer.writeVarInt(feedbacks.size());
+        for (TaskFeedbackParam feedback : feedbacks) {
+            writer.writeString(feedback.getTaskId());
+            writer.writeInteger(feedback.getResult());
+            writer.writeString(feedback.getErrorMsg());
+            writer.writeString(feedback.getErrorStackTrace());
+            writer.writeJson(feedback.getContext());
+            writer.writeJson(feedback.getJobAttributes());
+            writer.writeJson(feedback.getResultData());
+        }
+        return writer.toByteArray();
+    }
+
+
+    public static List<TaskFeedbackParam> decodeFeedbacks(byte[] body) {
+        Reader reader = new Reader(body);
+        int size = reader.readVarInt();
+        List<TaskFeedbackParam> feedbacks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TaskFeedbackParam feedback = new TaskFeedbackParam();
+            feedback.setTaskId(reader.readString());
+            feedback.setResult(reader.readInteger());
+            feedback.setErrorMsg(reader.readString());
+            feedback.setErrorStackTrace(reader.readString());
+            // 与 JSON 反序列化保持一致，为 null 时保留默认的空 Map
+            Map<String, Object> context = reader.readJson(MAP_TYPE);
+            if (context != null) {
+                feedback.setContext(context);
+            }
+            Map<String, Object> jobAttributes = reader.readJson(MAP_TYPE);
+            if (jobAttributes != null) {
+                feedback.setJobAttributes(jobAttributes);
+            }
+            feedback.setResultData(reader.readJson(Object.class));
+            feedbacks.add(feedback);
+        }
+        return feedbacks;
+    }
+
+
+    public static byte[] encodeHeartbeat(String workerId, WorkerHeartbeatParam heartbeat) {
+        Writer writer = new Writer();
+        writer.writeString(workerId);
+        writer.writeJson(heartbeat);
+        return writer.toByteArray();
+    }
+
+
+    /**
+     * 解码心跳，返回 workerId 与心跳参数
+     */
+    public static Pair<String, WorkerHeartbeatParam> decodeHeartbeat(byte[] body) {
+        Reader reader = new Reader(body);
+        String workerId = reader.readString();
+        WorkerHeartbeatParam heartbeat = reader.readJson(WorkerHeartbeatParam.class);
+        return Pair.of(workerId, heartbeat);
+    }
+
+
+    private static void writeTask(Writer writer, TaskSubmitParam task) {
+        writer.writeString(task.getTaskId());
+        writer.writeString(task.getPlanId());
+        writer.writeString(task.getPlanInstanceId());
+        writer.writeString(task.getJobId());
+        writer.writeString(task.getJobInstanceId());
+        writer.writeInteger(task.getType());
+        writer.writeString(task.getExecutorName());
+        writer.writeJson(task.getContext());
+        writer.writeJson(task.getAttributes());
+        writer.writeJson(task.getMapAttributes());
+        writer.writeJson(task.getReduceAttributes());
+    }
+
+
+    private static TaskSubmitParam readTask(Reader reader) {
+        TaskSubmitParam task = new TaskSubmitParam();
+        task.setTaskId(reader.readString());
+        task.setPlanId(reader.readString());
+        task.setPlanInstanceId(reader.readString());
+        task.setJobId(reader.readString());
+        task.setJobInstanceId(reader.readString());
+        task.setType(reader.readInteger());
+        task.setExecutorName(reader.readString());
+        task.setContext(reader.readJson(MAP_TYPE));
+        task.setAttributes(reader.readJson(MAP_TYPE));
+        task.setMapAttributes(reader.readJson(MAP_TYPE));
+        task.setReduceAttributes(reader.readJson(MAP_LIST_TYPE));
+        return task;
+    }
+
+
+    /**
+     * 顺序写入，可空字段以长度 + 1 的 varint 作为前缀，0 表示 null
+     */
+    static class Writer {
+
+        private byte[] buf = new byte[256];
+
+        private int pos = 0;
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeBoolean(boolean value) {
+            ensure(1);
+            buf[pos++] = (byte) (value ? 1 : 0);
+        }
+
+        void writeInteger(Integer value) {
+            if (value == null) {
+                writeBoolean(false);
+            } else {
+                writeBoolean(true);
+                writeVarInt(value);
+            }
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeJson(Object value) {
+            writeString(value == null ? null : JacksonUtils.toJSONString(value));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int size) {
+            if (pos + size > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + size));
+            }
+        }
+
+    }
+
+
+    static class Reader {
+
+        private final byte[] buf;
+
+        private int pos = 0;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new RpcException("Malformed varint");
+        }
+
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        Integer readInteger() {
+            return readBoolean() ? readVarInt() : null;
+        }
+
+        String readString() {
+            int len = readVarInt() - 1;
+            if (len < 0) {
+                return null;
+            }
+            if (pos + len > buf.length) {
+                throw new RpcException("Malformed payload, string length " + len + " exceeds remaining " + (buf.length - pos));
+            }
+            String value = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return value;
+        }
+
+        <T> T readJson(Class<T> type) {
+            String json = readString();
+            return json == null ? null : JacksonUtils.parseObject(json, type);
+        }
+
+        <T> T readJson(TypeReference<T> type) {
+            String json = readString();
+            return json == null ? null : JacksonUtils.parseObject(json, type);
+        }
+
+        private byte readByte() {
+            if (pos >= buf.length) {
+                throw new RpcException("Malformed payload, unexpected end");
+            }
+            return buf[pos++];
+        }
+
+    }
+
+}
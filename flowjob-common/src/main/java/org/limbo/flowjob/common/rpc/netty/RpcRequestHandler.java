@@ -0,0 +1,38 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.common.rpc.netty;
+
+/**
+ * 处理对端发起的请求
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@FunctionalInterface
+public interface RpcRequestHandler {
+
+    /**
+     * 处理请求，在业务线程池中执行
+     *
+     * @param body 请求消息体
+     * @return 响应消息体，抛出的异常会作为异常响应返回给对端
+     */
+    byte[] handle(byte[] body) throws Exception;
+
+}
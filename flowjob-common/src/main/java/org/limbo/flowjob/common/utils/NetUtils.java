@@ -19,9 +19,14 @@
 package org.limbo.flowjob.common.utils;
 
 import lombok.extern.slf4j.Slf4j;
+import org.limbo.flowjob.api.constants.Protocol;
 
 import java.net.InetAddress;
+import java.net.MalformedURLException;
 import java.net.NetworkInterface;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
 import java.util.Enumeration;
 import java.util.regex.Pattern;
 
@@ -39,6 +44,39 @@ public class NetUtils {
 
     private static volatile InetAddress LOCAL_ADDRESS = null;
 
+    /**
+     * JDK 不识别 tcp 协议，构造 URL 时使用此 handler，仅用于描述地址，不支持打开连接
+     */
+    private static final URLStreamHandler TCP_URL_HANDLER = new URLStreamHandler() {
+        @Override
+        protected URLConnection openConnection(URL u) {
+            throw new UnsupportedOperationException("Can't open connection of url " + u);
+        }
+    };
+
+
+    /**
+     * 根据协议、主机、端口构造 URL，支持 JDK 不识别的 {@link Protocol#TCP} 协议。
+     */
+    public static URL newURL(String protocol, String host, int port) throws MalformedURLException {
+        if (Protocol.TCP.is(protocol)) {
+            return new URL(protocol, host, port, "", TCP_URL_HANDLER);
+        }
+        return new URL(protocol, host, port, "");
+    }
+
+
+    /**
+     * 解析 URL 字符串，支持 JDK 不识别的 {@link Protocol#TCP} 协议。
+     */
+    public static URL parseURL(String spec) throws MalformedURLException {
+        int idx = spec.indexOf(':');
+        if (idx > 0 && Protocol.TCP.is(spec.substring(0, idx).trim())) {
+            return new URL(null, spec.trim(), TCP_URL_HANDLER);
+        }
+        return new URL(spec);
+    }
+
 
     public static String getLocalIp() {
         InetAddress address = findFirstNonLoopbackAddress();
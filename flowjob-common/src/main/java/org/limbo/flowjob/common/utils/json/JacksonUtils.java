@@ -22,11 +22,14 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.apache.commons.lang3.StringUtils;
 import org.limbo.flowjob.common.utils.time.Formatters;
 
+import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -57,6 +60,7 @@ public class JacksonUtils {
         javaTimeModule.addSerializer(new LocalDateTimeSerializer(dateTimePattern));
         javaTimeModule.addDeserializer(LocalDateTime.class, new LocalDateTimeDeserializer(dateTimePattern));
         mapper.registerModule(javaTimeModule);
+        mapper.registerModule(flowjobModule());
 
         //在反序列化时忽略在 json 中存在但 Java 对象不存在的属性
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
@@ -72,6 +76,16 @@ public class JacksonUtils {
     }
 
 
+    /**
+     * flowjob 自定义的类型处理，如支持 tcp 协议的 URL 反序列化
+     */
+    public static Module flowjobModule() {
+        SimpleModule module = new SimpleModule("flowjob");
+        module.addDeserializer(URL.class, new URLDeserializer());
+        return module;
+    }
+
+
     /**
      * 将对象转换为JSON字符串
      */
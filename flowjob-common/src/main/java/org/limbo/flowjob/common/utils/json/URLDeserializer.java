@@ -0,0 +1,53 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.common.utils.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import org.apache.commons.lang3.StringUtils;
+import org.limbo.flowjob.common.utils.NetUtils;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * URL 反序列化，Jackson 默认的实现不支持 tcp 等 JDK 不识别的协议
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class URLDeserializer extends JsonDeserializer<URL> {
+
+    @Override
+    public URL deserialize(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
+        String spec = jsonParser.getValueAsString();
+        if (StringUtils.isBlank(spec)) {
+            return null;
+        }
+
+        try {
+            return NetUtils.parseURL(spec);
+        } catch (MalformedURLException e) {
+            return (URL) ctx.handleWeirdStringValue(URL.class, spec, e.getMessage());
+        }
+    }
+
+}
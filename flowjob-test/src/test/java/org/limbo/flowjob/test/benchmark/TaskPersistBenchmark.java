@@ -0,0 +1,168 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.benchmark;
+
+import org.limbo.flowjob.api.constants.TaskStatus;
+import org.limbo.flowjob.api.constants.TaskType;
+import org.limbo.flowjob.broker.dao.entity.TaskEntity;
+import org.limbo.flowjob.broker.dao.repositories.EntityBatchInsertRepo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存 map 任务的开销对比，使用内嵌 H2（MySQL 模式），每次调用在一个事务内插入 tasks 个任务：
+ * <ul>
+ *     <li>rowByRow：模拟 JPA saveAll 对业务生成 ID 的实体的行为，每个实体先 SELECT 再单条 INSERT</li>
+ *     <li>batch：{@link EntityBatchInsertRepo} 多行 VALUES 批量插入</li>
+ * </ul>
+ * 内嵌 DB 没有网络往返，实际 DB 上两者的差距会更大。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TaskPersistBenchmark {
+
+    private static final String DDL = "create table flowjob_task (" +
+            "id bigint auto_increment primary key, task_id varchar(255) not null default '', " +
+            "job_instance_id varchar(255) not null default '', job_id varchar(255) not null default '', " +
+            "plan_id varchar(255) not null default '', plan_instance_id varchar(255) not null default '', " +
+            "plan_info_id varchar(255) not null default '', worker_id varchar(255) not null default '', " +
+            "executor_name varchar(255) not null default '', dispatch_option varchar(255) not null default '', " +
+            "context varchar(255) not null default '', job_attributes varchar(255) not null default '', " +
+            "task_attributes varchar(255) not null default '', type tinyint not null, status tinyint not null, " +
+            "start_at datetime(6), end_at datetime(6), result varchar(255) not null default '', " +
+            "error_msg varchar(255) not null default '', error_stack_trace text, is_deleted boolean not null default false, " +
+            "created_at datetime not null default current_timestamp, updated_at datetime not null default current_timestamp, " +
+            "unique key uk_id (task_id))";
+
+    @Param({"1000", "10000", "100000"})
+    private int tasks;
+
+    @Param({"rowByRow", "batch"})
+    private String mode;
+
+    private SingleConnectionDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private EntityBatchInsertRepo batchInsertRepo;
+
+    private List<TaskEntity> entities;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:flowjob;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("drop table if exists flowjob_task");
+        jdbcTemplate.execute(DDL);
+
+        batchInsertRepo = new EntityBatchInsertRepo();
+        batchInsertRepo.setJdbcTemplate(jdbcTemplate);
+
+        entities = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            TaskEntity task = new TaskEntity();
+            task.setTaskId("task-" + i);
+            task.setJobInstanceId("job-instance-1");
+            task.setJobId("job-1");
+            task.setPlanId("plan-1");
+            task.setPlanInstanceId("plan-instance-1");
+            task.setPlanInfoId("plan-info-1");
+            task.setExecutorName("hello");
+            task.setDispatchOption("{\"loadBalanceType\":1}");
+            task.setTaskAttributes("{\"index\":" + i + "}");
+            task.setType(TaskType.MAP.type);
+            task.setStatus(TaskStatus.SCHEDULING.status);
+            entities.add(task);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void truncate() {
+        jdbcTemplate.execute("truncate table flowjob_task");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("drop table flowjob_task");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public void insert() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if ("batch".equals(mode)) {
+                batchInsertRepo.insertTasks(entities);
+            } else {
+                insertRowByRow();
+            }
+        });
+    }
+
+    private void insertRowByRow() {
+        String sql = "insert into flowjob_task (task_id, job_instance_id, job_id, plan_id, plan_instance_id, plan_info_id, " +
+                "executor_name, dispatch_option, task_attributes, type, status) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        for (TaskEntity task : entities) {
+            jdbcTemplate.queryForList("select * from flowjob_task where task_id = ?", task.getTaskId());
+            jdbcTemplate.update(sql, task.getTaskId(), task.getJobInstanceId(), task.getJobId(), task.getPlanId(),
+                    task.getPlanInstanceId(), task.getPlanInfoId(), task.getExecutorName(), task.getDispatchOption(),
+                    task.getTaskAttributes(), task.getType(), task.getStatus());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TaskPersistBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.benchmark;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.HierarchicalWheelTimer;
+import org.limbo.flowjob.broker.core.schedule.scheduler.NamedThreadFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty 哈希时间轮与分层时间轮对比。预先放入 pending 个远期任务（1 小时 ~ 1 天），测量在此负载下添加并取消一个短延迟任务的开销，
+ * 时间轮线程推进时扫描远期任务的开销也会体现在结果中。
+ *
+ * 10M pending 时需要较大堆内存，运行：直接执行 main 方法，或 mvn test-compile 后使用 jmh Runner 指定 -Xmx8g。
+ *
+ * @author Brozen
+ * @since 2023-06-05
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgs = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+
+    private static final TimerTask NOOP = timeout -> { };
+
+    @Param({"100000", "1000000", "10000000"})
+    private int pending;
+
+    @Param({"hashed", "hierarchical"})
+    private String type;
+
+    private Timer timer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NamedThreadFactory threadFactory = NamedThreadFactory.newInstance("TimerBenchmark");
+        if ("hashed".equals(type)) {
+            timer = new HashedWheelTimer(threadFactory, 10, TimeUnit.MILLISECONDS, 512);
+        } else {
+            timer = new HierarchicalWheelTimer(threadFactory, 10, TimeUnit.MILLISECONDS, 512);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < pending; i++) {
+            timer.newTimeout(NOOP, random.nextLong(TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(1)), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        Timeout timeout = timer.newTimeout(NOOP, ThreadLocalRandom.current().nextLong(10, 60000), TimeUnit.MILLISECONDS);
+        return timeout.cancel();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TimerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
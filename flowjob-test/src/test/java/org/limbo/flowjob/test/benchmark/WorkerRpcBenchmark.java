@@ -0,0 +1,225 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.limbo.flowjob.api.constants.TaskType;
+import org.limbo.flowjob.api.remote.constants.HttpWorkerApi;
+import org.limbo.flowjob.broker.core.domain.task.Task;
+import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.broker.core.worker.rpc.DefaultWorkerRpcFactory;
+import org.limbo.flowjob.broker.core.worker.rpc.WorkerRpc;
+import org.limbo.flowjob.common.rpc.netty.NettyRpcServer;
+import org.limbo.flowjob.common.rpc.netty.RpcMessageType;
+import org.limbo.flowjob.common.rpc.netty.RpcPayloads;
+import org.limbo.flowjob.common.utils.NetUtils;
+import org.limbo.flowjob.common.utils.attribute.Attributes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * broker 向 worker 下发任务的通信对比：HTTP JSON（OkHttp 连接池）与 Netty 长连接二进制协议。
+ * worker 端使用桩实现，收到任务直接返回接收成功，结果体现的是序列化与传输本身的开销。
+ *
+ * 运行：直接执行 main 方法，或 mvn test-compile 后使用 jmh Runner。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class WorkerRpcBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"http", "tcp"})
+    private String protocol;
+
+    private HttpServer httpServer;
+
+    private NettyRpcServer nettyServer;
+
+    private URL url;
+
+    private DefaultWorkerRpcFactory factory;
+
+    private WorkerRpc rpc;
+
+    private Task task;
+
+    private List<Task> tasks;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int port = freePort();
+        if ("http".equals(protocol)) {
+            httpServer = HttpServer.create(new InetSocketAddress(NetUtils.LOCAL_HOST, port), 1024);
+            httpServer.createContext(HttpWorkerApi.API_SEND_TASK, exchange -> respond(exchange, "{\"code\":200,\"data\":true}"));
+            httpServer.createContext(HttpWorkerApi.API_SEND_TASKS, exchange -> respond(exchange, batchResponse()));
+            httpServer.setExecutor(Executors.newFixedThreadPool(8));
+            httpServer.start();
+        } else {
+            nettyServer = new NettyRpcServer(port, 0, 8, 4096, 10000);
+            nettyServer.registerHandler(RpcMessageType.SUBMIT_TASK, body -> {
+                RpcPayloads.decodeTask(body);
+                return RpcPayloads.encodeBoolean(true);
+            });
+            nettyServer.registerHandler(RpcMessageType.SUBMIT_TASKS, body -> {
+                Map<String, Boolean> results = new LinkedHashMap<>();
+                RpcPayloads.decodeTasks(body).forEach(t -> results.put(t.getTaskId(), true));
+                return RpcPayloads.encodeSubmitResults(results);
+            });
+            nettyServer.start();
+        }
+
+        url = NetUtils.newURL(protocol, NetUtils.LOCAL_HOST, port);
+        Worker worker = Worker.builder().id("benchmark").name("benchmark").rpcBaseUrl(url).build();
+        factory = new DefaultWorkerRpcFactory();
+        rpc = factory.createRPC(worker);
+
+        task = newTask();
+        tasks = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            tasks.add(newTask());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        factory.evict(url);
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+        if (nettyServer != null) {
+            nettyServer.close();
+        }
+    }
+
+    @Benchmark
+    public boolean sendTask() {
+        return rpc.sendTask(task);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Map<String, Boolean> sendTasks() {
+        return rpc.sendTasks(tasks);
+    }
+
+
+    private static Task newTask() {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("bizId", UUID.randomUUID().toString());
+        attributes.put("retry", 3);
+        attributes.put("shard", 12);
+
+        Task task = new Task();
+        task.setTaskId(UUID.randomUUID().toString());
+        task.setPlanId("plan-benchmark");
+        task.setPlanInstanceId(UUID.randomUUID().toString());
+        task.setJobId("job-benchmark");
+        task.setJobInstanceId(UUID.randomUUID().toString());
+        task.setType(TaskType.NORMAL);
+        task.setExecutorName("benchmarkExecutor");
+        task.setJobAttributes(new Attributes(attributes));
+        return task;
+    }
+
+
+    private static String batchResponse() {
+        StringBuilder json = new StringBuilder("{\"code\":200,\"data\":[");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"taskId\":\"").append(i).append("\",\"accepted\":true}");
+        }
+        return json.append("]}").toString();
+    }
+
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        // 读完请求体，保证连接可以复用
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buf = new byte[4096];
+            while (in.read(buf) >= 0) {
+                // drain
+            }
+        }
+
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(WorkerRpcBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.limbo.flowjob.test.core.cluster;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.broker.application.component.GossipBrokerRegistry;
+import org.limbo.flowjob.broker.core.domain.IDGenerator;
+import org.limbo.flowjob.broker.dao.entity.BrokerEntity;
+import org.limbo.flowjob.broker.dao.repositories.BrokerEntityRepo;
+import org.limbo.flowjob.common.utils.time.TimeUtils;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * gossip 注册只使用有效期内登记过的 broker 作为种子，并定期删除过期的登记
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+class GossipBrokerRegistryTest {
+
+    private static final long SEED_EXPIRE = 60000;
+
+    private final BrokerEntityRepo brokerEntityRepo = Mockito.mock(BrokerEntityRepo.class);
+
+    private final TestRegistry registry = new TestRegistry(brokerEntityRepo);
+
+    @Test
+    void testSeedsOnlyRecentBrokers() {
+        BrokerEntity broker = new BrokerEntity();
+        broker.setHost("127.0.0.2");
+        broker.setPort(9000);
+        Mockito.when(brokerEntityRepo.findByLastHeartbeatAfter(any())).thenReturn(Collections.singletonList(broker));
+
+        LocalDateTime before = TimeUtils.currentLocalDateTime();
+        List<InetSocketAddress> seeds = new ArrayList<>(registry.seedsForTest());
+        Assertions.assertEquals(2, seeds.size());
+        Assertions.assertEquals(new InetSocketAddress("127.0.0.2", 9000), seeds.get(1));
+
+        ArgumentCaptor<LocalDateTime> after = ArgumentCaptor.forClass(LocalDateTime.class);
+        Mockito.verify(brokerEntityRepo).findByLastHeartbeatAfter(after.capture());
+        Assertions.assertFalse(after.getValue().isBefore(before.minusNanos(SEED_EXPIRE * 1000000)));
+        Mockito.verify(brokerEntityRepo, Mockito.never()).findAll();
+    }
+
+    @Test
+    void testRefreshAndPruneThrottled() {
+        long now = System.currentTimeMillis();
+        registry.afterGossipForTest(now);
+        Mockito.verify(brokerEntityRepo, Mockito.times(1)).saveAndFlush(any());
+        Mockito.verify(brokerEntityRepo, Mockito.times(1)).deleteByLastHeartbeatBefore(any());
+
+        // 有效期的 1/3 内不重复刷新
+        registry.afterGossipForTest(now + SEED_EXPIRE / 3 - 1);
+        Mockito.verify(brokerEntityRepo, Mockito.times(1)).deleteByLastHeartbeatBefore(any());
+
+        registry.afterGossipForTest(now + SEED_EXPIRE / 3);
+        Mockito.verify(brokerEntityRepo, Mockito.times(2)).saveAndFlush(any());
+        Mockito.verify(brokerEntityRepo, Mockito.times(2)).deleteByLastHeartbeatBefore(any());
+    }
+
+    private static class TestRegistry extends GossipBrokerRegistry {
+
+        TestRegistry(BrokerEntityRepo brokerEntityRepo) {
+            super(null, null, "flowjob-test-secret", 100, 500, 2,
+                    Collections.singletonList(new InetSocketAddress("127.0.0.1", 9000)), SEED_EXPIRE,
+                    brokerEntityRepo, Mockito.mock(IDGenerator.class));
+        }
+
+        List<InetSocketAddress> seedsForTest() {
+            return new ArrayList<>(seeds());
+        }
+
+        void afterGossipForTest(long now) {
+            afterGossip(now);
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.core.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.broker.core.cluster.GossipNodeRegistry;
+import org.limbo.flowjob.broker.core.cluster.NodeEvent;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 多个进程内 broker 通过 gossip 感知彼此上下线
+ *
+ * @author Brozen
+ * @since 2023-06-14
+ */
+class GossipNodeRegistryTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    private static final String SECRET = "flowjob-test-secret";
+
+    private final List<GossipNodeRegistry> registries = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        registries.forEach(GossipNodeRegistry::stop);
+    }
+
+    @Test
+    void testMembership() throws Exception {
+        int size = 4;
+        int[] ports = new int[size];
+        for (int i = 0; i < size; i++) {
+            ports[i] = freePort();
+        }
+
+        // 只以第一个节点作为种子
+        List<Set<String>> views = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            views.add(start("broker-" + i, ports[i], ports[0]));
+        }
+
+        for (Set<String> view : views) {
+            waitUntil(() -> view.size() == size);
+        }
+
+        // 停止一个节点，其余节点在心跳超时后感知下线
+        registries.get(2).stop();
+        for (int i = 0; i < size; i++) {
+            if (i != 2) {
+                Set<String> view = views.get(i);
+                waitUntil(() -> !view.contains("broker-2"));
+            }
+        }
+
+        // 同名节点重启后重新上线
+        Set<String> restarted = start("broker-2", ports[2], ports[0]);
+        waitUntil(() -> restarted.size() == size);
+        for (Set<String> view : views) {
+            waitUntil(() -> view.contains("broker-2"));
+        }
+    }
+
+    @Test
+    void testDropUnsignedPacket() throws Exception {
+        int seedPort = freePort();
+        Set<String> seedView = start("broker-0", seedPort, seedPort);
+        Set<String> forgedView = start("broker-1", freePort(), seedPort, "another-secret");
+
+        // 密钥不一致的节点互相丢弃报文，只能看到自己
+        Thread.sleep(1000);
+        Assertions.assertEquals(Collections.singleton("broker-0"), seedView);
+        Assertions.assertEquals(Collections.singleton("broker-1"), forgedView);
+
+        // 未签名的报文同样被丢弃
+        try (DatagramSocket socket = new DatagramSocket()) {
+            byte[] payload = ("{\"members\":[{\"name\":\"broker-x\",\"host\":\"" + HOST + "\",\"port\":1,\"gossipPort\":1,\"generation\":1,\"heartbeat\":1}]}")
+                    .getBytes(StandardCharsets.UTF_8);
+            socket.send(new DatagramPacket(payload, payload.length, new InetSocketAddress(HOST, seedPort)));
+        }
+        Thread.sleep(200);
+        Assertions.assertFalse(seedView.contains("broker-x"));
+    }
+
+    private Set<String> start(String name, int port, int seedPort) {
+        return start(name, port, seedPort, SECRET);
+    }
+
+    private Set<String> start(String name, int port, int seedPort, String secret) {
+        GossipNodeRegistry registry = new GossipNodeRegistry(HOST, null, secret, 100, 500, 2,
+                Collections.singletonList(new InetSocketAddress(HOST, seedPort)));
+        registries.add(registry);
+
+        Set<String> view = ConcurrentHashMap.newKeySet();
+        registry.register(name, HOST, port);
+        registry.subscribe(event -> {
+            if (event.getType() == NodeEvent.Type.ONLINE) {
+                view.add(event.getName());
+            } else {
+                view.remove(event.getName());
+            }
+        });
+        return view;
+    }
+
+    private int freePort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "wait membership timeout");
+            Thread.sleep(20);
+        }
+    }
+
+}
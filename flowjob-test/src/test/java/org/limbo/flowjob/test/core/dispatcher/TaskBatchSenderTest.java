@@ -0,0 +1,155 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.limbo.flowjob.test.core.dispatcher;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.broker.core.dispatch.TaskBatchSender;
+import org.limbo.flowjob.broker.core.domain.task.Task;
+import org.limbo.flowjob.broker.core.worker.Worker;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+
+/**
+ * 任务按批量大小、时间窗口合并发送，并按 taskId 返回每个任务的接收结果
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+class TaskBatchSenderTest {
+
+    private TaskBatchSender sender;
+
+    @AfterEach
+    void tearDown() {
+        if (sender != null) {
+            sender.close();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlushWhenBatchFull() throws Exception {
+        // 窗口足够长，只能因达到批量大小发送
+        sender = new TaskBatchSender(60000, 3);
+        Worker worker = worker("w1");
+        Mockito.when(worker.sendTasksAsync(anyList())).thenAnswer(invocation -> {
+            List<Task> tasks = invocation.getArgument(0);
+            Map<String, Boolean> results = new HashMap<>();
+            for (Task task : tasks) {
+                results.put(task.getTaskId(), !"t2".equals(task.getTaskId()));
+            }
+            return CompletableFuture.completedFuture(results);
+        });
+
+        CompletableFuture<Boolean> f1 = sender.send(worker, task("t1"));
+        CompletableFuture<Boolean> f2 = sender.send(worker, task("t2"));
+        Assertions.assertFalse(f1.isDone());
+        CompletableFuture<Boolean> f3 = sender.send(worker, task("t3"));
+
+        Assertions.assertTrue(f1.get(1, TimeUnit.SECONDS));
+        Assertions.assertFalse(f2.get(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(f3.get(1, TimeUnit.SECONDS));
+
+        ArgumentCaptor<List<Task>> batch = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(worker, Mockito.times(1)).sendTasksAsync(batch.capture());
+        Assertions.assertEquals(Arrays.asList("t1", "t2", "t3"),
+                batch.getValue().stream().map(Task::getTaskId).collect(Collectors.toList()));
+        Mockito.verify(worker, Mockito.never()).sendTaskAsync(any());
+    }
+
+    @Test
+    void testFlushWhenWindowExpired() throws Exception {
+        sender = new TaskBatchSender(100, 100);
+        Worker w1 = worker("w1");
+        Worker w2 = worker("w2");
+        Map<String, Boolean> results = new HashMap<>();
+        results.put("t1", true);
+        results.put("t2", false);
+        Mockito.when(w1.sendTasksAsync(anyList())).thenReturn(CompletableFuture.completedFuture(results));
+        Mockito.when(w2.sendTaskAsync(any())).thenReturn(CompletableFuture.completedFuture(true));
+
+        CompletableFuture<Boolean> f1 = sender.send(w1, task("t1"));
+        CompletableFuture<Boolean> f2 = sender.send(w1, task("t2"));
+        // 单个任务的批次使用单任务接口
+        CompletableFuture<Boolean> f3 = sender.send(w2, task("t3"));
+
+        Assertions.assertTrue(f1.get(2, TimeUnit.SECONDS));
+        Assertions.assertFalse(f2.get(2, TimeUnit.SECONDS));
+        Assertions.assertTrue(f3.get(2, TimeUnit.SECONDS));
+        Mockito.verify(w1, Mockito.times(1)).sendTasksAsync(anyList());
+        Mockito.verify(w2, Mockito.times(1)).sendTaskAsync(any());
+    }
+
+    @Test
+    void testBatchFailCompletesEveryTask() {
+        sender = new TaskBatchSender(60000, 2);
+        Worker worker = worker("w1");
+        CompletableFuture<Map<String, Boolean>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("Client closed"));
+        Mockito.when(worker.sendTasksAsync(anyList())).thenReturn(failed);
+
+        CompletableFuture<Boolean> f1 = sender.send(worker, task("t1"));
+        CompletableFuture<Boolean> f2 = sender.send(worker, task("t2"));
+        Assertions.assertThrows(ExecutionException.class, () -> f1.get(1, TimeUnit.SECONDS));
+        Assertions.assertThrows(ExecutionException.class, () -> f2.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCloseFlushesPendingBatches() throws Exception {
+        sender = new TaskBatchSender(60000, 100);
+        Worker worker = worker("w1");
+        Mockito.when(worker.sendTaskAsync(any())).thenReturn(CompletableFuture.completedFuture(true));
+
+        CompletableFuture<Boolean> pending = sender.send(worker, task("t1"));
+        Assertions.assertFalse(pending.isDone());
+
+        sender.close();
+        Assertions.assertTrue(pending.get(1, TimeUnit.SECONDS));
+
+        // 关闭后直接发送
+        Assertions.assertTrue(sender.send(worker, task("t2")).get(1, TimeUnit.SECONDS));
+        Mockito.verify(worker, Mockito.times(2)).sendTaskAsync(any());
+    }
+
+    private Worker worker(String id) {
+        Worker worker = Mockito.mock(Worker.class);
+        Mockito.when(worker.getId()).thenReturn(id);
+        return worker;
+    }
+
+    private Task task(String taskId) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        return task;
+    }
+
+}
@@ -27,10 +27,20 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.limbo.flowjob.broker.core.dispatch.DispatchOption;
+import org.limbo.flowjob.broker.core.dispatch.TagFilterOption;
+import org.limbo.flowjob.broker.core.dispatch.TaskDispatcher;
+import org.limbo.flowjob.broker.core.domain.task.Task;
+import org.limbo.flowjob.broker.core.statistics.WorkerStatisticsRepository;
 import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.broker.core.worker.WorkerIndex;
+import org.limbo.flowjob.broker.core.worker.WorkerRegistry;
 import org.limbo.flowjob.broker.core.worker.executor.WorkerExecutor;
 import org.limbo.flowjob.broker.core.worker.metric.WorkerAvailableResource;
 import org.limbo.flowjob.broker.core.worker.metric.WorkerMetric;
+import org.limbo.flowjob.broker.core.worker.metric.WorkerResourceReservations;
+import org.limbo.flowjob.api.constants.LoadBalanceType;
+import org.limbo.flowjob.api.constants.TagFilterCondition;
+import org.limbo.flowjob.api.constants.TaskStatus;
 import org.limbo.flowjob.api.constants.WorkerStatus;
 import org.limbo.flowjob.common.lb.LBServerStatistics;
 import org.limbo.flowjob.common.lb.LBServerStatisticsProvider;
@@ -41,16 +51,20 @@ import org.limbo.flowjob.common.lb.strategies.LRULBStrategy;
 import org.limbo.flowjob.common.lb.strategies.RandomLBStrategy;
 import org.limbo.flowjob.common.lb.strategies.RoundRobinLBStrategy;
 import org.limbo.flowjob.common.utils.time.TimeUtils;
+import org.mockito.Mockito;
 
+import java.math.BigDecimal;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Brozen
@@ -72,15 +86,21 @@ public class WorkerDispatcherTest {
 
 
     private Worker generateMockWorker(String id) throws MalformedURLException {
+        return generateMockWorker(id, "hello");
+    }
+
+
+    private Worker generateMockWorker(String id, String executorName) throws MalformedURLException {
         return Worker.builder()
                 .id(id)
                 .name(id)
                 .rpcBaseUrl(new URL("https://www.baidu.com"))
                 .status(WorkerStatus.RUNNING)
                 .isEnabled(true)
+                .enabled(true)
                 .executors(Lists.newArrayList(
                         WorkerExecutor.builder()
-                                .name("hello")
+                                .name(executorName)
                                 .build()
                 ))
                 .tags(new HashMap<>())
@@ -176,6 +196,169 @@ public class WorkerDispatcherTest {
     }
 
 
+    @Test
+    public void testIndexFilter() throws MalformedURLException {
+        Worker w1 = generateMockWorker("Worker1");
+        w1.getTags().put("env", Lists.newArrayList("prod"));
+        Worker w2 = generateMockWorker("Worker2");
+        w2.getTags().put("env", Lists.newArrayList("test"));
+        Worker w3 = generateMockWorker("Worker3", "other");
+        WorkerIndex index = WorkerIndex.build(Lists.newArrayList(w1, w2, w3));
+
+        DispatchOption.FilteringWorkerSelector selector = new DispatchOption.FilteringWorkerSelector(new RoundRobinLBStrategy<>());
+        MockWorkerSelectArgument args = new MockWorkerSelectArgument();
+        args.setDispatchOption(DispatchOption.builder()
+                .tagFilters(Lists.newArrayList(TagFilterOption.builder()
+                        .tagName("env").tagValue("prod").condition(TagFilterCondition.MUST_NOT_MATCH_VALUE)
+                        .build()))
+                .build());
+        assert "Worker2".equals(selector.select(args, index).getId());
+        assert selector.select(args, index.without("Worker2")) == null;
+
+        args.setDispatchOption(DispatchOption.builder()
+                .tagFilters(Lists.newArrayList(TagFilterOption.builder()
+                        .tagName("env").condition(TagFilterCondition.NOT_EXISTS)
+                        .build()))
+                .build());
+        // Worker3 没有标签，但也没有 hello 执行器
+        assert selector.select(args, index) == null;
+
+        // 执行器、标签未变化时复用索引
+        assert index.refresh(Lists.newArrayList(w1, w2, w3)).candidates("hello").cardinality() == 2;
+    }
+
+
+    @Test
+    public void testCompiledTagFilter() throws MalformedURLException {
+        Worker w1 = generateMockWorker("Worker1");
+        w1.getTags().put("env", Lists.newArrayList("prod"));
+        w1.getTags().put("zone", Lists.newArrayList("zone-a"));
+        Worker w2 = generateMockWorker("Worker2");
+        w2.getTags().put("env", Lists.newArrayList("test"));
+        Worker w3 = generateMockWorker("Worker3");
+        w3.getTags().put("env", Lists.newArrayList("dev"));
+        List<Worker> workers = Lists.newArrayList(w1, w2, w3);
+        WorkerIndex index = WorkerIndex.build(workers);
+
+        TagFilterOption filter = TagFilterOption.builder()
+                .condition(TagFilterCondition.ANY_OF)
+                .filters(Lists.newArrayList(
+                        TagFilterOption.builder().tagName("zone").tagValue("^zone-").condition(TagFilterCondition.MUST_MATCH_VALUE_REGEX).build(),
+                        TagFilterOption.builder().tagName("env").tagValues(Lists.newArrayList("test", "staging")).condition(TagFilterCondition.MUST_MATCH_VALUE_IN).build()
+                ))
+                .build();
+        TagFilterOption same = TagFilterOption.builder()
+                .condition(TagFilterCondition.ANY_OF)
+                .filters(Lists.newArrayList(
+                        TagFilterOption.builder().tagName("zone").tagValue("^zone-").condition(TagFilterCondition.MUST_MATCH_VALUE_REGEX).build(),
+                        TagFilterOption.builder().tagName("env").tagValues(Lists.newArrayList("test", "staging")).condition(TagFilterCondition.MUST_MATCH_VALUE_IN).build()
+                ))
+                .build();
+        // 相同的过滤条件共享编译结果
+        assert filter.compile() == same.compile();
+
+        assert filter.asPredicate().test(w1);
+        assert filter.asPredicate().test(w2);
+        assert !filter.asPredicate().test(w3);
+
+        BitSet candidates = index.candidates("hello");
+        filter.filter(index, candidates);
+        assert candidates.cardinality() == 2 && !candidates.get(2);
+
+        TagFilterOption notIn = TagFilterOption.builder()
+                .tagName("env").tagValues(Lists.newArrayList("prod", "test")).condition(TagFilterCondition.MUST_NOT_MATCH_VALUE_IN)
+                .build();
+        candidates = index.candidates("hello");
+        notIn.filter(index, candidates);
+        assert candidates.cardinality() == 1 && candidates.get(2);
+        assert notIn.asPredicate().test(w3) && !notIn.asPredicate().test(w1);
+    }
+
+
+    @Test
+    public void testResourceReservation() throws MalformedURLException {
+        Worker w1 = generateMockWorker("Worker1");
+        Worker w2 = generateMockWorker("Worker2");
+        w2.setMetric(new WorkerMetric(Lists.newArrayList(), new WorkerAvailableResource(2f, 8f, 10), TimeUtils.currentLocalDateTime()));
+        WorkerIndex index = WorkerIndex.build(Lists.newArrayList(w1, w2));
+
+        WorkerResourceReservations reservations = new WorkerResourceReservations(60000);
+        DispatchOption.WorkerSelectorFactory factory = new DispatchOption.WorkerSelectorFactory();
+        factory.setReservations(reservations);
+        DispatchOption.WorkerSelector selector = factory.newSelector(LoadBalanceType.BIN_PACKING);
+        MockWorkerSelectArgument args = new MockWorkerSelectArgument();
+        args.setDispatchOption(DispatchOption.builder()
+                .loadBalanceType(LoadBalanceType.BIN_PACKING)
+                .cpuRequirement(new BigDecimal("2"))
+                .build());
+
+        // 优先选择下发后剩余资源最少的 worker，预占后资源不足的 worker 不再被选中
+        Worker selected = selector.select(args, index);
+        assert "Worker2".equals(selected.getId());
+        assert reservations.reserve(selected, 2, 0) != null;
+        selected = selector.select(args, index);
+        assert "Worker1".equals(selected.getId());
+        WorkerResourceReservations.Reservation reservation = reservations.reserve(selected, 2, 0);
+        assert reservation != null;
+        assert reservations.reserve(selected, 2, 0) != null;
+        assert selector.select(args, index) == null;
+        assert reservations.reserve(w1, 2, 0) == null;
+
+        // 释放预占
+        reservations.release(reservation);
+        assert "Worker1".equals(selector.select(args, index).getId());
+
+        // 心跳上报后移除之前的预占
+        w2.setMetric(new WorkerMetric(Lists.newArrayList(), new WorkerAvailableResource(2f, 4f, 10), TimeUtils.currentLocalDateTime().plusSeconds(1)));
+        reservations.reconcile(w2);
+        assert "Worker2".equals(selector.select(args, index).getId());
+
+        args.setDispatchOption(DispatchOption.builder().cpuRequirement(new BigDecimal("5")).build());
+        assert selector.select(args, index) == null;
+    }
+
+    @Test
+    public void testAppointWorkerReservation() throws MalformedURLException {
+        Worker worker = Mockito.spy(generateMockWorker("Worker1"));
+        Mockito.doReturn(true).when(worker).sendTask(Mockito.any());
+        Mockito.doReturn(CompletableFuture.completedFuture(true)).when(worker).sendTaskAsync(Mockito.any());
+
+        WorkerResourceReservations reservations = new WorkerResourceReservations(60000);
+        WorkerRegistry registry = Mockito.mock(WorkerRegistry.class);
+        Mockito.when(registry.get("Worker1")).thenReturn(worker);
+        Mockito.when(registry.reservations()).thenReturn(reservations);
+        TaskDispatcher dispatcher = new TaskDispatcher(registry, new DispatchOption.WorkerSelectorFactory(), Mockito.mock(WorkerStatisticsRepository.class));
+
+        // 指定 worker 的任务同样预占资源，4 核 CPU 只能容纳两个需要 2 核的任务
+        assert dispatcher.dispatch(appointTask("t1"));
+        assert dispatcher.dispatchAsync(appointTask("t2")).join();
+        Task rejected = appointTask("t3");
+        assert !dispatcher.dispatch(rejected);
+        assert !dispatcher.dispatchAsync(appointTask("t4")).join();
+        assert rejected.getStatus() == TaskStatus.DISPATCHING;
+        Mockito.verify(worker, Mockito.times(1)).sendTask(Mockito.any());
+        Mockito.verify(worker, Mockito.times(1)).sendTaskAsync(Mockito.any());
+
+        // 下发失败时释放预占
+        Mockito.doReturn(false).when(worker).sendTask(Mockito.any());
+        reservations = new WorkerResourceReservations(60000);
+        Mockito.when(registry.reservations()).thenReturn(reservations);
+        assert !dispatcher.dispatch(appointTask("t5"));
+        assert reservations.available(worker).getAvailableCpu() == 4f;
+    }
+
+
+    private Task appointTask(String taskId) {
+        Task task = new Task();
+        task.setTaskId(taskId);
+        task.setStatus(TaskStatus.DISPATCHING);
+        task.setWorkerId("Worker1");
+        task.setDispatchOption(DispatchOption.builder()
+                .cpuRequirement(new BigDecimal("2"))
+                .build());
+        return task;
+    }
+
     @Setter
     static class MockWorkerSelectArgument implements DispatchOption.WorkerSelectArgument {
 
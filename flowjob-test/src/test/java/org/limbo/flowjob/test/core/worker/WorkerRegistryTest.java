@@ -0,0 +1,80 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.limbo.flowjob.test.core.worker;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.api.constants.WorkerStatus;
+import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.broker.core.worker.WorkerRegistry;
+import org.limbo.flowjob.broker.core.worker.WorkerRepository;
+import org.limbo.flowjob.broker.core.worker.metric.WorkerAvailableResource;
+import org.limbo.flowjob.broker.core.worker.metric.WorkerMetric;
+import org.limbo.flowjob.broker.core.worker.rpc.WorkerRpc;
+import org.limbo.flowjob.common.utils.time.TimeUtils;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+
+/**
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class WorkerRegistryTest {
+
+    @Test
+    public void testOfflineWorkerRpcReset() throws MalformedURLException {
+        WorkerRegistry registry = new WorkerRegistry(Mockito.mock(WorkerRepository.class), 5000);
+        Worker worker = Worker.builder()
+                .id("w1")
+                .name("w1")
+                .rpcBaseUrl(new URL("http://127.0.0.1:18080"))
+                .status(WorkerStatus.RUNNING)
+                .enabled(true)
+                .executors(Lists.newArrayList())
+                .tags(new HashMap<>())
+                .metric(metric(TimeUtils.currentLocalDateTime()))
+                .build();
+        registry.register(worker);
+        Assertions.assertEquals(1, registry.availableWorkers().size());
+
+        WorkerRpc rpc = Mockito.mock(WorkerRpc.class);
+        ReflectionTestUtils.setField(worker, "rpc", rpc);
+
+        // 心跳过期后下线，RPC 客户端被回收，缓存的 worker 不再持有已关闭的客户端
+        worker.heartbeat(metric(TimeUtils.currentLocalDateTime().minusMinutes(1)));
+        registry.heartbeat(worker);
+        Assertions.assertTrue(registry.availableWorkers().isEmpty());
+        Assertions.assertNull(ReflectionTestUtils.getField(registry.get("w1"), "rpc"));
+
+        // 心跳恢复后复用缓存的 worker
+        worker.heartbeat(metric(TimeUtils.currentLocalDateTime()));
+        registry.heartbeat(registry.get("w1"));
+        Assertions.assertEquals(1, registry.availableWorkers().size());
+    }
+
+    private WorkerMetric metric(LocalDateTime lastHeartbeatAt) {
+        return new WorkerMetric(Lists.newArrayList(), new WorkerAvailableResource(4f, 8f, 10), lastHeartbeatAt);
+    }
+
+}
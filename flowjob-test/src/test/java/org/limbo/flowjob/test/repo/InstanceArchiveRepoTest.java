@@ -0,0 +1,181 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.repo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.api.constants.PlanStatus;
+import org.limbo.flowjob.api.constants.TriggerType;
+import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
+import org.limbo.flowjob.broker.dao.entity.PlanInstanceEntity;
+import org.limbo.flowjob.broker.dao.repositories.InstanceArchiveRepo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 在内嵌 H2（MySQL 模式）上验证实例归档与跨热表、历史表的查询
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class InstanceArchiveRepoTest {
+
+    private static final String PLAN_INSTANCE_DDL = "create table %s (id bigint auto_increment primary key, " +
+            "plan_instance_id varchar(255) not null, plan_id varchar(255) not null, plan_info_id varchar(255) not null default '', " +
+            "status tinyint not null, trigger_type tinyint not null default 1, schedule_type tinyint not null default 1, " +
+            "trigger_at datetime(6), start_at datetime(6), feedback_at datetime(6), is_deleted boolean not null default false)";
+
+    private static final String JOB_INSTANCE_DDL = "create table %s (id bigint auto_increment primary key, " +
+            "job_instance_id varchar(255) not null, job_id varchar(255) not null, plan_instance_id varchar(255) not null, " +
+            "retry_times int not null default 1, plan_id varchar(255) not null, plan_info_id varchar(255) not null default '', " +
+            "trigger_at datetime(6), context varchar(255) not null default '', start_at datetime(6), end_at datetime(6), " +
+            "status tinyint not null, error_msg varchar(255) not null default '', is_deleted boolean not null default false)";
+
+    private static final String TASK_DDL = "create table %s (id bigint auto_increment primary key, " +
+            "task_id varchar(255) not null, job_instance_id varchar(255) not null, plan_id varchar(255) not null, " +
+            "status tinyint not null, is_deleted boolean not null default false)";
+
+    private SingleConnectionDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private InstanceArchiveRepo repo;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    public void setup() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:flowjob_archive;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table flowjob_plan_slot (id bigint auto_increment primary key, plan_id varchar(255) not null, slot int not null)");
+        for (String table : new String[]{"flowjob_plan_instance", "flowjob_plan_instance_history"}) {
+            jdbcTemplate.execute(String.format(PLAN_INSTANCE_DDL, table));
+        }
+        for (String table : new String[]{"flowjob_job_instance", "flowjob_job_instance_history"}) {
+            jdbcTemplate.execute(String.format(JOB_INSTANCE_DDL, table));
+        }
+        for (String table : new String[]{"flowjob_task", "flowjob_task_history"}) {
+            jdbcTemplate.execute(String.format(TASK_DDL, table));
+        }
+
+        repo = new InstanceArchiveRepo();
+        repo.setJdbcTemplate(jdbcTemplate);
+
+        now = LocalDateTime.now();
+        jdbcTemplate.update("insert into flowjob_plan_slot (plan_id, slot) values ('p1', 1), ('p2', 2), ('p3', 1)");
+        insertPlanInstance("p1", "pi-1", PlanStatus.SUCCEED, 40);
+        insertPlanInstance("p1", "pi-2", PlanStatus.FAILED, 35);
+        // 未完成的实例不归档
+        insertPlanInstance("p1", "pi-3", PlanStatus.EXECUTING, 34);
+        insertPlanInstance("p1", "pi-4", PlanStatus.SUCCEED, 33);
+        insertPlanInstance("p1", "pi-5", PlanStatus.SUCCEED, 1);
+        // 不属于当前节点槽位
+        insertPlanInstance("p2", "pi-6", PlanStatus.SUCCEED, 40);
+        insertPlanInstance("p2", "pi-7", PlanStatus.SUCCEED, 1);
+        // 计划最新的实例，即使超过保留期也不归档
+        insertPlanInstance("p3", "pi-8", PlanStatus.SUCCEED, 40);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("drop all objects");
+        dataSource.destroy();
+    }
+
+    private void insertPlanInstance(String planId, String planInstanceId, PlanStatus status, int daysAgo) {
+        insertPlanInstance(planId, planInstanceId, status, TriggerType.API, daysAgo);
+    }
+
+    private void insertPlanInstance(String planId, String planInstanceId, PlanStatus status, TriggerType triggerType, int daysAgo) {
+        Timestamp at = Timestamp.valueOf(now.minusDays(daysAgo));
+        jdbcTemplate.update("insert into flowjob_plan_instance (plan_instance_id, plan_id, status, trigger_type, trigger_at, start_at, feedback_at) values (?, ?, ?, ?, ?, ?, ?)",
+                planInstanceId, planId, status.status, triggerType.type, at, at, status.isCompleted() ? at : null);
+        String jobInstanceId = planInstanceId + "-job";
+        jdbcTemplate.update("insert into flowjob_job_instance (job_instance_id, job_id, plan_instance_id, plan_id, trigger_at, status) values (?, ?, ?, ?, ?, ?)",
+                jobInstanceId, "job", planInstanceId, planId, at, status.status);
+        for (int i = 0; i < 2; i++) {
+            jdbcTemplate.update("insert into flowjob_task (task_id, job_instance_id, plan_id, status) values (?, ?, ?, ?)",
+                    jobInstanceId + "-task-" + i, jobInstanceId, planId, status.status);
+        }
+    }
+
+    private long count(String table) {
+        Long count = jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    @Test
+    public void testArchive() {
+        List<String> ids = repo.findArchivablePlanInstanceIds(Collections.singletonList(1), now.minusDays(30), 10);
+        Assertions.assertEquals(3, ids.size());
+        Assertions.assertTrue(ids.containsAll(Arrays.asList("pi-1", "pi-2", "pi-4")));
+
+        // 2 个一批，模拟分批归档
+        int rows = repo.archive(ids.subList(0, 2)) + repo.archive(ids.subList(2, 3));
+        Assertions.assertEquals(3 * (1 + 1 + 2), rows);
+        Assertions.assertEquals(5, count("flowjob_plan_instance"));
+        Assertions.assertEquals(3, count("flowjob_plan_instance_history"));
+        Assertions.assertEquals(5, count("flowjob_job_instance"));
+        Assertions.assertEquals(3, count("flowjob_job_instance_history"));
+        Assertions.assertEquals(10, count("flowjob_task"));
+        Assertions.assertEquals(6, count("flowjob_task_history"));
+
+        Assertions.assertTrue(repo.findArchivablePlanInstanceIds(Collections.singletonList(1), now.minusDays(30), 10).isEmpty());
+    }
+
+    @Test
+    public void testKeepLatestOfEachTriggerType() {
+        jdbcTemplate.update("insert into flowjob_plan_slot (plan_id, slot) values ('p4', 1)");
+        // 调度触发的最新实例，虽然之后有 API 触发的实例，也不归档
+        insertPlanInstance("p4", "pi-9", PlanStatus.SUCCEED, TriggerType.SCHEDULE, 40);
+        insertPlanInstance("p4", "pi-10", PlanStatus.SUCCEED, TriggerType.API, 35);
+        insertPlanInstance("p4", "pi-11", PlanStatus.SUCCEED, TriggerType.API, 1);
+
+        List<String> ids = repo.findArchivablePlanInstanceIds(Collections.singletonList(1), now.minusDays(30), 10);
+        Assertions.assertEquals(4, ids.size());
+        Assertions.assertTrue(ids.containsAll(Arrays.asList("pi-1", "pi-2", "pi-4", "pi-10")));
+        Assertions.assertFalse(ids.contains("pi-9"));
+    }
+
+    @Test
+    public void testQueryAcrossHistory() {
+        repo.archive(repo.findArchivablePlanInstanceIds(Collections.singletonList(1), now.minusDays(30), 10));
+
+        Assertions.assertEquals(5, repo.countPlanInstances("p1"));
+        List<PlanInstanceEntity> page = repo.findPlanInstances("p1", 1, 3);
+        Assertions.assertEquals(3, page.size());
+        Assertions.assertEquals("pi-4", page.get(0).getPlanInstanceId());
+        Assertions.assertEquals("pi-3", page.get(1).getPlanInstanceId());
+        Assertions.assertEquals("pi-2", page.get(2).getPlanInstanceId());
+
+        List<JobInstanceEntity> jobInstances = repo.findJobInstances("pi-1");
+        Assertions.assertEquals(1, jobInstances.size());
+        Assertions.assertEquals("pi-1-job", jobInstances.get(0).getJobInstanceId());
+        Assertions.assertEquals(1, repo.findJobInstances("pi-5").size());
+    }
+
+}
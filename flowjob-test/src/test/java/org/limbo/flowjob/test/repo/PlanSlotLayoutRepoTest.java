@@ -0,0 +1,90 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.limbo.flowjob.test.repo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.broker.dao.repositories.PlanSlotLayoutRepo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * 在内嵌 H2（MySQL 模式）上验证旧版本槽位只重算一次
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class PlanSlotLayoutRepoTest {
+
+    private static final ToIntFunction<String> SLOT_FN = planId -> Math.floorMod(planId.hashCode(), 16);
+
+    private SingleConnectionDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private PlanSlotLayoutRepo repo;
+
+    @BeforeEach
+    public void setup() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:flowjob_slot_layout;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table flowjob_plan_slot (id bigint auto_increment primary key, plan_id varchar(255) not null, slot int not null)");
+        jdbcTemplate.execute("create table flowjob_plan_slot_layout (id bigint primary key, slot_size int not null default 0)");
+        jdbcTemplate.update("insert into flowjob_plan_slot_layout (id, slot_size) values (1, 0)");
+        jdbcTemplate.update("insert into flowjob_plan_slot (plan_id, slot) values ('p1', -3), ('p2', ?), ('p3', 70)", SLOT_FN.applyAsInt("p2"));
+
+        repo = new PlanSlotLayoutRepo();
+        repo.setJdbcTemplate(jdbcTemplate);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("drop all objects");
+        dataSource.destroy();
+    }
+
+    @Test
+    public void testRehashLegacyOnce() {
+        Assertions.assertEquals(2, repo.rehashIfLegacy(16, SLOT_FN));
+        for (String planId : new String[]{"p1", "p2", "p3"}) {
+            Assertions.assertEquals(SLOT_FN.applyAsInt(planId), slotOf(planId));
+        }
+        Assertions.assertEquals(16, jdbcTemplate.queryForObject("select slot_size from flowjob_plan_slot_layout where id = 1", Integer.class));
+
+        // 已记录布局后再次启动不再重写，即使槽位被改动
+        jdbcTemplate.update("update flowjob_plan_slot set slot = 99 where plan_id = 'p1'");
+        Assertions.assertEquals(0, repo.rehashIfLegacy(16, SLOT_FN));
+        Assertions.assertEquals(99, slotOf("p1"));
+    }
+
+    @Test
+    public void testSlotSizeMismatch() {
+        repo.rehashIfLegacy(16, SLOT_FN);
+        Assertions.assertThrows(IllegalStateException.class, () -> repo.rehashIfLegacy(32, SLOT_FN));
+        Assertions.assertEquals(SLOT_FN.applyAsInt("p1"), slotOf("p1"));
+    }
+
+    private int slotOf(String planId) {
+        return jdbcTemplate.queryForObject("select slot from flowjob_plan_slot where plan_id = ?", Integer.class, planId);
+    }
+
+}
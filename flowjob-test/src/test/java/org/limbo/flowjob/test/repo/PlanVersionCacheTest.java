@@ -0,0 +1,136 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.repo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.api.constants.JobStatus;
+import org.limbo.flowjob.api.constants.PlanType;
+import org.limbo.flowjob.api.constants.ScheduleType;
+import org.limbo.flowjob.api.constants.TriggerType;
+import org.limbo.flowjob.broker.core.domain.job.JobInstance;
+import org.limbo.flowjob.broker.core.domain.job.WorkflowJobInfo;
+import org.limbo.flowjob.broker.core.exceptions.VerifyException;
+import org.limbo.flowjob.broker.dao.domain.JobInstanceRepo;
+import org.limbo.flowjob.broker.dao.entity.JobInstanceEntity;
+import org.limbo.flowjob.broker.dao.entity.PlanInfoEntity;
+import org.limbo.flowjob.broker.dao.repositories.JobInstanceEntityRepo;
+import org.limbo.flowjob.broker.dao.repositories.PlanInfoEntityRepo;
+import org.limbo.flowjob.broker.dao.support.PlanVersionCache;
+import org.limbo.flowjob.common.utils.dag.DAG;
+import org.mockito.Mockito;
+
+import java.util.Optional;
+
+/**
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class PlanVersionCacheTest {
+
+    @Test
+    public void testCachedByVersion() {
+        PlanInfoEntity planInfo = new PlanInfoEntity();
+        planInfo.setPlanInfoId("v1");
+        planInfo.setPlanId("p1");
+        planInfo.setPlanType(PlanType.WORKFLOW.type);
+        planInfo.setTriggerType(TriggerType.SCHEDULE.type);
+        planInfo.setScheduleType(ScheduleType.FIXED_RATE.type);
+        planInfo.setScheduleDelay(0L);
+        planInfo.setScheduleInterval(1000L);
+        planInfo.setJobInfo("[{\"id\":\"a\",\"childrenIds\":[\"b\"]},{\"id\":\"b\"}]");
+
+        PlanInfoEntityRepo repo = Mockito.mock(PlanInfoEntityRepo.class);
+        Mockito.when(repo.findById("v1")).thenReturn(Optional.of(planInfo));
+        Mockito.when(repo.findById("v2")).thenReturn(Optional.empty());
+        Mockito.when(repo.findById("v3")).thenThrow(new IllegalStateException("db unavailable"));
+
+        PlanVersionCache cache = new PlanVersionCache(16);
+        cache.setPlanInfoEntityRepo(repo);
+
+        DAG<WorkflowJobInfo> dag = cache.getDag("v1");
+        Assertions.assertEquals(1, dag.subNodes("a").size());
+        Assertions.assertSame(dag, cache.getDag("v1"));
+        Assertions.assertSame(dag.getNode("b"), cache.getJobInfo("v1", "b"));
+        Assertions.assertEquals("p1", cache.getPlan("v1").getPlanId());
+        Mockito.verify(repo, Mockito.times(1)).findById("v1");
+
+        Assertions.assertThrows(VerifyException.class, () -> cache.getPlan("v2"));
+        // 加载异常包装为 VerifyException
+        VerifyException e = Assertions.assertThrows(VerifyException.class, () -> cache.getPlan("v3"));
+        Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(3, cache.stats().hitCount());
+        Assertions.assertEquals(3, cache.stats().missCount());
+        Assertions.assertEquals(2, cache.stats().loadExceptionCount());
+    }
+
+    @Test
+    public void testJobAttributesNotShared() {
+        PlanInfoEntity planInfo = new PlanInfoEntity();
+        planInfo.setPlanInfoId("v1");
+        planInfo.setPlanId("p1");
+        planInfo.setPlanType(PlanType.WORKFLOW.type);
+        planInfo.setTriggerType(TriggerType.SCHEDULE.type);
+        planInfo.setScheduleType(ScheduleType.FIXED_RATE.type);
+        planInfo.setScheduleDelay(0L);
+        planInfo.setScheduleInterval(1000L);
+        planInfo.setJobInfo("[{\"id\":\"a\",\"attributes\":{\"k\":\"v\"}}]");
+        PlanInfoEntityRepo planInfoRepo = Mockito.mock(PlanInfoEntityRepo.class);
+        Mockito.when(planInfoRepo.findById("v1")).thenReturn(Optional.of(planInfo));
+
+        PlanVersionCache cache = new PlanVersionCache(16);
+        cache.setPlanInfoEntityRepo(planInfoRepo);
+
+        // 同一版本的两个作业实例
+        JobInstanceEntityRepo jobInstanceRepo = Mockito.mock(JobInstanceEntityRepo.class);
+        Mockito.when(jobInstanceRepo.findById("ji1")).thenReturn(Optional.of(jobInstanceEntity("ji1")));
+        Mockito.when(jobInstanceRepo.findById("ji2")).thenReturn(Optional.of(jobInstanceEntity("ji2")));
+        JobInstanceRepo repo = new JobInstanceRepo();
+        repo.setJobInstanceEntityRepo(jobInstanceRepo);
+        repo.setPlanVersionCache(cache);
+
+        JobInstance first = repo.get("ji1");
+        JobInstance second = repo.get("ji2");
+        Assertions.assertSame(first.getJobInfo(), second.getJobInfo());
+
+        // 聚合任务返回的作业参数只影响当前实例，不修改缓存
+        first.getJobAttributes().put("k", "changed");
+        first.getJobAttributes().put("extra", 1);
+        Assertions.assertEquals("v", second.getJobAttributes().get("k"));
+        Assertions.assertNull(second.getJobAttributes().get("extra"));
+        Assertions.assertEquals("v", cache.getJobInfo("v1", "a").getAttributes().get("k"));
+        Assertions.assertNull(repo.get("ji1").getJobAttributes().get("extra"));
+    }
+
+
+    private JobInstanceEntity jobInstanceEntity(String jobInstanceId) {
+        JobInstanceEntity entity = new JobInstanceEntity();
+        entity.setJobInstanceId(jobInstanceId);
+        entity.setPlanInstanceId("pi1");
+        entity.setPlanId("p1");
+        entity.setPlanInfoId("v1");
+        entity.setJobId("a");
+        entity.setStatus(JobStatus.EXECUTING.status);
+        entity.setRetryTimes(0);
+        entity.setContext("{}");
+        return entity;
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.repo;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.api.constants.TaskStatus;
+import org.limbo.flowjob.broker.dao.repositories.JobInstanceEntityRepo;
+import org.limbo.flowjob.broker.dao.repositories.PlanInstanceEntityRepo;
+import org.limbo.flowjob.broker.dao.repositories.TaskEntityRepo;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 检查任务扫描 SQL 的执行计划回归测试。在内嵌 H2（MySQL 模式）上执行 V20230616__scan_index.sql 中的索引变更，
+ * 对 Repository 上声明的扫描 SQL 做 EXPLAIN，确认扫描走 (status, id) 开头的索引而不是全表扫描，
+ * 并通过 EXPLAIN ANALYZE 的 scanCount 确认读取的行数只与非终态数据量有关。
+ * <p>
+ * H2 不会利用索引中等值条件之后的列消除排序，因此是否需要 filesort 按 MySQL 的规则检查索引定义：
+ * 等值条件的列之后紧跟排序列时，按索引顺序读取即有序。
+ * H2 的索引名在 schema 内唯一，建索引时以 表名_索引名 命名。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class ScanQueryExplainTest {
+
+    private static final String MIGRATION = "db/migration/V20230616__scan_index.sql";
+
+    private static final Pattern INDEX_DDL = Pattern.compile("(CREATE|DROP) INDEX `(\\w+)` ON `(\\w+)`(?: \\(([^)]+)\\))?", Pattern.CASE_INSENSITIVE);
+
+    private static final String SCAN_INDEX = "idx_status_id";
+
+    private static final int ROWS = 4096;
+
+    /**
+     * 非终态数据的数量
+     */
+    private static final int ACTIVE_ROWS = ROWS / 64;
+
+    /**
+     * 表名_索引名 到索引列的映射
+     */
+    private static final Map<String, List<String>> INDEXES = new HashMap<>();
+
+    private static SingleConnectionDataSource dataSource;
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:flowjob_explain;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("create table flowjob_plan_slot (id bigint auto_increment primary key, " +
+                "plan_id varchar(255) not null, slot int not null)");
+        jdbcTemplate.execute("create unique index flowjob_plan_slot_uk_id on flowjob_plan_slot (plan_id)");
+        jdbcTemplate.execute("create index flowjob_plan_slot_idx_slot on flowjob_plan_slot (slot)");
+
+        jdbcTemplate.execute("create table flowjob_task (id bigint auto_increment primary key, " +
+                "task_id varchar(255) not null, plan_id varchar(255) not null, status tinyint not null)");
+        jdbcTemplate.execute("create table flowjob_job_instance (id bigint auto_increment primary key, " +
+                "job_instance_id varchar(255) not null, plan_id varchar(255) not null, status tinyint not null, trigger_at datetime(6) not null)");
+        jdbcTemplate.execute("create table flowjob_plan_instance (id bigint auto_increment primary key, " +
+                "plan_instance_id varchar(255) not null, plan_id varchar(255) not null, status tinyint not null, trigger_at datetime(6) not null)");
+        // 初始化脚本中已有的 plan_instance 索引，确认新索引比它更优
+        jdbcTemplate.execute("create index flowjob_plan_instance_idx_plan_trigger on flowjob_plan_instance (plan_id, trigger_at)");
+
+        // 只执行测试中建了表的索引变更
+        List<String> tables = Arrays.asList("flowjob_task", "flowjob_job_instance", "flowjob_plan_instance");
+        String ddl = StreamUtils.copyToString(new ClassPathResource(MIGRATION).getInputStream(), StandardCharsets.UTF_8);
+        Matcher matcher = INDEX_DDL.matcher(ddl);
+        while (matcher.find()) {
+            String table = matcher.group(3);
+            if (!tables.contains(table)) {
+                continue;
+            }
+
+            String index = table + "_" + matcher.group(2);
+            if ("DROP".equalsIgnoreCase(matcher.group(1))) {
+                jdbcTemplate.execute("drop index if exists " + index);
+                INDEXES.remove(index);
+            } else {
+                String columns = matcher.group(4).replace("`", "");
+                jdbcTemplate.execute("create index " + index + " on " + table + " (" + columns + ")");
+                INDEXES.put(index, Arrays.asList(columns.replace(" ", "").split(",")));
+            }
+        }
+
+        // 大部分数据处于终态，只有少量处于调度、执行中
+        int plans = 64;
+        for (int p = 0; p < plans; p++) {
+            jdbcTemplate.update("insert into flowjob_plan_slot (plan_id, slot) values (?, ?)", "plan-" + p, p % 16);
+        }
+        for (int i = 0; i < ROWS; i++) {
+            int status = i % (ROWS / ACTIVE_ROWS) == 0 ? TaskStatus.SCHEDULING.status : TaskStatus.SUCCEED.status;
+            String planId = "plan-" + (i % plans);
+            jdbcTemplate.update("insert into flowjob_task (task_id, plan_id, status) values (?, ?, ?)", "task-" + i, planId, status);
+            jdbcTemplate.update("insert into flowjob_job_instance (job_instance_id, plan_id, status, trigger_at) values (?, ?, ?, now())", "job-instance-" + i, planId, status);
+            jdbcTemplate.update("insert into flowjob_plan_instance (plan_instance_id, plan_id, status, trigger_at) values (?, ?, ?, now())", "plan-instance-" + i, planId, status);
+        }
+        jdbcTemplate.execute("analyze");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        jdbcTemplate.execute("drop all objects");
+        dataSource.destroy();
+    }
+
+    @Test
+    public void testTaskScan() throws NoSuchMethodException {
+        assertScan(TaskEntityRepo.class, "findBySlotsAndStatus", "flowjob_task");
+    }
+
+    @Test
+    public void testJobInstanceScan() throws NoSuchMethodException {
+        assertScan(JobInstanceEntityRepo.class, "findBySlotsAndTriggerAtLessThanEqualAndStatus", "flowjob_job_instance");
+    }
+
+    @Test
+    public void testPlanInstanceScan() throws NoSuchMethodException {
+        assertScan(PlanInstanceEntityRepo.class, "findBySlotsAndTriggerAtLessThanEqualAndStatus", "flowjob_plan_instance");
+    }
+
+    private void assertScan(Class<?> repo, String methodName, String table) throws NoSuchMethodException {
+        String sql = scanSql(repo, methodName);
+        String alias = assertKeysetOrdered(sql, table);
+
+        String plan = jdbcTemplate.queryForObject("explain " + sql, String.class);
+        assertIndexUsed(plan, table, SCAN_INDEX);
+
+        // 按 MySQL 规则，等值条件 status 之后紧跟排序列 id，按索引顺序读取即有序，不需要 filesort
+        List<String> columns = INDEXES.get(table + "_" + SCAN_INDEX);
+        Assertions.assertNotNull(columns, table + " should have index " + SCAN_INDEX);
+        Assertions.assertEquals(Arrays.asList("status", "id"), columns.subList(0, 2),
+                table + "." + SCAN_INDEX + " must start with (status, id) to avoid filesort on order by " + alias + ".id");
+
+        // 只读取该状态的数据，与表的总行数无关
+        String analyzed = jdbcTemplate.queryForObject("explain analyze " + sql, String.class);
+        // 索引注释与 scanCount 之间可能还有 WHERE 等注释，跳过同一张表的这些注释
+        Matcher matcher = Pattern.compile(table + "_" + SCAN_INDEX + ":[^*]*\\*/(?:\\s*/\\*[^*]*\\*/)*?\\s*/\\* scanCount: (\\d+) \\*/", Pattern.CASE_INSENSITIVE).matcher(analyzed);
+        Assertions.assertTrue(matcher.find(), "scanCount not found, plan: " + analyzed);
+        int scanCount = Integer.parseInt(matcher.group(1));
+        Assertions.assertTrue(scanCount <= ACTIVE_ROWS + 1, table + " should examine at most " + ACTIVE_ROWS + " rows, plan: " + analyzed);
+    }
+
+    /**
+     * 扫描 SQL 必须以扫描表的 id 做 keyset 分页，返回扫描表的别名
+     */
+    private String assertKeysetOrdered(String sql, String table) {
+        Matcher matcher = Pattern.compile("from " + table + " (\\w+) ", Pattern.CASE_INSENSITIVE).matcher(sql);
+        Assertions.assertTrue(matcher.find(), "scan query should select from " + table + ": " + sql);
+        String alias = matcher.group(1);
+        Assertions.assertTrue(sql.contains(alias + ".status = ") && sql.contains(alias + ".id > ") && sql.contains("order by " + alias + ".id limit "),
+                "scan query must be keyset paginated by " + alias + ".id: " + sql);
+        return alias;
+    }
+
+    /**
+     * 读取 Repository 方法上的 SQL，替换命名参数
+     */
+    private String scanSql(Class<?> repo, String methodName) throws NoSuchMethodException {
+        Method method = Arrays.stream(repo.getMethods())
+                .filter(m -> m.getName().equals(methodName))
+                .findFirst()
+                .orElseThrow(() -> new NoSuchMethodException(methodName));
+        String sql = method.getAnnotation(Query.class).value();
+        Assertions.assertTrue(sql.contains(":afterId") && sql.contains("limit :limit"), "scan query must be keyset paginated: " + sql);
+
+        return sql.replace(":slots", "(1, 2, 3)")
+                .replace(":status", String.valueOf(TaskStatus.SCHEDULING.status))
+                .replace(":triggerAt", "now()")
+                .replace(":afterId", "0")
+                .replace(":limit", "100");
+    }
+
+    private void assertIndexUsed(String plan, String table, String index) {
+        String upperPlan = plan.toUpperCase();
+        Assertions.assertTrue(upperPlan.contains((table + "_" + index).toUpperCase()), table + " should use " + index + ", plan: " + plan);
+        Assertions.assertFalse(upperPlan.contains(table.toUpperCase() + ".TABLESCAN"), table + " should not be scanned fully, plan: " + plan);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.limbo.flowjob.test.repo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.api.constants.WorkerStatus;
+import org.limbo.flowjob.broker.core.worker.Worker;
+import org.limbo.flowjob.broker.dao.converter.WorkerEntityConverter;
+import org.limbo.flowjob.broker.dao.domain.WorkerRepo;
+import org.limbo.flowjob.broker.dao.entity.WorkerEntity;
+import org.limbo.flowjob.broker.dao.entity.WorkerMetricEntity;
+import org.limbo.flowjob.broker.dao.repositories.WorkerEntityRepo;
+import org.limbo.flowjob.broker.dao.repositories.WorkerExecutorEntityRepo;
+import org.limbo.flowjob.broker.dao.repositories.WorkerMetricEntityRepo;
+import org.limbo.flowjob.broker.dao.repositories.WorkerTagEntityRepo;
+import org.limbo.flowjob.common.utils.time.TimeUtils;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 验证可用 worker 查询时心跳过期的 worker 被过滤，并一次性批量置为终止
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+public class WorkerAvailableRepoTest {
+
+    private WorkerEntityRepo workerEntityRepo;
+
+    private WorkerMetricEntityRepo metricEntityRepo;
+
+    private WorkerRepo repo;
+
+    @BeforeEach
+    public void setup() {
+        workerEntityRepo = Mockito.mock(WorkerEntityRepo.class);
+        metricEntityRepo = Mockito.mock(WorkerMetricEntityRepo.class);
+
+        repo = new WorkerRepo();
+        repo.setWorkerEntityRepo(workerEntityRepo);
+        repo.setMetricEntityRepo(metricEntityRepo);
+        repo.setExecutorEntityRepo(Mockito.mock(WorkerExecutorEntityRepo.class));
+        repo.setTagEntityRepo(Mockito.mock(WorkerTagEntityRepo.class));
+        repo.setConverter(new WorkerEntityConverter());
+    }
+
+    @Test
+    public void testExpiredWorkersTerminatedInOneUpdate() {
+        LocalDateTime now = TimeUtils.currentLocalDateTime();
+        Mockito.when(workerEntityRepo.findByStatusAndEnabledAndDeleted(WorkerStatus.RUNNING.status, true, false))
+                .thenReturn(Arrays.asList(workerEntity("w1"), workerEntity("w2"), workerEntity("w3")));
+        Mockito.when(metricEntityRepo.findAllById(any())).thenReturn(Arrays.asList(
+                metricEntity("w1", now.plusMinutes(1)),
+                metricEntity("w2", now.minusMinutes(1)),
+                metricEntity("w3", now.minusMinutes(2))
+        ));
+
+        List<Worker> workers = repo.listAvailableWorkers();
+        Assertions.assertEquals(1, workers.size());
+        Assertions.assertEquals("w1", workers.get(0).getId());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> ids = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(workerEntityRepo, Mockito.times(1)).updateStatusByIds(ids.capture(),
+                eq(WorkerStatus.RUNNING.status), eq(WorkerStatus.TERMINATED.status), any());
+        Assertions.assertEquals(Arrays.asList("w2", "w3"), ids.getValue());
+    }
+
+    @Test
+    public void testNoUpdateWhenNothingExpired() {
+        LocalDateTime now = TimeUtils.currentLocalDateTime();
+        Mockito.when(workerEntityRepo.findByStatusAndEnabledAndDeleted(WorkerStatus.RUNNING.status, true, false))
+                .thenReturn(Arrays.asList(workerEntity("w1"), workerEntity("w2")));
+        Mockito.when(metricEntityRepo.findAllById(any())).thenReturn(Arrays.asList(
+                metricEntity("w1", now.plusMinutes(1)),
+                metricEntity("w2", now.plusMinutes(1))
+        ));
+
+        Assertions.assertEquals(2, repo.listAvailableWorkers().size());
+        Mockito.verify(workerEntityRepo, Mockito.never()).updateStatusByIds(anyCollection(), anyInt(), anyInt(), any());
+    }
+
+    private WorkerEntity workerEntity(String workerId) {
+        WorkerEntity entity = new WorkerEntity();
+        entity.setWorkerId(workerId);
+        entity.setName(workerId);
+        entity.setProtocol("http");
+        entity.setHost("127.0.0.1");
+        entity.setPort(8080);
+        entity.setStatus(WorkerStatus.RUNNING.status);
+        entity.setEnabled(true);
+        entity.setDeleted(false);
+        return entity;
+    }
+
+    private WorkerMetricEntity metricEntity(String workerId, LocalDateTime lastHeartbeatAt) {
+        WorkerMetricEntity entity = new WorkerMetricEntity();
+        entity.setWorkerId(workerId);
+        entity.setAvailableCpu(4f);
+        entity.setAvailableRam(8f);
+        entity.setAvailableQueueLimit(10);
+        entity.setExecutingJobs("[]");
+        entity.setLastHeartbeatAt(lastHeartbeatAt);
+        return entity;
+    }
+
+}
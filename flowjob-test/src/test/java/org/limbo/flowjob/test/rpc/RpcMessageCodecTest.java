@@ -0,0 +1,141 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.limbo.flowjob.test.rpc;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.common.rpc.netty.NettyRpcEndpoint;
+import org.limbo.flowjob.common.rpc.netty.RpcMessage;
+import org.limbo.flowjob.common.rpc.netty.RpcMessageType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @author Brozen
+ * @since 2023-06-16
+ */
+class RpcMessageCodecTest {
+
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        channel = new EmbeddedChannel();
+        NettyRpcEndpoint.initCodec(channel.pipeline());
+    }
+
+    @Test
+    void testRoundTrip() {
+        byte[] body = "hello".getBytes(StandardCharsets.UTF_8);
+        byte[] frame = frame((short) 0x464A, (byte) 1, RpcMessageType.HEARTBEAT.code, (byte) 1, 42L, body);
+
+        Assertions.assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(frame)));
+        RpcMessage message = channel.readInbound();
+        Assertions.assertEquals(42L, message.getRequestId());
+        Assertions.assertEquals(RpcMessageType.HEARTBEAT.code, message.getType());
+        Assertions.assertTrue(message.isResponse());
+        Assertions.assertFalse(message.isError());
+        Assertions.assertArrayEquals(body, message.getBody());
+
+        // 再编码回去，与原始帧一致
+        Assertions.assertTrue(channel.writeOutbound(message));
+        Assertions.assertArrayEquals(frame, readOutbound());
+    }
+
+    @Test
+    void testPartialFrame() {
+        byte[] body = "partial".getBytes(StandardCharsets.UTF_8);
+        byte[] frame = frame((short) 0x464A, (byte) 1, RpcMessageType.SUBMIT_TASK.code, (byte) 0, 7L, body);
+
+        // 长度字段都不完整
+        Assertions.assertFalse(channel.writeInbound(Unpooled.wrappedBuffer(frame, 0, 2)));
+        // 帧头完整但 body 不完整
+        Assertions.assertFalse(channel.writeInbound(Unpooled.wrappedBuffer(frame, 2, 15)));
+        Assertions.assertNull(channel.readInbound());
+
+        Assertions.assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(frame, 17, frame.length - 17)));
+        RpcMessage message = channel.readInbound();
+        Assertions.assertEquals(7L, message.getRequestId());
+        Assertions.assertArrayEquals(body, message.getBody());
+        Assertions.assertNull(channel.readInbound());
+    }
+
+    @Test
+    void testOversizedFrame() {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(NettyRpcEndpoint.MAX_FRAME_LENGTH + 1);
+        buf.writeBytes(new byte[16]);
+        Assertions.assertThrows(TooLongFrameException.class, () -> channel.writeInbound(buf));
+        Assertions.assertNull(channel.readInbound());
+    }
+
+    @Test
+    void testCorruptedFrame() {
+        byte[] badMagic = frame((short) 0x1234, (byte) 1, RpcMessageType.HEARTBEAT.code, (byte) 0, 1L, new byte[0]);
+        Assertions.assertThrows(CorruptedFrameException.class, () -> channel.writeInbound(Unpooled.wrappedBuffer(badMagic)));
+
+        byte[] badVersion = frame((short) 0x464A, (byte) 2, RpcMessageType.HEARTBEAT.code, (byte) 0, 1L, new byte[0]);
+        Assertions.assertThrows(CorruptedFrameException.class, () -> channel.writeInbound(Unpooled.wrappedBuffer(badVersion)));
+
+        // 长度字段合法，但不足一个帧头
+        ByteBuf tooShort = Unpooled.buffer();
+        tooShort.writeInt(3);
+        tooShort.writeBytes(new byte[3]);
+        Assertions.assertThrows(CorruptedFrameException.class, () -> channel.writeInbound(tooShort));
+    }
+
+
+    private byte[] frame(short magic, byte version, byte type, byte flags, long requestId, byte[] body) {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(2 + 1 + 1 + 1 + 8 + body.length);
+        buf.writeShort(magic);
+        buf.writeByte(version);
+        buf.writeByte(type);
+        buf.writeByte(flags);
+        buf.writeLong(requestId);
+        buf.writeBytes(body);
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        buf.release();
+        return bytes;
+    }
+
+
+    /**
+     * LengthFieldPrepender 会把长度字段与消息体分成两个 ByteBuf 输出，这里合并起来
+     */
+    private byte[] readOutbound() {
+        byte[] bytes = new byte[0];
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null) {
+            int offset = bytes.length;
+            bytes = Arrays.copyOf(bytes, offset + buf.readableBytes());
+            buf.readBytes(bytes, offset, buf.readableBytes());
+            buf.release();
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.limbo.flowjob.test.rpc;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.api.remote.param.TaskFeedbackParam;
+import org.limbo.flowjob.api.remote.param.TaskSubmitParam;
+import org.limbo.flowjob.api.remote.param.WorkerHeartbeatParam;
+import org.limbo.flowjob.common.rpc.netty.RpcException;
+import org.limbo.flowjob.common.rpc.netty.RpcPayloads;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Brozen
+ * @since 2023-06-16
+ */
+class RpcPayloadsTest {
+
+    @Test
+    void testTasks() {
+        TaskSubmitParam task = new TaskSubmitParam();
+        task.setTaskId("t1");
+        task.setPlanId("p1");
+        task.setPlanInstanceId("pi1");
+        task.setJobId("j1");
+        task.setJobInstanceId("ji1");
+        task.setType(2);
+        task.setExecutorName("executor");
+        task.setContext(Collections.singletonMap("k", "v"));
+        task.setReduceAttributes(Collections.singletonList(Collections.singletonMap("n", 1)));
+
+        // 可空字段
+        TaskSubmitParam empty = new TaskSubmitParam();
+        empty.setTaskId("t2");
+
+        List<TaskSubmitParam> decoded = RpcPayloads.decodeTasks(RpcPayloads.encodeTasks(Arrays.asList(task, empty)));
+        Assertions.assertEquals(2, decoded.size());
+        TaskSubmitParam first = decoded.get(0);
+        Assertions.assertEquals("t1", first.getTaskId());
+        Assertions.assertEquals("p1", first.getPlanId());
+        Assertions.assertEquals("pi1", first.getPlanInstanceId());
+        Assertions.assertEquals("j1", first.getJobId());
+        Assertions.assertEquals("ji1", first.getJobInstanceId());
+        Assertions.assertEquals(2, first.getType());
+        Assertions.assertEquals("executor", first.getExecutorName());
+        Assertions.assertEquals("v", first.getContext().get("k"));
+        Assertions.assertNull(first.getAttributes());
+        Assertions.assertEquals(1, first.getReduceAttributes().get(0).get("n"));
+
+        TaskSubmitParam second = decoded.get(1);
+        Assertions.assertEquals("t2", second.getTaskId());
+        Assertions.assertNull(second.getPlanId());
+        Assertions.assertNull(second.getType());
+
+        Assertions.assertEquals("t1", RpcPayloads.decodeTask(RpcPayloads.encodeTask(task)).getTaskId());
+    }
+
+    @Test
+    void testFeedbacks() {
+        TaskFeedbackParam feedback = new TaskFeedbackParam();
+        feedback.setTaskId("t1");
+        feedback.setResult(1);
+        feedback.setErrorMsg("错误");
+        Map<String, Object> context = new HashMap<>();
+        context.put("k", "v");
+        feedback.setContext(context);
+        feedback.setResultData(Collections.singletonMap("r", "d"));
+
+        List<TaskFeedbackParam> decoded = RpcPayloads.decodeFeedbacks(RpcPayloads.encodeFeedbacks(Collections.singletonList(feedback)));
+        Assertions.assertEquals(1, decoded.size());
+        TaskFeedbackParam result = decoded.get(0);
+        Assertions.assertEquals("t1", result.getTaskId());
+        Assertions.assertEquals(1, result.getResult());
+        Assertions.assertEquals("错误", result.getErrorMsg());
+        Assertions.assertNull(result.getErrorStackTrace());
+        Assertions.assertEquals("v", result.getContext().get("k"));
+        Assertions.assertEquals(Collections.singletonMap("r", "d"), result.getResultData());
+    }
+
+    @Test
+    void testSubmitResultsAndStrings() {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        results.put("t1", true);
+        results.put("t2", false);
+        Assertions.assertEquals(results, RpcPayloads.decodeSubmitResults(RpcPayloads.encodeSubmitResults(results)));
+
+        List<String> values = Arrays.asList("a", null, "");
+        Assertions.assertEquals(values, RpcPayloads.decodeStrings(RpcPayloads.encodeStrings(values)));
+        Assertions.assertEquals(Collections.emptyList(), RpcPayloads.decodeStrings(RpcPayloads.encodeStrings(Collections.emptyList())));
+    }
+
+    @Test
+    void testHeartbeat() {
+        Pair<String, WorkerHeartbeatParam> decoded = RpcPayloads.decodeHeartbeat(RpcPayloads.encodeHeartbeat("w1", new WorkerHeartbeatParam()));
+        Assertions.assertEquals("w1", decoded.getLeft());
+        Assertions.assertNotNull(decoded.getRight());
+    }
+
+    @Test
+    void testTruncatedPayload() {
+        byte[] body = RpcPayloads.encodeStrings(Arrays.asList("hello", "world"));
+        byte[] truncated = Arrays.copyOf(body, body.length - 2);
+        Assertions.assertThrows(RpcException.class, () -> RpcPayloads.decodeStrings(truncated));
+        Assertions.assertThrows(RpcException.class, () -> RpcPayloads.decodeTasks(new byte[]{1}));
+    }
+
+}
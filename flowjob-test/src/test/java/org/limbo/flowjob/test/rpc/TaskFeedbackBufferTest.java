@@ -0,0 +1,96 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.rpc;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.api.remote.param.TaskFeedbackParam;
+import org.limbo.flowjob.worker.core.rpc.TaskFeedbackBuffer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * @author Brozen
+ * @since 2023-06-16
+ */
+class TaskFeedbackBufferTest {
+
+    @Test
+    void testCloseFlushRemaining() {
+        List<String> fed = new CopyOnWriteArrayList<>();
+        // 等待时间足够长，关闭前不会自动反馈
+        TaskFeedbackBuffer buffer = new TaskFeedbackBuffer(100, TimeUnit.MINUTES.toMillis(1), 100, batch -> {
+            batch.forEach(feedback -> fed.add(feedback.getTaskId()));
+            return Collections.emptyList();
+        }, feedback -> fed.add(feedback.getTaskId()));
+
+        buffer.add(feedback("t1"));
+        buffer.add(feedback("t2"));
+        buffer.add(feedback("t3"));
+        buffer.close();
+        Assertions.assertEquals(3, fed.size());
+        Assertions.assertTrue(fed.containsAll(Arrays.asList("t1", "t2", "t3")));
+
+        // 关闭后直接反馈
+        buffer.add(feedback("t4"));
+        Assertions.assertTrue(fed.contains("t4"));
+    }
+
+    @Test
+    void testRetryFailedFeedback() throws InterruptedException {
+        List<String> fed = new CopyOnWriteArrayList<>();
+        TaskFeedbackBuffer buffer = new TaskFeedbackBuffer(10, 10, 100, batch -> {
+            batch.forEach(feedback -> fed.add(feedback.getTaskId()));
+            // t1 总是处理失败，重试次数用完后放弃
+            return batch.stream().anyMatch(feedback -> feedback.getTaskId().equals("t1"))
+                    ? Collections.singletonList("t1")
+                    : Collections.emptyList();
+        }, feedback -> Assertions.fail("should not feedback one by one"));
+
+        buffer.add(feedback("t1"));
+        buffer.add(feedback("t2"));
+        waitUntil(() -> fed.stream().filter("t1"::equals).count() == 4);
+        Thread.sleep(100);
+        buffer.close();
+
+        // 首次反馈 + 3 次重试
+        Assertions.assertEquals(4, fed.stream().filter("t1"::equals).count());
+        Assertions.assertEquals(1, fed.stream().filter("t2"::equals).count());
+    }
+
+    private TaskFeedbackParam feedback(String taskId) {
+        TaskFeedbackParam feedback = new TaskFeedbackParam();
+        feedback.setTaskId(taskId);
+        return feedback;
+    }
+
+    private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "wait feedback timeout");
+            Thread.sleep(10);
+        }
+    }
+
+}
@@ -32,6 +32,7 @@ import org.limbo.flowjob.broker.application.task.PlanScheduleTask;
 import org.limbo.flowjob.broker.application.controller.WorkerRpcController;
 import org.limbo.flowjob.broker.application.converter.MetaTaskConverter;
 import org.limbo.flowjob.broker.application.service.PlanService;
+import org.limbo.flowjob.broker.core.cluster.BrokerConfig;
 import org.limbo.flowjob.broker.core.dispatch.TaskDispatcher;
 import org.limbo.flowjob.broker.core.domain.job.WorkflowJobInfo;
 import org.limbo.flowjob.broker.core.domain.plan.Plan;
@@ -99,6 +100,9 @@ public class ScheduleTest {
     @Setter(onMethod_ = @Inject)
     private JobInstanceEntityRepo jobInstanceEntityRepo;
 
+    @Setter(onMethod_ = @Inject)
+    private BrokerConfig brokerConfig;
+
     @MockBean
     private BrokerRpc brokerRpc;
 
@@ -133,7 +137,7 @@ public class ScheduleTest {
 
         // mock slot
         List<Integer> slots = new ArrayList<>();
-        for (int i = 0; i < SlotManager.SLOT_SIZE; i++) {
+        for (int i = 0; i < brokerConfig.getSlotSize(); i++) {
             slots.add(i);
         }
         Mockito.when(slotManager.slots()).thenReturn(slots);
@@ -0,0 +1,74 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.util;
+
+import io.netty.util.Timeout;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.broker.core.schedule.scheduler.HierarchicalWheelTimer;
+import org.limbo.flowjob.broker.core.schedule.scheduler.NamedThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Brozen
+ * @since 2023-06-05
+ */
+class HierarchicalWheelTimerTest {
+
+    @Test
+    void testExpireInOrder() throws InterruptedException {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(NamedThreadFactory.newInstance("HierarchicalWheelTimerTest"), 10, TimeUnit.MILLISECONDS, 8);
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(4);
+        // 跨越多层时间轮：一层 80ms，两层 640ms
+        int[] delays = {500, 30, 200, 0};
+        for (int delay : delays) {
+            timer.newTimeout(timeout -> {
+                fired.add(delay);
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        Assertions.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assertions.assertArrayEquals(new Integer[]{0, 30, 200, 500}, fired.toArray(new Integer[0]));
+        Assertions.assertEquals(0, timer.pendingTimeouts());
+        timer.stop();
+    }
+
+    @Test
+    void testCancel() throws InterruptedException {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(NamedThreadFactory.newInstance("HierarchicalWheelTimerTest"), 10, TimeUnit.MILLISECONDS, 8);
+        CountDownLatch latch = new CountDownLatch(1);
+        Timeout timeout = timer.newTimeout(t -> latch.countDown(), 100, TimeUnit.MILLISECONDS);
+        Assertions.assertEquals(1, timer.pendingTimeouts());
+
+        Assertions.assertTrue(timeout.cancel());
+        Assertions.assertTrue(timeout.isCancelled());
+        Assertions.assertEquals(0, timer.pendingTimeouts());
+        Assertions.assertFalse(latch.await(300, TimeUnit.MILLISECONDS));
+
+        Timeout unprocessed = timer.newTimeout(t -> { }, 1, TimeUnit.HOURS);
+        Assertions.assertTrue(timer.stop().contains(unprocessed));
+    }
+
+}
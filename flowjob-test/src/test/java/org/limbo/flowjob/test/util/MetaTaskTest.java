@@ -20,12 +20,17 @@ package org.limbo.flowjob.test.util;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.time.DateFormatUtils;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.api.constants.ScheduleType;
+import org.limbo.flowjob.broker.core.schedule.ScheduleOption;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixDelayMetaTask;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.FixRateMetaTask;
+import org.limbo.flowjob.broker.core.schedule.scheduler.meta.LoopMetaTask;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskScheduler;
 import org.limbo.flowjob.broker.core.schedule.scheduler.meta.MetaTaskType;
 import org.limbo.flowjob.common.utils.time.TimeUtils;
+import org.mockito.Mockito;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -112,4 +117,97 @@ class MetaTaskTest {
 
         Thread.sleep(30000);
     }
+
+    @Test
+    void testSchedulingByType() {
+        MetaTaskScheduler scheduler = new MetaTaskScheduler(100L, TimeUnit.MILLISECONDS);
+        try {
+            FixDelayMetaTask sync = fixDelayTask(scheduler, MetaTaskType.WORKER_SYNC);
+            FixDelayMetaTask archive = fixDelayTask(scheduler, MetaTaskType.INSTANCE_ARCHIVE);
+            scheduler.schedule(sync);
+            scheduler.schedule(archive);
+            scheduler.schedule(fixDelayTask(scheduler, MetaTaskType.WORKER_SYNC));
+
+            Assertions.assertEquals(1, scheduler.getSchedulingByType(MetaTaskType.WORKER_SYNC).size());
+            Assertions.assertSame(archive, scheduler.getSchedulingByType(MetaTaskType.INSTANCE_ARCHIVE).get(0));
+            Assertions.assertTrue(scheduler.getSchedulingByType(MetaTaskType.PLAN).isEmpty());
+
+            scheduler.unschedule(sync.scheduleId());
+            Assertions.assertFalse(scheduler.isScheduling(sync.scheduleId()));
+            Assertions.assertTrue(scheduler.getSchedulingByType(MetaTaskType.WORKER_SYNC).isEmpty());
+            Assertions.assertEquals(1, scheduler.getSchedulingByType(MetaTaskType.INSTANCE_ARCHIVE).size());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    private FixDelayMetaTask fixDelayTask(MetaTaskScheduler scheduler, MetaTaskType type) {
+        return new FixDelayMetaTask(Duration.ofHours(1), Duration.ofHours(1), scheduler) {
+
+            @Override
+            protected void executeTask() {
+            }
+
+            @Override
+            public MetaTaskType getType() {
+                return type;
+            }
+
+            @Override
+            public String getMetaId() {
+                return type.name();
+            }
+        };
+    }
+
+    /**
+     * 调度停顿后，是否开启预计算，错过的触发都不逐个补触发，下次触发时间在恢复时间之后的一个周期内
+     */
+    @Test
+    void testMisfireWithAndWithoutPrecompute() throws InterruptedException {
+        ScheduleOption fixRate = new ScheduleOption(ScheduleType.FIXED_RATE, null, null, Duration.ofMillis(100), null, null);
+        ScheduleOption cron = new ScheduleOption(ScheduleType.CRON, null, null, null, "* * * * * ?", "QUARTZ");
+        LoopMetaTask[] tasks = new LoopMetaTask[]{
+                loopTask(fixRate, false), loopTask(fixRate, true), loopTask(cron, false), loopTask(cron, true)
+        };
+        Duration[] periods = new Duration[]{Duration.ofMillis(100), Duration.ofMillis(100), Duration.ofSeconds(1), Duration.ofSeconds(1)};
+        for (LoopMetaTask task : tasks) {
+            task.execute();
+        }
+
+        // 停顿超过多个周期，预计算的触发时间全部过期
+        Thread.sleep(2500);
+
+        for (int i = 0; i < tasks.length; i++) {
+            LocalDateTime resumeAt = TimeUtils.currentLocalDateTime();
+            tasks[i].execute();
+            LocalDateTime nextTriggerAt = tasks[i].scheduleAt();
+            Assertions.assertFalse(nextTriggerAt.isBefore(resumeAt), "task " + i + " replays missed trigger " + nextTriggerAt);
+            Assertions.assertFalse(nextTriggerAt.isAfter(resumeAt.plus(periods[i])), "task " + i + " skips next trigger " + nextTriggerAt);
+        }
+    }
+
+    private LoopMetaTask loopTask(ScheduleOption option, boolean precompute) {
+        LoopMetaTask task = new LoopMetaTask(TimeUtils.currentLocalDateTime(), null, option, Mockito.mock(MetaTaskScheduler.class)) {
+
+            @Override
+            protected void executeTask() {
+            }
+
+            @Override
+            public MetaTaskType getType() {
+                return MetaTaskType.PLAN;
+            }
+
+            @Override
+            public String getMetaId() {
+                return option.getScheduleType() + "-" + precompute;
+            }
+        };
+        if (precompute) {
+            task.enablePrecompute(Duration.ofSeconds(5), 10);
+        }
+        return task;
+    }
+
 }
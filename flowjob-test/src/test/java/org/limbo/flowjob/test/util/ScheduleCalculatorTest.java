@@ -0,0 +1,119 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.test.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.limbo.flowjob.api.constants.ScheduleType;
+import org.limbo.flowjob.broker.core.schedule.Calculated;
+import org.limbo.flowjob.broker.core.schedule.ScheduleCalculator;
+import org.limbo.flowjob.broker.core.schedule.ScheduleOption;
+import org.limbo.flowjob.broker.core.schedule.calculator.ScheduleCalculatorFactory;
+import org.limbo.flowjob.common.utils.time.TimeUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @author Brozen
+ * @since 2023-06-02
+ */
+class ScheduleCalculatorTest {
+
+    @Test
+    void testFixRateWithin() {
+        ScheduleOption option = new ScheduleOption(ScheduleType.FIXED_RATE, null, null, Duration.ofSeconds(1), null, null);
+        LocalDateTime lastTriggerAt = TimeUtils.currentLocalDateTime();
+        ScheduleCalculator calculator = ScheduleCalculatorFactory.create(ScheduleType.FIXED_RATE);
+
+        long windowEndAt = TimeUtils.toInstant(lastTriggerAt).toEpochMilli() + 10000;
+        List<Long> triggerAts = calculator.calculateWithin(calculated(option, lastTriggerAt), windowEndAt, 64);
+        Assertions.assertEquals(10, triggerAts.size());
+        for (int i = 1; i < triggerAts.size(); i++) {
+            Assertions.assertEquals(1000, triggerAts.get(i) - triggerAts.get(i - 1));
+        }
+
+        // 数量限制
+        triggerAts = calculator.calculateWithin(calculated(option, lastTriggerAt), windowEndAt, 3);
+        Assertions.assertEquals(3, triggerAts.size());
+    }
+
+    @Test
+    void testCronWithin() {
+        ScheduleOption option = new ScheduleOption(ScheduleType.CRON, null, null, null, "0/5 * * * * ?", "QUARTZ");
+        Assertions.assertTrue(ScheduleCalculatorFactory.precompile(option));
+        long hits = ScheduleCalculatorFactory.cronCacheStats().hitCount();
+
+        LocalDateTime lastTriggerAt = TimeUtils.currentLocalDateTime();
+        ScheduleCalculator calculator = ScheduleCalculatorFactory.create(ScheduleType.CRON);
+        long windowEndAt = TimeUtils.toInstant(lastTriggerAt).toEpochMilli() + 60000;
+        List<Long> triggerAts = calculator.calculateWithin(calculated(option, lastTriggerAt), windowEndAt, 64);
+        Assertions.assertTrue(triggerAts.size() >= 12);
+        for (int i = 1; i < triggerAts.size(); i++) {
+            Assertions.assertEquals(5000, triggerAts.get(i) - triggerAts.get(i - 1));
+        }
+        Assertions.assertTrue(ScheduleCalculatorFactory.cronCacheStats().hitCount() >= hits + triggerAts.size());
+    }
+
+    @Test
+    void testFixDelayNotPrecomputable() {
+        ScheduleOption option = new ScheduleOption(ScheduleType.FIXED_DELAY, null, null, Duration.ofSeconds(1), null, null);
+        LocalDateTime lastTriggerAt = TimeUtils.currentLocalDateTime();
+        ScheduleCalculator calculator = ScheduleCalculatorFactory.create(ScheduleType.FIXED_DELAY);
+        List<Long> triggerAts = calculator.calculateWithin(calculated(option, lastTriggerAt), Long.MAX_VALUE, 64);
+        Assertions.assertEquals(1, triggerAts.size());
+    }
+
+    @Test
+    void testFirstTriggerNotBeforeNow() {
+        ScheduleCalculator calculator = ScheduleCalculatorFactory.create(ScheduleType.FIXED_RATE);
+
+        // 开始时间已过去，首次触发为当前时间（毫秒），而不是开始时间
+        ScheduleOption past = new ScheduleOption(ScheduleType.FIXED_RATE, TimeUtils.currentLocalDateTime().minusDays(1), Duration.ZERO, Duration.ofSeconds(1), null, null);
+        long now = TimeUtils.currentInstant().toEpochMilli();
+        long triggerAt = calculator.calculate(calculated(past, null));
+        Assertions.assertTrue(triggerAt >= now && triggerAt - now < 1000, "first trigger " + triggerAt + " now " + now);
+
+        // 开始时间在未来，首次触发为开始时间加延迟
+        LocalDateTime startAt = TimeUtils.currentLocalDateTime().plusHours(1);
+        ScheduleOption future = new ScheduleOption(ScheduleType.FIXED_RATE, startAt, Duration.ofSeconds(5), Duration.ofSeconds(1), null, null);
+        Assertions.assertEquals(TimeUtils.toInstant(startAt).toEpochMilli() + 5000, calculator.calculate(calculated(future, null)));
+    }
+
+    private Calculated calculated(ScheduleOption option, LocalDateTime lastTriggerAt) {
+        return new Calculated() {
+            @Override
+            public ScheduleOption scheduleOption() {
+                return option;
+            }
+
+            @Override
+            public LocalDateTime lastTriggerAt() {
+                return lastTriggerAt;
+            }
+
+            @Override
+            public LocalDateTime lastFeedbackAt() {
+                return lastTriggerAt;
+            }
+        };
+    }
+
+}
@@ -59,6 +59,11 @@ import java.util.function.Supplier;
 @Slf4j
 public class BaseWorker implements Worker {
 
+    /**
+     * 停止时等待执行中任务完成的时间，秒
+     */
+    private static final long STOP_TIMEOUT = 30;
+
     @Getter
     private final String name;
 
@@ -336,7 +341,30 @@ public class BaseWorker implements Worker {
      */
     @Override
     public void stop() {
-        // TODO ???
+        WorkerStatus prev = status.getAndSet(WorkerStatus.TERMINATING);
+        if (prev == WorkerStatus.TERMINATING || prev == WorkerStatus.TERMINATED) {
+            return;
+        }
+
+        if (pacemaker != null) {
+            pacemaker.stop();
+        }
+
+        // 等待执行中的任务完成，再发送缓冲区中剩余的任务反馈
+        if (threadPool != null) {
+            threadPool.shutdown();
+            try {
+                if (!threadPool.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS)) {
+                    log.warn("Worker task executor not terminated in {}s", STOP_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        brokerRpc.close();
+
+        status.set(WorkerStatus.TERMINATED);
+        log.info("worker stop!");
     }
 
 }
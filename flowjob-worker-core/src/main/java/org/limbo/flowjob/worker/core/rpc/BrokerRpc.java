@@ -56,4 +56,11 @@ public interface BrokerRpc {
      */
     void feedbackTaskFailed(ExecuteContext context, @Nullable Throwable ex);
 
+
+    /**
+     * 关闭通信模块，发送尚未发送的任务反馈
+     */
+    default void close() {
+    }
+
 }
@@ -0,0 +1,238 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.worker.core.rpc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.limbo.flowjob.api.remote.param.TaskFeedbackParam;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 任务执行反馈缓冲区。任务执行线程只负责将反馈放入缓冲区，由后台线程按数量或时间合并后批量反馈给 broker。
+ * 缓冲区满时由任务执行线程直接反馈。broker 处理失败的反馈会重新放入缓冲区，重试 {@link #MAX_RETRY_TIMES} 次。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Slf4j
+public class TaskFeedbackBuffer {
+
+    /**
+     * broker 处理失败的反馈最大重试次数，超过后交由 broker 的任务状态检查处理
+     */
+    private static final int MAX_RETRY_TIMES = 3;
+
+    /**
+     * 关闭时等待后台线程退出的时间，毫秒
+     */
+    private static final long CLOSE_TIMEOUT = 3000;
+
+    /**
+     * 单次批量反馈的最大数量
+     */
+    private final int batchSize;
+
+    /**
+     * 批量反馈的最大等待时间，毫秒
+     */
+    private final long interval;
+
+    /**
+     * 批量反馈，返回 broker 处理失败的 taskId
+     */
+    private final Function<List<TaskFeedbackParam>, List<String>> batchFeedback;
+
+    /**
+     * 单个反馈，批量反馈失败或缓冲区满时使用
+     */
+    private final Consumer<TaskFeedbackParam> singleFeedback;
+
+    private final BlockingQueue<TaskFeedbackParam> queue;
+
+    /**
+     * broker 处理失败的反馈已重试次数
+     */
+    private final Map<String, Integer> retryTimes = new ConcurrentHashMap<>();
+
+    private final Thread flusher;
+
+    private volatile boolean closed;
+
+    public TaskFeedbackBuffer(int batchSize, long interval, int capacity,
+                              Function<List<TaskFeedbackParam>, List<String>> batchFeedback,
+                              Consumer<TaskFeedbackParam> singleFeedback) {
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.batchFeedback = batchFeedback;
+        this.singleFeedback = singleFeedback;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+
+        this.flusher = new Thread(this::flushLoop, "flowjob-task-feedback");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+
+    /**
+     * 添加一个任务反馈，缓冲区已满或已关闭时直接反馈
+     */
+    public void add(TaskFeedbackParam feedback) {
+        if (closed || !queue.offer(feedback)) {
+            singleFeedback.accept(feedback);
+        }
+    }
+
+
+    /**
+     * 关闭缓冲区，停止后台线程，并在当前线程中反馈缓冲区中剩余的反馈
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        flusher.interrupt();
+        try {
+            flusher.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<TaskFeedbackParam> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += batchSize) {
+            flush(remaining.subList(i, Math.min(i + batchSize, remaining.size())));
+        }
+        if (!remaining.isEmpty()) {
+            log.info("Task feedback buffer closed, flushed {} feedbacks", remaining.size());
+        }
+    }
+
+
+    /**
+     * 后台线程，攒够一批或等待超时后反馈
+     */
+    private void flushLoop() {
+        while (!closed && !Thread.currentThread().isInterrupted()) {
+            List<TaskFeedbackParam> batch = new ArrayList<>(batchSize);
+            try {
+                batch.add(queue.take());
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(interval);
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    TaskFeedbackParam next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                // 关闭时中断，已取出的反馈交给 close 处理
+                requeue(batch);
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Task feedback flush error", e);
+            }
+        }
+    }
+
+
+    /**
+     * 批量反馈，请求失败时逐个反馈，broker 处理失败的重新放入缓冲区。仍失败的交由 broker 的任务状态检查处理
+     */
+    private void flush(List<TaskFeedbackParam> batch) {
+        List<String> failedTaskIds;
+        try {
+            failedTaskIds = batchFeedback.apply(batch);
+        } catch (Exception e) {
+            log.warn("Batch feedback {} tasks failed, feedback one by one", batch.size(), e);
+            feedbackOneByOne(batch);
+            return;
+        }
+
+        if (failedTaskIds == null || failedTaskIds.isEmpty()) {
+            batch.forEach(feedback -> retryTimes.remove(feedback.getTaskId()));
+            return;
+        }
+
+        List<TaskFeedbackParam> retries = new ArrayList<>();
+        for (TaskFeedbackParam feedback : batch) {
+            String taskId = feedback.getTaskId();
+            if (!failedTaskIds.contains(taskId)) {
+                retryTimes.remove(taskId);
+                continue;
+            }
+
+            int times = retryTimes.merge(taskId, 1, Integer::sum);
+            if (times > MAX_RETRY_TIMES) {
+                retryTimes.remove(taskId);
+                log.error("Task feedback failed after {} retries taskId={}", MAX_RETRY_TIMES, taskId);
+            } else {
+                retries.add(feedback);
+            }
+        }
+
+        if (!retries.isEmpty()) {
+            log.warn("Broker handle {} task feedbacks failed, retry later", retries.size());
+            if (closed) {
+                feedbackOneByOne(retries);
+            } else {
+                requeue(retries);
+            }
+        }
+    }
+
+
+    /**
+     * 重新放入缓冲区，缓冲区已满时直接反馈
+     */
+    private void requeue(List<TaskFeedbackParam> feedbacks) {
+        for (TaskFeedbackParam feedback : feedbacks) {
+            if (!queue.offer(feedback)) {
+                feedbackOneByOne(Collections.singletonList(feedback));
+            }
+        }
+    }
+
+
+    private void feedbackOneByOne(List<TaskFeedbackParam> feedbacks) {
+        for (TaskFeedbackParam feedback : feedbacks) {
+            retryTimes.remove(feedback.getTaskId());
+            try {
+                singleFeedback.accept(feedback);
+            } catch (Exception e) {
+                log.error("Task feedback failed taskId={}", feedback.getTaskId(), e);
+            }
+        }
+    }
+
+}
@@ -31,7 +31,9 @@ import okhttp3.Response;
 import org.apache.commons.collections4.CollectionUtils;
 import org.limbo.flowjob.api.ResponseDTO;
 import org.limbo.flowjob.api.remote.dto.BrokerTopologyDTO;
+import org.limbo.flowjob.api.remote.dto.TaskBatchFeedbackDTO;
 import org.limbo.flowjob.api.remote.dto.WorkerRegisterDTO;
+import org.limbo.flowjob.api.remote.param.TaskBatchFeedbackParam;
 import org.limbo.flowjob.api.remote.param.TaskFeedbackParam;
 import org.limbo.flowjob.api.remote.param.WorkerRegisterParam;
 import org.limbo.flowjob.api.constants.MsgConstants;
@@ -45,11 +47,13 @@ import org.limbo.flowjob.worker.core.executor.ExecuteContext;
 import org.limbo.flowjob.worker.core.rpc.BrokerNode;
 import org.limbo.flowjob.worker.core.rpc.BrokerRpc;
 import org.limbo.flowjob.worker.core.rpc.RpcParamFactory;
+import org.limbo.flowjob.worker.core.rpc.TaskFeedbackBuffer;
 import org.limbo.flowjob.worker.core.rpc.exceptions.BrokerRpcException;
 import org.limbo.flowjob.worker.core.rpc.exceptions.RegisterFailException;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -78,11 +82,33 @@ public class OkHttpBrokerRpc implements BrokerRpc {
 
     private static final Protocol DEFAULT_PROTOCOL = Protocol.HTTP;
 
+    /**
+     * 反馈缓冲区容量
+     */
+    private static final int FEEDBACK_BUFFER_CAPACITY = 10240;
+
     private String workerId = "";
 
+    /**
+     * 任务反馈缓冲区，为空时同步逐个反馈
+     */
+    private final TaskFeedbackBuffer feedbackBuffer;
+
     public OkHttpBrokerRpc(LBServerRepository<BrokerNode> repository, LBStrategy<BrokerNode> strategy) {
+        this(repository, strategy, 0, 0);
+    }
+
+    /**
+     * @param feedbackBatchSize 单次批量反馈的最大数量，小于等于 1 时不批量反馈
+     * @param feedbackBatchInterval 批量反馈的最大等待时间，毫秒
+     */
+    public OkHttpBrokerRpc(LBServerRepository<BrokerNode> repository, LBStrategy<BrokerNode> strategy,
+                           int feedbackBatchSize, long feedbackBatchInterval) {
         this.repository = repository;
         this.client = new OkHttpClient.Builder().addInterceptor(new LoadBalanceInterceptor<>(repository, strategy)).build();
+        this.feedbackBuffer = feedbackBatchSize > 1
+                ? new TaskFeedbackBuffer(feedbackBatchSize, feedbackBatchInterval, FEEDBACK_BUFFER_CAPACITY, this::doFeedbackTasks, this::doFeedbackTask)
+                : null;
     }
 
     /**
@@ -112,6 +138,14 @@ public class OkHttpBrokerRpc implements BrokerRpc {
     }
 
 
+    /**
+     * 注册成功后 broker 分配的 worker ID
+     */
+    protected String workerId() {
+        return workerId;
+    }
+
+
     /**
      * 向指定 broker 节点发起注册请求
      */
@@ -130,7 +164,7 @@ public class OkHttpBrokerRpc implements BrokerRpc {
     /**
      * 更新 broker 拓扑结构
      */
-    private synchronized void updateBrokerTopology(BrokerTopologyDTO topo) {
+    protected synchronized void updateBrokerTopology(BrokerTopologyDTO topo) {
         if (topo == null || CollectionUtils.isEmpty(topo.getBrokers())) {
             throw new IllegalStateException("Broker topology error: " + topo);
         }
@@ -187,7 +221,7 @@ public class OkHttpBrokerRpc implements BrokerRpc {
     @Override
     public void feedbackTaskSucceed(ExecuteContext context) {
         Task task = context.getTask();
-        doFeedbackTask(task.getTaskId(), RpcParamFactory.taskFeedbackParam(task.getContext(), task.getJobAttributes(), task.getResult(), null));
+        feedbackTask(task.getTaskId(), RpcParamFactory.taskFeedbackParam(task.getContext(), task.getJobAttributes(), task.getResult(), null));
     }
 
 
@@ -200,15 +234,28 @@ public class OkHttpBrokerRpc implements BrokerRpc {
     @Override
     public void feedbackTaskFailed(ExecuteContext context, @Nullable Throwable ex) {
         Task task = context.getTask();
-        doFeedbackTask(context.getTask().getTaskId(), RpcParamFactory.taskFeedbackParam(task.getContext(), task.getJobAttributes(), task.getResult(), ex));
+        feedbackTask(context.getTask().getTaskId(), RpcParamFactory.taskFeedbackParam(task.getContext(), task.getJobAttributes(), task.getResult(), ex));
+    }
+
+
+    /**
+     * 反馈任务执行结果，开启批量反馈时放入缓冲区
+     */
+    private void feedbackTask(String taskId, TaskFeedbackParam feedbackParam) {
+        feedbackParam.setTaskId(taskId);
+        if (feedbackBuffer != null) {
+            feedbackBuffer.add(feedbackParam);
+        } else {
+            doFeedbackTask(feedbackParam);
+        }
     }
 
 
     /**
      * 反馈任务执行结果
      */
-    private void doFeedbackTask(String taskId, TaskFeedbackParam feedbackParam) {
-        ResponseDTO<Void> response = executePost(BASE_URL + "/api/v1/rpc/worker/task/" + taskId + "/feedback", feedbackParam, new TypeReference<ResponseDTO<Void>>() {
+    protected void doFeedbackTask(TaskFeedbackParam feedbackParam) {
+        ResponseDTO<Void> response = executePost(BASE_URL + "/api/v1/rpc/worker/task/" + feedbackParam.getTaskId() + "/feedback", feedbackParam, new TypeReference<ResponseDTO<Void>>() {
         });
 
         if (response == null || !response.success()) {
@@ -217,6 +264,36 @@ public class OkHttpBrokerRpc implements BrokerRpc {
         }
     }
 
+
+    /**
+     * 批量反馈任务执行结果
+     *
+     * @return broker 处理失败的 taskId
+     */
+    protected List<String> doFeedbackTasks(List<TaskFeedbackParam> feedbackParams) {
+        TaskBatchFeedbackParam param = new TaskBatchFeedbackParam();
+        param.setFeedbacks(feedbackParams);
+        ResponseDTO<TaskBatchFeedbackDTO> response = executePost(BASE_URL + "/api/rpc/v1/worker/task/feedback", param, new TypeReference<ResponseDTO<TaskBatchFeedbackDTO>>() {
+        });
+
+        if (response == null || !response.success()) {
+            String msg = response == null ? MsgConstants.UNKNOWN : (response.getCode() + ":" + response.getMessage());
+            throw new BrokerRpcException("Worker batch feedback Task failed: " + msg);
+        }
+        return response.getData() == null ? Collections.emptyList() : response.getData().getFailedTaskIds();
+    }
+
+
+    /**
+     * 关闭反馈缓冲区，反馈缓冲区中剩余的任务执行结果
+     */
+    @Override
+    public void close() {
+        if (feedbackBuffer != null) {
+            feedbackBuffer.close();
+        }
+    }
+
     /**
      * 通过 OkHttp 执行请求，并获取响应
      */
@@ -0,0 +1,141 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.worker.core.rpc.netty;
+
+import lombok.extern.slf4j.Slf4j;
+import org.limbo.flowjob.api.remote.dto.WorkerRegisterDTO;
+import org.limbo.flowjob.api.remote.param.TaskFeedbackParam;
+import org.limbo.flowjob.common.lb.LBServerRepository;
+import org.limbo.flowjob.common.lb.LBStrategy;
+import org.limbo.flowjob.common.rpc.netty.NettyRpcServer;
+import org.limbo.flowjob.common.rpc.netty.RpcMessageType;
+import org.limbo.flowjob.common.rpc.netty.RpcPayloads;
+import org.limbo.flowjob.worker.core.domain.Worker;
+import org.limbo.flowjob.worker.core.rpc.BrokerNode;
+import org.limbo.flowjob.worker.core.rpc.RpcParamFactory;
+import org.limbo.flowjob.worker.core.rpc.exceptions.BrokerRpcException;
+import org.limbo.flowjob.worker.core.rpc.http.OkHttpBrokerRpc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 使用 tcp 协议的 worker 与 broker 通信。broker 下发任务时会与 worker 建立长连接，
+ * 心跳、任务反馈优先复用这些连接发送；尚无连接或发送失败时，降级为 HTTP 请求。注册始终使用 HTTP。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Slf4j
+public class NettyBrokerRpc extends OkHttpBrokerRpc {
+
+    private final NettyRpcServer server;
+
+    /**
+     * @param server worker 的长连接服务端
+     * @param feedbackBatchSize 单次批量反馈的最大数量，小于等于 1 时不批量反馈
+     * @param feedbackBatchInterval 批量反馈的最大等待时间，毫秒
+     */
+    public NettyBrokerRpc(NettyRpcServer server, LBServerRepository<BrokerNode> repository, LBStrategy<BrokerNode> strategy,
+                          int feedbackBatchSize, long feedbackBatchInterval) {
+        super(repository, strategy, feedbackBatchSize, feedbackBatchInterval);
+        this.server = server;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param worker 发送心跳的 Worker
+     */
+    @Override
+    public void heartbeat(Worker worker) {
+        if (server.hasConnection()) {
+            try {
+                byte[] body = RpcPayloads.encodeHeartbeat(workerId(), RpcParamFactory.heartbeatParam(worker));
+                WorkerRegisterDTO result = RpcPayloads.decodeJson(request(RpcMessageType.HEARTBEAT, body), WorkerRegisterDTO.class);
+                if (result != null) {
+                    updateBrokerTopology(result.getBrokerTopology());
+                }
+                return;
+            } catch (Exception e) {
+                log.warn("Heartbeat via tcp failed, fallback to http", e);
+            }
+        }
+
+        super.heartbeat(worker);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param feedbackParam
+     */
+    @Override
+    protected void doFeedbackTask(TaskFeedbackParam feedbackParam) {
+        List<String> failedTaskIds = feedbackViaTcp(Collections.singletonList(feedbackParam));
+        if (failedTaskIds == null) {
+            super.doFeedbackTask(feedbackParam);
+        } else if (!failedTaskIds.isEmpty()) {
+            throw new BrokerRpcException("Broker handle task feedback failed taskId=" + feedbackParam.getTaskId());
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param feedbackParams
+     */
+    @Override
+    protected List<String> doFeedbackTasks(List<TaskFeedbackParam> feedbackParams) {
+        List<String> failedTaskIds = feedbackViaTcp(feedbackParams);
+        return failedTaskIds != null ? failedTaskIds : super.doFeedbackTasks(feedbackParams);
+    }
+
+
+    /**
+     * 通过长连接反馈任务执行结果
+     *
+     * @return broker 处理失败的 taskId，未通过长连接发送时返回 null
+     */
+    private List<String> feedbackViaTcp(List<TaskFeedbackParam> feedbackParams) {
+        if (!server.hasConnection()) {
+            return null;
+        }
+
+        try {
+            return RpcPayloads.decodeStrings(request(RpcMessageType.FEEDBACK_TASKS, RpcPayloads.encodeFeedbacks(feedbackParams)));
+        } catch (Exception e) {
+            log.warn("Feedback {} tasks via tcp failed, fallback to http", feedbackParams.size(), e);
+            return null;
+        }
+    }
+
+
+    private byte[] request(RpcMessageType type, byte[] body) {
+        try {
+            return server.request(type, body).join();
+        } catch (CompletionException e) {
+            throw new BrokerRpcException("Broker rpc " + type + " failed", e.getCause());
+        }
+    }
+
+}
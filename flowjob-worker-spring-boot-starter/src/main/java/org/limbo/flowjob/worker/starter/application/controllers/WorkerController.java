@@ -19,6 +19,8 @@ package org.limbo.flowjob.worker.starter.application.controllers;
 
 import lombok.extern.slf4j.Slf4j;
 import org.limbo.flowjob.api.remote.constants.HttpWorkerApi;
+import org.limbo.flowjob.api.remote.dto.TaskSubmitResultDTO;
+import org.limbo.flowjob.api.remote.param.TaskBatchSubmitParam;
 import org.limbo.flowjob.api.remote.param.TaskSubmitParam;
 import org.limbo.flowjob.api.ResponseDTO;
 import org.limbo.flowjob.worker.starter.application.services.WorkerService;
@@ -27,6 +29,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 /**
  * @author Devil
  * @since 2021/7/24
@@ -53,4 +57,13 @@ public class WorkerController extends BaseController {
     }
 
 
+    /**
+     * 批量接收任务，每个任务单独判断是否接收，返回每个任务的接收结果。
+     */
+    @PostMapping(HttpWorkerApi.API_SEND_TASKS)
+    public ResponseDTO<List<TaskSubmitResultDTO>> receiveJobs(@RequestBody TaskBatchSubmitParam param) {
+        return ResponseDTO.<List<TaskSubmitResultDTO>>builder().ok(workerService.receive(param)).build();
+    }
+
+
 }
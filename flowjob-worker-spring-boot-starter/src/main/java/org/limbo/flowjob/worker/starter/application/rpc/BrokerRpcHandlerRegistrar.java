@@ -0,0 +1,77 @@
+/*
+ *
+ *  * Copyright 2020-2024 Limbo Team (https://github.com/limbo-world).
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * 	http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.limbo.flowjob.worker.starter.application.rpc;
+
+import lombok.Setter;
+import org.limbo.flowjob.api.remote.dto.TaskSubmitResultDTO;
+import org.limbo.flowjob.api.remote.param.TaskBatchSubmitParam;
+import org.limbo.flowjob.common.rpc.netty.NettyRpcServer;
+import org.limbo.flowjob.common.rpc.netty.RpcMessageType;
+import org.limbo.flowjob.common.rpc.netty.RpcPayloads;
+import org.limbo.flowjob.worker.starter.application.services.WorkerService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 注册处理 broker 长连接请求的处理器，与 {@link org.limbo.flowjob.worker.starter.application.controllers.WorkerController} 中的接口对应。
+ * 仅在 worker 使用 tcp 协议时生效。
+ *
+ * @author Brozen
+ * @since 2023-06-16
+ */
+@Component
+public class BrokerRpcHandlerRegistrar {
+
+    @Setter(onMethod_ = @Inject)
+    private ObjectProvider<NettyRpcServer> rpcServer;
+
+    @Setter(onMethod_ = @Inject)
+    private WorkerService workerService;
+
+    @PostConstruct
+    public void register() {
+        NettyRpcServer server = rpcServer.getIfAvailable();
+        if (server == null) {
+            return;
+        }
+
+        // 接收单个任务
+        server.registerHandler(RpcMessageType.SUBMIT_TASK, body -> RpcPayloads.encodeBoolean(
+                Boolean.TRUE.equals(workerService.receive(RpcPayloads.decodeTask(body)))
+        ));
+
+        // 批量接收任务
+        server.registerHandler(RpcMessageType.SUBMIT_TASKS, body -> {
+            TaskBatchSubmitParam param = new TaskBatchSubmitParam();
+            param.setTasks(RpcPayloads.decodeTasks(body));
+
+            Map<String, Boolean> results = new LinkedHashMap<>();
+            for (TaskSubmitResultDTO result : workerService.receive(param)) {
+                results.put(result.getTaskId(), result.isAccepted());
+            }
+            return RpcPayloads.encodeSubmitResults(results);
+        });
+    }
+
+}
@@ -19,6 +19,8 @@ package org.limbo.flowjob.worker.starter.application.services;
 import lombok.AllArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.limbo.flowjob.api.remote.dto.TaskSubmitResultDTO;
+import org.limbo.flowjob.api.remote.param.TaskBatchSubmitParam;
 import org.limbo.flowjob.api.remote.param.TaskSubmitParam;
 import org.limbo.flowjob.worker.core.domain.Task;
 import org.limbo.flowjob.worker.core.domain.Worker;
@@ -26,6 +28,8 @@ import org.limbo.flowjob.worker.starter.application.converter.TaskConverter;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Devil
@@ -58,4 +62,17 @@ public class WorkerService {
         }
     }
 
+    /**
+     * 批量接收任务，单个任务接收失败不影响其它任务
+     * @param param
+     * @return 每个任务的接收结果
+     */
+    public List<TaskSubmitResultDTO> receive(TaskBatchSubmitParam param) {
+        List<TaskSubmitResultDTO> results = new ArrayList<>(param.getTasks().size());
+        for (TaskSubmitParam task : param.getTasks()) {
+            results.add(new TaskSubmitResultDTO(task.getTaskId(), receive(task)));
+        }
+        return results;
+    }
+
 }
@@ -21,9 +21,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.limbo.flowjob.api.constants.Protocol;
+import org.limbo.flowjob.api.constants.RpcScheme;
 import org.limbo.flowjob.common.lb.LBServerRepository;
 import org.limbo.flowjob.common.lb.LBStrategy;
 import org.limbo.flowjob.common.lb.strategies.RoundRobinLBStrategy;
+import org.limbo.flowjob.common.rpc.netty.NettyRpcServer;
 import org.limbo.flowjob.common.utils.NetUtils;
 import org.limbo.flowjob.worker.core.domain.BaseWorker;
 import org.limbo.flowjob.worker.core.domain.CalculatingWorkerResource;
@@ -33,9 +35,11 @@ import org.limbo.flowjob.worker.core.rpc.BaseLBServerRepository;
 import org.limbo.flowjob.worker.core.rpc.BrokerNode;
 import org.limbo.flowjob.worker.core.rpc.BrokerRpc;
 import org.limbo.flowjob.worker.core.rpc.http.OkHttpBrokerRpc;
+import org.limbo.flowjob.worker.core.rpc.netty.NettyBrokerRpc;
 import org.limbo.flowjob.worker.starter.SpringDelegatedWorker;
 import org.limbo.flowjob.worker.starter.processor.ExecutorMethodProcessor;
 import org.limbo.flowjob.worker.starter.properties.WorkerProperties;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -62,6 +66,21 @@ import java.util.stream.Collectors;
 @EnableConfigurationProperties(WorkerProperties.class)
 public class WorkerAutoConfiguration {
 
+    /**
+     * 长连接服务端处理请求的线程数
+     */
+    private static final int RPC_HANDLER_THREADS = 4;
+
+    /**
+     * 长连接服务端处理请求的队列长度
+     */
+    private static final int RPC_HANDLER_QUEUE_SIZE = 1024;
+
+    /**
+     * 长连接请求超时时间，毫秒
+     */
+    private static final long RPC_REQUEST_TIMEOUT = 10000;
+
     private final WorkerProperties workerProps;
 
     @Setter(onMethod_ = @Value("${server.port:8080}"))
@@ -87,8 +106,7 @@ public class WorkerAutoConfiguration {
      */
     @Bean
     public Worker httpWorker(WorkerResources resources, BrokerRpc rpc) throws MalformedURLException {
-        // 优先使用 SpringMVC 或 SpringWebflux 设置的端口号
-        Integer port = workerProps.getPort() != null ? workerProps.getPort() : httpServerPort;
+        Integer port = workerPort();
 
         // 优先使用指定的 host，如未指定则自动寻找本机 IP
         String host = workerProps.getHost();
@@ -97,7 +115,7 @@ public class WorkerAutoConfiguration {
         }
 
         Assert.isTrue(port > 0, "Worker port must be a positive integer in range 1 ~ 65534");
-        URL workerBaseUrl = new URL(workerProps.getScheme().name(), host, port, "");
+        URL workerBaseUrl = NetUtils.newURL(workerProps.getScheme().name(), host, port);
         BaseWorker worker = new BaseWorker(workerProps.getName(), workerBaseUrl, resources, rpc);
 
         // 将 tag 添加到 Worker
@@ -109,6 +127,29 @@ public class WorkerAutoConfiguration {
     }
 
 
+    /**
+     * worker 通信端口。tcp 协议未指定端口时使用协议默认端口，其他协议优先使用 SpringMVC 或 SpringWebflux 设置的端口号
+     */
+    private Integer workerPort() {
+        if (workerProps.getPort() != null) {
+            return workerProps.getPort();
+        }
+        return workerProps.getScheme() == RpcScheme.tcp ? Protocol.TCP.port : httpServerPort;
+    }
+
+
+    /**
+     * tcp 协议的长连接服务端，接收 broker 下发的任务
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "flowjob.worker", value = "scheme", havingValue = "tcp")
+    public NettyRpcServer workerRpcServer() throws InterruptedException {
+        NettyRpcServer server = new NettyRpcServer(workerPort(), 0, RPC_HANDLER_THREADS, RPC_HANDLER_QUEUE_SIZE, RPC_REQUEST_TIMEOUT);
+        server.start();
+        return server;
+    }
+
+
     /**
      * 动态计算 Worker 资源
      */
@@ -124,7 +165,8 @@ public class WorkerAutoConfiguration {
      */
     @Bean
     @ConditionalOnMissingBean(BrokerRpc.class)
-    public BrokerRpc brokerRpc(LBServerRepository<BrokerNode> brokerLoadBalancer, LBStrategy<BrokerNode> strategy) {
+    public BrokerRpc brokerRpc(LBServerRepository<BrokerNode> brokerLoadBalancer, LBStrategy<BrokerNode> strategy,
+                               ObjectProvider<NettyRpcServer> rpcServer) {
         List<URL> brokers = workerProps.getBrokers();
         if (CollectionUtils.isEmpty(brokers)) {
             throw new IllegalArgumentException("No brokers configured");
@@ -136,6 +178,13 @@ public class WorkerAutoConfiguration {
             throw new IllegalArgumentException("Unsupported broker protocol [" + brokerProtocol + "]");
         }
 
+        // worker 使用 tcp 协议时，心跳、反馈复用 broker 建立的长连接
+        NettyRpcServer server = rpcServer.getIfAvailable();
+        if (server != null) {
+            return new NettyBrokerRpc(server, brokerLoadBalancer, strategy,
+                    workerProps.getFeedbackBatchSize(), workerProps.getFeedbackBatchInterval().toMillis());
+        }
+
         return httpBrokerRpc(brokerLoadBalancer, strategy);
     }
 
@@ -144,7 +193,7 @@ public class WorkerAutoConfiguration {
      * HTTP 协议的 broker 通信
      */
     private OkHttpBrokerRpc httpBrokerRpc(LBServerRepository<BrokerNode> loadBalancer, LBStrategy<BrokerNode> strategy) {
-        return new OkHttpBrokerRpc(loadBalancer, strategy);
+        return new OkHttpBrokerRpc(loadBalancer, strategy, workerProps.getFeedbackBatchSize(), workerProps.getFeedbackBatchInterval().toMillis());
     }
 
     private List<BrokerNode> brokerNodes() {
@@ -50,6 +50,7 @@ public class WorkerProperties {
 
     /**
      * worker 注册时，向 broker 提交的 RPC 通信协议类型。默认为 http。
+     * 使用 tcp 时，worker 会启动长连接服务端接收任务，心跳、任务反馈也优先通过长连接发送。
      */
     private RpcScheme scheme = RpcScheme.http;
 
@@ -62,6 +63,7 @@ public class WorkerProperties {
     /**
      * worker 注册时，向 broker 提交的 RPC 通信端口，默认为 null。
      * 如果未指定此配置，则尝试使用 ${server.port} 配置；如 ${server.port} 配置也不存在，则使用 8080，
+     * tcp 协议未指定时使用 8099。
      */
     private Integer port = null;
 
@@ -85,6 +87,16 @@ public class WorkerProperties {
      */
     private List<String> tags;
 
+    /**
+     * 任务执行结果批量反馈的最大数量，默认 64。小于等于 1 时每个任务执行完成后同步反馈。
+     */
+    private int feedbackBatchSize = 64;
+
+    /**
+     * 任务执行结果批量反馈的最大等待时间，默认 100 毫秒。
+     */
+    private Duration feedbackBatchInterval = Duration.ofMillis(100);
+
     /**
      * 是否在扫描完成所有 Executor 后自动执行注册，默认 true。
      * 如设置为 false，则需主动触发 {@link WorkerReadyEvent} 时间后，worker 才会执行注册动作，才可能接收到任务并执行。